@@ -0,0 +1,69 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leitura do PFX e preenchimento dos dados do certificado.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarregamentoBenchmark {
+
+    private byte[] pfx;
+    private X509Certificate x509;
+
+    @Setup
+    public void setup() throws Exception {
+        CertificadosTeste ac = CertificadosTeste.novaAc("AC Teste Benchmark");
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        this.x509 = ac.emissao("CN=EMPRESA TESTE LTDA:12345678000195")
+                .pessoaJuridica("12345678000195", "12345678909", "FULANO DE TAL").emitir(chaves.getPublic());
+        this.pfx = CertificadosTeste.pfx("cliente", chaves.getPrivate(), x509, ac.getCertificado());
+        // Sem o cache de certificados decodificados, certificadoPfxBytes mede sempre a decodificação completa.
+        CertificadoService.setCache(null);
+    }
+
+    @Benchmark
+    public KeyStore getKeyStoreArquivoByte() throws Exception {
+        return KeyStoreService.getKeyStoreArquivoByte(pfx, certificado());
+    }
+
+    /**
+     * Caminho de CertificadoService.setDadosCertificado após a leitura do KeyStore.
+     */
+    @Benchmark
+    public Certificado preencheDadosCertificado() {
+        Certificado certificado = new Certificado();
+        CertificadoService.preencheDadosCertificado(certificado, x509, false);
+        return certificado;
+    }
+
+    @Benchmark
+    public Certificado certificadoPfxBytes() throws Exception {
+        return CertificadoService.certificadoPfxBytes(pfx, CertificadosTeste.SENHA);
+    }
+
+    private static Certificado certificado() {
+        Certificado certificado = new Certificado();
+        certificado.setSenha(CertificadosTeste.SENHA);
+        return certificado;
+    }
+}
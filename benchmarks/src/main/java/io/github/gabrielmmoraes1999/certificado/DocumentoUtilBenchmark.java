@@ -0,0 +1,65 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.DadosIcpBrasil;
+import io.github.gabrielmmoraes1999.certificado.util.DocumentoUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.cert.X509Certificate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extração dos campos ICP-Brasil do SubjectAltName.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentoUtilBenchmark {
+
+    private static final String CNPJ = "12345678000195";
+
+    private byte[] subjectAltName;
+
+    @Setup
+    public void setup() throws Exception {
+        CertificadosTeste ac = CertificadosTeste.novaAc("AC Teste Benchmark");
+        X509Certificate certificado = ac.emissao("CN=EMPRESA TESTE LTDA:" + CNPJ)
+                .pessoaJuridica(CNPJ, "12345678909", "FULANO DE TAL").emitir(CertificadosTeste.geraChaves().getPublic());
+        this.subjectAltName = certificado.getExtensionValue("2.5.29.17");
+        if (!CNPJ.equals(DocumentoUtil.getDocumentoFromCertificado(subjectAltName).orElse(null))) {
+            throw new IllegalStateException("SubjectAltName de teste não reconhecido");
+        }
+    }
+
+    @Benchmark
+    public DadosIcpBrasil processaSubjectAltName() {
+        return DocumentoUtil.processaSubjectAltName(subjectAltName);
+    }
+
+    @Benchmark
+    public Optional<String> getDocumentoFromCertificado() {
+        return DocumentoUtil.getDocumentoFromCertificado(subjectAltName);
+    }
+
+    @Benchmark
+    public Optional<String> processaCPFPJ() {
+        return DocumentoUtil.processaCPFPJ(subjectAltName);
+    }
+
+    @Benchmark
+    public Optional<String> processaNomePF() {
+        return DocumentoUtil.processaNomePF(subjectAltName);
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handshake TLS com autenticação do cliente contra um {@link SSLServerSocket} no próprio processo, completo e com a
+ * sessão retomada do cache do {@link SocketFactoryDinamico}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandshakeBenchmark {
+
+    private static final String PROTOCOLO = "TLSv1.2";
+
+    private SSLServerSocket servidor;
+    private ExecutorService conexoes;
+    private SocketFactoryDinamico socketFactory;
+    private int porta;
+
+    @Setup
+    public void setup() throws Exception {
+        CertificadosTeste ac = CertificadosTeste.novaAc("AC Teste Benchmark");
+        Cacert cacert = CertificadosTeste.cacert(ac.getCertificado());
+
+        KeyPair chavesServidor = CertificadosTeste.geraChaves();
+        KeyStore ksServidor = CertificadosTeste.keyStore("servidor", chavesServidor.getPrivate(),
+                ac.emissao("CN=localhost").dns("localhost").emitir(chavesServidor.getPublic()), ac.getCertificado());
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ksServidor, CertificadosTeste.SENHA.toCharArray());
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(cacert.getTrustStore());
+        SSLContext contexto = SSLContext.getInstance(PROTOCOLO);
+        contexto.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+
+        this.servidor = (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        this.servidor.setNeedClientAuth(true);
+        this.porta = servidor.getLocalPort();
+        this.conexoes = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "handshake-servidor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.conexoes.execute(this::aceita);
+
+        Certificado certificado = ac.certificadoA1("CN=EMPRESA TESTE LTDA");
+        this.socketFactory = new SocketFactoryDinamico(CertificadoService.getKeyStore(certificado), certificado.getNomeCertificado(),
+                certificado.getSenha(), cacert.getTrustManagers(), PROTOCOLO);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        servidor.close();
+        conexoes.shutdownNow();
+    }
+
+    @Benchmark
+    public Socket completo() throws IOException {
+        Socket socket = socketFactory.createSocket("localhost", porta);
+        // Invalidada, a sessão não volta a ser usada e a próxima conexão faz o handshake completo.
+        ((SSLSocket) socket).getSession().invalidate();
+        socket.close();
+        return socket;
+    }
+
+    @Benchmark
+    public Socket retomado() throws IOException {
+        Socket socket = socketFactory.createSocket("localhost", porta);
+        socket.close();
+        return socket;
+    }
+
+    private void aceita() {
+        while (!servidor.isClosed()) {
+            try {
+                SSLSocket socket = (SSLSocket) servidor.accept();
+                conexoes.execute(() -> atende(socket));
+            } catch (IOException e) {
+                if (servidor.isClosed()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void atende(SSLSocket socket) {
+        try (SSLSocket s = socket) {
+            s.setTcpNoDelay(true);
+            s.startHandshake();
+            // Aguarda o cliente encerrar a conexão.
+            s.getInputStream().read();
+        } catch (IOException ignored) {
+            // Conexão encerrada pelo cliente durante ou após o handshake.
+        }
+    }
+}
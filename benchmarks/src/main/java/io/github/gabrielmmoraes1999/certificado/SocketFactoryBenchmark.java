@@ -0,0 +1,45 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.TrustManager;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construção do {@link SocketFactoryDinamico} (SSLContext, KeyManager e TrustManager) para um certificado já lido.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketFactoryBenchmark {
+
+    private Certificado certificado;
+    private KeyStore keyStore;
+    private TrustManager[] trustManagers;
+
+    @Setup
+    public void setup() throws Exception {
+        CertificadosTeste ac = CertificadosTeste.novaAc("AC Teste Benchmark");
+        this.certificado = ac.certificadoA1("CN=EMPRESA TESTE LTDA");
+        this.keyStore = CertificadoService.getKeyStore(certificado);
+        this.trustManagers = CertificadosTeste.cacert(ac.getCertificado()).getTrustManagers();
+    }
+
+    @Benchmark
+    public SocketFactoryDinamico construcao() throws Exception {
+        return new SocketFactoryDinamico(keyStore, certificado.getNomeCertificado(), certificado.getSenha(), trustManagers, "TLSv1.2");
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.gabrielmmoraes1999.certificado.http;
+
+import io.github.gabrielmmoraes1999.certificado.Cacert;
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.CertificadoService;
+import io.github.gabrielmmoraes1999.certificado.SocketFactoryDinamico;
+import io.github.gabrielmmoraes1999.certificado.TrustStoreService;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cliente {@link HttpClient} do JDK (Java 11+) autenticado com um {@link Certificado}.
+ * <p>
+ * Usa o mesmo {@link javax.net.ssl.SSLContext} do {@link SocketFactoryDinamico} do certificado, então compartilha com o
+ * protocolo do commons-httpclient a chave pré-carregada e o cache de sessões TLS. O cliente negocia HTTP/2 por ALPN
+ * quando o servidor suporta, multiplexando as requisições concorrentes em poucas conexões, e volta para HTTP/1.1
+ * caso contrário.
+ * <p>
+ * Cada instância mantém o seu próprio pool de conexões: crie uma por certificado e reutilize-a entre as threads.
+ * Publicada no artefato {@code certificado-httpclient}, que requer Java 11.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class HttpClientCertificado {
+
+    private static final String CONTENT_TYPE_SOAP = "application/soap+xml; charset=utf-8";
+
+    private final HttpClient httpClient;
+    private final Duration timeoutRequisicao;
+
+    private HttpClientCertificado(HttpClient httpClient, Duration timeoutRequisicao) {
+        this.httpClient = httpClient;
+        this.timeoutRequisicao = timeoutRequisicao;
+    }
+
+    public static HttpClientCertificado criar(Certificado certificado) throws CertificadoException {
+        return criar(certificado, TrustStoreService.getPadrao());
+    }
+
+    public static HttpClientCertificado criar(Certificado certificado, Cacert cacert) throws CertificadoException {
+        return new HttpClientCertificado(builder(certificado, cacert).build(), null);
+    }
+
+    /**
+     * @param timeoutConexao    tempo máximo para estabelecer a conexão
+     * @param timeoutRequisicao tempo máximo de cada requisição SOAP; {@code null} para não limitar
+     */
+    public static HttpClientCertificado criar(Certificado certificado, Cacert cacert, Duration timeoutConexao,
+                                              Duration timeoutRequisicao) throws CertificadoException {
+        HttpClient.Builder builder = builder(certificado, cacert)
+                .connectTimeout(Optional.ofNullable(timeoutConexao).orElseThrow(() -> new IllegalArgumentException("Timeout de conexão não pode ser nulo.")));
+        return new HttpClientCertificado(builder.build(), timeoutRequisicao);
+    }
+
+    /**
+     * Builder já configurado com o SSLContext do certificado e HTTP/2, para quem precisa ajustar executor, proxy ou
+     * redirecionamentos antes de construir o cliente.
+     */
+    public static HttpClient.Builder builder(Certificado certificado, Cacert cacert) throws CertificadoException {
+        return HttpClient.newBuilder()
+                .sslContext(CertificadoService.getSslContext(certificado, cacert))
+                .version(HttpClient.Version.HTTP_2);
+    }
+
+    public <T> CompletableFuture<HttpResponse<T>> enviarAsync(HttpRequest requisicao, HttpResponse.BodyHandler<T> corpo) {
+        return httpClient.sendAsync(requisicao, corpo);
+    }
+
+    public <T> HttpResponse<T> enviar(HttpRequest requisicao, HttpResponse.BodyHandler<T> corpo) throws CertificadoException {
+        try {
+            return httpClient.send(requisicao, corpo);
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao enviar requisição para " + requisicao.uri() + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CertificadoException("Requisição para " + requisicao.uri() + " interrompida.", e);
+        }
+    }
+
+    /**
+     * Envia um envelope SOAP 1.2 e devolve a resposta como texto.
+     *
+     * @param acao SOAPAction informada no content-type; {@code null} para omitir
+     */
+    public CompletableFuture<HttpResponse<String>> enviarSoapAsync(URI uri, String envelope, String acao) {
+        HttpRequest.Builder requisicao = HttpRequest.newBuilder(uri)
+                .header("Content-Type", acao == null ? CONTENT_TYPE_SOAP : CONTENT_TYPE_SOAP + "; action=\"" + acao + "\"")
+                .POST(HttpRequest.BodyPublishers.ofString(envelope, StandardCharsets.UTF_8));
+        if (timeoutRequisicao != null) {
+            requisicao.timeout(timeoutRequisicao);
+        }
+        return enviarAsync(requisicao.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+}
@@ -1,9 +1,10 @@
 package io.github.gabrielmmoraes1999.certificado;
 
-import lombok.AllArgsConstructor;
+import io.github.gabrielmmoraes1999.certificado.metrica.MetricasService;
 import lombok.extern.java.Log;
 
-import javax.net.ssl.X509KeyManager;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
 import java.net.Socket;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -11,37 +12,140 @@ import java.security.Principal;
 import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
 
-@AllArgsConstructor
+/**
+ * KeyManager que apresenta sempre o mesmo alias.
+ * <p>
+ * Com a chave pré-carregada, a chave privada e a cadeia são lidas do KeyStore uma única vez, na construção, e
+ * servidas a cada handshake sem decifrar a chave do PKCS12 (ou consultar o token) novamente. {@link #atualizar()}
+ * lê de novo o KeyStore; se a leitura falhar, as chamadas passam a consultar o KeyStore a cada handshake.
+ * {@link #substituir(KeyStore, String, String)} troca o KeyStore apresentado sem interromper os handshakes em curso.
+ * <p>
+ * Estende {@link X509ExtendedKeyManager} para também apresentar o certificado em conexões por {@link SSLEngine},
+ * como as do {@code java.net.http.HttpClient}.
+ */
 @Log
-class AliasKeyManager implements X509KeyManager {
+class AliasKeyManager extends X509ExtendedKeyManager {
 
-    private KeyStore ks;
-    private String alias;
-    private String password;
+    private final boolean chavePreCarregada;
+    private final AtomicInteger versao = new AtomicInteger();
+    private volatile Fonte atual;
+    private volatile Fonte anterior;
+
+    AliasKeyManager(KeyStore ks, String alias, String password) {
+        this(ks, alias, password, false);
+    }
+
+    AliasKeyManager(KeyStore ks, String alias, String password, boolean chavePreCarregada) {
+        this.chavePreCarregada = chavePreCarregada;
+        this.atual = new Fonte(ks, alias, password, alias);
+        if (chavePreCarregada) {
+            atualizar();
+        }
+    }
+
+    /**
+     * Lê novamente a chave privada e a cadeia do KeyStore, no modo de chave pré-carregada.
+     *
+     * @return {@code true} se a chave e a cadeia foram carregadas
+     */
+    boolean atualizar() {
+        if (!chavePreCarregada) {
+            return false;
+        }
+        Fonte fonte = atual;
+        fonte.material = carregaMaterial(fonte);
+        return fonte.material != null;
+    }
+
+    /**
+     * Passa a apresentar a chave do KeyStore informado (por exemplo, o PFX renovado). A troca é atômica: cada
+     * handshake escolhe um identificador de alias e recebe a chave e a cadeia correspondentes a ele, mesmo que a
+     * troca aconteça no meio do handshake. Conexões já estabelecidas não são afetadas.
+     */
+    void substituir(KeyStore ks, String alias, String password) {
+        Fonte nova = new Fonte(ks, alias, password, alias + "#" + versao.incrementAndGet());
+        if (chavePreCarregada) {
+            nova.material = carregaMaterial(nova);
+        }
+        synchronized (this) {
+            anterior = atual;
+            atual = nova;
+        }
+    }
+
+    boolean isChavePreCarregada() {
+        return atual.material != null;
+    }
 
     public String chooseClientAlias(String[] str, Principal[] principal, Socket socket) {
-        return alias;
+        return atual.identificador;
     }
 
     public String chooseServerAlias(String str, Principal[] principal, Socket socket) {
-        return alias;
+        return atual.identificador;
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] str, Principal[] principal, SSLEngine engine) {
+        return atual.identificador;
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String str, Principal[] principal, SSLEngine engine) {
+        return atual.identificador;
     }
 
     public String[] getClientAliases(String str, Principal[] principal) {
-        return new String[]{alias};
+        return new String[]{atual.identificador};
     }
 
     public String[] getServerAliases(String str, Principal[] principal) {
-        return new String[]{alias};
+        return new String[]{atual.identificador};
     }
 
     public X509Certificate[] getCertificateChain(String alias) {
+        Fonte fonte = fonte(alias);
+        if (fonte == null) {
+            return leCadeia(atual, alias);
+        }
+        Material material = fonte.material;
+        return material != null ? material.cadeia : leCadeia(fonte, fonte.alias);
+    }
+
+    public PrivateKey getPrivateKey(String alias) {
+        Fonte fonte = fonte(alias);
+        if (fonte == null) {
+            return leChave(atual, alias);
+        }
+        Material material = fonte.material;
+        return material != null ? material.chave : leChave(fonte, fonte.alias);
+    }
+
+    private Fonte fonte(String identificador) {
+        Fonte fonte = atual;
+        if (fonte.identificador.equals(identificador)) {
+            return fonte;
+        }
+        fonte = anterior;
+        return fonte != null && fonte.identificador.equals(identificador) ? fonte : null;
+    }
+
+    private Material carregaMaterial(Fonte fonte) {
+        PrivateKey chave = leChave(fonte, fonte.alias);
+        X509Certificate[] cadeia = leCadeia(fonte, fonte.alias);
+        return chave == null || cadeia.length == 0 ? null : new Material(chave, cadeia);
+    }
+
+    private X509Certificate[] leCadeia(Fonte fonte, String alias) {
         try {
-            Certificate[] certificates = this.ks.getCertificateChain(alias);
-            X509Certificate[] x509Certificates = new X509Certificate[certificates.length];
-            System.arraycopy(certificates, 0, x509Certificates, 0, certificates.length);
-            return x509Certificates;
+            Certificate[] certificates = fonte.ks.getCertificateChain(alias);
+            if (certificates != null) {
+                X509Certificate[] x509Certificates = new X509Certificate[certificates.length];
+                System.arraycopy(certificates, 0, x509Certificates, 0, certificates.length);
+                return x509Certificates;
+            }
         } catch (KeyStoreException e) {
            log.severe("Não foi possível carregar o keystore para o alias:" + alias);
         }
@@ -49,12 +153,44 @@ class AliasKeyManager implements X509KeyManager {
         return new X509Certificate[0];
     }
 
-    public PrivateKey getPrivateKey(String alias) {
+    private PrivateKey leChave(Fonte fonte, String alias) {
+        PrivateKey chave = null;
         try {
-            return (PrivateKey) ks.getKey(alias, password == null ? null : password.toCharArray());
+            chave = (PrivateKey) fonte.ks.getKey(alias, fonte.password == null ? null : fonte.password.toCharArray());
         } catch (Exception e) {
             log.severe(e.getMessage());
         }
-        return null;
+        if (chave == null && MetricasService.getMetricas().isAtivo()) {
+            MetricasService.getMetricas().contador(MetricasService.CHAVE_PRIVADA_FALHAS).incrementa();
+        }
+        return chave;
+    }
+
+    /**
+     * KeyStore e alias apresentados, com o identificador devolvido na escolha do alias.
+     */
+    private static final class Fonte {
+        private final KeyStore ks;
+        private final String alias;
+        private final String password;
+        private final String identificador;
+        private volatile Material material;
+
+        private Fonte(KeyStore ks, String alias, String password, String identificador) {
+            this.ks = ks;
+            this.alias = alias;
+            this.password = password;
+            this.identificador = identificador;
+        }
+    }
+
+    private static final class Material {
+        private final PrivateKey chave;
+        private final X509Certificate[] cadeia;
+
+        private Material(PrivateKey chave, X509Certificate[] cadeia) {
+            this.chave = chave;
+            this.cadeia = cadeia;
+        }
     }
-}
\ No newline at end of file
+}
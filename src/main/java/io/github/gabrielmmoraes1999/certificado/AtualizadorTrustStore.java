@@ -0,0 +1,338 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import lombok.extern.java.Log;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Atualiza um truststore com as ACs dos web services informados.
+ * <p>
+ * Os endereços são consultados em paralelo, por um pool limitado, e cada consulta tem um prazo total (conexão e
+ * handshake); a consulta só captura a cadeia apresentada pelo servidor e interrompe o handshake. Depois, em ordem, as
+ * cadeias que o truststore já valida são ignoradas e, das demais, só o último certificado da cadeia é acrescentado como
+ * âncora. O truststore original nunca é reescrito do zero.
+ * <p>
+ * Na linha de comando, com o truststore de origem ({@code padrao} para o cacert embarcado), o destino ({@code .ancoras}
+ * grava um {@link PacoteAncoras}) e, opcionalmente, um arquivo com um endereço por linha:
+ * <pre>
+ * java -cp certificado.jar io.github.gabrielmmoraes1999.certificado.AtualizadorTrustStore padrao cacert [enderecos.txt]
+ * </pre>
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public class AtualizadorTrustStore {
+
+    public static final Duration PRAZO_PADRAO = Duration.ofSeconds(10);
+    private static final int PARALELISMO_PADRAO = 16;
+    private static final String ENDERECOS_PADRAO = "/cacert-enderecos.txt";
+    private static final String CACERT_PADRAO = "/cacert";
+    private static final char[] SENHA_PADRAO = "changeit".toCharArray();
+
+    private final int paralelismo;
+    private final long prazoMillis;
+
+    public AtualizadorTrustStore() {
+        this(PARALELISMO_PADRAO, PRAZO_PADRAO);
+    }
+
+    /**
+     * @param paralelismo quantidade máxima de endereços consultados ao mesmo tempo
+     * @param prazo       tempo máximo da consulta a cada endereço, da conexão ao fim do handshake
+     */
+    public AtualizadorTrustStore(int paralelismo, Duration prazo) {
+        if (paralelismo <= 0) {
+            throw new IllegalArgumentException("Paralelismo deve ser maior que zero.");
+        }
+        if (prazo == null || prazo.isNegative() || prazo.isZero()) {
+            throw new IllegalArgumentException("Prazo deve ser positivo.");
+        }
+        this.paralelismo = paralelismo;
+        this.prazoMillis = prazo.toMillis();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: AtualizadorTrustStore <truststore|padrao> <destino> [arquivo de endereços]");
+            System.exit(2);
+        }
+
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = "padrao".equals(args[0]) ? AtualizadorTrustStore.class.getResourceAsStream(CACERT_PADRAO)
+                : Files.newInputStream(Paths.get(args[0]))) {
+            trustStore.load(in, SENHA_PADRAO);
+        }
+        List<String> enderecos = args.length > 2 ? lerEnderecos(Files.newInputStream(Paths.get(args[2]))) : enderecosPadrao();
+
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore().atualizar(trustStore, enderecos);
+        System.out.println(relatorio);
+        gravar(trustStore, Paths.get(args[1]));
+    }
+
+    /**
+     * Web services da NF-e, NFC-e, CT-e, MDF-e, eSocial, EFD-Reinf e NFS-e usados para gerar o cacert embarcado.
+     */
+    public static List<String> enderecosPadrao() throws IOException {
+        return lerEnderecos(AtualizadorTrustStore.class.getResourceAsStream(ENDERECOS_PADRAO));
+    }
+
+    /**
+     * Lê um endereço ({@code host}, {@code host:porta} ou URL) por linha, ignorando linhas vazias e comentários ({@code #}).
+     */
+    public static List<String> lerEnderecos(InputStream in) throws IOException {
+        List<String> enderecos = new ArrayList<>();
+        try (BufferedReader leitor = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                linha = linha.trim();
+                if (!linha.isEmpty() && !linha.startsWith("#")) {
+                    enderecos.add(linha);
+                }
+            }
+        }
+        return enderecos;
+    }
+
+    /**
+     * Grava o truststore no destino: um {@link PacoteAncoras} se o nome termina em {@code .ancoras}, senão no formato
+     * do próprio KeyStore com a senha padrão do cacert. O arquivo só é substituído depois de gravado por completo.
+     */
+    public static void gravar(KeyStore trustStore, Path destino) throws CertificadoException {
+        Path temporario = destino.toAbsolutePath().resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporario)) {
+                if (destino.getFileName().toString().endsWith(".ancoras")) {
+                    PacoteAncoras.gravar(trustStore, out);
+                } else {
+                    trustStore.store(out, SENHA_PADRAO);
+                }
+            }
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CertificadoException("Erro ao gravar truststore " + destino + ": " + e.getMessage(), e);
+        } finally {
+            try {
+                Files.deleteIfExists(temporario);
+            } catch (IOException e) {
+                log.warning("Não foi possível remover " + temporario + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Consulta os endereços e acrescenta ao truststore informado as âncoras que faltam.
+     */
+    public RelatorioTrustStore atualizar(KeyStore trustStore, Collection<String> enderecos) throws CertificadoException {
+        long inicio = System.nanoTime();
+        List<String> lista = new ArrayList<>(new LinkedHashSet<>(enderecos));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(paralelismo, Math.max(1, lista.size())),
+                ThreadUtil.daemonNumerada("certificado-truststore"));
+        ScheduledExecutorService alarmes = Executors.newSingleThreadScheduledExecutor(ThreadUtil.daemon("certificado-truststore-prazo"));
+
+        try {
+            Map<String, Future<X509Certificate[]>> tarefas = new LinkedHashMap<>();
+            for (String endereco : lista) {
+                tarefas.put(endereco, executor.submit(() -> capturaCadeia(endereco, alarmes)));
+            }
+
+            List<RelatorioTrustStore.Ancora> adicionadas = new ArrayList<>();
+            List<String> confiaveis = new ArrayList<>();
+            Map<String, Exception> falhas = new LinkedHashMap<>();
+            X509TrustManager validador = validador(trustStore);
+            for (Map.Entry<String, Future<X509Certificate[]>> tarefa : tarefas.entrySet()) {
+                String endereco = tarefa.getKey();
+                X509Certificate[] cadeia;
+                try {
+                    cadeia = tarefa.getValue().get();
+                } catch (ExecutionException e) {
+                    falhas.put(endereco, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                    continue;
+                }
+
+                CertificateException recusa = valida(validador, cadeia);
+                if (recusa == null) {
+                    confiaveis.add(endereco);
+                    continue;
+                }
+                X509Certificate ancora = cadeia[cadeia.length - 1];
+                if (trustStore.getCertificateAlias(ancora) != null) {
+                    // A âncora já está no truststore e a cadeia continua recusada (vencida, incompleta...).
+                    falhas.put(endereco, recusa);
+                    continue;
+                }
+                String alias = alias(trustStore, endereco);
+                trustStore.setCertificateEntry(alias, ancora);
+                adicionadas.add(new RelatorioTrustStore.Ancora(alias, endereco, ancora.getSubjectX500Principal().getName(),
+                        DigestUtil.hex(DigestUtil.sha256(ancora.getEncoded()))));
+                validador = validador(trustStore);
+            }
+
+            return new RelatorioTrustStore(adicionadas, confiaveis, falhas, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CertificadoException("Atualização do truststore interrompida.", e);
+        } catch (GeneralSecurityException e) {
+            throw new CertificadoException("Erro ao atualizar truststore: " + e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+            alarmes.shutdownNow();
+        }
+    }
+
+    /**
+     * Conecta e inicia o handshake só até o servidor apresentar a cadeia. O alarme fecha o socket quando o prazo termina,
+     * desbloqueando a conexão ou a leitura em andamento.
+     */
+    private X509Certificate[] capturaCadeia(String endereco, ScheduledExecutorService alarmes) throws IOException, GeneralSecurityException {
+        InetSocketAddress destino = SocketFactoryDinamico.endereco(endereco);
+        Captura captura = new Captura();
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(null, new TrustManager[]{captura}, null);
+
+        Socket socket = new Socket();
+        ScheduledFuture<?> alarme = alarmes.schedule(() -> fecha(socket), prazoMillis, TimeUnit.MILLISECONDS);
+        try {
+            socket.connect(new InetSocketAddress(destino.getHostString(), destino.getPort()), (int) prazoMillis);
+            socket.setSoTimeout((int) prazoMillis);
+            try (SSLSocket ssl = (SSLSocket) contexto.getSocketFactory().createSocket(socket, destino.getHostString(), destino.getPort(), true)) {
+                ssl.startHandshake();
+            } catch (SSLException e) {
+                if (captura.cadeia == null) {
+                    throw e;
+                }
+            }
+        } catch (UnknownHostException e) {
+            throw new UnknownHostException("Host desconhecido: " + destino.getHostString());
+        } catch (IOException e) {
+            if (alarme.isDone() && !alarme.isCancelled()) {
+                throw new SocketTimeoutException("Prazo de " + prazoMillis + "ms esgotado para " + endereco);
+            }
+            throw e;
+        } finally {
+            alarme.cancel(false);
+            fecha(socket);
+        }
+
+        if (captura.cadeia == null || captura.cadeia.length == 0) {
+            throw new SSLException("Servidor não apresentou certificado: " + endereco);
+        }
+        return captura.cadeia;
+    }
+
+    /**
+     * @return {@code null} se a cadeia é confiável, ou o motivo da recusa
+     */
+    private static CertificateException valida(X509TrustManager validador, X509Certificate[] cadeia) {
+        if (validador == null) {
+            return new CertificateException("Truststore sem âncoras.");
+        }
+        try {
+            validador.checkServerTrusted(cadeia, "UNKNOWN");
+            return null;
+        } catch (CertificateException e) {
+            return e;
+        }
+    }
+
+    /**
+     * TrustManager do truststore, ou {@code null} quando ele ainda não tem nenhuma âncora.
+     */
+    private static X509TrustManager validador(KeyStore trustStore) throws GeneralSecurityException {
+        if (trustStore.size() == 0) {
+            return null;
+        }
+        TrustManagerFactory fabrica = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        fabrica.init(trustStore);
+        for (TrustManager trustManager : fabrica.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                return (X509TrustManager) trustManager;
+            }
+        }
+        throw new KeyStoreException("TrustManager X509 não disponível.");
+    }
+
+    private static String alias(KeyStore trustStore, String endereco) throws KeyStoreException {
+        InetSocketAddress destino = SocketFactoryDinamico.endereco(endereco);
+        String base = (destino.getPort() == 443 ? destino.getHostString() : destino.getHostString() + "-" + destino.getPort())
+                .toLowerCase(Locale.ROOT);
+        String alias = base;
+        for (int i = 1; trustStore.containsAlias(alias); i++) {
+            alias = base + "-" + i;
+        }
+        return alias;
+    }
+
+    private static void fecha(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // O socket está sendo descartado.
+        }
+    }
+
+    /**
+     * Guarda a cadeia do servidor e recusa o handshake, que não precisa continuar.
+     */
+    private static final class Captura implements X509TrustManager {
+
+        private volatile X509Certificate[] cadeia;
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            throw new CertificateException("Captura só de certificados de servidor.");
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            this.cadeia = chain;
+            throw new CertificateException("Cadeia capturada.");
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.net.ssl.TrustManager;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.util.Optional;
+
+/**
+ * Cacert já decodificado, compartilhado por todos os {@link SocketFactoryDinamico} que confiam nele.
+ * O id é o SHA-256 do conteúdo do truststore, de modo que o mesmo conteúdo resulta sempre no mesmo id.
+ * <p>
+ * Um cacert carregado de um {@link PacoteAncoras} só monta o KeyStore quando {@link #getTrustStore()} é chamado.
+ */
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@Getter
+@SuppressWarnings("WeakerAccess")
+public final class Cacert {
+
+    private final String id;
+    private volatile KeyStore trustStore;
+    private final TrustManager[] trustManagers;
+    /**
+     * Cache de cadeias validadas usado pelos {@link #trustManagers}, para estatísticas e configuração do tempo de vida.
+     */
+    private final CacheCadeiaValidada cacheCadeias;
+    private final PacoteAncoras pacote;
+
+    public KeyStore getTrustStore() {
+        KeyStore atual = trustStore;
+        if (atual == null) {
+            synchronized (this) {
+                atual = trustStore;
+                if (atual == null) {
+                    try {
+                        atual = trustStore = pacote.toKeyStore();
+                    } catch (KeyStoreException e) {
+                        throw new IllegalStateException("Erro ao montar o KeyStore do pacote de âncoras: " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        return atual;
+    }
+
+    public Optional<PacoteAncoras> getPacote() {
+        return Optional.ofNullable(pacote);
+    }
+
+}
@@ -0,0 +1,263 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TrustManager que guarda as cadeias já aceitas pelo TrustManager delegado, indexadas pelo SHA-256 dos certificados
+ * da cadeia. Um handshake com uma cadeia já validada não repete a construção e a validação do caminho PKIX.
+ * <p>
+ * Cada entrada vale até o fim da validade do certificado da cadeia que vence primeiro, limitado pelo tempo de vida
+ * configurado. Só resultados positivos ficam em cache: uma cadeia recusada é sempre validada de novo. Quando a conexão
+ * pede verificação do nome do host, o host faz parte da chave.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CacheCadeiaValidada extends X509ExtendedTrustManager {
+
+    public static final Duration TEMPO_VIDA_PADRAO = Duration.ofHours(1);
+    private static final int TAMANHO_MAXIMO = 10_000;
+
+    private final X509TrustManager delegado;
+    private final ConcurrentMap<Chave, Long> cadeias = new ConcurrentHashMap<>();
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+    private volatile long tempoVidaMillis = TEMPO_VIDA_PADRAO.toMillis();
+
+    public CacheCadeiaValidada(X509TrustManager delegado) {
+        this.delegado = delegado;
+    }
+
+    /**
+     * Envolve os {@link X509TrustManager} informados com um cache de cadeias validadas.
+     */
+    public static TrustManager[] aplicar(TrustManager[] trustManagers) {
+        TrustManager[] resultado = trustManagers.clone();
+        for (int i = 0; i < resultado.length; i++) {
+            if (resultado[i] instanceof X509TrustManager && !(resultado[i] instanceof CacheCadeiaValidada)) {
+                resultado[i] = new CacheCadeiaValidada((X509TrustManager) resultado[i]);
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo, Socket socket) throws CertificateException {
+        Chave chave = chave(cadeia, tipo, false, identificacao(socket));
+        if (!emCache(chave)) {
+            if (delegado instanceof X509ExtendedTrustManager) {
+                ((X509ExtendedTrustManager) delegado).checkClientTrusted(cadeia, tipo, socket);
+            } else {
+                delegado.checkClientTrusted(cadeia, tipo);
+            }
+            adiciona(chave, cadeia);
+        }
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo, Socket socket) throws CertificateException {
+        Chave chave = chave(cadeia, tipo, true, identificacao(socket));
+        if (!emCache(chave)) {
+            if (delegado instanceof X509ExtendedTrustManager) {
+                ((X509ExtendedTrustManager) delegado).checkServerTrusted(cadeia, tipo, socket);
+            } else {
+                delegado.checkServerTrusted(cadeia, tipo);
+            }
+            adiciona(chave, cadeia);
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo, SSLEngine engine) throws CertificateException {
+        Chave chave = chave(cadeia, tipo, false, identificacao(engine));
+        if (!emCache(chave)) {
+            if (delegado instanceof X509ExtendedTrustManager) {
+                ((X509ExtendedTrustManager) delegado).checkClientTrusted(cadeia, tipo, engine);
+            } else {
+                delegado.checkClientTrusted(cadeia, tipo);
+            }
+            adiciona(chave, cadeia);
+        }
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo, SSLEngine engine) throws CertificateException {
+        Chave chave = chave(cadeia, tipo, true, identificacao(engine));
+        if (!emCache(chave)) {
+            if (delegado instanceof X509ExtendedTrustManager) {
+                ((X509ExtendedTrustManager) delegado).checkServerTrusted(cadeia, tipo, engine);
+            } else {
+                delegado.checkServerTrusted(cadeia, tipo);
+            }
+            adiciona(chave, cadeia);
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+        Chave chave = chave(cadeia, tipo, false, null);
+        if (!emCache(chave)) {
+            delegado.checkClientTrusted(cadeia, tipo);
+            adiciona(chave, cadeia);
+        }
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+        Chave chave = chave(cadeia, tipo, true, null);
+        if (!emCache(chave)) {
+            delegado.checkServerTrusted(cadeia, tipo);
+            adiciona(chave, cadeia);
+        }
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return delegado.getAcceptedIssuers();
+    }
+
+    public X509TrustManager getDelegado() {
+        return delegado;
+    }
+
+    public Duration getTempoVida() {
+        return Duration.ofMillis(tempoVidaMillis);
+    }
+
+    /**
+     * Tempo máximo que uma cadeia validada fica em cache. Vale para as cadeias validadas a partir de agora.
+     */
+    public void setTempoVida(Duration tempoVida) {
+        if (tempoVida == null || tempoVida.isNegative() || tempoVida.isZero()) {
+            throw new IllegalArgumentException("Tempo de vida do cache deve ser positivo.");
+        }
+        this.tempoVidaMillis = tempoVida.toMillis();
+    }
+
+    public void limpar() {
+        cadeias.clear();
+    }
+
+    public int getTamanho() {
+        return cadeias.size();
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    public long getFalhas() {
+        return falhas.sum();
+    }
+
+    public long getRemocoes() {
+        return remocoes.sum();
+    }
+
+    private boolean emCache(Chave chave) {
+        Long expiraEm = cadeias.get(chave);
+        if (expiraEm != null) {
+            if (System.currentTimeMillis() < expiraEm) {
+                acertos.increment();
+                return true;
+            }
+            if (cadeias.remove(chave, expiraEm)) {
+                remocoes.increment();
+            }
+        }
+        falhas.increment();
+        return false;
+    }
+
+    private void adiciona(Chave chave, X509Certificate[] cadeia) {
+        long expiraEm = System.currentTimeMillis() + tempoVidaMillis;
+        for (X509Certificate certificado : cadeia) {
+            expiraEm = Math.min(expiraEm, certificado.getNotAfter().getTime());
+        }
+        if (cadeias.size() >= TAMANHO_MAXIMO) {
+            remocoes.add(cadeias.size());
+            cadeias.clear();
+        }
+        cadeias.put(chave, expiraEm);
+    }
+
+    private static Chave chave(X509Certificate[] cadeia, String tipo, boolean servidor, String identificacao) throws CertificateException {
+        if (cadeia == null || cadeia.length == 0) {
+            throw new IllegalArgumentException("Cadeia de certificados vazia.");
+        }
+
+        MessageDigest digest = DigestUtil.sha256();
+        for (X509Certificate certificado : cadeia) {
+            digest.update(certificado.getEncoded());
+        }
+        digest.update((byte) (servidor ? 1 : 0));
+        digest.update(String.valueOf(tipo).getBytes(StandardCharsets.UTF_8));
+        if (identificacao != null) {
+            digest.update((byte) 0);
+            digest.update(identificacao.getBytes(StandardCharsets.UTF_8));
+        }
+        return new Chave(digest.digest());
+    }
+
+    /**
+     * Algoritmo e host da verificação de nome pedida pela conexão, ou {@code null} quando não há verificação: nesse
+     * caso o resultado do delegado não depende do host e a mesma entrada serve para qualquer conexão.
+     */
+    private static String identificacao(Socket socket) {
+        if (!(socket instanceof SSLSocket)) {
+            return null;
+        }
+        SSLSocket sslSocket = (SSLSocket) socket;
+        return identificacao(sslSocket.getSSLParameters(), sslSocket.getHandshakeSession());
+    }
+
+    private static String identificacao(SSLEngine engine) {
+        return engine == null ? null : identificacao(engine.getSSLParameters(), engine.getHandshakeSession());
+    }
+
+    private static String identificacao(SSLParameters parametros, SSLSession sessao) {
+        String algoritmo = parametros.getEndpointIdentificationAlgorithm();
+        if (algoritmo == null || algoritmo.isEmpty()) {
+            return null;
+        }
+        return algoritmo + ' ' + (sessao == null ? "" : sessao.getPeerHost());
+    }
+
+    private static final class Chave {
+
+        private final byte[] digest;
+        private final int hash;
+
+        private Chave(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chave && Arrays.equals(digest, ((Chave) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache dos endereços resolvidos para cada host, com tempo de vida. Evita a consulta DNS em cada conexão aberta pelo
+ * {@link SocketFactoryDinamico}, independentemente da configuração {@code networkaddress.cache.ttl} da JVM.
+ * <p>
+ * Só resoluções bem-sucedidas ficam em cache. Quando nenhum dos endereços em cache aceita a conexão, o host é
+ * removido e resolvido de novo na próxima conexão.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CacheDns {
+
+    private static final CacheDns PADRAO = new CacheDns(TimeUnit.MINUTES.toMillis(5));
+
+    private final long ttlMillis;
+    private final ConcurrentMap<String, Entrada> enderecos = new ConcurrentHashMap<>();
+    private final LongAdder resolucoes = new LongAdder();
+    private final LongAdder acertos = new LongAdder();
+
+    /**
+     * @param ttlMillis tempo de vida de cada resolução; {@code 0} desativa o cache
+     */
+    public CacheDns(long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("TTL não pode ser negativo.");
+        }
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Cache compartilhado pelas socket factories que não recebem um cache próprio, com TTL de 5 minutos.
+     */
+    public static CacheDns getPadrao() {
+        return PADRAO;
+    }
+
+    public InetAddress[] resolver(String host) throws UnknownHostException {
+        if (ttlMillis == 0) {
+            resolucoes.increment();
+            return InetAddress.getAllByName(host);
+        }
+
+        long agora = System.currentTimeMillis();
+        Entrada entrada = enderecos.get(host);
+        if (entrada != null && agora < entrada.expiraEm) {
+            acertos.increment();
+            return entrada.enderecos.clone();
+        }
+
+        resolucoes.increment();
+        InetAddress[] resolvidos = InetAddress.getAllByName(host);
+        enderecos.put(host, new Entrada(resolvidos.clone(), agora + ttlMillis));
+        return resolvidos;
+    }
+
+    public void invalidar(String host) {
+        enderecos.remove(host);
+    }
+
+    public void limpar() {
+        enderecos.clear();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * Consultas feitas ao DNS (cache vazio ou expirado).
+     */
+    public long getResolucoes() {
+        return resolucoes.sum();
+    }
+
+    /**
+     * Resoluções atendidas pelo cache.
+     */
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    private static final class Entrada {
+        private final InetAddress[] enderecos;
+        private final long expiraEm;
+
+        private Entrada(InetAddress[] enderecos, long expiraEm) {
+            this.enderecos = enderecos;
+            this.expiraEm = expiraEm;
+        }
+    }
+}
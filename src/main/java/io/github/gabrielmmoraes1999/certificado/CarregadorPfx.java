@@ -0,0 +1,337 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import lombok.extern.java.Log;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Carregamento em lote de arquivos PFX, decodificados em paralelo por um pool de threads limitado.
+ * <p>
+ * Quando configurado com um arquivo de índice, o carregador guarda em disco os metadados de cada arquivo (caminho,
+ * data de modificação, tamanho, hash do conteúdo e a cadeia pública). Nas execuções seguintes os arquivos que não
+ * mudaram são montados a partir do índice, sem a decodificação PKCS12, passando pela mesma verificação de revogação
+ * do carregamento normal.
+ * <p>
+ * O índice não guarda senhas, apenas um HMAC-SHA256 do hash do conteúdo e da senha, calculado com a chave do índice.
+ * Essa chave não é gravada no índice: quem lê o arquivo não consegue testar senhas sem ela. Para que o índice continue
+ * válido após reiniciar, a mesma chave deve ser informada a cada execução.
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public class CarregadorPfx {
+
+    private static final String SEPARADOR = ";";
+    private static final String SEPARADOR_CADEIA = ",";
+    private static final String PREFIXO_VERIFICACAO = "h1:";
+
+    private final int paralelismo;
+    private final Path arquivoIndice;
+    private final SecretKeySpec chaveIndice;
+
+    public CarregadorPfx() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Carregador sem índice: todos os arquivos são decodificados a cada carregamento.
+     *
+     * @param paralelismo quantidade máxima de arquivos decodificados ao mesmo tempo
+     */
+    public CarregadorPfx(int paralelismo) {
+        this(paralelismo, null, null);
+    }
+
+    /**
+     * @param paralelismo   quantidade máxima de arquivos decodificados ao mesmo tempo
+     * @param arquivoIndice arquivo do índice de metadados, {@code null} para não usar índice
+     * @param chaveIndice   chave secreta da verificação de senha do índice, com pelo menos 16 bytes, guardada fora do
+     *                      diretório do índice (por exemplo, em um cofre de segredos); obrigatória com índice
+     */
+    public CarregadorPfx(int paralelismo, Path arquivoIndice, byte[] chaveIndice) {
+        if (paralelismo <= 0) {
+            throw new IllegalArgumentException("Paralelismo deve ser maior que zero.");
+        }
+        if (arquivoIndice != null && chaveIndice == null) {
+            throw new IllegalArgumentException("Chave do índice não pode ser nula quando há arquivo de índice.");
+        }
+        if (chaveIndice != null && chaveIndice.length < 16) {
+            throw new IllegalArgumentException("Chave do índice deve ter pelo menos 16 bytes.");
+        }
+        this.paralelismo = paralelismo;
+        this.arquivoIndice = arquivoIndice;
+        this.chaveIndice = arquivoIndice == null ? null : new SecretKeySpec(chaveIndice, "HmacSHA256");
+    }
+
+    /**
+     * Carrega todos os arquivos .pfx e .p12 do diretório e de seus subdiretórios.
+     *
+     * @param senhas retorna a senha de cada arquivo
+     */
+    public ResultadoCarregamento carregar(Path diretorio, Function<Path, String> senhas) throws CertificadoException {
+        try (Stream<Path> arquivos = Files.walk(Optional.ofNullable(diretorio).orElseThrow(() -> new IllegalArgumentException("Diretório não pode ser nulo.")))) {
+            return carregar(arquivos.filter(Files::isRegularFile).filter(CarregadorPfx::isPfx).collect(Collectors.toList()), senhas);
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao listar certificados do diretório " + diretorio + ": " + e.getMessage(), e);
+        }
+    }
+
+    public ResultadoCarregamento carregar(Collection<Path> arquivos, Function<Path, String> senhas) throws CertificadoException {
+        Map<String, EntradaIndice> indice = lerIndice();
+        Map<String, EntradaIndice> indiceAtualizado = new ConcurrentHashMap<>();
+        AtomicInteger decodificados = new AtomicInteger();
+        AtomicInteger reaproveitados = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(paralelismo, Math.max(1, arquivos.size())),
+                ThreadUtil.daemonNumerada("certificado-carregador"));
+
+        try {
+            Map<Path, Future<Certificado>> tarefas = new LinkedHashMap<>();
+            for (Path arquivo : arquivos) {
+                tarefas.put(arquivo, executor.submit(() -> {
+                    Path caminho = arquivo.toAbsolutePath().normalize();
+                    return carregar(caminho, senhas.apply(arquivo), indice.get(caminho.toString()), indiceAtualizado, decodificados, reaproveitados);
+                }));
+            }
+
+            List<Certificado> certificados = new ArrayList<>(tarefas.size());
+            Map<Path, Exception> falhas = new LinkedHashMap<>();
+            for (Map.Entry<Path, Future<Certificado>> tarefa : tarefas.entrySet()) {
+                try {
+                    certificados.add(tarefa.getValue().get());
+                } catch (ExecutionException e) {
+                    falhas.put(tarefa.getKey(), e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+
+            indice.forEach((caminho, entrada) -> {
+                if (!indiceAtualizado.containsKey(caminho) && Files.exists(entrada.caminho)) {
+                    indiceAtualizado.put(caminho, entrada);
+                }
+            });
+            gravarIndice(indiceAtualizado);
+
+            return new ResultadoCarregamento(certificados, falhas, decodificados.get(), reaproveitados.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CertificadoException("Carregamento de certificados interrompido.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Certificado carregar(Path caminho, String senha, EntradaIndice anterior, Map<String, EntradaIndice> indiceAtualizado,
+                                 AtomicInteger decodificados, AtomicInteger reaproveitados) throws Exception {
+        if (senha == null) {
+            throw new IllegalArgumentException("Senha não pode ser nula.");
+        }
+
+        BasicFileAttributes atributos = Files.readAttributes(caminho, BasicFileAttributes.class);
+        long modificacao = atributos.lastModifiedTime().toMillis();
+        long tamanho = atributos.size();
+
+        // Mesma data e tamanho: o conteúdo nem chega a ser lido.
+        if (anterior != null && anterior.modificacao == modificacao && anterior.tamanho == tamanho && confereSenha(anterior, senha)) {
+            indiceAtualizado.put(caminho.toString(), anterior);
+            Certificado certificado = anterior.criaCertificado(senha);
+            reaproveitados.incrementAndGet();
+            return certificado;
+        }
+
+        byte[] conteudo = Files.readAllBytes(caminho);
+        String hash = DigestUtil.hex(DigestUtil.sha256(conteudo));
+
+        // Arquivo tocado ou copiado, mas com o mesmo conteúdo.
+        if (anterior != null && anterior.hash.equals(hash) && confereSenha(anterior, senha)) {
+            EntradaIndice atualizada = new EntradaIndice(caminho, modificacao, tamanho, hash, anterior.verificacaoSenha, anterior.alias, anterior.cadeia);
+            indiceAtualizado.put(caminho.toString(), atualizada);
+            Certificado certificado = atualizada.criaCertificado(senha);
+            reaproveitados.incrementAndGet();
+            return certificado;
+        }
+
+        Certificado certificado = CertificadoService.certificadoPfx(caminho.toString(), senha, conteudo, false);
+        decodificados.incrementAndGet();
+        if (arquivoIndice != null && certificado.getCertificate() != null) {
+            indiceAtualizado.put(caminho.toString(), new EntradaIndice(caminho, modificacao, tamanho, hash,
+                    verificacaoSenha(hash, senha), certificado.getNomeCertificado(), cadeia(conteudo, certificado)));
+        }
+        return certificado;
+    }
+
+    /**
+     * Cadeia pública do PFX, para que o certificado montado pelo índice passe pela verificação de revogação.
+     */
+    private static byte[][] cadeia(byte[] conteudo, Certificado certificado) throws Exception {
+        X509Certificate[] cadeia = CertificadoService.cadeiaPfx(conteudo, certificado);
+        byte[][] codificada = new byte[cadeia.length][];
+        for (int i = 0; i < cadeia.length; i++) {
+            codificada[i] = cadeia[i].getEncoded();
+        }
+        return codificada;
+    }
+
+    private String verificacaoSenha(String hash, String senha) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(chaveIndice);
+            mac.update(hash.getBytes(StandardCharsets.US_ASCII));
+            return PREFIXO_VERIFICACAO + DigestUtil.hex(mac.doFinal(senha.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean confereSenha(EntradaIndice entrada, String senha) {
+        return MessageDigest.isEqual(entrada.verificacaoSenha.getBytes(StandardCharsets.US_ASCII),
+                verificacaoSenha(entrada.hash, senha).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Map<String, EntradaIndice> lerIndice() {
+        Map<String, EntradaIndice> indice = new ConcurrentHashMap<>();
+        if (arquivoIndice == null || !Files.exists(arquivoIndice)) {
+            return indice;
+        }
+
+        Properties propriedades = new Properties();
+        try (InputStream in = Files.newInputStream(arquivoIndice)) {
+            propriedades.load(in);
+        } catch (IOException e) {
+            log.warning("Índice de certificados ignorado, não foi possível ler " + arquivoIndice + ": " + e.getMessage());
+            return indice;
+        }
+
+        for (String caminho : propriedades.stringPropertyNames()) {
+            try {
+                indice.put(caminho, EntradaIndice.ler(caminho, propriedades.getProperty(caminho)));
+            } catch (RuntimeException e) {
+                log.warning("Entrada do índice de certificados ignorada: " + caminho);
+            }
+        }
+        return indice;
+    }
+
+    private void gravarIndice(Map<String, EntradaIndice> indice) throws CertificadoException {
+        if (arquivoIndice == null) {
+            return;
+        }
+
+        Properties propriedades = new Properties();
+        indice.forEach((caminho, entrada) -> propriedades.setProperty(caminho, entrada.escrever()));
+        try {
+            Path diretorio = arquivoIndice.toAbsolutePath().getParent();
+            if (diretorio != null) {
+                Files.createDirectories(diretorio);
+            }
+            Path temporario = Files.createTempFile(diretorio, "certificados", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporario)) {
+                propriedades.store(out, "Indice de certificados PFX");
+            }
+            Files.move(temporario, arquivoIndice, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao gravar índice de certificados " + arquivoIndice + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isPfx(Path arquivo) {
+        String nome = arquivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        return nome.endsWith(".pfx") || nome.endsWith(".p12");
+    }
+
+    private static final class EntradaIndice {
+
+        private final Path caminho;
+        private final long modificacao;
+        private final long tamanho;
+        private final String hash;
+        private final String verificacaoSenha;
+        private final String alias;
+        private final byte[][] cadeia;
+
+        private EntradaIndice(Path caminho, long modificacao, long tamanho, String hash, String verificacaoSenha, String alias, byte[][] cadeia) {
+            this.caminho = caminho;
+            this.modificacao = modificacao;
+            this.tamanho = tamanho;
+            this.hash = hash;
+            this.verificacaoSenha = verificacaoSenha;
+            this.alias = alias;
+            this.cadeia = cadeia;
+        }
+
+        private Certificado criaCertificado(String senha) throws CertificateException, CertificadoException {
+            CertificateFactory fabrica = CertificateFactory.getInstance("X.509");
+            X509Certificate[] x509 = new X509Certificate[cadeia.length];
+            for (int i = 0; i < cadeia.length; i++) {
+                x509[i] = (X509Certificate) fabrica.generateCertificate(new ByteArrayInputStream(cadeia[i]));
+            }
+            CertificadoService.verificaRevogacao(x509);
+
+            Certificado resultado = new Certificado();
+            resultado.setArquivo(caminho.toString());
+            resultado.setSenha(senha);
+            resultado.setTipoCertificado(TipoCertificadoEnum.ARQUIVO);
+            resultado.setNomeCertificado(alias);
+            CertificadoService.preencheDadosCertificado(resultado, x509[0], false);
+            return resultado;
+        }
+
+        private String escrever() {
+            StringJoiner certificados = new StringJoiner(SEPARADOR_CADEIA);
+            for (byte[] certificado : cadeia) {
+                certificados.add(Base64.getEncoder().encodeToString(certificado));
+            }
+            return modificacao + SEPARADOR + tamanho + SEPARADOR + hash + SEPARADOR + verificacaoSenha + SEPARADOR
+                    + Base64.getEncoder().encodeToString(alias.getBytes(StandardCharsets.UTF_8)) + SEPARADOR + certificados;
+        }
+
+        private static EntradaIndice ler(String caminho, String valor) {
+            String[] campos = valor.split(SEPARADOR, -1);
+            // Verificações de versões anteriores (digest sem chave) são descartadas: a entrada volta a ser decodificada.
+            String verificacaoSenha = campos[3].startsWith(PREFIXO_VERIFICACAO) ? campos[3] : "";
+            String[] certificados = campos[5].split(SEPARADOR_CADEIA);
+            byte[][] cadeia = new byte[certificados.length][];
+            for (int i = 0; i < certificados.length; i++) {
+                cadeia[i] = Base64.getDecoder().decode(certificados[i]);
+            }
+            return new EntradaIndice(Paths.get(caminho), Long.parseLong(campos[0]), Long.parseLong(campos[1]), campos[2], verificacaoSenha,
+                    new String(Base64.getDecoder().decode(campos[4]), StandardCharsets.UTF_8), cadeia);
+        }
+    }
+}
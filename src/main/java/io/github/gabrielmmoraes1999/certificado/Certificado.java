@@ -1,5 +1,8 @@
 package io.github.gabrielmmoraes1999.certificado;
 
+import io.github.gabrielmmoraes1999.certificado.util.DadosIcpBrasil;
+import io.github.gabrielmmoraes1999.certificado.util.DocumentoUtil;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -8,6 +11,9 @@ import java.security.Provider;
 import java.security.cert.X509Certificate;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,19 +43,167 @@ public class Certificado {
     private X509Certificate certificate;
     private String nomePessoaFisica;
     private String inscricaoPessoaFisica;
+    private Integer tamanhoCacheSessao;
+    private Integer timeoutSessao;
+    private Integer timeoutConexao;
+    private Integer timeoutLeitura;
+    private boolean chavePreCarregada;
+
+    /*
+     * Carregamento lazy: os dados derivados do X509Certificate só são calculados no primeiro acesso, em grupos que
+     * compartilham a mesma leitura (SubjectAltName, datas, emissor e titular).
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean lazy;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean subjectAltNameCarregado;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean vencimentoCarregado;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private volatile boolean nomesCarregados;
 
     public Certificado() {
         this.setSslProtocol(TLSV_1_2);
         this.setModoMultithreading(false);
+        this.setChavePreCarregada(true);
+    }
+
+    /**
+     * Passa a calcular os dados derivados do certificado sob demanda. Os dados já calculados de um certificado anterior
+     * (na recarga de um PFX renovado, por exemplo) são descartados.
+     */
+    synchronized void carregaLazy(X509Certificate certificate) {
+        this.certificate = certificate;
+        this.inscricaoCertificado = null;
+        this.inscricaoPessoaFisica = null;
+        this.nomePessoaFisica = null;
+        this.vencimento = null;
+        this.dataHoraVencimento = null;
+        this.diasRestantes = null;
+        this.valido = false;
+        this.numeroSerie = null;
+        this.issuer = null;
+        this.subject = null;
+        this.subjectAltNameCarregado = false;
+        this.vencimentoCarregado = false;
+        this.nomesCarregados = false;
+        this.lazy = true;
+    }
+
+    public String getInscricaoCertificado() {
+        if (lazy && !subjectAltNameCarregado) {
+            carregaSubjectAltName();
+        }
+        return inscricaoCertificado;
+    }
+
+    public String getInscricaoPessoaFisica() {
+        if (lazy && !subjectAltNameCarregado) {
+            carregaSubjectAltName();
+        }
+        return inscricaoPessoaFisica;
+    }
+
+    public String getNomePessoaFisica() {
+        if (lazy && !subjectAltNameCarregado) {
+            carregaSubjectAltName();
+        }
+        return nomePessoaFisica;
+    }
+
+    public LocalDate getVencimento() {
+        if (lazy && !vencimentoCarregado) {
+            carregaVencimento();
+        }
+        return vencimento;
+    }
+
+    public LocalDateTime getDataHoraVencimento() {
+        if (lazy && !vencimentoCarregado) {
+            carregaVencimento();
+        }
+        return dataHoraVencimento;
+    }
+
+    public Long getDiasRestantes() {
+        // No modo lazy o valor é sempre calculado na data atual, sem ficar desatualizado em processos longos.
+        return lazy && getVencimento() != null ? LocalDate.now().until(vencimento, ChronoUnit.DAYS) : diasRestantes;
+    }
+
+    public boolean isValido() {
+        return lazy && getVencimento() != null ? LocalDate.now().isBefore(vencimento) : valido;
+    }
+
+    public BigInteger getNumeroSerie() {
+        return numeroSerie == null && lazy ? certificate.getSerialNumber() : numeroSerie;
+    }
+
+    public String getIssuer() {
+        if (lazy && !nomesCarregados) {
+            carregaNomes();
+        }
+        return issuer;
+    }
+
+    public String getSubject() {
+        if (lazy && !nomesCarregados) {
+            carregaNomes();
+        }
+        return subject;
+    }
+
+    private synchronized void carregaSubjectAltName() {
+        if (!subjectAltNameCarregado) {
+            DadosIcpBrasil dados = DocumentoUtil.processaSubjectAltName(certificate.getExtensionValue("2.5.29.17"));
+            if (inscricaoCertificado == null) {
+                inscricaoCertificado = dados.getDocumento() == null ? "" : dados.getDocumento();
+            }
+            if (inscricaoPessoaFisica == null) {
+                inscricaoPessoaFisica = dados.getCpfResponsavel();
+            }
+            if (nomePessoaFisica == null) {
+                nomePessoaFisica = dados.getNomeResponsavel();
+            }
+            subjectAltNameCarregado = true;
+        }
+    }
+
+    private synchronized void carregaVencimento() {
+        if (!vencimentoCarregado) {
+            Date dataValidade = CertificadoService.dataValidade(certificate);
+            if (dataHoraVencimento == null) {
+                dataHoraVencimento = dataValidade.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+            }
+            if (vencimento == null) {
+                vencimento = dataHoraVencimento.toLocalDate();
+            }
+            vencimentoCarregado = true;
+        }
+    }
+
+    private synchronized void carregaNomes() {
+        if (!nomesCarregados) {
+            if (issuer == null) {
+                issuer = CertificadoService.extractCN(certificate.getIssuerX500Principal().getName());
+            }
+            if (subject == null) {
+                subject = CertificadoService.extractCN(certificate.getSubjectX500Principal().getName());
+            }
+            nomesCarregados = true;
+        }
     }
 
     public String extractCommonName(String dn, boolean subject) {
         String commonName;
 
         if (subject) {
-            commonName = certificate.getSubjectDN().getName();
+            commonName = certificate.getSubjectX500Principal().getName();
         } else {
-            commonName = certificate.getIssuerDN().getName();
+            commonName = certificate.getIssuerX500Principal().getName();
         }
 
         Pattern pattern = Pattern.compile("(\\w+)=\\s*\"?([^,]+)\"?");
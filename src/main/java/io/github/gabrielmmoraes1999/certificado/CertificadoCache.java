@@ -0,0 +1,201 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import lombok.Getter;
+
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache limitado de certificados PFX já decodificados, indexado pelo SHA-256 do conteúdo do arquivo e da senha.
+ * Evita repetir a decodificação PKCS12 (derivação PBKDF2 e verificação do MAC) quando os mesmos bytes são carregados
+ * várias vezes. As entradas saem do cache pelo tamanho máximo (LRU), pelo tempo de vida ou por invalidação explícita.
+ * <p>
+ * O KeyStore em cache é compartilhado entre todos os chamadores que carregam o mesmo PFX, por isso é entregue como uma
+ * visão somente leitura (alterações lançam {@link java.security.KeyStoreException}); os dados do certificado são
+ * copiados a cada consulta.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class CertificadoCache {
+
+    public static final int TAMANHO_MAXIMO_PADRAO = 256;
+    public static final Duration TEMPO_VIDA_PADRAO = Duration.ofMinutes(30);
+
+    private final int tamanhoMaximo;
+    private final long tempoVidaNanos;
+    private final LinkedHashMap<Chave, Entrada> entradas;
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+
+    public CertificadoCache() {
+        this(TAMANHO_MAXIMO_PADRAO, TEMPO_VIDA_PADRAO);
+    }
+
+    public CertificadoCache(int tamanhoMaximo, Duration tempoVida) {
+        if (tamanhoMaximo <= 0) {
+            throw new IllegalArgumentException("Tamanho máximo do cache deve ser maior que zero.");
+        }
+        if (tempoVida == null || tempoVida.isNegative() || tempoVida.isZero()) {
+            throw new IllegalArgumentException("Tempo de vida do cache deve ser positivo.");
+        }
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.tempoVidaNanos = tempoVida.toNanos();
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retorna a entrada do PFX informado ou {@code null} quando não estiver em cache (ou tiver expirado).
+     */
+    public Entrada obter(byte[] pfx, String senha) {
+        Chave chave = new Chave(DigestUtil.sha256(pfx, senha));
+        long agora = System.nanoTime();
+
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(chave);
+            if (entrada != null && entrada.isExpirada(agora)) {
+                entradas.remove(chave);
+                remocoes.increment();
+                entrada = null;
+            }
+            if (entrada == null) {
+                falhas.increment();
+            } else {
+                acertos.increment();
+            }
+            return entrada;
+        }
+    }
+
+    /**
+     * Adiciona o KeyStore decodificado e uma cópia dos dados do certificado, descartando a entrada usada há mais tempo
+     * quando o tamanho máximo é atingido.
+     */
+    public Entrada adicionar(byte[] pfx, String senha, KeyStore keyStore, Certificado certificado) {
+        Entrada entrada = new Entrada(keyStore, copiaDados(certificado), System.nanoTime() + tempoVidaNanos);
+
+        synchronized (entradas) {
+            entradas.put(new Chave(DigestUtil.sha256(pfx, senha)), entrada);
+            Iterator<Map.Entry<Chave, Entrada>> iterator = entradas.entrySet().iterator();
+            while (entradas.size() > tamanhoMaximo && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                remocoes.increment();
+            }
+        }
+        return entrada;
+    }
+
+    public boolean invalidar(byte[] pfx, String senha) {
+        Chave chave = new Chave(DigestUtil.sha256(pfx, senha));
+        synchronized (entradas) {
+            return entradas.remove(chave) != null;
+        }
+    }
+
+    public void invalidarTodos() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+    }
+
+    /**
+     * Remove as entradas cujo tempo de vida já terminou e retorna quantas foram descartadas.
+     */
+    public int removerExpirados() {
+        long agora = System.nanoTime();
+        int removidos = 0;
+        synchronized (entradas) {
+            Iterator<Entrada> iterator = entradas.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isExpirada(agora)) {
+                    iterator.remove();
+                    removidos++;
+                }
+            }
+        }
+        remocoes.add(removidos);
+        return removidos;
+    }
+
+    public int getTamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    public Duration getTempoVida() {
+        return Duration.ofNanos(tempoVidaNanos);
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    public long getFalhas() {
+        return falhas.sum();
+    }
+
+    public long getRemocoes() {
+        return remocoes.sum();
+    }
+
+    private static Certificado copiaDados(Certificado origem) {
+        Certificado copia = new Certificado();
+        copia.setTipoCertificado(origem.getTipoCertificado());
+        CertificadoService.copiaDadosCertificado(origem, copia);
+        return copia;
+    }
+
+    public static final class Entrada {
+
+        @Getter
+        private final KeyStore keyStore;
+        private final Certificado certificado;
+        private final long expiraEm;
+
+        private Entrada(KeyStore keyStore, Certificado certificado, long expiraEm) {
+            this.keyStore = KeyStoreSomenteLeitura.de(keyStore);
+            this.certificado = certificado;
+            this.expiraEm = expiraEm;
+        }
+
+        public Certificado getCertificado() {
+            return copiaDados(certificado);
+        }
+
+        private boolean isExpirada(long agora) {
+            return agora - expiraEm >= 0;
+        }
+    }
+
+    private static final class Chave {
+
+        private final byte[] digest;
+        private final int hash;
+
+        private Chave(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chave && Arrays.equals(digest, ((Chave) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
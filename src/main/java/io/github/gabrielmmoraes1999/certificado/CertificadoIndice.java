@@ -0,0 +1,224 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+
+import java.math.BigInteger;
+import java.security.cert.CertificateEncodingException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Índice em memória de certificados já carregados, de qualquer origem (arquivo, bytes, repositório ou token).
+ * Permite buscar por CNPJ/CPF, CPF do responsável, número de série, alias, impressão digital SHA-256 e raiz do CNPJ
+ * sem percorrer a lista. Inclusões e remoções são incrementais e as buscas não usam locks.
+ * <p>
+ * Quando mais de um certificado corresponde à mesma chave (renovações, por exemplo), as buscas simples retornam o de
+ * vencimento mais distante.
+ * <p>
+ * As chaves são calculadas na inclusão. Se os dados do certificado mudarem depois disso, como na recarga de um PFX
+ * renovado pelo {@link RecarregadorPfx}, chame {@link #atualizar(Certificado)} para indexá-lo pelas novas chaves.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CertificadoIndice {
+
+    private static final int TAMANHO_RAIZ_CNPJ = 8;
+    private static final int TAMANHO_CNPJ = 14;
+    private static final Comparator<Certificado> POR_VENCIMENTO = Comparator.comparing(Certificado::getDataHoraVencimento,
+            Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()));
+
+    private final ConcurrentMap<Certificado, Chaves> certificados = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Certificado>> porInscricao = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Certificado>> porInscricaoPessoaFisica = new ConcurrentHashMap<>();
+    private final ConcurrentMap<BigInteger, Set<Certificado>> porNumeroSerie = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Certificado>> porAlias = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Certificado>> porImpressaoDigital = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Certificado>> porRaizCnpj = new ConcurrentHashMap<>();
+
+    public CertificadoIndice() {
+    }
+
+    public CertificadoIndice(Collection<Certificado> certificados) {
+        certificados.forEach(this::adicionar);
+    }
+
+    public void adicionar(Certificado certificado) {
+        Chaves chaves = new Chaves(Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException("Certificado não pode ser nulo.")));
+        if (certificados.putIfAbsent(certificado, chaves) == null) {
+            indexa(chaves, certificado);
+        }
+    }
+
+    public boolean remover(Certificado certificado) {
+        Chaves chaves = certificado == null ? null : certificados.remove(certificado);
+        if (chaves == null) {
+            return false;
+        }
+        desindexa(chaves, certificado);
+        return true;
+    }
+
+    /**
+     * Reindexa um certificado já incluído pelos seus dados atuais, retirando-o das chaves calculadas anteriormente.
+     *
+     * @return {@code false} se o certificado não estiver no índice
+     */
+    public boolean atualizar(Certificado certificado) {
+        Chaves anteriores = certificado == null ? null : certificados.get(certificado);
+        if (anteriores == null) {
+            return false;
+        }
+        Chaves novas = new Chaves(certificado);
+        if (!certificados.replace(certificado, anteriores, novas)) {
+            return certificados.containsKey(certificado) && atualizar(certificado);
+        }
+        desindexa(anteriores, certificado);
+        indexa(novas, certificado);
+        return true;
+    }
+
+    public int getTamanho() {
+        return certificados.size();
+    }
+
+    public List<Certificado> getCertificados() {
+        return new ArrayList<>(certificados.keySet());
+    }
+
+    public Optional<Certificado> buscarPorCnpjCpf(String cnpjCpf) {
+        return maisRecente(porInscricao, cnpjCpf);
+    }
+
+    public List<Certificado> buscarTodosPorCnpjCpf(String cnpjCpf) {
+        return todos(porInscricao, cnpjCpf);
+    }
+
+    public Optional<Certificado> buscarPorInscricaoPessoaFisica(String cpf) {
+        return maisRecente(porInscricaoPessoaFisica, cpf);
+    }
+
+    public Optional<Certificado> buscarPorNumeroSerie(BigInteger numeroSerie) {
+        return maisRecente(porNumeroSerie, numeroSerie);
+    }
+
+    public Optional<Certificado> buscarPorAlias(String alias) {
+        return maisRecente(porAlias, alias);
+    }
+
+    /**
+     * Busca pela impressão digital SHA-256 do certificado em hexadecimal, com ou sem separadores.
+     */
+    public Optional<Certificado> buscarPorImpressaoDigital(String sha256) {
+        return maisRecente(porImpressaoDigital, sha256 == null ? null : sha256.replaceAll("[^0-9A-Fa-f]", "").toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Todos os certificados cujo CNPJ começa pela raiz informada (os 8 primeiros dígitos), ou seja, matriz e filiais.
+     */
+    public List<Certificado> buscarPorRaizCnpj(String cnpj) {
+        return todos(porRaizCnpj, cnpj == null || cnpj.length() < TAMANHO_RAIZ_CNPJ ? null : cnpj.substring(0, TAMANHO_RAIZ_CNPJ));
+    }
+
+    public void limpar() {
+        certificados.clear();
+        porInscricao.clear();
+        porInscricaoPessoaFisica.clear();
+        porNumeroSerie.clear();
+        porAlias.clear();
+        porImpressaoDigital.clear();
+        porRaizCnpj.clear();
+    }
+
+    static String impressaoDigital(Certificado certificado) {
+        try {
+            return certificado.getCertificate() == null ? null : DigestUtil.hex(DigestUtil.sha256(certificado.getCertificate().getEncoded()));
+        } catch (CertificateEncodingException e) {
+            return null;
+        }
+    }
+
+    private void indexa(Chaves chaves, Certificado certificado) {
+        indexa(porInscricao, chaves.inscricao, certificado);
+        indexa(porInscricaoPessoaFisica, chaves.inscricaoPessoaFisica, certificado);
+        indexa(porNumeroSerie, chaves.numeroSerie, certificado);
+        indexa(porAlias, chaves.alias, certificado);
+        indexa(porImpressaoDigital, chaves.impressaoDigital, certificado);
+        indexa(porRaizCnpj, chaves.raizCnpj, certificado);
+    }
+
+    private void desindexa(Chaves chaves, Certificado certificado) {
+        desindexa(porInscricao, chaves.inscricao, certificado);
+        desindexa(porInscricaoPessoaFisica, chaves.inscricaoPessoaFisica, certificado);
+        desindexa(porNumeroSerie, chaves.numeroSerie, certificado);
+        desindexa(porAlias, chaves.alias, certificado);
+        desindexa(porImpressaoDigital, chaves.impressaoDigital, certificado);
+        desindexa(porRaizCnpj, chaves.raizCnpj, certificado);
+    }
+
+    private static String raizCnpj(String inscricao) {
+        return inscricao != null && inscricao.length() == TAMANHO_CNPJ ? inscricao.substring(0, TAMANHO_RAIZ_CNPJ) : null;
+    }
+
+    private static String vazioComoNulo(String valor) {
+        return valor == null || valor.isEmpty() ? null : valor;
+    }
+
+    private static <K> void indexa(ConcurrentMap<K, Set<Certificado>> indice, K chave, Certificado certificado) {
+        if (chave != null) {
+            // A inclusão acontece dentro do compute para não correr com a remoção do conjunto vazio em desindexa.
+            indice.compute(chave, (k, conjunto) -> {
+                Set<Certificado> atual = conjunto == null ? ConcurrentHashMap.newKeySet() : conjunto;
+                atual.add(certificado);
+                return atual;
+            });
+        }
+    }
+
+    private static <K> void desindexa(ConcurrentMap<K, Set<Certificado>> indice, K chave, Certificado certificado) {
+        if (chave != null) {
+            indice.computeIfPresent(chave, (k, conjunto) -> {
+                conjunto.remove(certificado);
+                return conjunto.isEmpty() ? null : conjunto;
+            });
+        }
+    }
+
+    private static <K> Optional<Certificado> maisRecente(ConcurrentMap<K, Set<Certificado>> indice, K chave) {
+        Set<Certificado> conjunto = chave == null ? null : indice.get(chave);
+        return conjunto == null ? Optional.empty() : conjunto.stream().max(POR_VENCIMENTO);
+    }
+
+    private static <K> List<Certificado> todos(ConcurrentMap<K, Set<Certificado>> indice, K chave) {
+        Set<Certificado> conjunto = chave == null ? null : indice.get(chave);
+        return conjunto == null ? Collections.emptyList() : new ArrayList<>(conjunto);
+    }
+
+    /*
+     * Chaves com que o certificado foi indexado, para que a remoção funcione mesmo que os dados tenham mudado.
+     */
+    private static final class Chaves {
+        private final String inscricao;
+        private final String inscricaoPessoaFisica;
+        private final BigInteger numeroSerie;
+        private final String alias;
+        private final String impressaoDigital;
+        private final String raizCnpj;
+
+        private Chaves(Certificado certificado) {
+            this.inscricao = vazioComoNulo(certificado.getInscricaoCertificado());
+            this.inscricaoPessoaFisica = vazioComoNulo(certificado.getInscricaoPessoaFisica());
+            this.numeroSerie = certificado.getNumeroSerie();
+            this.alias = certificado.getNomeCertificado();
+            this.impressaoDigital = impressaoDigital(certificado);
+            this.raizCnpj = raizCnpj(certificado.getInscricaoCertificado());
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package io.github.gabrielmmoraes1999.certificado;
 
 import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.metrica.Metricas;
+import io.github.gabrielmmoraes1999.certificado.metrica.MetricasService;
+import io.github.gabrielmmoraes1999.certificado.revogacao.RevogacaoService;
+import io.github.gabrielmmoraes1999.certificado.util.DadosIcpBrasil;
 import io.github.gabrielmmoraes1999.certificado.util.DocumentoUtil;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.protocol.Protocol;
@@ -8,6 +12,7 @@ import org.apache.commons.httpclient.protocol.Protocol;
 import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
 import javax.naming.ldap.Rdn;
+import javax.net.ssl.SSLContext;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -17,6 +22,7 @@ import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -29,11 +35,21 @@ public class CertificadoService {
     private static final String CERTIFICADO_NAO_PODE_SER_NULO = "Certificado não pode ser nulo.";
     private static final String ERRO_AO_CARREGAR_INFORMACOES_DO_CERTIFICADO = "Erro ao carregar informações do certificado:";
 
+    private static final ProtocoloCache protocolos = new ProtocoloCache();
+    private static volatile CertificadoCache cache = new CertificadoCache();
+    private static volatile SocketFactoryMultiCertificado multiCertificado;
+
     private CertificadoService() {
     }
 
     public static void inicializaCertificado(Certificado certificado) throws CertificadoException {
-        inicializaCertificado(certificado, CertificadoService.class.getResourceAsStream("/cacert"));
+        if (certificado == null) {
+            throw new IllegalArgumentException(CERTIFICADO_NAO_PODE_SER_NULO);
+        }
+
+        if (!certificado.isModoMultithreading()) {
+            Protocol.registerProtocol("https", getProtocoloCertificado(certificado));
+        }
     }
 
     public static void inicializaCertificado(Certificado certificado, InputStream cacert) throws CertificadoException {
@@ -46,7 +62,40 @@ public class CertificadoService {
         }
     }
 
+    public static void inicializaCertificado(Certificado certificado, Cacert cacert) throws CertificadoException {
+        if (certificado == null) {
+            throw new IllegalArgumentException(CERTIFICADO_NAO_PODE_SER_NULO);
+        }
+
+        if (!certificado.isModoMultithreading()) {
+            Protocol.registerProtocol("https", getProtocoloCertificado(certificado, cacert));
+        }
+    }
+
+    /**
+     * Registra, uma única vez, o protocolo https global que escolhe o certificado pelo host de destino, com o cacert
+     * padrão. As rotas são configuradas na {@link SocketFactoryMultiCertificado} retornada.
+     */
+    public static SocketFactoryMultiCertificado inicializaMultiCertificado() throws CertificadoException {
+        SocketFactoryMultiCertificado socketFactory = multiCertificado;
+        if (socketFactory == null) {
+            synchronized (CertificadoService.class) {
+                socketFactory = multiCertificado;
+                if (socketFactory == null) {
+                    socketFactory = new SocketFactoryMultiCertificado();
+                    socketFactory.registrar();
+                    multiCertificado = socketFactory;
+                }
+            }
+        }
+        return socketFactory;
+    }
+
     public static Certificado certificadoPfxBytes(byte[] certificadoBytes, String senha) throws CertificadoException {
+        return certificadoPfxBytes(certificadoBytes, senha, ModoCarregamentoEnum.COMPLETO);
+    }
+
+    public static Certificado certificadoPfxBytes(byte[] certificadoBytes, String senha, ModoCarregamentoEnum modo) throws CertificadoException {
 
         Certificado certificado = new Certificado();
 
@@ -54,7 +103,7 @@ public class CertificadoService {
             certificado.setArquivoBytes(Optional.ofNullable(certificadoBytes).orElseThrow(() -> new IllegalArgumentException(CERTIFICADO_NAO_PODE_SER_NULO)));
             certificado.setSenha(Optional.ofNullable(senha).orElseThrow(() -> new IllegalArgumentException(SENHA_NAO_PODE_SER_NULA)));
             certificado.setTipoCertificado(TipoCertificadoEnum.ARQUIVO_BYTES);
-            setDadosCertificado(certificado, null);
+            setDadosCertificadoPfx(certificado, certificado.getArquivoBytes(), isLazy(modo));
         } catch (KeyStoreException e) {
             throw new CertificadoException(ERRO_AO_CARREGAR_INFORMACOES_DO_CERTIFICADO + e.getMessage(), e);
         }
@@ -63,7 +112,11 @@ public class CertificadoService {
 
     }
 
-    private static void setDadosCertificado(Certificado certificado, KeyStore keyStore) throws CertificadoException, KeyStoreException {
+    private static boolean isLazy(ModoCarregamentoEnum modo) {
+        return Optional.ofNullable(modo).orElseThrow(() -> new IllegalArgumentException("Modo de carregamento não pode ser nulo.")) == ModoCarregamentoEnum.LAZY;
+    }
+
+    private static void setDadosCertificado(Certificado certificado, KeyStore keyStore, boolean lazy) throws CertificadoException, KeyStoreException {
 
         if (keyStore == null) {
             keyStore = getKeyStore(certificado);
@@ -72,43 +125,192 @@ public class CertificadoService {
             certificado.setNomeCertificado(aliasKey);
         }
 
-        X509Certificate certificate = getCertificate(certificado, keyStore);
-        certificado.setInscricaoCertificado(
-                Optional.ofNullable(certificate.getExtensionValue("2.5.29.17"))
-                        .flatMap(DocumentoUtil::getDocumentoFromCertificado)
-                        .orElse(""));
-        Date dataValidade = dataValidade(certificate);
-        certificado.setVencimento(dataValidade.toInstant().atZone(ZoneId.systemDefault()).toLocalDate());
-        certificado.setDataHoraVencimento(dataValidade.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+        preencheDadosCertificado(certificado, getCertificate(certificado, keyStore), lazy);
+    }
+
+    /**
+     * Preenche os dados derivados do X509Certificate (inscrição, vencimento, emissor, titular...) sem acessar o KeyStore.
+     */
+    static void preencheDadosCertificado(Certificado certificado, X509Certificate certificate, boolean lazy) {
+        if (lazy) {
+            certificado.carregaLazy(certificate);
+            return;
+        }
+
+        DadosIcpBrasil dadosIcpBrasil = DocumentoUtil.processaSubjectAltName(certificate.getExtensionValue("2.5.29.17"));
+        certificado.setInscricaoCertificado(Optional.ofNullable(dadosIcpBrasil.getDocumento()).orElse(""));
+        LocalDateTime dataHoraVencimento = dataValidade(certificate).toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+        certificado.setVencimento(dataHoraVencimento.toLocalDate());
+        certificado.setDataHoraVencimento(dataHoraVencimento);
         certificado.setDiasRestantes(diasRestantes(certificado));
         certificado.setValido(valido(certificado));
         certificado.setNumeroSerie(certificate.getSerialNumber());
-        certificado.setIssuer(extractCN(certificate.getIssuerDN().getName()));
-        certificado.setSubject(extractCN(certificate.getSubjectDN().getName()));
+        certificado.setIssuer(extractCN(certificate.getIssuerX500Principal().getName()));
+        certificado.setSubject(extractCN(certificate.getSubjectX500Principal().getName()));
         certificado.setCertificate(certificate);
-        certificado.setInscricaoPessoaFisica(
-                Optional.ofNullable(certificate.getExtensionValue("2.5.29.17"))
-                        .flatMap(DocumentoUtil::processaCPFPJ)
-                        .orElse(null));
-        certificado.setNomePessoaFisica(
-                Optional.ofNullable(certificate.getExtensionValue("2.5.29.17"))
-                        .flatMap(DocumentoUtil::processaNomePF)
-                        .orElse(null));
+        certificado.setInscricaoPessoaFisica(dadosIcpBrasil.getCpfResponsavel());
+        certificado.setNomePessoaFisica(dadosIcpBrasil.getNomeResponsavel());
+    }
+
+    private static void setDadosCertificadoPfx(Certificado certificado, byte[] pfx, boolean lazy) throws CertificadoException, KeyStoreException {
+        CertificadoCache cacheAtual = cache;
+        CertificadoCache.Entrada entrada = cacheAtual == null ? null : cacheAtual.obter(pfx, certificado.getSenha());
+
+        if (entrada != null) {
+            Certificado dados = entrada.getCertificado();
+            verificaRevogacao(entrada.getKeyStore(), dados.getNomeCertificado());
+            if (dados.isLazy() == lazy) {
+                copiaDadosCertificado(dados, certificado);
+            } else {
+                certificado.setNomeCertificado(dados.getNomeCertificado());
+                preencheDadosCertificado(certificado, dados.getCertificate(), lazy);
+            }
+            return;
+        }
+
+        KeyStore keyStore = decodificaPfx(pfx, certificado);
+        certificado.setNomeCertificado(keyStore.aliases().nextElement());
+        verificaRevogacao(keyStore, certificado.getNomeCertificado());
+        setDadosCertificado(certificado, keyStore, lazy);
+
+        if (cacheAtual != null) {
+            cacheAtual.adicionar(pfx, certificado.getSenha(), keyStore, certificado);
+        }
+    }
+
+    /**
+     * Recusa o certificado revogado quando a verificação de revogação está ativa em {@link RevogacaoService}. A
+     * consulta usa as LCRs em cache do verificador, então o custo só aparece no primeiro carregamento de cada AC.
+     */
+    private static void verificaRevogacao(KeyStore keyStore, String alias) throws CertificadoException, KeyStoreException {
+        if (RevogacaoService.getVerificador() == null) {
+            return;
+        }
+
+        java.security.cert.Certificate[] cadeia = keyStore.getCertificateChain(alias);
+        if (cadeia == null) {
+            return;
+        }
+        verificaRevogacao(Arrays.stream(cadeia).map(X509Certificate.class::cast).toArray(X509Certificate[]::new));
+    }
+
+    static void verificaRevogacao(X509Certificate[] cadeia) throws CertificadoException {
+        if (RevogacaoService.getVerificador() == null) {
+            return;
+        }
+
+        try {
+            RevogacaoService.verificarCadeia(cadeia, TrustStoreService.getPadrao());
+        } catch (CertificateException e) {
+            throw new CertificadoException(e.getMessage(), e);
+        }
+    }
+
+    static void copiaDadosCertificado(Certificado origem, Certificado destino) {
+        destino.setNomeCertificado(origem.getNomeCertificado());
+        if (origem.isLazy()) {
+            destino.carregaLazy(origem.getCertificate());
+            return;
+        }
+
+        destino.setInscricaoCertificado(origem.getInscricaoCertificado());
+        destino.setVencimento(origem.getVencimento());
+        destino.setDataHoraVencimento(origem.getDataHoraVencimento());
+        destino.setNumeroSerie(origem.getNumeroSerie());
+        destino.setIssuer(origem.getIssuer());
+        destino.setSubject(origem.getSubject());
+        destino.setCertificate(origem.getCertificate());
+        destino.setInscricaoPessoaFisica(origem.getInscricaoPessoaFisica());
+        destino.setNomePessoaFisica(origem.getNomePessoaFisica());
+        if (destino.getVencimento() != null) {
+            destino.setDiasRestantes(diasRestantes(destino));
+            destino.setValido(valido(destino));
+        }
+    }
+
+    /**
+     * Recarrega o certificado A1 com o conteúdo renovado do PFX: decodifica o novo arquivo, troca a chave dos
+     * protocolos já construídos para o certificado e atualiza os seus dados enquanto os protocolos respondem pelos
+     * dados anteriores e pelos novos; os anteriores são removidos depois. Se o conteúdo não puder ser decodificado (ou o
+     * certificado estiver revogado), nada é alterado.
+     */
+    static void recarregaPfx(Certificado certificado, byte[] pfx) throws CertificadoException {
+        TipoCertificadoEnum tipo = certificado.getTipoCertificado();
+        if (tipo != TipoCertificadoEnum.ARQUIVO && tipo != TipoCertificadoEnum.ARQUIVO_BYTES) {
+            throw new CertificadoException("Somente certificados A1 podem ser recarregados: " + tipo);
+        }
+
+        try {
+            KeyStore keyStore = decodificaPfx(pfx, certificado);
+            Certificado novo = new Certificado();
+            novo.setSenha(certificado.getSenha());
+            novo.setTipoCertificado(tipo);
+            novo.setNomeCertificado(keyStore.aliases().nextElement());
+            verificaRevogacao(keyStore, novo.getNomeCertificado());
+            setDadosCertificado(novo, keyStore, certificado.isLazy());
+
+            CertificadoCache cacheAtual = cache;
+            if (cacheAtual != null) {
+                cacheAtual.adicionar(pfx, certificado.getSenha(), keyStore, novo);
+            }
+
+            // O conteúdo vem antes dos dados: quem vê o novo X509Certificate já carrega a chave nova.
+            protocolos.substituir(certificado, novo, keyStore, () -> {
+                if (tipo == TipoCertificadoEnum.ARQUIVO_BYTES) {
+                    certificado.setArquivoBytes(pfx);
+                }
+                copiaDadosCertificado(novo, certificado);
+            });
+        } catch (KeyStoreException | NoSuchElementException e) {
+            throw new CertificadoException(ERRO_AO_CARREGAR_INFORMACOES_DO_CERTIFICADO + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cache de PFX decodificados usado por {@link #certificadoPfx}, {@link #certificadoPfxBytes} e {@link #getKeyStore}.
+     * Retorna {@code null} quando o cache estiver desabilitado.
+     */
+    public static CertificadoCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Substitui o cache de PFX decodificados. Informe {@code null} para desabilitar o cache.
+     */
+    public static void setCache(CertificadoCache novoCache) {
+        cache = novoCache;
     }
 
     public static Certificado certificadoPfx(String caminhoCertificado, String senha) throws CertificadoException, FileNotFoundException {
+        return certificadoPfx(caminhoCertificado, senha, ModoCarregamentoEnum.COMPLETO);
+    }
+
+    public static Certificado certificadoPfx(String caminhoCertificado, String senha, ModoCarregamentoEnum modo) throws CertificadoException, FileNotFoundException {
 
         if (!Files.exists(Paths.get(
                 Optional.ofNullable(caminhoCertificado).orElseThrow(() -> new IllegalArgumentException("Caminho do Certificado não pode ser nulo.")))))
             throw new FileNotFoundException("Arquivo " + caminhoCertificado + " não existe");
 
+        try {
+            return certificadoPfx(caminhoCertificado, senha, Files.readAllBytes(Paths.get(caminhoCertificado)), isLazy(modo));
+        } catch (IOException e) {
+            throw new CertificadoException(ERRO_AO_CARREGAR_INFORMACOES_DO_CERTIFICADO +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Carrega o certificado do arquivo informado a partir do conteúdo já lido do disco.
+     */
+    static Certificado certificadoPfx(String caminhoCertificado, String senha, byte[] conteudo, boolean lazy) throws CertificadoException {
+
         Certificado certificado = new Certificado();
 
         try {
             certificado.setArquivo(caminhoCertificado);
             certificado.setSenha(Optional.ofNullable(senha).orElseThrow(() -> new IllegalArgumentException(SENHA_NAO_PODE_SER_NULA)));
             certificado.setTipoCertificado(TipoCertificadoEnum.ARQUIVO);
-            setDadosCertificado(certificado, null);
+            setDadosCertificadoPfx(certificado, conteudo, lazy);
         } catch (KeyStoreException e) {
             throw new CertificadoException(ERRO_AO_CARREGAR_INFORMACOES_DO_CERTIFICADO +
                     e.getMessage(), e);
@@ -124,7 +326,7 @@ public class CertificadoService {
             certificado.setTipoCertificado(TipoCertificadoEnum.TOKEN_A3);
             certificado.setSenha(Optional.ofNullable(senha).orElseThrow(() -> new IllegalArgumentException(SENHA_NAO_PODE_SER_NULA)));
             certificado.setProvider(Optional.ofNullable(provider).orElseThrow(() -> new IllegalArgumentException("Provider não pode ser nulo.")));
-            setDadosCertificado(certificado, null);
+            setDadosCertificado(certificado, null, false);
             return certificado;
 
         } catch (Exception e) {
@@ -134,22 +336,30 @@ public class CertificadoService {
     }
 
     public static List<Certificado> listaCertificadosWindows(boolean listarVencidos) throws CertificadoException {
-        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_WINDOWS, listarVencidos);
+        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_WINDOWS, listarVencidos, false);
     }
 
     public static List<Certificado> listaCertificadosMac(boolean listarVencidos) throws CertificadoException {
-        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_MAC, listarVencidos);
+        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_MAC, listarVencidos, false);
+    }
+
+    public static List<Certificado> listaCertificadosWindows(boolean listarVencidos, ModoCarregamentoEnum modo) throws CertificadoException {
+        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_WINDOWS, listarVencidos, isLazy(modo));
+    }
+
+    public static List<Certificado> listaCertificadosMac(boolean listarVencidos, ModoCarregamentoEnum modo) throws CertificadoException {
+        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_MAC, listarVencidos, isLazy(modo));
     }
 
     public static List<Certificado> listaCertificadosWindows() throws CertificadoException {
-        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_WINDOWS, true);
+        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_WINDOWS, true, false);
     }
 
     public static List<Certificado> listaCertificadosMac() throws CertificadoException {
-        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_MAC, true);
+        return listaCertificadosRepositorio(TipoCertificadoEnum.REPOSITORIO_MAC, true, false);
     }
 
-    private static List<Certificado> listaCertificadosRepositorio(TipoCertificadoEnum tipo, boolean listarVencidos) throws CertificadoException {
+    private static List<Certificado> listaCertificadosRepositorio(TipoCertificadoEnum tipo, boolean listarVencidos, boolean lazy) throws CertificadoException {
 
         List<Certificado> listaCert = new ArrayList<>();
         Certificado cert = new Certificado();
@@ -163,7 +373,7 @@ public class CertificadoService {
                     Certificado certificado = new Certificado();
                     certificado.setTipoCertificado(tipo);
                     certificado.setNomeCertificado(aliasKey);
-                    setDadosCertificado(certificado, ks);
+                    setDadosCertificado(certificado, ks, lazy);
                     if (listarVencidos) {
                         listaCert.add(certificado);
                     } else {
@@ -206,7 +416,7 @@ public class CertificadoService {
 
     }
 
-    private static Date dataValidade(X509Certificate certificate) {
+    static Date dataValidade(X509Certificate certificate) {
         return Optional.ofNullable(certificate.getNotAfter())
                 .orElse(Date.from(LocalDate.of(2020, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()));
     }
@@ -232,6 +442,24 @@ public class CertificadoService {
     }
 
     public static KeyStore getKeyStore(Certificado certificado) throws CertificadoException {
+        Metricas metricas = MetricasService.getMetricas();
+        if (!metricas.isAtivo()) {
+            return carregaKeyStore(certificado);
+        }
+
+        String tipo = String.valueOf(certificado.getTipoCertificado());
+        long inicio = System.nanoTime();
+        try {
+            KeyStore keyStore = carregaKeyStore(certificado);
+            metricas.temporizador(MetricasService.KEYSTORE_CARREGAMENTO, "tipo", tipo).registra(System.nanoTime() - inicio);
+            return keyStore;
+        } catch (CertificadoException e) {
+            metricas.contador(MetricasService.KEYSTORE_FALHAS, "tipo", tipo).incrementa();
+            throw e;
+        }
+    }
+
+    private static KeyStore carregaKeyStore(Certificado certificado) throws CertificadoException {
         try {
 
             switch (certificado.getTipoCertificado()) {
@@ -240,9 +468,9 @@ public class CertificadoService {
                 case REPOSITORIO_MAC:
                     return KeyStoreService.getKeyStoreRepositorioMac();
                 case ARQUIVO:
-                    return KeyStoreService.getKeyStoreArquivo(certificado);
+                    return getKeyStorePfx(KeyStoreService.lerArquivo(certificado), certificado);
                 case ARQUIVO_BYTES:
-                    return KeyStoreService.getKeyStoreArquivoByte(certificado.getArquivoBytes(), certificado);
+                    return getKeyStorePfx(certificado.getArquivoBytes(), certificado);
                 case TOKEN_A3:
                     return KeyStoreService.getKeyStoreA3(certificado);
                 default:
@@ -250,13 +478,44 @@ public class CertificadoService {
                             certificado.getTipoCertificado());
             }
         } catch (Exception e) {
-            if (Optional.ofNullable(e.getMessage()).orElse("").startsWith("keystore password was incorrect"))
-                throw new CertificadoException("Senha do Certificado inválida.");
+            throw erroKeyStore(e);
+        }
 
-            throw new CertificadoException("Erro Ao pegar KeyStore: " +
-                    e.getMessage(), e);
+    }
+
+    private static KeyStore getKeyStorePfx(byte[] pfx, Certificado certificado) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
+        CertificadoCache cacheAtual = cache;
+        CertificadoCache.Entrada entrada = cacheAtual == null ? null : cacheAtual.obter(pfx, certificado.getSenha());
+        return entrada != null ? entrada.getKeyStore() : KeyStoreService.getKeyStoreArquivoByte(pfx, certificado);
+    }
+
+    /**
+     * Cadeia do certificado no PFX, usando o KeyStore em cache quando houver.
+     */
+    static X509Certificate[] cadeiaPfx(byte[] pfx, Certificado certificado) throws CertificadoException {
+        try {
+            java.security.cert.Certificate[] cadeia = getKeyStorePfx(pfx, certificado).getCertificateChain(certificado.getNomeCertificado());
+            return cadeia == null ? new X509Certificate[]{certificado.getCertificate()}
+                    : Arrays.stream(cadeia).map(X509Certificate.class::cast).toArray(X509Certificate[]::new);
+        } catch (Exception e) {
+            throw erroKeyStore(e);
         }
+    }
 
+    private static KeyStore decodificaPfx(byte[] pfx, Certificado certificado) throws CertificadoException {
+        try {
+            return KeyStoreService.getKeyStoreArquivoByte(pfx, certificado);
+        } catch (Exception e) {
+            throw erroKeyStore(e);
+        }
+    }
+
+    private static CertificadoException erroKeyStore(Exception e) {
+        if (Optional.ofNullable(e.getMessage()).orElse("").startsWith("keystore password was incorrect"))
+            return new CertificadoException("Senha do Certificado inválida.");
+
+        return new CertificadoException("Erro Ao pegar KeyStore: " +
+                e.getMessage(), e);
     }
 
     public static Certificado getCertificadoByCnpjCpf(String cnpjCpf) throws CertificadoException {
@@ -265,34 +524,96 @@ public class CertificadoService {
                 "Certificado não encontrado com CNPJ/CPF : " + cnpjCpf));
     }
 
+    /**
+     * Busca no índice informado, sem recarregar o repositório. Quando não há certificado com o CNPJ/CPF exato, retorna
+     * o de mesma raiz de CNPJ.
+     */
+    public static Certificado getCertificadoByCnpjCpf(CertificadoIndice indice, String cnpjCpf) throws CertificadoException {
+        Optional<Certificado> certificado = indice.buscarPorCnpjCpf(cnpjCpf);
+        if (!certificado.isPresent()) {
+            certificado = indice.buscarPorRaizCnpj(cnpjCpf).stream()
+                    .filter(cert -> cert.getInscricaoCertificado().startsWith(cnpjCpf))
+                    .findFirst();
+        }
+        return certificado.orElseThrow(() -> new CertificadoException(
+                "Certificado não encontrado com CNPJ/CPF : " + cnpjCpf));
+    }
+
+    /**
+     * Protocolo https do certificado com o cacert padrão, reutilizado de {@link #getProtocoloCache()} enquanto o
+     * certificado e o sslProtocol não mudarem.
+     */
+    static Protocol getProtocoloCertificado(final Certificado certificado) throws CertificadoException {
+        return getProtocoloCertificado(certificado, TrustStoreService.getPadrao());
+    }
+
     private static Protocol getProtocoloCertificado(final Certificado certificado, InputStream cacert) throws CertificadoException {
+        return getProtocoloCertificado(certificado,
+                TrustStoreService.get(Optional.ofNullable(cacert).orElseThrow(() -> new IllegalArgumentException("Cacert não pode ser nulo."))));
+    }
+
+    static Protocol getProtocoloCertificado(final Certificado certificado, final Cacert cacert) throws CertificadoException {
+        return protocolos.obter(
+                Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException(CERTIFICADO_NAO_PODE_SER_NULO)),
+                Optional.ofNullable(cacert).orElseThrow(() -> new IllegalArgumentException("Cacert não pode ser nulo.")).getId(),
+                () -> criaProtocoloCertificado(certificado, cacert));
+    }
+
+    private static Protocol criaProtocoloCertificado(final Certificado certificado, final Cacert cacert) throws CertificadoException {
         try {
-            KeyStore keyStore = getKeyStore(
-                    Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException(CERTIFICADO_NAO_PODE_SER_NULO)));
+            KeyStore keyStore = getKeyStore(certificado);
             SocketFactoryDinamico socketFactory = new SocketFactoryDinamico(keyStore, certificado.getNomeCertificado(), certificado.getSenha(),
-                    Optional.ofNullable(cacert).orElseThrow(() -> new IllegalArgumentException("Cacert não pode ser nulo.")),
-                    certificado.getSslProtocol());
+                    cacert.getTrustManagers(), certificado.getSslProtocol(), certificado.isChavePreCarregada());
+            socketFactory.configuraSessoes(certificado.getTamanhoCacheSessao(), certificado.getTimeoutSessao());
+            socketFactory.configuraTimeouts(certificado.getTimeoutConexao(), certificado.getTimeoutLeitura());
 
             return new Protocol("https", socketFactory, 443);
 
-        } catch (KeyStoreException | NoSuchAlgorithmException | KeyManagementException | CertificateException |
-                 IOException e) {
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
             throw new CertificadoException(e.getMessage(), e);
         }
     }
 
+    /**
+     * {@link SSLContext} do {@link SocketFactoryDinamico} do certificado com o cacert padrão, para clientes HTTP que
+     * não usam o commons-httpclient. É o mesmo contexto (e o mesmo cache de sessões TLS) do protocolo https.
+     */
+    public static SSLContext getSslContext(Certificado certificado) throws CertificadoException {
+        return getSslContext(certificado, TrustStoreService.getPadrao());
+    }
+
+    public static SSLContext getSslContext(Certificado certificado, Cacert cacert) throws CertificadoException {
+        return ((SocketFactoryDinamico) getProtocoloCertificado(certificado, cacert).getSocketFactory()).getSsl();
+    }
+
+    public static ProtocoloCache getProtocoloCache() {
+        return protocolos;
+    }
+
     public static HttpClient getHttpsClient(Certificado certificado, String url) throws CertificadoException {
-        return getHttpsClient(certificado, url, CertificadoService.class.getResourceAsStream("/cacert"));
+        return getHttpsClient(url, getProtocoloCertificado(certificado));
     }
 
     public static HttpClient getHttpsClient(Certificado certificado, String url, final InputStream cacert) throws CertificadoException {
-        Protocol protocol = getProtocoloCertificado(certificado, cacert);
+        return getHttpsClient(url, getProtocoloCertificado(certificado, cacert));
+    }
+
+    public static HttpClient getHttpsClient(Certificado certificado, String url, final Cacert cacert) throws CertificadoException {
+        return getHttpsClient(url, getProtocoloCertificado(certificado, cacert));
+    }
+
+    private static HttpClient getHttpsClient(String url, Protocol protocol) {
         HttpClient httpclient = new HttpClient();
         httpclient.getHostConfiguration().setHost(url, 443, protocol);
+        // O HttpConnection aplica o seu próprio SO_TIMEOUT depois de abrir o socket; sem isto o timeout de leitura
+        // da socket factory valeria só para o handshake.
+        if (protocol.getSocketFactory() instanceof SocketFactoryDinamico) {
+            httpclient.getHttpConnectionManager().getParams().setSoTimeout(((SocketFactoryDinamico) protocol.getSocketFactory()).getTimeoutLeitura());
+        }
         return httpclient;
     }
 
-    private static String extractCN(String dn) {
+    static String extractCN(String dn) {
         try {
             LdapName ldapName = new LdapName(dn);
 
@@ -0,0 +1,23 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuração dos pools de conexões do {@link HttpClientPool}. Os tempos são em milissegundos.
+ */
+@Getter
+@Setter
+@SuppressWarnings("WeakerAccess")
+public class ConfiguracaoPool {
+
+    private int maxConexoesPorHost = 20;
+    private int maxConexoesTotal = 200;
+    private long tempoMaximoOcioso = 60000;
+    private long intervaloVerificacaoOcioso = 10000;
+    private boolean verificarConexoesInativas = true;
+    private int timeoutConexao = 60000;
+    private int timeoutLeitura = 60000;
+    private long timeoutEsperaConexao = 30000;
+
+}
@@ -0,0 +1,30 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Fotografia do pool de conexões de um certificado no {@link HttpClientPool}.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+@SuppressWarnings("WeakerAccess")
+public class EstatisticasPool {
+
+    private final int conexoesEmUso;
+    private final int conexoesDisponiveis;
+    private final long emprestimos;
+    private final long esperasExpiradas;
+    private final long tempoEsperaTotalNanos;
+    private final long tempoEsperaMaximoNanos;
+
+    public int getConexoesTotal() {
+        return conexoesEmUso + conexoesDisponiveis;
+    }
+
+    public double getTempoEsperaMedioNanos() {
+        return emprestimos == 0 ? 0 : (double) tempoEsperaTotalNanos / emprestimos;
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+
+/**
+ * Resultado de uma recarga do {@link RecarregadorPfx}. Em caso de falha, {@link #getErro()} traz a causa e o
+ * certificado continua com a chave anterior.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+@SuppressWarnings("WeakerAccess")
+public class EventoRecarga {
+
+    private final Certificado certificado;
+    private final Path arquivo;
+    private final X509Certificate anterior;
+    private final X509Certificate novo;
+    private final Exception erro;
+
+    public boolean isSucesso() {
+        return erro == null;
+    }
+}
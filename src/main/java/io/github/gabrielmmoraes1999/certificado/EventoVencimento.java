@@ -0,0 +1,28 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Aviso emitido pelo {@link MonitorVencimento} quando um certificado atinge um dos limites configurados.
+ * O limite {@link Duration#ZERO} indica que o certificado venceu.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+@SuppressWarnings("WeakerAccess")
+public class EventoVencimento {
+
+    private final Certificado certificado;
+    private final Duration limite;
+    private final Instant vencimento;
+    private final long diasRestantes;
+
+    public boolean isVencido() {
+        return limite.isZero();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Converte um truststore JKS/PKCS12 em {@link PacoteAncoras}. É executado no build para gerar o
+ * {@code cacert.ancoras} a partir do {@code cacert} embarcado e pode ser usado na linha de comando:
+ * <pre>
+ * java -cp certificado.jar io.github.gabrielmmoraes1999.certificado.GeradorPacoteAncoras cacert cacert.ancoras [senha]
+ * </pre>
+ */
+@SuppressWarnings("WeakerAccess")
+public final class GeradorPacoteAncoras {
+
+    private static final String SENHA_PADRAO = "changeit";
+
+    private GeradorPacoteAncoras() {
+    }
+
+    public static void main(String[] args) throws CertificadoException {
+        if (args.length < 2) {
+            System.err.println("Uso: GeradorPacoteAncoras <truststore> <pacote> [senha]");
+            System.exit(2);
+        }
+        int quantidade = gerar(Paths.get(args[0]), args.length > 2 ? args[2].toCharArray() : SENHA_PADRAO.toCharArray(), Paths.get(args[1]));
+        System.out.println(quantidade + " âncoras gravadas em " + args[1]);
+    }
+
+    /**
+     * Lê o truststore e grava o pacote, substituindo o arquivo de destino só depois de gravado por completo.
+     *
+     * @return quantidade de âncoras gravadas
+     */
+    public static int gerar(Path truststore, char[] senha, Path destino) throws CertificadoException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            try (InputStream in = Files.newInputStream(truststore)) {
+                keyStore.load(in, senha);
+            }
+
+            Path diretorio = destino.toAbsolutePath().getParent();
+            Files.createDirectories(diretorio);
+            Path temporario = diretorio.resolve(destino.getFileName() + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temporario)) {
+                    PacoteAncoras.gravar(keyStore, out);
+                }
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporario);
+            }
+            return PacoteAncoras.abrir(destino).getQuantidade();
+        } catch (IOException | GeneralSecurityException e) {
+            throw new CertificadoException("Erro ao gerar pacote de âncoras: " + e.getMessage(), e);
+        }
+    }
+}
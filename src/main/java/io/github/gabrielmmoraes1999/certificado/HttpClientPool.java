@@ -0,0 +1,282 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import lombok.extern.java.Log;
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fábrica de {@link HttpClient} com um pool de conexões por certificado. Os clientes criados para o mesmo certificado
+ * compartilham um {@link MultiThreadedHttpConnectionManager}, de modo que as conexões TLS já abertas são reutilizadas
+ * entre requisições e threads.
+ * <p>
+ * O pool acompanha o protocolo do certificado no {@link ProtocoloCache}: quando o protocolo é descartado do cache (por
+ * ociosidade, tamanho ou remoção do certificado), o pool dele é encerrado, e os clientes criados para ele deixam de
+ * funcionar. Na recarga do PFX o protocolo é o mesmo e o pool é mantido.
+ */
+@SuppressWarnings("WeakerAccess")
+@Log
+public class HttpClientPool implements AutoCloseable {
+
+    private final ConfiguracaoPool configuracao;
+    private final ConcurrentMap<Protocol, GerenciadorConexoes> gerenciadores = new ConcurrentHashMap<>();
+    private final IdleConnectionTimeoutThread verificadorOcioso;
+    private final ProtocoloCache.RemocaoListener remocaoListener = this::encerra;
+    private ScheduledExecutorService agendador;
+
+    public HttpClientPool() {
+        this(new ConfiguracaoPool());
+    }
+
+    public HttpClientPool(ConfiguracaoPool configuracao) {
+        this.configuracao = Optional.ofNullable(configuracao).orElseThrow(() -> new IllegalArgumentException("Configuração não pode ser nula."));
+        this.verificadorOcioso = new IdleConnectionTimeoutThread();
+        this.verificadorOcioso.setName("certificado-pool-ocioso");
+        this.verificadorOcioso.setDaemon(true);
+        this.verificadorOcioso.setConnectionTimeout(configuracao.getTempoMaximoOcioso());
+        this.verificadorOcioso.setTimeoutInterval(configuracao.getIntervaloVerificacaoOcioso());
+        this.verificadorOcioso.start();
+        CertificadoService.getProtocoloCache().adicionarListener(remocaoListener);
+    }
+
+    public HttpClient getHttpsClient(Certificado certificado, String url) throws CertificadoException {
+        return getHttpsClient(url, CertificadoService.getProtocoloCertificado(certificado));
+    }
+
+    public HttpClient getHttpsClient(Certificado certificado, String url, Cacert cacert) throws CertificadoException {
+        return getHttpsClient(url, CertificadoService.getProtocoloCertificado(certificado, cacert));
+    }
+
+    /**
+     * Soma das estatísticas dos pools do certificado, com qualquer cacert.
+     */
+    public EstatisticasPool getEstatisticas(Certificado certificado) {
+        List<GerenciadorConexoes> doCertificado = new ArrayList<>();
+        for (Protocol protocol : CertificadoService.getProtocoloCache().consultar(certificado)) {
+            Optional.ofNullable(gerenciadores.get(protocol)).ifPresent(doCertificado::add);
+        }
+        return soma(doCertificado);
+    }
+
+    public EstatisticasPool getEstatisticas(Certificado certificado, Cacert cacert) throws CertificadoException {
+        return getEstatisticas(CertificadoService.getProtocoloCertificado(certificado, cacert));
+    }
+
+    /**
+     * Soma das estatísticas de todos os pools.
+     */
+    public EstatisticasPool getEstatisticas() {
+        return soma(gerenciadores.values());
+    }
+
+    private static EstatisticasPool soma(Collection<GerenciadorConexoes> pools) {
+        int emUso = 0;
+        int disponiveis = 0;
+        long emprestimos = 0;
+        long expiradas = 0;
+        long esperaTotal = 0;
+        long esperaMaxima = 0;
+        for (GerenciadorConexoes gerenciador : pools) {
+            EstatisticasPool estatisticas = gerenciador.getEstatisticas();
+            emUso += estatisticas.getConexoesEmUso();
+            disponiveis += estatisticas.getConexoesDisponiveis();
+            emprestimos += estatisticas.getEmprestimos();
+            expiradas += estatisticas.getEsperasExpiradas();
+            esperaTotal += estatisticas.getTempoEsperaTotalNanos();
+            esperaMaxima = Math.max(esperaMaxima, estatisticas.getTempoEsperaMaximoNanos());
+        }
+        return new EstatisticasPool(emUso, disponiveis, emprestimos, expiradas, esperaTotal, esperaMaxima);
+    }
+
+    /**
+     * Abre e faz o handshake de até {@code conexoesPorHost} conexões (limitado a
+     * {@link ConfiguracaoPool#getMaxConexoesPorHost()}) para cada endereço e as devolve abertas ao pool do certificado,
+     * para que as primeiras requisições não paguem DNS, TCP e o handshake TLS completo.
+     * <p>
+     * As conexões aquecidas seguem as regras do pool: são fechadas após {@link ConfiguracaoPool#getTempoMaximoOcioso()}
+     * sem uso; para mantê-las prontas, use {@link #agendarPreaquecimento(Certificado, Collection, int, long)}.
+     *
+     * @param urls URLs ({@code https://host[:porta]/...}) ou {@code host[:porta]}; a porta padrão é 443
+     * @return quantidade de conexões novas abertas
+     */
+    public int preaquecer(Certificado certificado, Collection<String> urls, int conexoesPorHost) throws CertificadoException {
+        return preaquecer(CertificadoService.getProtocoloCertificado(certificado), urls, conexoesPorHost);
+    }
+
+    public int preaquecer(Certificado certificado, Cacert cacert, Collection<String> urls, int conexoesPorHost) throws CertificadoException {
+        return preaquecer(CertificadoService.getProtocoloCertificado(certificado, cacert), urls, conexoesPorHost);
+    }
+
+    /**
+     * Repete o {@link #preaquecer(Certificado, Collection, int)} a cada intervalo, começando imediatamente, até o
+     * retorno ser cancelado ou o pool fechado.
+     */
+    public ScheduledFuture<?> agendarPreaquecimento(Certificado certificado, Collection<String> urls, int conexoesPorHost,
+                                                    long intervaloMillis) throws CertificadoException {
+        Protocol protocol = CertificadoService.getProtocoloCertificado(certificado);
+        List<String> enderecos = new ArrayList<>(urls);
+        return getAgendador().scheduleWithFixedDelay(() -> preaquecer(protocol, enderecos, conexoesPorHost),
+                0, intervaloMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fecha os pools do certificado informado, com qualquer cacert; os clientes já criados para ele deixam de funcionar.
+     * Nenhum protocolo é construído: sem pool aberto para o certificado, nada é feito.
+     */
+    public boolean fechar(Certificado certificado) {
+        boolean fechado = false;
+        for (Protocol protocol : CertificadoService.getProtocoloCache().consultar(certificado)) {
+            fechado |= encerra(protocol);
+        }
+        return fechado;
+    }
+
+    public int getQuantidadePools() {
+        return gerenciadores.size();
+    }
+
+    @Override
+    public void close() {
+        CertificadoService.getProtocoloCache().removerListener(remocaoListener);
+        if (agendador != null) {
+            agendador.shutdownNow();
+        }
+        verificadorOcioso.shutdown();
+        for (GerenciadorConexoes gerenciador : gerenciadores.values()) {
+            gerenciador.shutdown();
+        }
+        gerenciadores.clear();
+    }
+
+    private HttpClient getHttpsClient(String url, Protocol protocol) {
+        HttpClient httpclient = new HttpClient(gerenciadores.computeIfAbsent(protocol, p -> criaGerenciador()));
+        httpclient.getParams().setConnectionManagerTimeout(configuracao.getTimeoutEsperaConexao());
+        httpclient.getHostConfiguration().setHost(url, 443, protocol);
+        return httpclient;
+    }
+
+    private int preaquecer(Protocol protocol, Collection<String> urls, int conexoesPorHost) {
+        GerenciadorConexoes gerenciador = gerenciadores.computeIfAbsent(protocol, p -> criaGerenciador());
+        int quantidade = Math.min(conexoesPorHost, configuracao.getMaxConexoesPorHost());
+        int abertas = 0;
+        for (String url : urls) {
+            InetSocketAddress endereco = SocketFactoryDinamico.endereco(url);
+            HostConfiguration hostConfiguration = new HostConfiguration();
+            hostConfiguration.setHost(endereco.getHostString(), endereco.getPort(), protocol);
+
+            // Todas as conexões são emprestadas antes de devolvidas; do contrário o pool entregaria sempre a mesma.
+            List<HttpConnection> conexoes = new ArrayList<>(quantidade);
+            try {
+                for (int i = 0; i < quantidade; i++) {
+                    HttpConnection conexao = gerenciador.getConnectionWithTimeout(hostConfiguration, configuracao.getTimeoutEsperaConexao());
+                    conexoes.add(conexao);
+                    if (!conexao.isOpen()) {
+                        conexao.open();
+                        abertas++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warning("Falha ao preaquecer " + url + ": " + e.getMessage());
+            } finally {
+                conexoes.forEach(HttpConnection::releaseConnection);
+            }
+        }
+        return abertas;
+    }
+
+    private synchronized ScheduledExecutorService getAgendador() {
+        if (agendador == null) {
+            agendador = Executors.newSingleThreadScheduledExecutor(ThreadUtil.daemon("certificado-pool-preaquecimento"));
+        }
+        return agendador;
+    }
+
+    private boolean encerra(Protocol protocol) {
+        GerenciadorConexoes gerenciador = gerenciadores.remove(protocol);
+        if (gerenciador == null) {
+            return false;
+        }
+        verificadorOcioso.removeConnectionManager(gerenciador);
+        gerenciador.shutdown();
+        return true;
+    }
+
+    private EstatisticasPool getEstatisticas(Protocol protocol) {
+        GerenciadorConexoes gerenciador = gerenciadores.get(protocol);
+        return gerenciador == null ? new EstatisticasPool(0, 0, 0, 0, 0, 0) : gerenciador.getEstatisticas();
+    }
+
+    private GerenciadorConexoes criaGerenciador() {
+        GerenciadorConexoes gerenciador = new GerenciadorConexoes();
+        HttpConnectionManagerParams params = gerenciador.getParams();
+        params.setDefaultMaxConnectionsPerHost(configuracao.getMaxConexoesPorHost());
+        params.setMaxTotalConnections(configuracao.getMaxConexoesTotal());
+        params.setStaleCheckingEnabled(configuracao.isVerificarConexoesInativas());
+        params.setConnectionTimeout(configuracao.getTimeoutConexao());
+        params.setSoTimeout(configuracao.getTimeoutLeitura());
+        verificadorOcioso.addConnectionManager(gerenciador);
+        return gerenciador;
+    }
+
+    private static class GerenciadorConexoes extends MultiThreadedHttpConnectionManager {
+
+        private final AtomicInteger emUso = new AtomicInteger();
+        private final LongAdder emprestimos = new LongAdder();
+        private final LongAdder esperasExpiradas = new LongAdder();
+        private final LongAdder tempoEsperaTotal = new LongAdder();
+        private final AtomicLong tempoEsperaMaximo = new AtomicLong();
+
+        @Override
+        public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout) throws ConnectionPoolTimeoutException {
+            long inicio = System.nanoTime();
+            try {
+                HttpConnection conexao = super.getConnectionWithTimeout(hostConfiguration, timeout);
+                long espera = System.nanoTime() - inicio;
+                emUso.incrementAndGet();
+                emprestimos.increment();
+                tempoEsperaTotal.add(espera);
+                tempoEsperaMaximo.accumulateAndGet(espera, Math::max);
+                return conexao;
+            } catch (ConnectionPoolTimeoutException e) {
+                esperasExpiradas.increment();
+                throw e;
+            }
+        }
+
+        @Override
+        public void releaseConnection(HttpConnection conn) {
+            emUso.updateAndGet(atual -> Math.max(0, atual - 1));
+            super.releaseConnection(conn);
+        }
+
+        private EstatisticasPool getEstatisticas() {
+            // getConnectionsInUse() do commons-httpclient 3.1 retorna o total do pool, por isso o controle é próprio.
+            int emprestadas = emUso.get();
+            return new EstatisticasPool(emprestadas, Math.max(0, getConnectionsInPool() - emprestadas), emprestimos.sum(),
+                    esperasExpiradas.sum(), tempoEsperaTotal.sum(), tempoEsperaMaximo.get());
+        }
+    }
+}
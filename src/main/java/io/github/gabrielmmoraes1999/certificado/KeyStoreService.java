@@ -14,13 +14,8 @@ class KeyStoreService {
     private KeyStoreService() {}
 
     static KeyStore getKeyStoreA3(Certificado certificado) throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
-        KeyStore keyStore;
-        Security.addProvider(certificado.getProvider());
-
-        // Especifica o provedor ao carregar o KeyStore
-        keyStore = KeyStore.getInstance("PKCS11", certificado.getProvider());
-        keyStore.load(null, certificado.getSenha().toCharArray());
-        return keyStore;
+        // O login no token é feito uma vez por provider e reaproveitado enquanto o token estiver presente.
+        return SessaoA3Service.getKeyStore(certificado);
     }
 
     static KeyStore getKeyStoreRepositorioMac() throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
@@ -46,11 +41,15 @@ class KeyStoreService {
     }
 
     static KeyStore getKeyStoreArquivo(Certificado certificado) throws CertificadoException, KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
+        return getKeyStoreArquivoByte(lerArquivo(certificado), certificado);
+    }
+
+    static byte[] lerArquivo(Certificado certificado) throws CertificadoException, IOException {
         File file = new File(certificado.getArquivo());
         if (!file.exists()) {
             throw new CertificadoException("Certificado Digital não Encontrado");
         }
-        return getKeyStoreArquivoByte(Files.readAllBytes(file.toPath()), certificado);
+        return Files.readAllBytes(file.toPath());
     }
 
 }
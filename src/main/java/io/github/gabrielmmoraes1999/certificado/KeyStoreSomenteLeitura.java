@@ -0,0 +1,183 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Visão somente leitura de um KeyStore compartilhado, como o do {@link CertificadoCache}: as consultas vão para o
+ * KeyStore original e qualquer alteração é recusada com {@link KeyStoreException}, para que quem recebe o KeyStore
+ * em cache não altere o de outros chamadores.
+ * <p>
+ * Com um lock, como o da sessão de um token A3 no {@link SessaoA3Service}, cada consulta é feita com o lock adquirido.
+ */
+final class KeyStoreSomenteLeitura extends KeyStoreSpi {
+
+    private static final String SOMENTE_LEITURA = "KeyStore em cache é somente leitura; carregue o PFX novamente para alterá-lo.";
+
+    private final KeyStore keyStore;
+    private final Lock lock;
+
+    private KeyStoreSomenteLeitura(KeyStore keyStore, Lock lock) {
+        this.keyStore = keyStore;
+        this.lock = lock;
+    }
+
+    static KeyStore de(KeyStore keyStore) {
+        return de(keyStore, null);
+    }
+
+    static KeyStore de(KeyStore keyStore, Lock lock) {
+        KeyStore visao = new KeyStore(new KeyStoreSomenteLeitura(keyStore, lock), keyStore.getProvider(), keyStore.getType()) {
+        };
+        try {
+            visao.load(null, null);
+        } catch (IOException | NoSuchAlgorithmException | CertificateException e) {
+            throw new IllegalStateException(e);
+        }
+        return visao;
+    }
+
+    @Override
+    public Key engineGetKey(String alias, char[] password) throws NoSuchAlgorithmException, UnrecoverableKeyException {
+        bloqueia();
+        try {
+            return keyStore.getKey(alias, password);
+        } catch (KeyStoreException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            libera();
+        }
+    }
+
+    @Override
+    public Certificate[] engineGetCertificateChain(String alias) {
+        return consulta(() -> {
+            Certificate[] cadeia = keyStore.getCertificateChain(alias);
+            return cadeia == null ? null : cadeia.clone();
+        });
+    }
+
+    @Override
+    public Certificate engineGetCertificate(String alias) {
+        return consulta(() -> keyStore.getCertificate(alias));
+    }
+
+    @Override
+    public Date engineGetCreationDate(String alias) {
+        return consulta(() -> {
+            Date data = keyStore.getCreationDate(alias);
+            return data == null ? null : new Date(data.getTime());
+        });
+    }
+
+    @Override
+    public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain) throws KeyStoreException {
+        throw new KeyStoreException(SOMENTE_LEITURA);
+    }
+
+    @Override
+    public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) throws KeyStoreException {
+        throw new KeyStoreException(SOMENTE_LEITURA);
+    }
+
+    @Override
+    public void engineSetCertificateEntry(String alias, Certificate cert) throws KeyStoreException {
+        throw new KeyStoreException(SOMENTE_LEITURA);
+    }
+
+    @Override
+    public void engineDeleteEntry(String alias) throws KeyStoreException {
+        throw new KeyStoreException(SOMENTE_LEITURA);
+    }
+
+    @Override
+    public Enumeration<String> engineAliases() {
+        // A enumeração é copiada para não percorrer o KeyStore fora do lock.
+        return consulta(() -> Collections.enumeration(Collections.list(keyStore.aliases())));
+    }
+
+    @Override
+    public boolean engineContainsAlias(String alias) {
+        return consulta(() -> keyStore.containsAlias(alias));
+    }
+
+    @Override
+    public int engineSize() {
+        return consulta(() -> keyStore.size());
+    }
+
+    @Override
+    public boolean engineIsKeyEntry(String alias) {
+        return consulta(() -> keyStore.isKeyEntry(alias));
+    }
+
+    @Override
+    public boolean engineIsCertificateEntry(String alias) {
+        return consulta(() -> keyStore.isCertificateEntry(alias));
+    }
+
+    @Override
+    public String engineGetCertificateAlias(Certificate cert) {
+        return consulta(() -> keyStore.getCertificateAlias(cert));
+    }
+
+    @Override
+    public void engineStore(OutputStream stream, char[] password) throws IOException, NoSuchAlgorithmException, CertificateException {
+        bloqueia();
+        try {
+            keyStore.store(stream, password);
+        } catch (KeyStoreException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            libera();
+        }
+    }
+
+    @Override
+    public void engineLoad(InputStream stream, char[] password) throws IOException {
+        if (stream != null) {
+            throw new IOException(SOMENTE_LEITURA);
+        }
+    }
+
+    private <T> T consulta(Consulta<T> consulta) {
+        bloqueia();
+        try {
+            return consulta.executar();
+        } catch (KeyStoreException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            libera();
+        }
+    }
+
+    private void bloqueia() {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    private void libera() {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Consulta<T> {
+        T executar() throws KeyStoreException;
+    }
+}
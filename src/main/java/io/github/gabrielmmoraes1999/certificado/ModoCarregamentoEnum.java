@@ -0,0 +1,18 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+/**
+ * Como os dados derivados do X509Certificate (inscrição, datas, emissor, titular...) são preenchidos ao carregar um
+ * certificado.
+ */
+public enum ModoCarregamentoEnum {
+
+    /**
+     * Todos os dados são calculados no carregamento.
+     */
+    COMPLETO,
+    /**
+     * O certificado guarda apenas o X509Certificate e calcula os dados no primeiro acesso; dias restantes e validade
+     * passam a ser calculados a cada consulta. Útil para listar repositórios grandes quando só alguns dados são usados.
+     */
+    LAZY;
+}
@@ -0,0 +1,234 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import lombok.extern.java.Log;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Acompanha o vencimento dos certificados carregados sem precisar percorrer todos eles a cada verificação.
+ * <p>
+ * Os certificados ficam ordenados pelo vencimento (consultas do tipo "o que vence antes de X" custam O(log n) mais o
+ * tamanho da resposta) e os avisos pendentes ficam em uma fila de prioridade pelo instante do próximo limite, de modo
+ * que {@link #verificar()} só examina os avisos que já devem ser emitidos. O relógio é injetável para permitir testes
+ * determinísticos.
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public class MonitorVencimento implements AutoCloseable {
+
+    public static final List<Duration> LIMITES_PADRAO = Arrays.asList(
+            Duration.ofDays(30), Duration.ofDays(7), Duration.ofDays(1), Duration.ZERO);
+
+    private final Clock relogio;
+    private final Duration[] limites;
+    private final List<VencimentoListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final TreeMap<Registro, Certificado> porVencimento = new TreeMap<>();
+    private final PriorityQueue<Registro> avisos = new PriorityQueue<>(Comparator.comparing((Registro r) -> r.proximoAviso).thenComparingLong(r -> r.sequencia));
+    private final Map<Certificado, Registro> registros = new IdentityHashMap<>();
+    private long sequencia;
+
+    private ScheduledExecutorService agendador;
+    private ScheduledFuture<?> agendamento;
+
+    public MonitorVencimento() {
+        this(Clock.systemDefaultZone(), LIMITES_PADRAO);
+    }
+
+    /**
+     * @param relogio relógio usado para calcular os avisos e os dias restantes
+     * @param limites antecedências em que os avisos são emitidos; {@link Duration#ZERO} avisa no vencimento
+     */
+    public MonitorVencimento(Clock relogio, List<Duration> limites) {
+        this.relogio = Optional.ofNullable(relogio).orElseThrow(() -> new IllegalArgumentException("Relógio não pode ser nulo."));
+        this.limites = Optional.ofNullable(limites).orElseThrow(() -> new IllegalArgumentException("Limites não podem ser nulos."))
+                .stream().distinct().sorted(Comparator.reverseOrder()).toArray(Duration[]::new);
+        if (this.limites.length == 0 || this.limites[this.limites.length - 1].isNegative()) {
+            throw new IllegalArgumentException("Limites devem ser informados e não podem ser negativos.");
+        }
+    }
+
+    public void adicionarListener(VencimentoListener listener) {
+        listeners.add(Optional.ofNullable(listener).orElseThrow(() -> new IllegalArgumentException("Listener não pode ser nulo.")));
+    }
+
+    public void removerListener(VencimentoListener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized void adicionar(Certificado certificado) {
+        Instant vencimento = vencimento(Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException("Certificado não pode ser nulo.")));
+        remover(certificado);
+
+        Registro registro = new Registro(certificado, vencimento, sequencia++);
+        Instant agora = relogio.instant();
+
+        // Limites que já passaram são resumidos no mais próximo do vencimento, emitido na próxima verificação.
+        int limite = ultimoLimiteAtingido(vencimento, 0, agora);
+        registro.agenda(limite, vencimento.minus(limites[limite]));
+
+        registros.put(certificado, registro);
+        porVencimento.put(registro, certificado);
+        avisos.add(registro);
+    }
+
+    public synchronized boolean remover(Certificado certificado) {
+        Registro registro = registros.remove(certificado);
+        if (registro == null) {
+            return false;
+        }
+        porVencimento.remove(registro);
+        avisos.remove(registro);
+        return true;
+    }
+
+    public synchronized int getTamanho() {
+        return registros.size();
+    }
+
+    /**
+     * Certificados que vencem antes do instante informado, do vencimento mais próximo para o mais distante.
+     */
+    public synchronized List<Certificado> vencendoAntesDe(Instant instante) {
+        return new ArrayList<>(porVencimento.headMap(new Registro(null, instante, -1), false).values());
+    }
+
+    public List<Certificado> vencendoEm(Duration periodo) {
+        return vencendoAntesDe(relogio.instant().plus(periodo));
+    }
+
+    /**
+     * Emite os avisos cujo instante já chegou e retorna quantos foram emitidos.
+     */
+    public int verificar() {
+        List<EventoVencimento> eventos = new ArrayList<>();
+        synchronized (this) {
+            Instant agora = relogio.instant();
+            while (!avisos.isEmpty() && !avisos.peek().proximoAviso.isAfter(agora)) {
+                Registro registro = avisos.poll();
+                int limite = ultimoLimiteAtingido(registro.vencimento, registro.limite, agora);
+                atualizaCertificado(registro.certificado);
+                eventos.add(new EventoVencimento(registro.certificado, limites[limite], registro.vencimento,
+                        ChronoUnit.DAYS.between(LocalDate.now(relogio), LocalDate.from(registro.vencimento.atZone(relogio.getZone())))));
+
+                if (limite + 1 < limites.length) {
+                    registro.agenda(limite + 1, registro.vencimento.minus(limites[limite + 1]));
+                    avisos.add(registro);
+                }
+            }
+        }
+
+        for (EventoVencimento evento : eventos) {
+            for (VencimentoListener listener : listeners) {
+                try {
+                    listener.vencimento(evento);
+                } catch (RuntimeException e) {
+                    log.log(Level.SEVERE, "Erro no listener de vencimento de certificado", e);
+                }
+            }
+        }
+        return eventos.size();
+    }
+
+    /**
+     * Executa {@link #verificar()} periodicamente em uma thread própria.
+     */
+    public synchronized void iniciar(Duration intervalo) {
+        if (agendador == null) {
+            agendador = Executors.newSingleThreadScheduledExecutor(ThreadUtil.daemon("certificado-monitor-vencimento"));
+        }
+        if (agendamento != null) {
+            agendamento.cancel(false);
+        }
+        agendamento = agendador.scheduleWithFixedDelay(this::verificarAgendado, 0, intervalo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+            agendamento = null;
+        }
+    }
+
+    private void verificarAgendado() {
+        try {
+            verificar();
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Erro ao verificar vencimento de certificados", e);
+        }
+    }
+
+    private int ultimoLimiteAtingido(Instant vencimento, int limite, Instant agora) {
+        while (limite + 1 < limites.length && !vencimento.minus(limites[limite + 1]).isAfter(agora)) {
+            limite++;
+        }
+        return limite;
+    }
+
+    private void atualizaCertificado(Certificado certificado) {
+        if (certificado.getVencimento() != null) {
+            LocalDate hoje = LocalDate.now(relogio);
+            certificado.setDiasRestantes(hoje.until(certificado.getVencimento(), ChronoUnit.DAYS));
+            certificado.setValido(hoje.isBefore(certificado.getVencimento()));
+        }
+    }
+
+    private Instant vencimento(Certificado certificado) {
+        if (certificado.getDataHoraVencimento() != null) {
+            return certificado.getDataHoraVencimento().atZone(ZoneId.systemDefault()).toInstant();
+        }
+        if (certificado.getCertificate() != null) {
+            return certificado.getCertificate().getNotAfter().toInstant();
+        }
+        throw new IllegalArgumentException("Certificado sem data de vencimento.");
+    }
+
+    private static final class Registro implements Comparable<Registro> {
+
+        private final Certificado certificado;
+        private final Instant vencimento;
+        private final long sequencia;
+        private int limite;
+        private Instant proximoAviso;
+
+        private Registro(Certificado certificado, Instant vencimento, long sequencia) {
+            this.certificado = certificado;
+            this.vencimento = vencimento;
+            this.sequencia = sequencia;
+        }
+
+        private void agenda(int limite, Instant proximoAviso) {
+            this.limite = limite;
+            this.proximoAviso = proximoAviso;
+        }
+
+        @Override
+        public int compareTo(Registro outro) {
+            int comparacao = vencimento.compareTo(outro.vencimento);
+            return comparacao != 0 ? comparacao : Long.compare(sequencia, outro.sequencia);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.DerReader;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pacote de âncoras de confiança pré-indexado, alternativo ao cacert JKS.
+ * <p>
+ * O arquivo guarda os certificados em DER junto com índices por subject e por identificador de chave (SKI), ordenados
+ * por hash. Aberto com {@link #abrir(Path)}, é mapeado em memória: a abertura só valida o cabeçalho e cada certificado
+ * é decodificado na primeira consulta que o encontra, de modo que uma JVM que fala com poucos servidores decodifica
+ * poucas âncoras. {@link #gravar} gera o pacote a partir de um KeyStore e {@link #toKeyStore()} faz o caminho inverso,
+ * com os mesmos aliases.
+ * <p>
+ * Formato (inteiros de 32 bits big-endian): cabeçalho {@code magico, versao, quantidade, quantidadeSki}; uma entrada
+ * por certificado com posição e tamanho do DER, do subject, do SKI e do alias; índice por subject e índice por SKI, cada
+ * um com pares {@code hash, entrada}; e a área de dados.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class PacoteAncoras {
+
+    static final int MAGICO = 0x414E4331;
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int TAMANHO_ENTRADA = 32;
+    private static final int TAMANHO_INDICE = 8;
+    private static final String OID_SKI = "2.5.29.14";
+    private static final String OID_AKI = "2.5.29.35";
+
+    private final ByteBuffer buffer;
+    private final int quantidade;
+    private final int quantidadeSki;
+    private final int inicioIndiceSubject;
+    private final int inicioIndiceSki;
+    private final AtomicReferenceArray<X509Certificate> certificados;
+    private final LongAdder decodificados = new LongAdder();
+
+    private PacoteAncoras(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < TAMANHO_CABECALHO || buffer.getInt(0) != MAGICO) {
+            throw new IOException("Arquivo não é um pacote de âncoras.");
+        }
+        if (buffer.getInt(4) != VERSAO) {
+            throw new IOException("Versão do pacote de âncoras não suportada: " + buffer.getInt(4));
+        }
+        this.quantidade = buffer.getInt(8);
+        this.quantidadeSki = buffer.getInt(12);
+        this.inicioIndiceSubject = TAMANHO_CABECALHO + quantidade * TAMANHO_ENTRADA;
+        this.inicioIndiceSki = inicioIndiceSubject + quantidade * TAMANHO_INDICE;
+        if (quantidade < 0 || quantidadeSki < 0 || quantidadeSki > quantidade
+                || (long) inicioIndiceSki + (long) quantidadeSki * TAMANHO_INDICE > buffer.capacity()) {
+            throw new IOException("Pacote de âncoras truncado.");
+        }
+        this.certificados = new AtomicReferenceArray<>(quantidade);
+    }
+
+    /**
+     * Mapeia o arquivo em memória. O conteúdo não é copiado para o heap.
+     */
+    public static PacoteAncoras abrir(Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return new PacoteAncoras(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }
+    }
+
+    public static PacoteAncoras ler(byte[] conteudo) throws IOException {
+        return new PacoteAncoras(ByteBuffer.wrap(conteudo).asReadOnlyBuffer());
+    }
+
+    public static boolean isPacote(byte[] conteudo) {
+        return conteudo != null && conteudo.length >= TAMANHO_CABECALHO && ByteBuffer.wrap(conteudo).getInt(0) == MAGICO;
+    }
+
+    /**
+     * Grava os certificados confiáveis do KeyStore no formato do pacote, em ordem de alias.
+     */
+    public static void gravar(KeyStore keyStore, OutputStream saida) throws KeyStoreException, CertificateException, IOException {
+        List<String> aliases = Collections.list(keyStore.aliases());
+        Collections.sort(aliases);
+
+        List<byte[][]> campos = new ArrayList<>();
+        for (String alias : aliases) {
+            Certificate certificado = keyStore.getCertificate(alias);
+            if (certificado instanceof X509Certificate) {
+                X509Certificate x509 = (X509Certificate) certificado;
+                byte[] ski = identificadorChave(x509.getExtensionValue(OID_SKI), false);
+                campos.add(new byte[][]{x509.getEncoded(), ski == null ? new byte[0] : ski, alias.getBytes(StandardCharsets.UTF_8)});
+            }
+        }
+
+        int quantidade = campos.size();
+        List<int[]> indiceSubject = new ArrayList<>();
+        List<int[]> indiceSki = new ArrayList<>();
+        int[][] subjects = new int[quantidade][];
+        for (int i = 0; i < quantidade; i++) {
+            byte[] der = campos.get(i)[0];
+            subjects[i] = posicaoSubject(der);
+            indiceSubject.add(new int[]{hash(der, subjects[i][0], subjects[i][1]), i});
+            if (campos.get(i)[1].length > 0) {
+                indiceSki.add(new int[]{hash(campos.get(i)[1], 0, campos.get(i)[1].length), i});
+            }
+        }
+        Comparator<int[]> ordem = Comparator.<int[]>comparingInt(par -> par[0]).thenComparingInt(par -> par[1]);
+        indiceSubject.sort(ordem);
+        indiceSki.sort(ordem);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGICO);
+        out.writeInt(VERSAO);
+        out.writeInt(quantidade);
+        out.writeInt(indiceSki.size());
+        int posicao = TAMANHO_CABECALHO + quantidade * (TAMANHO_ENTRADA + TAMANHO_INDICE) + indiceSki.size() * TAMANHO_INDICE;
+        for (int i = 0; i < quantidade; i++) {
+            // O subject não é copiado: a entrada aponta para ele dentro do DER do certificado.
+            byte[][] entrada = campos.get(i);
+            out.writeInt(posicao);
+            out.writeInt(entrada[0].length);
+            out.writeInt(posicao + subjects[i][0]);
+            out.writeInt(subjects[i][1] - subjects[i][0]);
+            posicao += entrada[0].length;
+            for (int campo = 1; campo < entrada.length; campo++) {
+                out.writeInt(posicao);
+                out.writeInt(entrada[campo].length);
+                posicao += entrada[campo].length;
+            }
+        }
+        for (int[] par : indiceSubject) {
+            out.writeInt(par[0]);
+            out.writeInt(par[1]);
+        }
+        for (int[] par : indiceSki) {
+            out.writeInt(par[0]);
+            out.writeInt(par[1]);
+        }
+        for (byte[][] entrada : campos) {
+            for (byte[] campo : entrada) {
+                out.write(campo);
+            }
+        }
+        out.flush();
+        bytes.writeTo(saida);
+    }
+
+    /**
+     * SHA-256 do conteúdo do pacote, calculado direto do buffer mapeado.
+     */
+    byte[] sha256() {
+        MessageDigest digest = DigestUtil.sha256();
+        ByteBuffer leitura = buffer.duplicate();
+        leitura.clear();
+        digest.update(leitura);
+        return digest.digest();
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Quantidade de certificados do pacote já decodificados.
+     */
+    public long getDecodificados() {
+        return decodificados.sum();
+    }
+
+    public String getAlias(int indice) {
+        return new String(campo(indice, 3), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Certificado da posição informada, decodificado na primeira chamada.
+     */
+    public X509Certificate getCertificado(int indice) {
+        X509Certificate certificado = certificados.get(indice);
+        if (certificado == null) {
+            try {
+                certificado = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(campo(indice, 0)));
+            } catch (CertificateException e) {
+                throw new IllegalStateException("Certificado inválido no pacote de âncoras: " + getAlias(indice), e);
+            }
+            if (certificados.compareAndSet(indice, null, certificado)) {
+                decodificados.increment();
+            } else {
+                certificado = certificados.get(indice);
+            }
+        }
+        return certificado;
+    }
+
+    public List<X509Certificate> getPorSubject(X500Principal subject) {
+        return busca(inicioIndiceSubject, quantidade, 1, subject.getEncoded());
+    }
+
+    public List<X509Certificate> getPorIdentificadorChave(byte[] identificador) {
+        return busca(inicioIndiceSki, quantidadeSki, 2, identificador);
+    }
+
+    public boolean contem(X509Certificate certificado) {
+        return getPorSubject(certificado.getSubjectX500Principal()).contains(certificado);
+    }
+
+    /**
+     * Âncora que emitiu o certificado: entre as âncoras com o subject igual ao emissor, a que tem o SKI igual ao AKI do
+     * certificado, ou a primeira delas quando o certificado não informa o AKI.
+     *
+     * @return a âncora, ou {@code null} se nenhuma tem o subject do emissor
+     */
+    public X509Certificate getEmissor(X509Certificate certificado) {
+        List<X509Certificate> candidatos = getPorSubject(certificado.getIssuerX500Principal());
+        if (candidatos.size() <= 1) {
+            return candidatos.isEmpty() ? null : candidatos.get(0);
+        }
+        byte[] aki = identificadorChave(certificado.getExtensionValue(OID_AKI), true);
+        if (aki != null) {
+            for (X509Certificate candidato : candidatos) {
+                if (Arrays.equals(aki, identificadorChave(candidato.getExtensionValue(OID_SKI), false))) {
+                    return candidato;
+                }
+            }
+        }
+        return candidatos.get(0);
+    }
+
+    /**
+     * Decodifica todas as âncoras.
+     */
+    public X509Certificate[] getTodos() {
+        X509Certificate[] todos = new X509Certificate[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            todos[i] = getCertificado(i);
+        }
+        return todos;
+    }
+
+    /**
+     * KeyStore equivalente ao JKS de origem, com os mesmos aliases. Decodifica todas as âncoras.
+     */
+    public KeyStore toKeyStore() throws KeyStoreException {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try {
+            keyStore.load(null, null);
+        } catch (IOException | NoSuchAlgorithmException | CertificateException e) {
+            throw new KeyStoreException(e.getMessage(), e);
+        }
+        for (int i = 0; i < quantidade; i++) {
+            keyStore.setCertificateEntry(getAlias(i), getCertificado(i));
+        }
+        return keyStore;
+    }
+
+    private List<X509Certificate> busca(int inicioIndice, int tamanhoIndice, int campo, byte[] valor) {
+        int hash = hash(valor, 0, valor.length);
+        int baixo = 0;
+        int alto = tamanhoIndice;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (buffer.getInt(inicioIndice + meio * TAMANHO_INDICE) < hash) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+
+        List<X509Certificate> encontrados = Collections.emptyList();
+        for (int i = baixo; i < tamanhoIndice && buffer.getInt(inicioIndice + i * TAMANHO_INDICE) == hash; i++) {
+            int entrada = buffer.getInt(inicioIndice + i * TAMANHO_INDICE + 4);
+            if (campoIgual(entrada, campo, valor)) {
+                if (encontrados.isEmpty()) {
+                    encontrados = new ArrayList<>(1);
+                }
+                encontrados.add(getCertificado(entrada));
+            }
+        }
+        return encontrados;
+    }
+
+    private boolean campoIgual(int entrada, int campo, byte[] valor) {
+        int posicao = TAMANHO_CABECALHO + entrada * TAMANHO_ENTRADA + campo * 8;
+        int inicio = buffer.getInt(posicao);
+        if (buffer.getInt(posicao + 4) != valor.length) {
+            return false;
+        }
+        for (int i = 0; i < valor.length; i++) {
+            if (buffer.get(inicio + i) != valor[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] campo(int entrada, int campo) {
+        if (entrada < 0 || entrada >= quantidade) {
+            throw new IndexOutOfBoundsException("Entrada " + entrada + " de " + quantidade);
+        }
+        int posicao = TAMANHO_CABECALHO + entrada * TAMANHO_ENTRADA + campo * 8;
+        byte[] valor = new byte[buffer.getInt(posicao + 4)];
+        // duplicate() dá uma posição própria a esta leitura; o buffer é compartilhado entre threads.
+        ByteBuffer leitura = buffer.duplicate();
+        leitura.position(buffer.getInt(posicao));
+        leitura.get(valor);
+        return valor;
+    }
+
+    /**
+     * Identificador de chave de uma extensão SKI ({@code OCTET STRING}) ou AKI ({@code SEQUENCE { [0] keyIdentifier }}),
+     * ou {@code null} quando a extensão não existe ou não traz o identificador.
+     */
+    static byte[] identificadorChave(byte[] extensao, boolean autoridade) {
+        if (extensao == null) {
+            return null;
+        }
+        try {
+            DerReader der = new DerReader(extensao);
+            der.proximo(0x04).entrar();
+            if (autoridade) {
+                der.proximo(0x30).entrar();
+                if (!der.proximo() || der.getTag() != 0x80) {
+                    return null;
+                }
+            } else {
+                der.proximo(0x04);
+            }
+            return Arrays.copyOfRange(der.getDados(), der.getInicio(), der.getFim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Início e fim do subject dentro do DER do certificado:
+     * {@code Certificate { TBSCertificate { [0] version?, serial, signature, issuer, validity, subject, ... } }}.
+     */
+    private static int[] posicaoSubject(byte[] certificado) {
+        DerReader der = new DerReader(certificado);
+        der.proximo(0x30).entrar().proximo(0x30).entrar();
+        der.proximo();
+        if (der.getTag() == 0xA0) {
+            der.proximo();
+        }
+        der.proximo(0x30).proximo(0x30).proximo(0x30).proximo(0x30);
+        return new int[]{der.getInicioElemento(), der.getFim()};
+    }
+
+    private static int hash(byte[] valor, int inicio, int fim) {
+        int h = 1;
+        for (int i = inicio; i < fim; i++) {
+            h = 31 * h + valor[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,373 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.apache.commons.httpclient.protocol.Protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.cert.CertificateEncodingException;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * Registro de {@link Protocol} (e do {@link javax.net.ssl.SSLContext} do seu {@link SocketFactoryDinamico}) por certificado.
+ * O protocolo é construído uma única vez para cada combinação de certificado, senha, sslProtocol, cacert, configuração
+ * do cache de sessões TLS, timeouts e modo de chave pré-carregada e depois reutilizado por todas as threads; uma mudança em
+ * qualquer um desses dados gera uma nova entrada.
+ * <p>
+ * As entradas que ficam sem uso pelo {@link #getTempoOcioso() tempo ocioso} (por exemplo, as deixadas para trás quando
+ * um setter do {@link Certificado} muda a chave) são descartadas, e acima do {@link #getTamanhoMaximo() tamanho máximo}
+ * saem as usadas há mais tempo. Um protocolo descartado continua funcionando para quem ainda o referencia; o
+ * {@link HttpClientPool} é avisado e encerra o pool de conexões dele.
+ * <p>
+ * As leituras não bloqueiam: o registro é um mapa imutável publicado em um campo volátil, e cada alteração publica uma
+ * cópia. Assim a troca de chave de uma recarga do PFX é vista de uma vez por todas as threads.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ProtocoloCache {
+
+    public static final int TAMANHO_MAXIMO_PADRAO = 1024;
+    public static final Duration TEMPO_OCIOSO_PADRAO = Duration.ofMinutes(30);
+
+    private final int tamanhoMaximo;
+    private final long tempoOciosoNanos;
+    private volatile Map<Chave, Entrada> protocolos = Collections.emptyMap();
+    private final LongAdder construcoes = new LongAdder();
+    private final LongAdder reutilizacoes = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+    private final List<RemocaoListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ProtocoloCache() {
+        this(TAMANHO_MAXIMO_PADRAO, TEMPO_OCIOSO_PADRAO);
+    }
+
+    public ProtocoloCache(int tamanhoMaximo, Duration tempoOcioso) {
+        if (tamanhoMaximo <= 0) {
+            throw new IllegalArgumentException("Tamanho máximo do cache deve ser maior que zero.");
+        }
+        if (tempoOcioso == null || tempoOcioso.isNegative() || tempoOcioso.isZero()) {
+            throw new IllegalArgumentException("Tempo ocioso do cache deve ser positivo.");
+        }
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.tempoOciosoNanos = tempoOcioso.toNanos();
+    }
+
+    @FunctionalInterface
+    interface Construtor {
+        Protocol construir() throws CertificadoException;
+    }
+
+    @FunctionalInterface
+    interface RemocaoListener {
+        void removido(Protocol protocolo);
+    }
+
+    void adicionarListener(RemocaoListener listener) {
+        listeners.add(listener);
+    }
+
+    void removerListener(RemocaoListener listener) {
+        listeners.remove(listener);
+    }
+
+    Protocol obter(Certificado certificado, String cacert, Construtor construtor) throws CertificadoException {
+        Chave chave = chave(certificado, cacert);
+        if (chave == null) {
+            construcoes.increment();
+            return construtor.construir();
+        }
+
+        long agora = System.nanoTime();
+        Entrada entrada = protocolos.get(chave);
+        // A chave pode ter sido calculada antes de uma recarga do PFX que terminou nesse meio tempo, removendo as chaves
+        // anteriores: com os dados já atualizados do certificado, o protocolo é encontrado sob a chave nova.
+        Chave atual;
+        while (entrada == null && (atual = chave(certificado, cacert)) != null && !atual.equals(chave)) {
+            chave = atual;
+            entrada = protocolos.get(chave);
+        }
+        if (entrada != null && entrada.isOciosa(agora, tempoOciosoNanos)) {
+            Chave ociosa = chave;
+            Entrada ultima = entrada;
+            if (remove((c, e) -> c.equals(ociosa) && e == ultima) > 0) {
+                entrada = null;
+            }
+        }
+        if (entrada != null) {
+            reutilizacoes.increment();
+            entrada.ultimoUso = agora;
+            return entrada.protocolo;
+        }
+
+        // A construção acontece fora do mapa para não bloquear outros certificados; em caso de corrida
+        // prevalece o primeiro protocolo registrado.
+        construcoes.increment();
+        Entrada nova = new Entrada(construtor.construir(), agora);
+        Entrada registrada = registra(chave, nova);
+        if (registrada != nova) {
+            return registrada.protocolo;
+        }
+        if (protocolos.size() > tamanhoMaximo) {
+            despeja();
+        }
+        return nova.protocolo;
+    }
+
+    /**
+     * Protocolos já construídos para o certificado informado, sem construir nenhum.
+     */
+    List<Protocol> consultar(Certificado certificado) {
+        String impressaoDigital = impressaoDigital(certificado);
+        List<Protocol> encontrados = new ArrayList<>();
+        for (Map.Entry<Chave, Entrada> entrada : protocolos.entrySet()) {
+            if (entrada.getKey().impressaoDigital.equals(impressaoDigital)) {
+                encontrados.add(entrada.getValue().protocolo);
+            }
+        }
+        return encontrados;
+    }
+
+    /**
+     * Remove os protocolos sem uso há mais que o tempo ocioso e retorna quantos foram descartados.
+     */
+    public int removerOciosos() {
+        long agora = System.nanoTime();
+        return remove((chave, entrada) -> entrada.isOciosa(agora, tempoOciosoNanos));
+    }
+
+    /**
+     * Descarta os ociosos e, se ainda houver mais que o tamanho máximo, os usados há mais tempo até sobrar uma folga de
+     * 10%, para que a varredura não se repita a cada nova entrada.
+     */
+    private synchronized void despeja() {
+        removerOciosos();
+        int excesso = protocolos.size() - (tamanhoMaximo - tamanhoMaximo / 10);
+        if (excesso <= 0) {
+            return;
+        }
+        // A idade é copiada antes da ordenação porque o último uso continua mudando nas outras threads.
+        long agora = System.nanoTime();
+        List<Map.Entry<Long, Map.Entry<Chave, Entrada>>> porIdade = new ArrayList<>();
+        for (Map.Entry<Chave, Entrada> entrada : protocolos.entrySet()) {
+            porIdade.add(new AbstractMap.SimpleImmutableEntry<>(agora - entrada.getValue().ultimoUso, entrada));
+        }
+        porIdade.sort(Map.Entry.<Long, Map.Entry<Chave, Entrada>>comparingByKey().reversed());
+        Set<Chave> despejadas = new HashSet<>();
+        for (int i = 0; i < excesso && i < porIdade.size(); i++) {
+            despejadas.add(porIdade.get(i).getValue().getKey());
+        }
+        remove((chave, entrada) -> despejadas.contains(chave));
+    }
+
+    /**
+     * Remove todos os protocolos construídos para o certificado informado.
+     */
+    public boolean remover(Certificado certificado) {
+        String impressaoDigital = impressaoDigital(certificado);
+        return remove((chave, entrada) -> chave.impressaoDigital.equals(impressaoDigital)) > 0;
+    }
+
+    /**
+     * Troca a chave dos protocolos construídos para o certificado {@code anterior} pela do KeyStore renovado e os
+     * registra também sob os dados do certificado {@code novo}. Os mesmos {@link Protocol} continuam em uso (inclusive
+     * pelos pools do {@link HttpClientPool}); só as próximas conexões apresentam o novo certificado.
+     * <p>
+     * A {@code atualizacao} do certificado roda enquanto as duas chaves estão publicadas, então quem consulta com os
+     * dados anteriores, com os novos ou com uma mistura deles recebe o protocolo já atualizado. As chaves anteriores
+     * saem só depois dela.
+     *
+     * @return quantidade de protocolos atualizados
+     */
+    int substituir(Certificado anterior, Certificado novo, KeyStore keyStore, Runnable atualizacao) {
+        String impressaoDigital = impressaoDigital(anterior);
+        String novaImpressaoDigital = impressaoDigital(novo);
+        if (impressaoDigital == null || novaImpressaoDigital == null) {
+            atualizacao.run();
+            return 0;
+        }
+
+        int atualizados = 0;
+        Set<Entrada> descartadas;
+        synchronized (this) {
+            Map<Chave, Entrada> comAnteriores = new HashMap<>(protocolos);
+            Map<Chave, Entrada> semAnteriores = new HashMap<>(protocolos);
+            for (Map.Entry<Chave, Entrada> entrada : protocolos.entrySet()) {
+                Chave chave = entrada.getKey();
+                if (!chave.impressaoDigital.equals(impressaoDigital)) {
+                    continue;
+                }
+                ((SocketFactoryDinamico) entrada.getValue().protocolo.getSocketFactory()).substituiChave(keyStore, novo.getNomeCertificado(), novo.getSenha());
+                Chave nova = new Chave(novaImpressaoDigital, novo.getNomeCertificado(), chave.senha, chave.sslProtocol, chave.cacert,
+                        chave.tamanhoCacheSessao, chave.timeoutSessao, chave.timeoutConexao, chave.timeoutLeitura, chave.chavePreCarregada);
+                comAnteriores.putIfAbsent(nova, entrada.getValue());
+                semAnteriores.putIfAbsent(nova, entrada.getValue());
+                if (!impressaoDigital.equals(novaImpressaoDigital)) {
+                    semAnteriores.remove(chave);
+                }
+                atualizados++;
+            }
+
+            protocolos = Collections.unmodifiableMap(comAnteriores);
+            try {
+                atualizacao.run();
+            } finally {
+                protocolos = Collections.unmodifiableMap(semAnteriores);
+            }
+            descartadas = descartadas(comAnteriores, semAnteriores);
+        }
+        descartadas.forEach(this::avisaRemocao);
+        return atualizados;
+    }
+
+    public void limpar() {
+        remove((chave, entrada) -> true);
+    }
+
+    public int getTamanho() {
+        return protocolos.size();
+    }
+
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    public Duration getTempoOcioso() {
+        return Duration.ofNanos(tempoOciosoNanos);
+    }
+
+    public long getRemocoes() {
+        return remocoes.sum();
+    }
+
+    public long getConstrucoes() {
+        return construcoes.sum();
+    }
+
+    public long getReutilizacoes() {
+        return reutilizacoes.sum();
+    }
+
+    /**
+     * Fração das solicitações atendidas por um protocolo já construído, entre 0 e 1.
+     */
+    public double getTaxaReutilizacao() {
+        long reutilizado = reutilizacoes.sum();
+        long total = reutilizado + construcoes.sum();
+        return total == 0 ? 0 : (double) reutilizado / total;
+    }
+
+    /**
+     * Publica o protocolo sob a chave, se ela ainda não tiver um; em caso de corrida prevalece o primeiro.
+     */
+    private synchronized Entrada registra(Chave chave, Entrada nova) {
+        Entrada existente = protocolos.get(chave);
+        if (existente != null) {
+            return existente;
+        }
+        Map<Chave, Entrada> copia = new HashMap<>(protocolos);
+        copia.put(chave, nova);
+        protocolos = Collections.unmodifiableMap(copia);
+        return nova;
+    }
+
+    /*
+     * Toda remoção passa por aqui para contar e avisar os listeners uma única vez por entrada; uma entrada que continua
+     * sob outra chave não é removida.
+     */
+    private int remove(BiPredicate<Chave, Entrada> filtro) {
+        Set<Entrada> removidas;
+        synchronized (this) {
+            Map<Chave, Entrada> copia = new HashMap<>(protocolos);
+            if (!copia.entrySet().removeIf(entrada -> filtro.test(entrada.getKey(), entrada.getValue()))) {
+                return 0;
+            }
+            removidas = descartadas(protocolos, copia);
+            protocolos = Collections.unmodifiableMap(copia);
+        }
+        for (Entrada entrada : removidas) {
+            remocoes.increment();
+            avisaRemocao(entrada);
+        }
+        return removidas.size();
+    }
+
+    private static Set<Entrada> descartadas(Map<Chave, Entrada> antes, Map<Chave, Entrada> depois) {
+        Set<Entrada> descartadas = new LinkedHashSet<>(antes.values());
+        descartadas.removeAll(new HashSet<>(depois.values()));
+        return descartadas;
+    }
+
+    private void avisaRemocao(Entrada entrada) {
+        for (RemocaoListener listener : listeners) {
+            listener.removido(entrada.protocolo);
+        }
+    }
+
+    private static Chave chave(Certificado certificado, String cacert) {
+        String impressaoDigital = impressaoDigital(certificado);
+        if (impressaoDigital == null || cacert == null) {
+            return null;
+        }
+
+        String senha = certificado.getSenha() == null ? "" :
+                DigestUtil.hex(DigestUtil.sha256(certificado.getSenha().getBytes(StandardCharsets.UTF_8)));
+        return new Chave(impressaoDigital, certificado.getNomeCertificado(), senha, certificado.getSslProtocol(), cacert,
+                certificado.getTamanhoCacheSessao(), certificado.getTimeoutSessao(), certificado.getTimeoutConexao(),
+                certificado.getTimeoutLeitura(), certificado.isChavePreCarregada());
+    }
+
+    private static String impressaoDigital(Certificado certificado) {
+        if (certificado == null || certificado.getCertificate() == null) {
+            return null;
+        }
+        try {
+            return DigestUtil.hex(DigestUtil.sha256(certificado.getCertificate().getEncoded()));
+        } catch (CertificateEncodingException e) {
+            return null;
+        }
+    }
+
+    private static final class Entrada {
+
+        private final Protocol protocolo;
+        private volatile long ultimoUso;
+
+        private Entrada(Protocol protocolo, long ultimoUso) {
+            this.protocolo = protocolo;
+            this.ultimoUso = ultimoUso;
+        }
+
+        private boolean isOciosa(long agora, long tempoOciosoNanos) {
+            return agora - ultimoUso >= tempoOciosoNanos;
+        }
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class Chave {
+        private final String impressaoDigital;
+        private final String alias;
+        private final String senha;
+        private final String sslProtocol;
+        private final String cacert;
+        private final Integer tamanhoCacheSessao;
+        private final Integer timeoutSessao;
+        private final Integer timeoutConexao;
+        private final Integer timeoutLeitura;
+        private final boolean chavePreCarregada;
+    }
+}
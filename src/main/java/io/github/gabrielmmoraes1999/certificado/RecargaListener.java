@@ -0,0 +1,8 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+@FunctionalInterface
+public interface RecargaListener {
+
+    void recarga(EventoRecarga evento);
+
+}
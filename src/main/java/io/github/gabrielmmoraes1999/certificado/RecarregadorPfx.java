@@ -0,0 +1,356 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Recarrega certificados A1 quando o arquivo PFX é renovado, sem reiniciar a aplicação.
+ * <p>
+ * Os diretórios dos arquivos registrados são observados por um {@link WatchService}; as alterações de um arquivo são
+ * agrupadas até que ele fique {@link #getEspera() sem mudanças} por um tempo e só então o PFX é decodificado, em uma
+ * thread própria, fora das requisições. A chave dos protocolos já construídos para o certificado é trocada de forma
+ * atômica: os próximos handshakes apresentam o novo certificado e as conexões abertas terminam com o anterior.
+ * Conteúdo igual ao já carregado é ignorado; se o novo arquivo não puder ser carregado o certificado continua com a
+ * chave anterior. Sucessos e falhas são publicados aos {@link RecargaListener}.
+ * <p>
+ * A recarga muda o número de série, a impressão digital e, em geral, o vencimento do certificado. Se ele estiver em um
+ * {@link CertificadoIndice}, reindexe-o em um listener:
+ * {@code recarregador.adicionarListener(e -> { if (e.isSucesso()) indice.atualizar(e.getCertificado()); })}.
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public class RecarregadorPfx implements AutoCloseable {
+
+    public static final Duration ESPERA_PADRAO = Duration.ofMillis(500);
+
+    private final Duration espera;
+    private final List<RecargaListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<Path, List<Registro>> registros = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, ScheduledFuture<?>> pendentes = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> diretorios = new HashMap<>();
+
+    private WatchService observador;
+    private Thread threadObservador;
+    private volatile ScheduledExecutorService agendador;
+
+    public RecarregadorPfx() {
+        this(ESPERA_PADRAO);
+    }
+
+    /**
+     * @param espera tempo sem novas alterações no arquivo antes de recarregá-lo
+     */
+    public RecarregadorPfx(Duration espera) {
+        this.espera = Optional.ofNullable(espera).orElseThrow(() -> new IllegalArgumentException("Espera não pode ser nula."));
+        if (espera.isNegative()) {
+            throw new IllegalArgumentException("Espera não pode ser negativa.");
+        }
+    }
+
+    public Duration getEspera() {
+        return espera;
+    }
+
+    public void adicionarListener(RecargaListener listener) {
+        listeners.add(Optional.ofNullable(listener).orElseThrow(() -> new IllegalArgumentException("Listener não pode ser nulo.")));
+    }
+
+    public void removerListener(RecargaListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registra um certificado carregado por {@link CertificadoService#certificadoPfx(String, String)}, observando o
+     * próprio arquivo de origem.
+     */
+    public void registrar(Certificado certificado) throws CertificadoException {
+        String arquivo = Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException("Certificado não pode ser nulo.")).getArquivo();
+        if (arquivo == null) {
+            throw new IllegalArgumentException("Certificado sem arquivo de origem.");
+        }
+        registrar(certificado, Paths.get(arquivo));
+    }
+
+    /**
+     * Registra um certificado A1 (inclusive o carregado por {@link CertificadoService#certificadoPfxBytes(byte[], String)})
+     * para ser recarregado quando o arquivo informado mudar. O certificado deve usar a mesma senha do novo arquivo.
+     */
+    public synchronized void registrar(Certificado certificado, Path arquivo) throws CertificadoException {
+        Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException("Certificado não pode ser nulo."));
+        TipoCertificadoEnum tipo = certificado.getTipoCertificado();
+        if (tipo != TipoCertificadoEnum.ARQUIVO && tipo != TipoCertificadoEnum.ARQUIVO_BYTES) {
+            throw new IllegalArgumentException("Somente certificados A1 podem ser recarregados: " + tipo);
+        }
+        Path caminho = Optional.ofNullable(arquivo).orElseThrow(() -> new IllegalArgumentException("Arquivo não pode ser nulo."))
+                .toAbsolutePath().normalize();
+        remover(certificado);
+
+        Registro registro = new Registro(certificado, caminho);
+        try {
+            registro.sha256 = sha256(Files.readAllBytes(caminho));
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Não foi possível ler o certificado " + caminho, e);
+        }
+        registros.computeIfAbsent(caminho, c -> new CopyOnWriteArrayList<>()).add(registro);
+        if (observador != null) {
+            observa(caminho.getParent());
+        }
+    }
+
+    public synchronized boolean remover(Certificado certificado) {
+        boolean removido = false;
+        for (Map.Entry<Path, List<Registro>> entrada : registros.entrySet()) {
+            if (entrada.getValue().removeIf(registro -> registro.certificado == certificado)) {
+                removido = true;
+                if (entrada.getValue().isEmpty()) {
+                    registros.remove(entrada.getKey());
+                    Optional.ofNullable(pendentes.remove(entrada.getKey())).ifPresent(pendente -> pendente.cancel(false));
+                }
+            }
+        }
+        diretorios.entrySet().removeIf(diretorio -> {
+            boolean vazio = registros.keySet().stream().noneMatch(caminho -> caminho.getParent().equals(diretorio.getKey()));
+            if (vazio) {
+                diretorio.getValue().cancel();
+            }
+            return vazio;
+        });
+        return removido;
+    }
+
+    public int getTamanho() {
+        return registros.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Começa a observar os diretórios dos arquivos registrados em uma thread própria.
+     */
+    public synchronized void iniciar() throws CertificadoException {
+        if (observador != null) {
+            return;
+        }
+        try {
+            observador = FileSystems.getDefault().newWatchService();
+            for (Path arquivo : registros.keySet()) {
+                observa(arquivo.getParent());
+            }
+        } catch (CertificadoException | IOException e) {
+            close();
+            throw e instanceof CertificadoException ? (CertificadoException) e
+                    : new CertificadoException("Erro ao observar os certificados: " + e.getMessage(), e);
+        }
+
+        agendador = Executors.newSingleThreadScheduledExecutor(ThreadUtil.daemon("certificado-recarga-pfx"));
+        final WatchService servico = observador;
+        threadObservador = new Thread(() -> observar(servico), "certificado-recarga-pfx-observador");
+        threadObservador.setDaemon(true);
+        threadObservador.start();
+    }
+
+    /**
+     * Recarrega o certificado a partir do seu arquivo na thread atual, sem esperar uma alteração ser observada.
+     *
+     * @return o evento publicado, ou {@code null} se o conteúdo do arquivo é o já carregado
+     */
+    public EventoRecarga recarregar(Certificado certificado) {
+        for (Map.Entry<Path, List<Registro>> entrada : registros.entrySet()) {
+            for (Registro registro : entrada.getValue()) {
+                if (registro.certificado == certificado) {
+                    EventoRecarga evento = registro.recarrega(le(entrada.getKey()));
+                    publica(evento);
+                    return evento;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Certificado não registrado.");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (observador != null) {
+            try {
+                observador.close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Erro ao encerrar a observação dos certificados", e);
+            }
+            observador = null;
+        }
+        if (threadObservador != null) {
+            threadObservador.interrupt();
+            threadObservador = null;
+        }
+        if (agendador != null) {
+            agendador.shutdownNow();
+            agendador = null;
+        }
+        diretorios.clear();
+        pendentes.clear();
+    }
+
+    private void observa(Path diretorio) throws CertificadoException {
+        if (diretorios.containsKey(diretorio)) {
+            return;
+        }
+        try {
+            diretorios.put(diretorio, diretorio.register(observador, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao observar o diretório " + diretorio + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void observar(WatchService servico) {
+        while (true) {
+            WatchKey chave;
+            try {
+                chave = servico.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path diretorio = (Path) chave.watchable();
+            for (WatchEvent<?> evento : chave.pollEvents()) {
+                if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Eventos perdidos: confere todos os arquivos do diretório; os que não mudaram são ignorados.
+                    registros.keySet().stream().filter(arquivo -> arquivo.getParent().equals(diretorio)).forEach(this::agenda);
+                } else {
+                    agenda(diretorio.resolve((Path) evento.context()));
+                }
+            }
+            chave.reset();
+        }
+    }
+
+    /**
+     * Agenda a recarga do arquivo, adiando a já agendada: várias gravações seguidas resultam em uma única recarga.
+     */
+    private void agenda(Path arquivo) {
+        ScheduledExecutorService executor = agendador;
+        if (executor == null || !registros.containsKey(arquivo)) {
+            return;
+        }
+        pendentes.compute(arquivo, (caminho, pendente) -> {
+            if (pendente != null) {
+                pendente.cancel(false);
+            }
+            try {
+                return executor.schedule(() -> recarregarAgendado(caminho), espera.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                return null;
+            }
+        });
+    }
+
+    private void recarregarAgendado(Path arquivo) {
+        try {
+            List<Registro> lista = registros.get(arquivo);
+            if (lista == null) {
+                return;
+            }
+            Leitura leitura = le(arquivo);
+            for (Registro registro : lista) {
+                publica(registro.recarrega(leitura));
+            }
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Erro ao recarregar o certificado " + arquivo, e);
+        }
+    }
+
+    private void publica(EventoRecarga evento) {
+        if (evento == null) {
+            return;
+        }
+        if (!evento.isSucesso()) {
+            log.log(Level.WARNING, "Erro ao recarregar o certificado " + evento.getArquivo() + ": " + evento.getErro().getMessage());
+        }
+        for (RecargaListener listener : listeners) {
+            try {
+                listener.recarga(evento);
+            } catch (RuntimeException e) {
+                log.log(Level.SEVERE, "Erro no listener de recarga de certificado", e);
+            }
+        }
+    }
+
+    private static Leitura le(Path arquivo) {
+        try {
+            return new Leitura(Files.readAllBytes(arquivo), null);
+        } catch (IOException e) {
+            return new Leitura(null, e);
+        }
+    }
+
+    private static String sha256(byte[] conteudo) {
+        return DigestUtil.hex(DigestUtil.sha256(conteudo));
+    }
+
+    private static final class Leitura {
+
+        private final byte[] conteudo;
+        private final IOException erro;
+
+        private Leitura(byte[] conteudo, IOException erro) {
+            this.conteudo = conteudo;
+            this.erro = erro;
+        }
+    }
+
+    private static final class Registro {
+
+        private final Certificado certificado;
+        private final Path arquivo;
+        private String sha256;
+
+        private Registro(Certificado certificado, Path arquivo) {
+            this.certificado = certificado;
+            this.arquivo = arquivo;
+        }
+
+        private synchronized EventoRecarga recarrega(Leitura leitura) {
+            X509Certificate anterior = certificado.getCertificate();
+            if (leitura.erro != null) {
+                return new EventoRecarga(certificado, arquivo, anterior, null, leitura.erro);
+            }
+
+            String hash = sha256(leitura.conteudo);
+            if (hash.equals(sha256)) {
+                return null;
+            }
+            try {
+                CertificadoService.recarregaPfx(certificado, leitura.conteudo);
+                sha256 = hash;
+                return new EventoRecarga(certificado, arquivo, anterior, certificado.getCertificate(), null);
+            } catch (CertificadoException | RuntimeException e) {
+                return new EventoRecarga(certificado, arquivo, anterior, null, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de uma atualização do {@link AtualizadorTrustStore}: as âncoras acrescentadas ao truststore, os endereços
+ * cuja cadeia já era confiável e os que não puderam ser consultados. {@link #toString()} monta o relatório de
+ * diferenças.
+ */
+@AllArgsConstructor
+@Getter
+@SuppressWarnings("WeakerAccess")
+public class RelatorioTrustStore {
+
+    private final List<Ancora> adicionadas;
+    private final List<String> confiaveis;
+    private final Map<String, Exception> falhas;
+    private final long duracaoMillis;
+
+    public boolean isAlterado() {
+        return !adicionadas.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder relatorio = new StringBuilder();
+        for (Ancora ancora : adicionadas) {
+            relatorio.append("+ ").append(ancora.getAlias()).append(' ').append(ancora.getSubject())
+                    .append(" sha256=").append(ancora.getSha256()).append(" (").append(ancora.getEndereco()).append(")\n");
+        }
+        for (String endereco : confiaveis) {
+            relatorio.append("= ").append(endereco).append('\n');
+        }
+        for (Map.Entry<String, Exception> falha : falhas.entrySet()) {
+            relatorio.append("! ").append(falha.getKey()).append(": ").append(falha.getValue().getMessage()).append('\n');
+        }
+        return relatorio.append(adicionadas.size()).append(" adicionadas, ").append(confiaveis.size()).append(" já confiáveis, ")
+                .append(falhas.size()).append(" falhas em ").append(duracaoMillis).append("ms").toString();
+    }
+
+    /**
+     * Certificado acrescentado ao truststore como âncora, com o endereço em que foi encontrado.
+     */
+    @AllArgsConstructor
+    @Getter
+    public static class Ancora {
+
+        private final String alias;
+        private final String endereco;
+        private final String subject;
+        private final String sha256;
+
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de um carregamento em lote do {@link CarregadorPfx}. Falhas de arquivos individuais não interrompem o lote
+ * e ficam registradas em {@code falhas}.
+ */
+@AllArgsConstructor
+@Getter
+@SuppressWarnings("WeakerAccess")
+public class ResultadoCarregamento {
+
+    private final List<Certificado> certificados;
+    private final Map<Path, Exception> falhas;
+    private final int decodificados;
+    private final int reaproveitados;
+
+}
@@ -0,0 +1,218 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import lombok.extern.java.Log;
+
+import javax.security.auth.login.LoginException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.AuthProvider;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.ProviderException;
+import java.security.Security;
+import java.security.cert.CertificateException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sessões de tokens e leitoras A3: mantém um KeyStore PKCS11 já autenticado por instância de provider e o reaproveita,
+ * evitando um novo login com o PIN a cada {@code getKeyStore}. Providers distintos têm sessões distintas mesmo que
+ * tenham o mesmo nome, então reutilize a mesma instância do provider para aproveitar a sessão.
+ * <p>
+ * O acesso a cada token é serializado por um lock da sessão: {@link #executar} entrega o KeyStore do token com o lock
+ * adquirido e o KeyStore devolvido por {@link CertificadoService#getKeyStore} é uma visão somente leitura que adquire
+ * o mesmo lock a cada consulta. Antes de reaproveitar o KeyStore a sessão confere se o token continua acessível; se
+ * ele foi removido, o próximo acesso faz o login novamente. Qualquer {@link Provider} que registre um KeyStore do tipo
+ * {@code PKCS11} pode ser usado, inclusive um provider em software para testes.
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public final class SessaoA3Service {
+
+    private static final String TIPO_KEYSTORE = "PKCS11";
+
+    private static final ConcurrentMap<ChaveProvider, Sessao> sessoes = new ConcurrentHashMap<>();
+    private static final LongAdder logins = new LongAdder();
+    private static final LongAdder reutilizacoes = new LongAdder();
+
+    private SessaoA3Service() {
+    }
+
+    @FunctionalInterface
+    public interface OperacaoToken<T> {
+        T executar(KeyStore keyStore) throws Exception;
+    }
+
+    /**
+     * Visão somente leitura do KeyStore autenticado do token, reaproveitando a sessão existente. Cada consulta à visão
+     * adquire o lock da sessão; alterações no token devem ser feitas por {@link #executar}.
+     */
+    static KeyStore getKeyStore(Certificado certificado) throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
+        Sessao sessao = sessao(certificado);
+        return KeyStoreSomenteLeitura.de(sessao.obter(certificado.getSenha()), sessao.lock);
+    }
+
+    /**
+     * Executa uma operação no token do certificado com acesso exclusivo à sessão. Se o token tiver sido removido e
+     * reinserido, a operação é repetida uma vez após um novo login.
+     */
+    public static <T> T executar(Certificado certificado, OperacaoToken<T> operacao) throws CertificadoException {
+        Sessao sessao = sessao(certificado);
+        sessao.lock.lock();
+        try {
+            try {
+                return operacao.executar(sessao.obter(certificado.getSenha()));
+            } catch (ProviderException e) {
+                log.warning("Falha no token, refazendo o login: " + e.getMessage());
+                sessao.invalidar();
+                return operacao.executar(sessao.obter(certificado.getSenha()));
+            }
+        } catch (CertificadoException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CertificadoException("Erro ao acessar o token A3: " + e.getMessage(), e);
+        } finally {
+            sessao.lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta a sessão do provider; o próximo acesso faz um novo login.
+     */
+    public static void invalidar(Provider provider) {
+        Optional.ofNullable(sessoes.get(chave(provider))).ifPresent(Sessao::invalidar);
+    }
+
+    /**
+     * Remove a sessão do provider e faz o logout quando o provider permite ({@link AuthProvider}).
+     */
+    public static void encerrar(Provider provider) {
+        Optional.ofNullable(sessoes.remove(chave(provider))).ifPresent(Sessao::encerrar);
+    }
+
+    public static void encerrarTodas() {
+        sessoes.keySet().forEach(chave -> Optional.ofNullable(sessoes.remove(chave)).ifPresent(Sessao::encerrar));
+    }
+
+    public static int getQuantidadeSessoes() {
+        return sessoes.size();
+    }
+
+    public static long getLogins() {
+        return logins.sum();
+    }
+
+    public static long getReutilizacoes() {
+        return reutilizacoes.sum();
+    }
+
+    private static Sessao sessao(Certificado certificado) {
+        Provider provider = Optional.ofNullable(certificado.getProvider())
+                .orElseThrow(() -> new IllegalArgumentException("Provider não pode ser nulo."));
+        return sessoes.computeIfAbsent(chave(provider), k -> {
+            Security.addProvider(provider);
+            return new Sessao(provider);
+        });
+    }
+
+    private static ChaveProvider chave(Provider provider) {
+        return new ChaveProvider(Optional.ofNullable(provider).orElseThrow(() -> new IllegalArgumentException("Provider não pode ser nulo.")));
+    }
+
+    /*
+     * Provider herda equals/hashCode de Properties, que compara o conteúdo; a sessão pertence à instância.
+     */
+    private static final class ChaveProvider {
+        private final Provider provider;
+
+        private ChaveProvider(Provider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ChaveProvider && ((ChaveProvider) o).provider == provider;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(provider);
+        }
+    }
+
+    private static final class Sessao {
+        private final Provider provider;
+        private final ReentrantLock lock = new ReentrantLock();
+        private KeyStore keyStore;
+        private String senha;
+
+        private Sessao(Provider provider) {
+            this.provider = provider;
+        }
+
+        private KeyStore obter(String senha) throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
+            String digestSenha = senha == null ? "" : DigestUtil.hex(DigestUtil.sha256(senha.getBytes(StandardCharsets.UTF_8)));
+            lock.lock();
+            try {
+                if (keyStore != null && digestSenha.equals(this.senha) && ativa()) {
+                    reutilizacoes.increment();
+                    return keyStore;
+                }
+
+                this.keyStore = null;
+                KeyStore novo = KeyStore.getInstance(TIPO_KEYSTORE, provider);
+                novo.load(null, senha == null ? null : senha.toCharArray());
+                logins.increment();
+                this.keyStore = novo;
+                this.senha = digestSenha;
+                return novo;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /*
+         * Uma consulta simples ao token: com o token removido o provider PKCS11 lança ProviderException.
+         */
+        private boolean ativa() {
+            try {
+                keyStore.size();
+                return true;
+            } catch (KeyStoreException | RuntimeException e) {
+                log.warning("Token A3 indisponível, será feito um novo login: " + e.getMessage());
+                return false;
+            }
+        }
+
+        private void invalidar() {
+            lock.lock();
+            try {
+                this.keyStore = null;
+                this.senha = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void encerrar() {
+            lock.lock();
+            try {
+                invalidar();
+                if (provider instanceof AuthProvider) {
+                    ((AuthProvider) provider).logout();
+                }
+            } catch (LoginException | RuntimeException e) {
+                log.warning("Não foi possível encerrar a sessão do token: " + e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
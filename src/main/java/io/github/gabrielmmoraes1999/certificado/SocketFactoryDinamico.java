@@ -1,61 +1,279 @@
 package io.github.gabrielmmoraes1999.certificado;
 
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.metrica.Metricas;
+import io.github.gabrielmmoraes1999.certificado.metrica.MetricasService;
+import io.github.gabrielmmoraes1999.certificado.revogacao.RevogacaoService;
 import org.apache.commons.httpclient.params.HttpConnectionParams;
 import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.Enumeration;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SocketFactoryDinamico implements ProtocolSocketFactory {
 
-    private static final char[] SENHA_CACERT = "changeit".toCharArray();
-    private final KeyStore keyStore;
-    private final String alias;
-    private final String senha;
-    private final InputStream fileCacerts;
+    private final TrustManager[] trustManagers;
+    private final X509ExtendedKeyManager keyManager;
     private final SSLContext ssl;
+    private final LongAdder handshakesCompletos = new LongAdder();
+    private final LongAdder handshakesRetomados = new LongAdder();
+    private volatile int timeoutConexao = 60000;
+    private volatile int timeoutLeitura;
+    private volatile CacheDns cacheDns = CacheDns.getPadrao();
 
     public SocketFactoryDinamico(KeyStore keyStore, String alias, String senha, InputStream fileCacerts, String sslProtocol) throws KeyManagementException,
             CertificateException,
             NoSuchAlgorithmException, KeyStoreException, IOException {
-        this.keyStore = keyStore;
-        this.alias = alias;
-        this.senha = senha;
-        this.fileCacerts = fileCacerts;
+        this(keyStore, alias, senha, carregaCacert(fileCacerts), sslProtocol);
+    }
+
+    public SocketFactoryDinamico(KeyStore keyStore, String alias, String senha, TrustManager[] trustManagers, String sslProtocol) throws KeyManagementException,
+            NoSuchAlgorithmException {
+        this(keyStore, alias, senha, trustManagers, sslProtocol, true);
+    }
+
+    /**
+     * @param chavePreCarregada lê a chave privada e a cadeia uma única vez, na construção, em vez de a cada handshake
+     */
+    public SocketFactoryDinamico(KeyStore keyStore, String alias, String senha, TrustManager[] trustManagers, String sslProtocol,
+                                 boolean chavePreCarregada) throws KeyManagementException, NoSuchAlgorithmException {
+        this(new AliasKeyManager(keyStore, alias, senha, chavePreCarregada), trustManagers, sslProtocol);
+    }
+
+    /**
+     * Fábrica com um KeyManager que escolhe o certificado a cada handshake, como o da {@link SocketFactoryMultiCertificado}.
+     */
+    SocketFactoryDinamico(X509ExtendedKeyManager keyManager, TrustManager[] trustManagers, String sslProtocol)
+            throws KeyManagementException, NoSuchAlgorithmException {
+        this.trustManagers = RevogacaoService.aplicar(trustManagers);
+        this.keyManager = keyManager;
+
+        Metricas metricas = MetricasService.getMetricas();
+        long inicio = metricas.isAtivo() ? System.nanoTime() : 0;
         this.ssl = createSSLContext(sslProtocol);
+        if (metricas.isAtivo()) {
+            metricas.temporizador(MetricasService.SOCKET_FACTORY_CONSTRUCAO).registra(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Configura o cache de sessões TLS do cliente. Conexões ao mesmo host e porta retomam a sessão em cache e evitam
+     * o handshake completo (e a assinatura com a chave privada do certificado).
+     *
+     * @param tamanho         quantidade máxima de sessões em cache, {@code null} mantém o padrão da JVM
+     * @param timeoutSegundos tempo de vida das sessões em cache, {@code null} mantém o padrão da JVM
+     */
+    public void configuraSessoes(Integer tamanho, Integer timeoutSegundos) {
+        SSLSessionContext sessoes = this.ssl.getClientSessionContext();
+        if (tamanho != null) {
+            sessoes.setSessionCacheSize(tamanho);
+        }
+        if (timeoutSegundos != null) {
+            sessoes.setSessionTimeout(timeoutSegundos);
+        }
+    }
+
+    /**
+     * Configura os tempos máximos usados quando o chamador não informa os seus (por exemplo, sem
+     * {@link HttpConnectionParams}). O timeout de leitura também limita o handshake TLS.
+     *
+     * @param conexaoMillis tempo máximo para conectar, {@code null} mantém o atual (padrão de 60 segundos)
+     * @param leituraMillis tempo máximo de espera por dados, {@code null} mantém o atual (padrão sem limite)
+     */
+    public void configuraTimeouts(Integer conexaoMillis, Integer leituraMillis) {
+        if (conexaoMillis != null) {
+            if (conexaoMillis < 0) {
+                throw new IllegalArgumentException("Timeout de conexão não pode ser negativo.");
+            }
+            this.timeoutConexao = conexaoMillis;
+        }
+        if (leituraMillis != null) {
+            if (leituraMillis < 0) {
+                throw new IllegalArgumentException("Timeout de leitura não pode ser negativo.");
+            }
+            this.timeoutLeitura = leituraMillis;
+        }
+    }
+
+    /**
+     * Define o cache de DNS usado pelas conexões; por padrão, {@link CacheDns#getPadrao()}.
+     */
+    public void setCacheDns(CacheDns cacheDns) {
+        this.cacheDns = Optional.ofNullable(cacheDns).orElseThrow(() -> new IllegalArgumentException("Cache de DNS não pode ser nulo."));
     }
 
     @Override
     public Socket createSocket(final String host, final int port, final InetAddress localAddress, final int localPort, final HttpConnectionParams params) throws IOException {
-        final Socket socket = this.ssl.getSocketFactory().createSocket();
-        socket.bind(new InetSocketAddress(localAddress, localPort));
-        socket.connect(new InetSocketAddress(host, port), 60000);
-        return socket;
+        return criaSocket(host, port, localAddress, localPort,
+                params != null && params.getConnectionTimeout() > 0 ? params.getConnectionTimeout() : timeoutConexao,
+                params != null && params.getSoTimeout() > 0 ? params.getSoTimeout() : timeoutLeitura);
     }
 
     @Override
     public Socket createSocket(final String host, final int port, final InetAddress clientHost, final int clientPort) throws IOException {
-        return this.ssl.getSocketFactory().createSocket(host, port, clientHost, clientPort);
+        return criaSocket(host, port, clientHost, clientPort, timeoutConexao, timeoutLeitura);
     }
 
     @Override
     public Socket createSocket(final String host, final int port) throws IOException {
-        return this.ssl.getSocketFactory().createSocket(host, port);
+        return criaSocket(host, port, null, 0, timeoutConexao, timeoutLeitura);
+    }
+
+    private Socket criaSocket(String host, int port, InetAddress localAddress, int localPort, int timeoutConexao,
+                              int timeoutLeitura) throws IOException {
+        // O socket é conectado antes da camada TLS para que o SSLSocket conheça host e porta: sem eles não há SNI
+        // e a sessão em cache para o destino não pode ser retomada.
+        Metricas metricas = MetricasService.getMetricas();
+        long inicio = metricas.isAtivo() ? System.nanoTime() : 0;
+        Socket socket;
+        try {
+            socket = conecta(host, port, localAddress, localPort, timeoutConexao);
+        } catch (IOException e) {
+            registraFalha(metricas, "connect");
+            throw e;
+        }
+        registraConnect(metricas, inicio);
+
+        try {
+            socket.setSoTimeout(timeoutLeitura);
+            return iniciaHandshake((SSLSocket) this.ssl.getSocketFactory().createSocket(socket, host, port, true), metricas);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Conecta ao primeiro endereço do host que aceitar a conexão, na ordem devolvida pelo {@link CacheDns}.
+     */
+    private Socket conecta(String host, int port, InetAddress localAddress, int localPort, int timeout) throws IOException {
+        IOException falha = null;
+        for (InetAddress endereco : cacheDns.resolver(host)) {
+            Socket socket = new Socket();
+            try {
+                socket.bind(new InetSocketAddress(localAddress, localPort));
+                socket.connect(new InetSocketAddress(endereco, port), timeout);
+                return socket;
+            } catch (IOException e) {
+                socket.close();
+                falha = e;
+            }
+        }
+        // Nenhum endereço em cache respondeu: o host volta a ser resolvido na próxima conexão.
+        cacheDns.invalidar(host);
+        throw falha != null ? falha : new UnknownHostException(host);
+    }
+
+    private SSLSocket iniciaHandshake(SSLSocket socket, Metricas metricas) throws IOException {
+        long inicioNanos = metricas.isAtivo() ? System.nanoTime() : 0;
+        long inicio = System.currentTimeMillis();
+        try {
+            socket.startHandshake();
+        } catch (IOException e) {
+            registraFalha(metricas, "handshake");
+            socket.close();
+            throw e;
+        }
+
+        // Uma sessão criada antes do início deste handshake só pode ter vindo do cache, ou seja, foi retomada.
+        boolean retomada = socket.getSession().getCreationTime() < inicio;
+        if (retomada) {
+            handshakesRetomados.increment();
+        } else {
+            handshakesCompletos.increment();
+        }
+        if (metricas.isAtivo()) {
+            metricas.temporizador(MetricasService.CONEXAO_HANDSHAKE, "sessao", retomada ? "retomada" : "completa")
+                    .registra(System.nanoTime() - inicioNanos);
+        }
+        return socket;
     }
 
-    private SSLContext createSSLContext(String sslProtocol) throws CertificateException, NoSuchAlgorithmException, KeyStoreException, IOException, KeyManagementException {
+    private static void registraConnect(Metricas metricas, long inicio) {
+        if (metricas.isAtivo()) {
+            metricas.temporizador(MetricasService.CONEXAO_CONNECT).registra(System.nanoTime() - inicio);
+        }
+    }
+
+    private static void registraFalha(Metricas metricas, String etapa) {
+        if (metricas.isAtivo()) {
+            metricas.contador(MetricasService.CONEXAO_FALHAS, "etapa", etapa).incrementa();
+        }
+    }
+
+    /**
+     * Host e porta (não resolvidos) de uma URL ou de um endereço {@code host[:porta]}.
+     */
+    static InetSocketAddress endereco(String endereco) {
+        String semEsquema = endereco.contains("://") ? endereco.substring(endereco.indexOf("://") + 3) : endereco;
+        int fimAutoridade = semEsquema.indexOf('/');
+        String autoridade = fimAutoridade < 0 ? semEsquema : semEsquema.substring(0, fimAutoridade);
+        int separadorPorta = autoridade.lastIndexOf(':');
+        if (separadorPorta < 0 || autoridade.endsWith("]")) {
+            return InetSocketAddress.createUnresolved(autoridade, 443);
+        }
+        return InetSocketAddress.createUnresolved(autoridade.substring(0, separadorPorta),
+                Integer.parseInt(autoridade.substring(separadorPorta + 1)));
+    }
+
+    private static TrustManager[] carregaCacert(InputStream fileCacerts) throws IOException {
+        try {
+            return TrustStoreService.get(fileCacerts).getTrustManagers();
+        } catch (CertificadoException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lê novamente a chave privada e a cadeia do KeyStore, quando a chave é pré-carregada (por exemplo, após
+     * reinserir o token). As próximas conexões usam o material atualizado.
+     *
+     * @return {@code true} se a chave foi carregada; {@code false} se o modo não está ativo ou a leitura falhou
+     */
+    public boolean atualizaChave() {
+        return keyManager instanceof AliasKeyManager && ((AliasKeyManager) keyManager).atualizar();
+    }
+
+    /**
+     * Passa a apresentar a chave do KeyStore informado, como o PFX renovado, sem reconstruir o {@link SSLContext}.
+     * As sessões TLS em cache são invalidadas para que as próximas conexões façam o handshake completo com o novo
+     * certificado; as conexões abertas continuam com o certificado anterior até serem fechadas.
+     */
+    public void substituiChave(KeyStore keyStore, String alias, String senha) {
+        if (!(keyManager instanceof AliasKeyManager)) {
+            throw new UnsupportedOperationException("Esta fábrica escolhe o certificado a cada conexão.");
+        }
+        ((AliasKeyManager) keyManager).substituir(keyStore, alias, senha);
+
+        SSLSessionContext sessoes = this.ssl.getClientSessionContext();
+        for (Enumeration<byte[]> ids = sessoes.getIds(); ids.hasMoreElements(); ) {
+            SSLSession sessao = sessoes.getSession(ids.nextElement());
+            if (sessao != null) {
+                sessao.invalidate();
+            }
+        }
+    }
+
+    private SSLContext createSSLContext(String sslProtocol) throws NoSuchAlgorithmException, KeyManagementException {
         final KeyManager[] keyManagers = createKeyManagers();
         final TrustManager[] trustManagers = createTrustManagers();
         final SSLContext sslContext = SSLContext.getInstance(sslProtocol);
@@ -64,18 +282,34 @@ public class SocketFactoryDinamico implements ProtocolSocketFactory {
     }
 
     public KeyManager[] createKeyManagers() {
-        return new KeyManager[]{new AliasKeyManager(keyStore, alias, senha)};
+        return new KeyManager[]{keyManager};
     }
 
-    public TrustManager[] createTrustManagers() throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
-        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
-        trustStore.load(fileCacerts, SENHA_CACERT);
-        trustManagerFactory.init(trustStore);
-        return trustManagerFactory.getTrustManagers();
+    public TrustManager[] createTrustManagers() {
+        return trustManagers;
     }
 
     public SSLContext getSsl() {
         return ssl;
     }
+
+    public int getTimeoutConexao() {
+        return timeoutConexao;
+    }
+
+    public int getTimeoutLeitura() {
+        return timeoutLeitura;
+    }
+
+    public CacheDns getCacheDns() {
+        return cacheDns;
+    }
+
+    public long getHandshakesCompletos() {
+        return handshakesCompletos.sum();
+    }
+
+    public long getHandshakesRetomados() {
+        return handshakesRetomados.sum();
+    }
 }
\ No newline at end of file
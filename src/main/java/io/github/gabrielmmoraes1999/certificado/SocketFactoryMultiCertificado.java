@@ -0,0 +1,430 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import lombok.extern.java.Log;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábrica de sockets https que escolhe o certificado do cliente a cada conexão, permitindo registrar um único protocolo
+ * https para vários certificados no modo multithreading.
+ * <p>
+ * Há um único {@link javax.net.ssl.SSLContext}, cujo KeyManager apresenta em cada handshake o certificado escolhido
+ * para a conexão. No protocolo global ({@link #registrar()}) o certificado é o da rota do host de destino ou o
+ * {@link #setPadrao(Certificado) padrão}; {@link #getProtocolo(Certificado)} devolve um protocolo fixo em um
+ * certificado, para qualquer host. O commons-httpclient mantém um pool de conexões por host e protocolo, então cada
+ * certificado tem o seu pool e uma conexão nunca é reaproveitada com outro certificado.
+ * <p>
+ * As rotas guardam o {@link Certificado}, e não a sua chave: depois de uma recarga (pelo {@link RecarregadorPfx}, por
+ * exemplo) o próximo handshake já apresenta a chave nova. O cache de sessões TLS do contexto é por host e porta, então
+ * uma sessão só é retomada pelo certificado que a criou; se a retomada apresentaria outro, a sessão é invalidada e o
+ * handshake é refeito por completo.
+ * <p>
+ * Trocar a rota de um host não fecha as conexões do protocolo global que já estão no pool para ele.
+ */
+@SuppressWarnings("WeakerAccess")
+@Log
+public class SocketFactoryMultiCertificado implements ProtocolSocketFactory {
+
+    private static final int TENTATIVAS_HANDSHAKE = 3;
+
+    private final SocketFactoryDinamico transporte;
+    private final ConcurrentMap<String, Inquilino> rotas = new ConcurrentHashMap<>();
+    private final Map<Certificado, Inquilino> inquilinos = new IdentityHashMap<>();
+    private final ConcurrentMap<String, Inquilino> porIdentificador = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SSLSession> ultimasSessoes = new ConcurrentHashMap<>();
+    private final ThreadLocal<Inquilino> emHandshake = new ThreadLocal<>();
+    private final AtomicInteger sequencia = new AtomicInteger();
+    private volatile Inquilino padrao;
+
+    public SocketFactoryMultiCertificado() throws CertificadoException {
+        this(TrustStoreService.getPadrao(), new Certificado().getSslProtocol());
+    }
+
+    public SocketFactoryMultiCertificado(Cacert cacert, String sslProtocol) throws CertificadoException {
+        try {
+            this.transporte = new SocketFactoryDinamico(new KeyManagerMultiCertificado(),
+                    Optional.ofNullable(cacert).orElseThrow(() -> new IllegalArgumentException("Cacert não pode ser nulo.")).getTrustManagers(),
+                    sslProtocol);
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new CertificadoException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registra esta fábrica como o protocolo https global do commons-httpclient.
+     */
+    public void registrar() {
+        Protocol.registerProtocol("https", new Protocol("https", this, 443));
+    }
+
+    public void adicionarRota(String host, Certificado certificado) {
+        rotas.put(normalizaHost(host), inquilino(certificado));
+    }
+
+    public boolean removerRota(String host) {
+        return rotas.remove(normalizaHost(host)) != null;
+    }
+
+    public int getQuantidadeRotas() {
+        return rotas.size();
+    }
+
+    /**
+     * Certificado usado quando não há rota para o host. Informe {@code null} para remover.
+     */
+    public void setPadrao(Certificado certificado) {
+        this.padrao = certificado == null ? null : inquilino(certificado);
+    }
+
+    /**
+     * Protocolo https que sempre apresenta o certificado informado, com um pool de conexões só dele. É o mesmo
+     * protocolo a cada chamada para o mesmo certificado.
+     */
+    public Protocol getProtocolo(Certificado certificado) {
+        return inquilino(certificado).protocolo;
+    }
+
+    /**
+     * Esquece o certificado: remove as suas rotas, o seu protocolo e, se for o caso, o padrão.
+     */
+    public boolean remover(Certificado certificado) {
+        Inquilino inquilino;
+        synchronized (inquilinos) {
+            inquilino = inquilinos.remove(certificado);
+        }
+        if (inquilino == null) {
+            return false;
+        }
+        porIdentificador.remove(inquilino.identificador);
+        rotas.values().removeIf(rota -> rota == inquilino);
+        if (padrao == inquilino) {
+            padrao = null;
+        }
+        return true;
+    }
+
+    /**
+     * @see SocketFactoryDinamico#configuraTimeouts(Integer, Integer)
+     */
+    public void configuraTimeouts(Integer conexaoMillis, Integer leituraMillis) {
+        transporte.configuraTimeouts(conexaoMillis, leituraMillis);
+    }
+
+    /**
+     * @see SocketFactoryDinamico#configuraSessoes(Integer, Integer)
+     */
+    public void configuraSessoes(Integer tamanho, Integer timeoutSegundos) {
+        transporte.configuraSessoes(tamanho, timeoutSegundos);
+    }
+
+    public void setCacheDns(CacheDns cacheDns) {
+        transporte.setCacheDns(cacheDns);
+    }
+
+    public long getHandshakesCompletos() {
+        return transporte.getHandshakesCompletos();
+    }
+
+    public long getHandshakesRetomados() {
+        return transporte.getHandshakesRetomados();
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port, final InetAddress localAddress, final int localPort, final HttpConnectionParams params) throws IOException {
+        return criaSocket(resolve(host), host, port, localAddress, localPort, params);
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port, final InetAddress clientHost, final int clientPort) throws IOException {
+        return criaSocket(resolve(host), host, port, clientHost, clientPort, null);
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port) throws IOException {
+        return criaSocket(resolve(host), host, port, null, 0, null);
+    }
+
+    /*
+     * O certificado da conexão chega ao KeyManager pela thread, que é a mesma do handshake do SSLSocket.
+     */
+    private Socket criaSocket(Inquilino inquilino, String host, int port, InetAddress localAddress, int localPort,
+                              HttpConnectionParams params) throws IOException {
+        String destino = normalizaHost(host) + ":" + port;
+        SSLSession ultima = ultimasSessoes.get(destino);
+        if (ultima != null && !inquilino.apresentou(ultima)) {
+            ultima.invalidate();
+        }
+
+        for (int tentativa = 1; ; tentativa++) {
+            SSLSocket socket;
+            emHandshake.set(inquilino);
+            try {
+                socket = (SSLSocket) (params == null ? transporte.createSocket(host, port, localAddress, localPort)
+                        : transporte.createSocket(host, port, localAddress, localPort, params));
+            } finally {
+                emHandshake.remove();
+            }
+
+            SSLSession sessao = socket.getSession();
+            if (inquilino.apresentou(sessao)) {
+                ultimasSessoes.put(destino, sessao);
+                return socket;
+            }
+            // Sessão retomada do cache que foi criada com outro certificado (ou com a chave anterior do mesmo): nenhum
+            // byte foi enviado por ela.
+            sessao.invalidate();
+            socket.close();
+            if (tentativa == TENTATIVAS_HANDSHAKE) {
+                throw new SSLHandshakeException("Não foi possível abrir uma sessão TLS com " + destino + " apresentando o certificado "
+                        + inquilino.certificado.getNomeCertificado());
+            }
+        }
+    }
+
+    private Inquilino resolve(String host) throws IOException {
+        Inquilino inquilino = resolveOuNulo(host);
+        if (inquilino == null) {
+            throw new IOException("Nenhum certificado configurado para o host: " + host);
+        }
+        return inquilino;
+    }
+
+    private Inquilino resolveOuNulo(String host) {
+        Inquilino inquilino = host == null ? null : rotas.get(normalizaHost(host));
+        return inquilino != null ? inquilino : padrao;
+    }
+
+    private Inquilino inquilino(Certificado certificado) {
+        Optional.ofNullable(certificado).orElseThrow(() -> new IllegalArgumentException("Certificado não pode ser nulo."));
+        synchronized (inquilinos) {
+            return inquilinos.computeIfAbsent(certificado, c -> {
+                Inquilino novo = new Inquilino("certificado-" + sequencia.incrementAndGet(), c);
+                porIdentificador.put(novo.identificador, novo);
+                return novo;
+            });
+        }
+    }
+
+    private static String normalizaHost(String host) {
+        return Optional.ofNullable(host).orElseThrow(() -> new IllegalArgumentException("Host não pode ser nulo."))
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Certificado de uma rota, com a chave e a cadeia lidas do KeyStore. O material é relido quando o
+     * {@link Certificado} passa a ter outro X509Certificate, e o anterior é mantido para os handshakes em curso.
+     */
+    private final class Inquilino {
+
+        private final String identificador;
+        private final Certificado certificado;
+        private final Protocol protocolo;
+        private final AtomicInteger versao = new AtomicInteger();
+        private volatile Material atual;
+        private volatile Material anterior;
+
+        private Inquilino(String identificador, Certificado certificado) {
+            this.identificador = identificador;
+            this.certificado = certificado;
+            this.protocolo = new Protocol("https", new SocketFactoryCertificado(this), 443);
+        }
+
+        private Material material() throws CertificadoException {
+            Material material = atual;
+            if (material != null && material.corresponde(certificado.getCertificate())) {
+                return material;
+            }
+            synchronized (this) {
+                material = atual;
+                if (material == null || !material.corresponde(certificado.getCertificate())) {
+                    material = carrega();
+                    anterior = atual;
+                    atual = material;
+                }
+                return material;
+            }
+        }
+
+        private Material material(String alias) {
+            Material material = atual;
+            if (material != null && material.alias.equals(alias)) {
+                return material;
+            }
+            material = anterior;
+            return material != null && material.alias.equals(alias) ? material : null;
+        }
+
+        /**
+         * Indica se a sessão apresentou o certificado vigente, já recarregado ou não; sessões sem certificado do
+         * cliente não identificam ninguém.
+         */
+        private boolean apresentou(SSLSession sessao) {
+            Certificate[] locais = sessao.getLocalCertificates();
+            if (locais == null || locais.length == 0) {
+                return true;
+            }
+            X509Certificate vigente = certificado.getCertificate();
+            if (vigente == null) {
+                Material material = atual;
+                vigente = material == null ? null : material.cadeia[0];
+            }
+            return locais[0].equals(vigente);
+        }
+
+        private Material carrega() throws CertificadoException {
+            KeyStore keyStore = CertificadoService.getKeyStore(certificado);
+            String alias = certificado.getNomeCertificado();
+            try {
+                PrivateKey chave = (PrivateKey) keyStore.getKey(alias, certificado.getSenha() == null ? null : certificado.getSenha().toCharArray());
+                Certificate[] cadeia = keyStore.getCertificateChain(alias);
+                if (chave == null || cadeia == null || cadeia.length == 0) {
+                    throw new CertificadoException("Chave privada ou cadeia não encontrada para o alias: " + alias);
+                }
+                return new Material(identificador + "#" + versao.incrementAndGet(), chave,
+                        Arrays.copyOf(cadeia, cadeia.length, X509Certificate[].class));
+            } catch (GeneralSecurityException e) {
+                throw new CertificadoException("Erro ao ler a chave do alias " + alias + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static final class Material {
+
+        private final String alias;
+        private final PrivateKey chave;
+        private final X509Certificate[] cadeia;
+
+        private Material(String alias, PrivateKey chave, X509Certificate[] cadeia) {
+            this.alias = alias;
+            this.chave = chave;
+            this.cadeia = cadeia;
+        }
+
+        private boolean corresponde(X509Certificate certificado) {
+            return certificado == null || cadeia[0] == certificado || cadeia[0].equals(certificado);
+        }
+    }
+
+    /**
+     * Fábrica do protocolo de um único certificado.
+     */
+    private final class SocketFactoryCertificado implements ProtocolSocketFactory {
+
+        private final Inquilino inquilino;
+
+        private SocketFactoryCertificado(Inquilino inquilino) {
+            this.inquilino = inquilino;
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort, HttpConnectionParams params) throws IOException {
+            return criaSocket(inquilino, host, port, localAddress, localPort, params);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress clientHost, int clientPort) throws IOException {
+            return criaSocket(inquilino, host, port, clientHost, clientPort, null);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return criaSocket(inquilino, host, port, null, 0, null);
+        }
+    }
+
+    /**
+     * Apresenta o certificado da conexão em handshake; fora de {@link #criaSocket}, o da rota do host de destino.
+     * O alias devolvido identifica o certificado e a versão da chave, para que a chave e a cadeia pedidas em seguida
+     * sejam as mesmas mesmo que o certificado seja recarregado no meio do handshake.
+     */
+    private final class KeyManagerMultiCertificado extends X509ExtendedKeyManager {
+
+        @Override
+        public String chooseClientAlias(String[] tipos, Principal[] emissores, Socket socket) {
+            Inquilino inquilino = emHandshake.get();
+            if (inquilino == null && socket instanceof SSLSocket) {
+                SSLSession sessao = ((SSLSocket) socket).getHandshakeSession();
+                inquilino = resolveOuNulo(sessao == null ? null : sessao.getPeerHost());
+            }
+            return alias(inquilino);
+        }
+
+        @Override
+        public String chooseEngineClientAlias(String[] tipos, Principal[] emissores, SSLEngine engine) {
+            Inquilino inquilino = emHandshake.get();
+            return alias(inquilino != null ? inquilino : resolveOuNulo(engine == null ? null : engine.getPeerHost()));
+        }
+
+        @Override
+        public String[] getClientAliases(String tipo, Principal[] emissores) {
+            return null;
+        }
+
+        @Override
+        public String[] getServerAliases(String tipo, Principal[] emissores) {
+            return null;
+        }
+
+        @Override
+        public String chooseServerAlias(String tipo, Principal[] emissores, Socket socket) {
+            return null;
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(String alias) {
+            Material material = material(alias);
+            return material == null ? null : material.cadeia.clone();
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            Material material = material(alias);
+            return material == null ? null : material.chave;
+        }
+
+        private String alias(Inquilino inquilino) {
+            if (inquilino == null) {
+                return null;
+            }
+            try {
+                return inquilino.material().alias;
+            } catch (CertificadoException e) {
+                log.severe("Certificado " + inquilino.certificado.getNomeCertificado() + " não apresentado: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private Material material(String alias) {
+            int separador = alias == null ? -1 : alias.lastIndexOf('#');
+            Inquilino inquilino = separador < 0 ? null : porIdentificador.get(alias.substring(0, separador));
+            return inquilino == null ? null : inquilino.material(alias);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * TrustManager que valida as cadeias contra um {@link PacoteAncoras}, consultando o índice por subject em vez de
+ * carregar todas as âncoras num {@code TrustManagerFactory}. Só as âncoras que emitiram as cadeias recebidas são
+ * decodificadas.
+ * <p>
+ * A validação é a PKIX do {@link CertPathValidator}, sem revogação (como o TrustManager padrão da JVM), mais as
+ * verificações do certificado final que a JVM faz: o uso da chave conforme o tipo de autenticação, o uso estendido e,
+ * quando a conexão pede, o nome do host (RFC 2818). Sem sessão de handshake ou sem host para comparar, a cadeia é
+ * recusada.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TrustManagerPacote extends X509ExtendedTrustManager {
+
+    private static final String OID_SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+    private static final String OID_CLIENT_AUTH = "1.3.6.1.5.5.7.3.2";
+    private static final String OID_QUALQUER_USO = "2.5.29.37.0";
+    private static final String OID_SGC_MICROSOFT = "1.3.6.1.4.1.311.10.3.3";
+    private static final String OID_SGC_NETSCAPE = "2.16.840.1.113730.4.1";
+
+    private static final int USO_ASSINATURA = 0;
+    private static final int USO_CIFRAGEM_CHAVE = 2;
+    private static final int USO_ACORDO_CHAVE = 4;
+
+    // Tipos de autenticação do servidor (troca de chaves) agrupados pelo uso da chave que exigem, como na JVM.
+    private static final Set<String> TIPOS_ASSINATURA = new HashSet<>(Arrays.asList(
+            "DHE_DSS", "DHE_RSA", "ECDHE_ECDSA", "ECDHE_RSA", "RSA_EXPORT", "UNKNOWN"));
+    private static final Set<String> TIPOS_CIFRAGEM_CHAVE = new HashSet<>(Arrays.asList("RSA"));
+    private static final Set<String> TIPOS_ACORDO_CHAVE = new HashSet<>(Arrays.asList(
+            "DH_DSS", "DH_RSA", "ECDH_ECDSA", "ECDH_RSA"));
+
+    private final PacoteAncoras pacote;
+
+    public TrustManagerPacote(PacoteAncoras pacote) {
+        this.pacote = pacote;
+    }
+
+    public PacoteAncoras getPacote() {
+        return pacote;
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo, Socket socket) throws CertificateException {
+        valida(cadeia, tipo, true);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo, Socket socket) throws CertificateException {
+        valida(cadeia, tipo, false);
+        if (socket instanceof SSLSocket && socket.isConnected()) {
+            SSLSocket sslSocket = (SSLSocket) socket;
+            verificaHost(cadeia[0], sslSocket.getSSLParameters(), sslSocket.getHandshakeSession());
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo, SSLEngine engine) throws CertificateException {
+        valida(cadeia, tipo, true);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo, SSLEngine engine) throws CertificateException {
+        valida(cadeia, tipo, false);
+        if (engine != null) {
+            verificaHost(cadeia[0], engine.getSSLParameters(), engine.getHandshakeSession());
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+        valida(cadeia, tipo, true);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+        valida(cadeia, tipo, false);
+    }
+
+    /**
+     * Decodifica todas as âncoras do pacote.
+     */
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return pacote.getTodos();
+    }
+
+    private void valida(X509Certificate[] cadeia, String tipo, boolean cliente) throws CertificateException {
+        if (cadeia == null || cadeia.length == 0) {
+            throw new IllegalArgumentException("Cadeia de certificados vazia.");
+        }
+        if (tipo == null || tipo.isEmpty()) {
+            throw new IllegalArgumentException("Tipo de autenticação vazio.");
+        }
+
+        // A cadeia termina no primeiro certificado que já é uma âncora; se nenhum for, procura a âncora que emitiu o último.
+        int tamanho = 0;
+        X509Certificate ancora = null;
+        while (tamanho < cadeia.length && ancora == null) {
+            if (pacote.contem(cadeia[tamanho])) {
+                ancora = cadeia[tamanho];
+            } else {
+                tamanho++;
+            }
+        }
+        // Quando o próprio certificado final é a âncora não há caminho a validar, mas o uso da chave ainda vale.
+        if (tamanho > 0) {
+            validaCaminho(cadeia, tamanho, ancora);
+        }
+        verificaUso(cadeia[0], tipo, cliente);
+    }
+
+    private void validaCaminho(X509Certificate[] cadeia, int tamanho, X509Certificate ancora) throws CertificateException {
+        Set<TrustAnchor> ancoras = new HashSet<>();
+        if (ancora != null) {
+            ancoras.add(new TrustAnchor(ancora, null));
+        } else {
+            for (X509Certificate emissor : pacote.getPorSubject(cadeia[tamanho - 1].getIssuerX500Principal())) {
+                ancoras.add(new TrustAnchor(emissor, null));
+            }
+            if (ancoras.isEmpty()) {
+                throw new CertificateException("Nenhuma âncora confiável emitiu " + cadeia[tamanho - 1].getIssuerX500Principal());
+            }
+        }
+
+        try {
+            CertPath caminho = CertificateFactory.getInstance("X.509").generateCertPath(Arrays.asList(cadeia).subList(0, tamanho));
+            PKIXParameters parametros = new PKIXParameters(ancoras);
+            parametros.setRevocationEnabled(false);
+            CertPathValidator.getInstance("PKIX").validate(caminho, parametros);
+        } catch (GeneralSecurityException e) {
+            throw new CertificateException("Cadeia não confiável: " + e.getMessage(), e);
+        }
+    }
+
+    /*
+     * As mesmas regras do EndEntityChecker da JVM: o cliente precisa de assinatura digital; o servidor, do uso que a
+     * troca de chaves negociada exige. Certificados sem as extensões não são restringidos.
+     */
+    private static void verificaUso(X509Certificate certificado, String tipo, boolean cliente) throws CertificateException {
+        int uso;
+        if (cliente || TIPOS_ASSINATURA.contains(tipo)) {
+            uso = USO_ASSINATURA;
+        } else if (TIPOS_CIFRAGEM_CHAVE.contains(tipo)) {
+            uso = USO_CIFRAGEM_CHAVE;
+        } else if (TIPOS_ACORDO_CHAVE.contains(tipo)) {
+            uso = USO_ACORDO_CHAVE;
+        } else {
+            throw new CertificateException("Tipo de autenticação desconhecido: " + tipo);
+        }
+
+        boolean[] usosChave = certificado.getKeyUsage();
+        if (usosChave != null && (usosChave.length <= uso || !usosChave[uso])) {
+            throw new CertificateException("Uso da chave não permite " + tipo + ": " + certificado.getSubjectX500Principal());
+        }
+
+        List<String> usos = certificado.getExtendedKeyUsage();
+        if (usos == null || usos.contains(OID_QUALQUER_USO)) {
+            return;
+        }
+        boolean permitido = cliente ? usos.contains(OID_CLIENT_AUTH)
+                : usos.contains(OID_SERVER_AUTH) || usos.contains(OID_SGC_MICROSOFT) || usos.contains(OID_SGC_NETSCAPE);
+        if (!permitido) {
+            throw new CertificateException("Uso estendido da chave não permite " + (cliente ? OID_CLIENT_AUTH : OID_SERVER_AUTH)
+                    + ": " + certificado.getSubjectX500Principal());
+        }
+    }
+
+    private static void verificaHost(X509Certificate certificado, SSLParameters parametros, SSLSession sessao) throws CertificateException {
+        if (sessao == null) {
+            throw new CertificateException("Cadeia recebida fora de um handshake.");
+        }
+        String algoritmo = parametros.getEndpointIdentificationAlgorithm();
+        if (algoritmo == null || algoritmo.isEmpty()) {
+            return;
+        }
+        if (!"HTTPS".equalsIgnoreCase(algoritmo)) {
+            throw new CertificateException("Verificação de nome não suportada: " + algoritmo);
+        }
+
+        // Como na JVM, o nome enviado no SNI tem preferência; se não corresponder e for outro, vale o host da conexão.
+        String peerHost = normalizaHost(sessao.getPeerHost());
+        String sni = nomeSni(sessao);
+        if (sni != null) {
+            if (correspondeAoHost(certificado, sni)) {
+                return;
+            }
+            if (sni.equals(peerHost)) {
+                throw new CertificateException("O certificado de " + certificado.getSubjectX500Principal() + " não é válido para " + sni);
+            }
+        }
+        if (peerHost == null) {
+            throw new CertificateException("Host do servidor desconhecido: o nome do certificado não pode ser verificado.");
+        }
+        if (!correspondeAoHost(certificado, peerHost)) {
+            throw new CertificateException("O certificado de " + certificado.getSubjectX500Principal() + " não é válido para " + peerHost);
+        }
+    }
+
+    private static boolean correspondeAoHost(X509Certificate certificado, String host) throws CertificateException {
+        boolean ip = host.indexOf(':') >= 0 || host.matches("[0-9.]+");
+        Collection<List<?>> nomes = certificado.getSubjectAlternativeNames();
+        boolean temDns = false;
+        if (nomes != null) {
+            for (List<?> nome : nomes) {
+                int tipo = (Integer) nome.get(0);
+                if (ip && tipo == 7 && mesmoIp(host, String.valueOf(nome.get(1)))) {
+                    return true;
+                }
+                if (tipo == 2) {
+                    temDns = true;
+                    if (!ip && nomeCorresponde(host, String.valueOf(nome.get(1)))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        // Endereços IP só são aceitos pelo SubjectAltName; o CN vale apenas para nomes, sem dNSName no certificado.
+        return !ip && !temDns && nomeCorresponde(host, CertificadoService.extractCN(certificado.getSubjectX500Principal().getName()));
+    }
+
+    /**
+     * Compara o host com um nome do certificado, aceitando o curinga só como o primeiro rótulo inteiro ({@code *.dominio}).
+     */
+    private static boolean nomeCorresponde(String host, String nome) {
+        if (nome == null) {
+            return false;
+        }
+        nome = nome.toLowerCase(Locale.ROOT);
+        if (nome.startsWith("*.")) {
+            int ponto = host.indexOf('.');
+            return ponto > 0 && host.substring(ponto).equals(nome.substring(1)) && nome.indexOf('.', 2) > 0;
+        }
+        return host.equals(nome);
+    }
+
+    /*
+     * Literais IP não consultam o DNS; a comparação pelos bytes iguala as formas abreviadas do IPv6.
+     */
+    private static boolean mesmoIp(String host, String ip) {
+        try {
+            return InetAddress.getByName(host).equals(InetAddress.getByName(ip));
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static String nomeSni(SSLSession sessao) {
+        if (sessao instanceof ExtendedSSLSession) {
+            for (SNIServerName nome : ((ExtendedSSLSession) sessao).getRequestedServerNames()) {
+                if (nome.getType() == 0) {
+                    return normalizaHost(new SNIHostName(nome.getEncoded()).getAsciiName());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String normalizaHost(String host) {
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+    }
+}
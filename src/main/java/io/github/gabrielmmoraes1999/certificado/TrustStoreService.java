@@ -0,0 +1,215 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Carrega cada cacert uma única vez e entrega o mesmo {@link Cacert} (e os mesmos TrustManagers) para todas as
+ * fábricas de socket. Os truststores são identificados pelo caminho do arquivo ou pelo digest do conteúdo.
+ * <p>
+ * Os TrustManagers de cada cacert guardam as cadeias já validadas ({@link CacheCadeiaValidada}), compartilhadas por
+ * todas as conexões que usam o mesmo cacert.
+ * <p>
+ * Além do JKS, aceita o {@link PacoteAncoras}, reconhecido pelo conteúdo. Arquivos de pacote são mapeados em memória e
+ * o cacert embarcado usa o pacote gerado no build ({@code /cacert.ancoras}) quando ele está no classpath.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TrustStoreService {
+
+    private static final char[] SENHA_CACERT = "changeit".toCharArray();
+    private static final String CACERT_PADRAO = "/cacert";
+    private static final String PACOTE_PADRAO = "/cacert.ancoras";
+
+    private static final ConcurrentMap<String, Cacert> porDigest = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Path, Cacert> porCaminho = new ConcurrentHashMap<>();
+    private static volatile Cacert padrao;
+
+    private TrustStoreService() {
+    }
+
+    /**
+     * Cacert embarcado na biblioteca ({@code /cacert.ancoras} ou, na falta dele, {@code /cacert}).
+     */
+    public static Cacert getPadrao() throws CertificadoException {
+        Cacert cacert = padrao;
+        if (cacert == null) {
+            synchronized (TrustStoreService.class) {
+                cacert = padrao;
+                if (cacert == null) {
+                    cacert = padrao = get(lerCacertPadrao());
+                }
+            }
+        }
+        return cacert;
+    }
+
+    public static Cacert get(Path arquivo) throws CertificadoException {
+        Path caminho = Optional.ofNullable(arquivo).orElseThrow(() -> new IllegalArgumentException("Cacert não pode ser nulo."))
+                .toAbsolutePath().normalize();
+        Cacert cacert = porCaminho.get(caminho);
+        return cacert != null ? cacert : recarregar(caminho);
+    }
+
+    public static Cacert get(InputStream cacert) throws CertificadoException {
+        try {
+            return get(lerTudo(Optional.ofNullable(cacert).orElseThrow(() -> new IllegalArgumentException("Cacert não pode ser nulo."))));
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao ler Cacert: " + e.getMessage(), e);
+        }
+    }
+
+    public static Cacert get(byte[] conteudo) throws CertificadoException {
+        String id = DigestUtil.hex(DigestUtil.sha256(conteudo));
+        Cacert cacert = porDigest.get(id);
+        if (cacert == null) {
+            cacert = carregar(id, conteudo);
+            Cacert existente = porDigest.putIfAbsent(id, cacert);
+            if (existente != null) {
+                cacert = existente;
+            }
+        }
+        return cacert;
+    }
+
+    /**
+     * Busca um cacert já carregado pelo digest do seu conteúdo.
+     */
+    public static Optional<Cacert> getPorDigest(String id) {
+        return Optional.ofNullable(porDigest.get(id));
+    }
+
+    /**
+     * Relê o arquivo informado. Se o conteúdo mudou, os próximos protocolos construídos passam a usar o novo cacert.
+     */
+    public static Cacert recarregar(Path arquivo) throws CertificadoException {
+        Path caminho = arquivo.toAbsolutePath().normalize();
+        try {
+            Cacert cacert = isArquivoPacote(caminho) ? getPacote(PacoteAncoras.abrir(caminho)) : get(Files.readAllBytes(caminho));
+            porCaminho.put(caminho, cacert);
+            return cacert;
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao ler Cacert " + caminho + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodifica novamente o cacert embarcado na biblioteca.
+     */
+    public static Cacert recarregarPadrao() throws CertificadoException {
+        synchronized (TrustStoreService.class) {
+            byte[] conteudo = lerCacertPadrao();
+            String id = DigestUtil.hex(DigestUtil.sha256(conteudo));
+            Cacert cacert = carregar(id, conteudo);
+            porDigest.put(id, cacert);
+            padrao = cacert;
+            return cacert;
+        }
+    }
+
+    public static void limpar() {
+        synchronized (TrustStoreService.class) {
+            porDigest.clear();
+            porCaminho.clear();
+            padrao = null;
+        }
+    }
+
+    private static Cacert getPacote(PacoteAncoras pacote) {
+        String id = DigestUtil.hex(pacote.sha256());
+        Cacert cacert = porDigest.get(id);
+        if (cacert == null) {
+            cacert = carregarPacote(id, pacote);
+            Cacert existente = porDigest.putIfAbsent(id, cacert);
+            if (existente != null) {
+                cacert = existente;
+            }
+        }
+        return cacert;
+    }
+
+    private static Cacert carregarPacote(String id, PacoteAncoras pacote) {
+        TrustManager[] trustManagers = CacheCadeiaValidada.aplicar(new TrustManager[]{new TrustManagerPacote(pacote)});
+        return new Cacert(id, null, trustManagers, (CacheCadeiaValidada) trustManagers[0], pacote);
+    }
+
+    private static boolean isArquivoPacote(Path arquivo) throws IOException {
+        byte[] cabecalho = new byte[16];
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            int lidos = 0;
+            int n;
+            while (lidos < cabecalho.length && (n = in.read(cabecalho, lidos, cabecalho.length - lidos)) != -1) {
+                lidos += n;
+            }
+            return lidos == cabecalho.length && PacoteAncoras.isPacote(cabecalho);
+        }
+    }
+
+    private static Cacert carregar(String id, byte[] conteudo) throws CertificadoException {
+        if (PacoteAncoras.isPacote(conteudo)) {
+            try {
+                return carregarPacote(id, PacoteAncoras.ler(conteudo));
+            } catch (IOException e) {
+                throw new CertificadoException("Erro ao carregar Cacert: " + e.getMessage(), e);
+            }
+        }
+
+        try (InputStream in = new ByteArrayInputStream(conteudo)) {
+            KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            trustStore.load(in, SENHA_CACERT);
+            TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(trustStore);
+            TrustManager[] trustManagers = CacheCadeiaValidada.aplicar(trustManagerFactory.getTrustManagers());
+            CacheCadeiaValidada cacheCadeias = Arrays.stream(trustManagers).filter(CacheCadeiaValidada.class::isInstance)
+                    .map(CacheCadeiaValidada.class::cast).findFirst().orElse(null);
+            return new Cacert(id, trustStore, trustManagers, cacheCadeias, null);
+        } catch (KeyStoreException | NoSuchAlgorithmException | CertificateException | IOException e) {
+            throw new CertificadoException("Erro ao carregar Cacert: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] lerCacertPadrao() throws CertificadoException {
+        try (InputStream pacote = TrustStoreService.class.getResourceAsStream(PACOTE_PADRAO)) {
+            if (pacote != null) {
+                return lerTudo(pacote);
+            }
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao ler Cacert padrão: " + e.getMessage(), e);
+        }
+
+        try (InputStream in = TrustStoreService.class.getResourceAsStream(CACERT_PADRAO)) {
+            if (in == null) {
+                throw new CertificadoException("Cacert padrão não encontrado: " + CACERT_PADRAO);
+            }
+            return lerTudo(in);
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao ler Cacert padrão: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] lerTudo(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[8192];
+        int lidos;
+        while ((lidos = in.read(buffer)) != -1) {
+            out.write(buffer, 0, lidos);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Algoritmos de assinatura RSA. Os leiautes da NF-e, CT-e e da maioria das NFS-e exigem {@link #SHA1}.
+ */
+@AllArgsConstructor
+@Getter
+@SuppressWarnings("WeakerAccess")
+public enum AlgoritmoAssinatura {
+    SHA1("http://www.w3.org/2000/09/xmldsig#rsa-sha1", "http://www.w3.org/2000/09/xmldsig#sha1", "SHA1withRSA", "SHA-1", "1.3.14.3.2.26"),
+    SHA256("http://www.w3.org/2001/04/xmldsig-more#rsa-sha256", "http://www.w3.org/2001/04/xmlenc#sha256", "SHA256withRSA", "SHA-256", "2.16.840.1.101.3.4.2.1");
+
+    private final String signatureMethodXml;
+    private final String digestMethodXml;
+    private final String assinaturaJca;
+    private final String digestJca;
+    private final String digestOid;
+}
@@ -0,0 +1,248 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DerWriter;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Assinatura CMS/PKCS#7 destacada ({@code .p7s}) de arquivos de qualquer tamanho com um {@link Certificado}.
+ * <p>
+ * O conteúdo é lido do {@link FileChannel} em blocos de tamanho fixo, num buffer direto reaproveitado por thread, e
+ * só o hash é mantido: a memória usada não depende do tamanho do arquivo. O SignedData gerado tem os atributos
+ * contentType, signingTime e messageDigest e a cadeia de certificados do certificado.
+ * <p>
+ * As partes fixas da estrutura (certificados, identificação do assinante e algoritmos) são codificadas uma única vez,
+ * e cada thread mantém o seu {@link Signature} já inicializado com a chave privada.
+ */
+@SuppressWarnings("WeakerAccess")
+public class AssinaturaCms implements AutoCloseable {
+
+    private static final String OID_DATA = "1.2.840.113549.1.7.1";
+    private static final String OID_SIGNED_DATA = "1.2.840.113549.1.7.2";
+    private static final String OID_CONTENT_TYPE = "1.2.840.113549.1.9.3";
+    private static final String OID_MESSAGE_DIGEST = "1.2.840.113549.1.9.4";
+    private static final String OID_SIGNING_TIME = "1.2.840.113549.1.9.5";
+    private static final String OID_RSA = "1.2.840.113549.1.1.1";
+
+    private static final int TAMANHO_BUFFER = 256 * 1024;
+
+    private final ChaveAssinatura chave;
+    private final AlgoritmoAssinatura algoritmo;
+    private final ExecutorService executor;
+
+    private final byte[] algoritmoDigest;
+    private final byte[] algoritmoAssinatura;
+    private final byte[] identificacaoAssinante;
+    private final byte[] certificados;
+    private final byte[] atributoContentType;
+
+    private final ThreadLocal<MessageDigest> digests;
+    private final ThreadLocal<Signature> assinaturas;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(TAMANHO_BUFFER));
+
+    public AssinaturaCms(Certificado certificado) throws CertificadoException {
+        this(certificado, AlgoritmoAssinatura.SHA256, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param paralelismo quantidade máxima de arquivos assinados ao mesmo tempo nos lotes
+     */
+    public AssinaturaCms(Certificado certificado, AlgoritmoAssinatura algoritmo, int paralelismo) throws CertificadoException {
+        if (paralelismo <= 0) {
+            throw new IllegalArgumentException("Paralelismo deve ser maior que zero.");
+        }
+        this.chave = ChaveAssinatura.de(certificado);
+        this.algoritmo = algoritmo;
+        if (!"RSA".equals(chave.getChavePrivada().getAlgorithm())) {
+            throw new CertificadoException("Assinatura CMS suporta somente chaves RSA: " + chave.getChavePrivada().getAlgorithm());
+        }
+
+        try {
+            X509Certificate x509 = chave.getCertificado();
+            this.algoritmoDigest = DerWriter.algoritmo(algoritmo.getDigestOid());
+            this.algoritmoAssinatura = DerWriter.algoritmo(OID_RSA);
+            this.identificacaoAssinante = DerWriter.sequencia(x509.getIssuerX500Principal().getEncoded(),
+                    DerWriter.inteiro(x509.getSerialNumber()));
+
+            byte[][] cadeia = new byte[chave.getCadeia().length][];
+            for (int i = 0; i < cadeia.length; i++) {
+                cadeia[i] = chave.getCadeia()[i].getEncoded();
+            }
+            this.certificados = DerWriter.conjuntoImplicito(0, cadeia);
+            this.atributoContentType = atributo(OID_CONTENT_TYPE, DerWriter.oid(OID_DATA));
+
+            // Valida os algoritmos uma vez; nas threads as instâncias são criadas sob demanda.
+            MessageDigest.getInstance(algoritmo.getDigestJca());
+            novaAssinatura();
+        } catch (GeneralSecurityException e) {
+            throw new CertificadoException("Erro ao preparar a assinatura CMS: " + e.getMessage(), e);
+        }
+
+        this.digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algoritmo.getDigestJca());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        });
+        this.assinaturas = ThreadLocal.withInitial(() -> {
+            try {
+                return novaAssinatura();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        });
+        this.executor = Executors.newFixedThreadPool(paralelismo, ThreadUtil.daemonNumerada("certificado-assinatura-cms"));
+    }
+
+    /**
+     * Assina o arquivo na thread atual.
+     *
+     * @return o ContentInfo/SignedData codificado em DER, no formato de um arquivo {@code .p7s}
+     */
+    public byte[] assinar(Path arquivo) throws CertificadoException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            return assinarDigest(digest(canal));
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao ler o arquivo " + arquivo + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Assina o conteúdo lido do stream, que não é fechado.
+     */
+    public byte[] assinar(InputStream conteudo) throws CertificadoException {
+        try {
+            return assinarDigest(digest(Channels.newChannel(conteudo)));
+        } catch (IOException e) {
+            throw new CertificadoException("Erro ao ler o conteúdo: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Assina um hash já calculado com o algoritmo de digest desta instância.
+     */
+    public byte[] assinarDigest(byte[] hash) throws CertificadoException {
+        byte[][] atributos = {
+                atributoContentType,
+                atributo(OID_SIGNING_TIME, DerWriter.tempo(Instant.now())),
+                atributo(OID_MESSAGE_DIGEST, DerWriter.octetString(hash))
+        };
+
+        byte[] valorAssinatura;
+        Signature assinatura = assinaturas.get();
+        try {
+            // A assinatura é calculada sobre os atributos codificados como SET OF, e não com a tag [0] do SignerInfo.
+            assinatura.update(DerWriter.conjunto(atributos));
+            valorAssinatura = assinatura.sign();
+        } catch (GeneralSecurityException | RuntimeException e) {
+            assinaturas.remove();
+            throw new CertificadoException("Erro ao assinar: " + e.getMessage(), e);
+        }
+
+        byte[] signerInfo = DerWriter.sequencia(
+                DerWriter.inteiro(1),
+                identificacaoAssinante,
+                algoritmoDigest,
+                DerWriter.conjuntoImplicito(0, atributos),
+                algoritmoAssinatura,
+                DerWriter.octetString(valorAssinatura));
+
+        byte[] signedData = DerWriter.sequencia(
+                DerWriter.inteiro(1),
+                DerWriter.conjunto(algoritmoDigest),
+                DerWriter.sequencia(DerWriter.oid(OID_DATA)),
+                certificados,
+                DerWriter.conjunto(signerInfo));
+
+        return DerWriter.sequencia(DerWriter.oid(OID_SIGNED_DATA), DerWriter.contexto(0, signedData));
+    }
+
+    /**
+     * Assina os arquivos em paralelo.
+     *
+     * @return as assinaturas na ordem dos arquivos informados
+     * @throws CertificadoException com o primeiro arquivo que não pôde ser assinado
+     */
+    public Map<Path, byte[]> assinarLote(Collection<Path> arquivos) throws CertificadoException {
+        List<Path> ordem = new ArrayList<>(arquivos);
+        List<Future<byte[]>> tarefas = new ArrayList<>(ordem.size());
+        for (Path arquivo : ordem) {
+            tarefas.add(executor.submit(() -> assinar(arquivo)));
+        }
+
+        Map<Path, byte[]> assinaturasLote = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < tarefas.size(); i++) {
+                try {
+                    assinaturasLote.put(ordem.get(i), tarefas.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new CertificadoException("Erro ao assinar " + ordem.get(i) + ": " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CertificadoException("Assinatura do lote interrompida.", e);
+        } finally {
+            tarefas.forEach(tarefa -> tarefa.cancel(true));
+        }
+        return assinaturasLote;
+    }
+
+    public AlgoritmoAssinatura getAlgoritmo() {
+        return algoritmo;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private byte[] digest(ReadableByteChannel canal) throws IOException {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        while (canal.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return digest.digest();
+    }
+
+    private Signature novaAssinatura() throws GeneralSecurityException {
+        Signature assinatura = Signature.getInstance(algoritmo.getAssinaturaJca());
+        assinatura.initSign(chave.getChavePrivada());
+        return assinatura;
+    }
+
+    private static byte[] atributo(String oid, byte[] valor) {
+        return DerWriter.sequencia(DerWriter.oid(oid), DerWriter.conjunto(valor));
+    }
+}
@@ -0,0 +1,239 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import lombok.AllArgsConstructor;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.keyinfo.KeyInfo;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Assinatura XML envelopada (XMLDSig) de documentos fiscais (NF-e, NFC-e, CT-e, MDF-e, NFS-e, eventos) com um
+ * {@link Certificado}.
+ * <p>
+ * A chave privada é lida uma única vez; fábricas de assinatura, métodos de assinatura, digest, transformação e
+ * canonicalização, KeyInfo, parsers e serializadores, que não são thread-safe, ficam um por thread. Lotes são
+ * assinados em paralelo no executor da instância, que deve ser encerrada com {@link #close()}.
+ * <p>
+ * Cada elemento com o nome informado (ex.: {@code infNFe}) é assinado pela referência ao seu atributo {@code Id}, e o
+ * elemento {@code Signature} é incluído no elemento pai, como exigem os leiautes fiscais.
+ */
+@SuppressWarnings("WeakerAccess")
+public class AssinaturaXml implements AutoCloseable {
+
+    private static final String DECLARACAO_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    private final ChaveAssinatura chave;
+    private final AlgoritmoAssinatura algoritmo;
+    private final ExecutorService executor;
+
+    private final ThreadLocal<Metodos> metodos = ThreadLocal.withInitial(() -> {
+        try {
+            return criaMetodos();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    });
+    private final ThreadLocal<DocumentBuilder> parsers = ThreadLocal.withInitial(ParserXml::criaParser);
+    private final ThreadLocal<Transformer> serializadores = ThreadLocal.withInitial(AssinaturaXml::criaSerializador);
+
+    public AssinaturaXml(Certificado certificado) throws CertificadoException {
+        this(certificado, AlgoritmoAssinatura.SHA1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param paralelismo quantidade máxima de documentos assinados ao mesmo tempo nos lotes
+     */
+    public AssinaturaXml(Certificado certificado, AlgoritmoAssinatura algoritmo, int paralelismo) throws CertificadoException {
+        if (paralelismo <= 0) {
+            throw new IllegalArgumentException("Paralelismo deve ser maior que zero.");
+        }
+        this.chave = ChaveAssinatura.de(certificado);
+        this.algoritmo = algoritmo;
+
+        try {
+            // Valida os algoritmos uma vez; nas threads os métodos são criados sob demanda.
+            metodos.set(criaMetodos());
+        } catch (GeneralSecurityException e) {
+            throw new CertificadoException("Erro ao preparar a assinatura XML: " + e.getMessage(), e);
+        }
+
+        this.executor = Executors.newFixedThreadPool(paralelismo, ThreadUtil.daemonNumerada("certificado-assinatura"));
+    }
+
+    /**
+     * Assina, na thread atual, todos os elementos {@code tag} do documento.
+     *
+     * @param xml documento a assinar
+     * @param tag nome local do elemento assinado, ex.: {@code infNFe}, {@code infEvento}, {@code infCte}
+     * @return o documento assinado
+     */
+    public String assinar(String xml, String tag) throws CertificadoException {
+        try {
+            Document documento = parsers.get().parse(new InputSource(new StringReader(xml)));
+            NodeList nodes = documento.getElementsByTagNameNS("*", tag);
+            if (nodes.getLength() == 0) {
+                throw new CertificadoException("Elemento " + tag + " não encontrado no XML.");
+            }
+
+            List<Element> elementos = new ArrayList<>(nodes.getLength());
+            for (int i = 0; i < nodes.getLength(); i++) {
+                elementos.add((Element) nodes.item(i));
+            }
+            for (Element elemento : elementos) {
+                assinaElemento(elemento);
+            }
+
+            return serializa(documento, xml.trim().startsWith("<?xml"));
+        } catch (CertificadoException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CertificadoException("Erro ao assinar XML: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Assina o documento no executor da instância.
+     */
+    public CompletableFuture<String> assinarAsync(String xml, String tag) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return assinar(xml, tag);
+            } catch (CertificadoException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Assina um lote de documentos em paralelo, mantendo a ordem de entrada.
+     *
+     * @throws CertificadoException com a posição do primeiro documento que não pôde ser assinado
+     */
+    public List<String> assinarLote(Collection<String> xmls, String tag) throws CertificadoException {
+        List<Future<String>> tarefas = new ArrayList<>(xmls.size());
+        for (String xml : xmls) {
+            tarefas.add(executor.submit(() -> assinar(xml, tag)));
+        }
+
+        List<String> assinados = new ArrayList<>(tarefas.size());
+        try {
+            for (int i = 0; i < tarefas.size(); i++) {
+                try {
+                    assinados.add(tarefas.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new CertificadoException("Erro ao assinar o documento " + i + " do lote: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CertificadoException("Assinatura do lote interrompida.", e);
+        } finally {
+            tarefas.forEach(tarefa -> tarefa.cancel(true));
+        }
+        return assinados;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void assinaElemento(Element elemento) throws Exception {
+        String id = elemento.getAttribute("Id");
+        Metodos preparados = metodos.get();
+        XMLSignatureFactory fabrica = preparados.fabrica;
+
+        Reference referencia = fabrica.newReference(id.isEmpty() ? "" : "#" + id, preparados.digestMethod, preparados.transforms, null, null);
+        DOMSignContext contexto = new DOMSignContext(chave.getChavePrivada(), elemento.getParentNode());
+        if (!id.isEmpty()) {
+            contexto.setIdAttributeNS(elemento, null, "Id");
+        }
+
+        fabrica.newXMLSignature(fabrica.newSignedInfo(preparados.canonicalizationMethod, preparados.signatureMethod,
+                Collections.singletonList(referencia)), preparados.keyInfo).sign(contexto);
+    }
+
+    /*
+     * Os métodos da API XMLDSig guardam estado da última assinatura (o SignatureMethod mantém o seu Signature, por
+     * exemplo) e não podem ser compartilhados entre threads.
+     */
+    private Metodos criaMetodos() throws GeneralSecurityException {
+        XMLSignatureFactory fabrica = XMLSignatureFactory.getInstance("DOM");
+        KeyInfoFactory keyInfoFactory = fabrica.getKeyInfoFactory();
+        return new Metodos(fabrica,
+                fabrica.newSignatureMethod(algoritmo.getSignatureMethodXml(), null),
+                fabrica.newDigestMethod(algoritmo.getDigestMethodXml(), null),
+                fabrica.newCanonicalizationMethod(CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null),
+                Collections.unmodifiableList(Arrays.asList(
+                        fabrica.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null),
+                        fabrica.newTransform(CanonicalizationMethod.INCLUSIVE, (TransformParameterSpec) null))),
+                keyInfoFactory.newKeyInfo(Collections.singletonList(
+                        keyInfoFactory.newX509Data(Collections.singletonList(chave.getCertificado())))));
+    }
+
+    private String serializa(Document documento, boolean declaracao) throws Exception {
+        StringWriter saida = new StringWriter();
+        if (declaracao) {
+            saida.write(DECLARACAO_XML);
+        }
+        serializadores.get().transform(new DOMSource(documento), new StreamResult(saida));
+        return saida.toString();
+    }
+
+    private static Transformer criaSerializador() {
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            return transformer;
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Metodos {
+        private final XMLSignatureFactory fabrica;
+        private final SignatureMethod signatureMethod;
+        private final DigestMethod digestMethod;
+        private final CanonicalizationMethod canonicalizationMethod;
+        private final List<Transform> transforms;
+        private final KeyInfo keyInfo;
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.CertificadoService;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * Chave privada e cadeia do certificado, lidas do KeyStore uma única vez para todas as assinaturas.
+ */
+@AllArgsConstructor
+@Getter
+final class ChaveAssinatura {
+
+    private final PrivateKey chavePrivada;
+    private final X509Certificate certificado;
+    private final X509Certificate[] cadeia;
+
+    static ChaveAssinatura de(Certificado certificado) throws CertificadoException {
+        KeyStore keyStore = CertificadoService.getKeyStore(certificado);
+        try {
+            PrivateKey chave = (PrivateKey) keyStore.getKey(certificado.getNomeCertificado(),
+                    certificado.getSenha() == null ? null : certificado.getSenha().toCharArray());
+            if (chave == null) {
+                throw new CertificadoException("Chave privada não encontrada para o alias: " + certificado.getNomeCertificado());
+            }
+
+            X509Certificate x509 = CertificadoService.getCertificate(certificado, keyStore);
+            Certificate[] cadeia = keyStore.getCertificateChain(certificado.getNomeCertificado());
+            X509Certificate[] cadeiaX509 = cadeia == null ? new X509Certificate[]{x509} :
+                    Arrays.copyOf(cadeia, cadeia.length, X509Certificate[].class);
+            return new ChaveAssinatura(chave, x509, cadeiaX509);
+        } catch (CertificadoException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CertificadoException("Erro ao carregar a chave privada: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.cert.X509Certificate;
+
+/**
+ * Resultado da verificação de um documento assinado. Falhas de leitura ou de formato não interrompem o lote e
+ * aparecem como um resultado inválido com a {@code mensagem} do erro.
+ */
+@AllArgsConstructor
+@Getter
+@SuppressWarnings("WeakerAccess")
+public class ResultadoVerificacao {
+
+    /**
+     * Posição do documento no lote (XML) ou caminho da assinatura (CMS).
+     */
+    private final String identificador;
+    private final boolean assinaturaValida;
+    private final boolean cadeiaValida;
+    private final X509Certificate certificado;
+    private final String mensagem;
+
+    public boolean isValido() {
+        return assinaturaValida && cadeiaValida;
+    }
+
+    static ResultadoVerificacao erro(String identificador, String mensagem) {
+        return new ResultadoVerificacao(identificador, false, false, null, mensagem);
+    }
+}
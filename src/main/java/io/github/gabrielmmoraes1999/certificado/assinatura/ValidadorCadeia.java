@@ -0,0 +1,145 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Cacert;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+
+import java.io.ByteArrayInputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.cert.CertPathBuilder;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXBuilderParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CertSelector;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Validação de cadeias de certificados contra as âncoras de um {@link Cacert}, carregadas uma única vez.
+ * <p>
+ * Certificados decodificados e cadeias já validadas ficam em cache pela impressão digital do certificado, então
+ * documentos assinados pelo mesmo certificado não repetem a decodificação nem a construção do caminho. Uma cadeia
+ * validada volta a ser verificada quando o primeiro certificado dela vence.
+ */
+final class ValidadorCadeia {
+
+    private static final int TAMANHO_MAXIMO_CACHE = 10_000;
+
+    private final Set<TrustAnchor> ancoras;
+    private final ConcurrentMap<String, X509Certificate> decodificados = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> validados = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<CertPathBuilder> construtores = ThreadLocal.withInitial(() -> {
+        try {
+            return CertPathBuilder.getInstance("PKIX");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    });
+    private final ThreadLocal<CertificateFactory> fabricas = ThreadLocal.withInitial(() -> {
+        try {
+            return CertificateFactory.getInstance("X.509");
+        } catch (CertificateException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    });
+
+    ValidadorCadeia(Cacert cacert) throws CertificadoException {
+        try {
+            Set<TrustAnchor> lidas = new HashSet<>();
+            KeyStore trustStore = cacert.getTrustStore();
+            Enumeration<String> aliases = trustStore.aliases();
+            while (aliases.hasMoreElements()) {
+                Certificate certificado = trustStore.getCertificate(aliases.nextElement());
+                if (certificado instanceof X509Certificate) {
+                    lidas.add(new TrustAnchor((X509Certificate) certificado, null));
+                }
+            }
+            if (lidas.isEmpty()) {
+                throw new CertificadoException("Cacert sem certificados confiáveis.");
+            }
+            this.ancoras = Collections.unmodifiableSet(lidas);
+        } catch (KeyStoreException e) {
+            throw new CertificadoException("Erro ao ler o cacert: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodifica o certificado entre as posições informadas, reaproveitando uma decodificação anterior dos mesmos bytes.
+     */
+    X509Certificate decodifica(byte[] dados, int inicio, int fim) throws CertificateException {
+        MessageDigest digest = DigestUtil.sha256();
+        digest.update(dados, inicio, fim - inicio);
+        String impressaoDigital = DigestUtil.hex(digest.digest());
+
+        X509Certificate certificado = decodificados.get(impressaoDigital);
+        if (certificado == null) {
+            certificado = (X509Certificate) fabricas.get().generateCertificate(new ByteArrayInputStream(dados, inicio, fim - inicio));
+            limita(decodificados);
+            decodificados.putIfAbsent(impressaoDigital, certificado);
+        }
+        return certificado;
+    }
+
+    /**
+     * Valida a cadeia do certificado até uma das âncoras.
+     *
+     * @param adicionais certificados intermediários enviados junto com a assinatura
+     * @return {@code null} se a cadeia é válida, ou o motivo da falha
+     */
+    String valida(X509Certificate certificado, Collection<X509Certificate> adicionais) {
+        String impressaoDigital;
+        try {
+            impressaoDigital = DigestUtil.hex(DigestUtil.sha256(certificado.getEncoded()));
+        } catch (CertificateException e) {
+            return e.getMessage();
+        }
+
+        long agora = System.currentTimeMillis();
+        Long validoAte = validados.get(impressaoDigital);
+        if (validoAte != null && agora < validoAte) {
+            return null;
+        }
+
+        try {
+            X509CertSelector alvo = new X509CertSelector();
+            alvo.setCertificate(certificado);
+            PKIXBuilderParameters parametros = new PKIXBuilderParameters(ancoras, alvo);
+            parametros.setRevocationEnabled(false);
+            if (!adicionais.isEmpty()) {
+                parametros.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(adicionais)));
+            }
+            construtores.get().build(parametros);
+        } catch (GeneralSecurityException e) {
+            return "Cadeia de certificados inválida: " + e.getMessage();
+        }
+
+        // Só resultados positivos ficam em cache: uma falha por falta de intermediário pode não se repetir no próximo documento.
+        long vencimento = certificado.getNotAfter().getTime();
+        for (X509Certificate adicional : adicionais) {
+            vencimento = Math.min(vencimento, adicional.getNotAfter().getTime());
+        }
+        limita(validados);
+        validados.put(impressaoDigital, vencimento);
+        return null;
+    }
+
+    private static void limita(ConcurrentMap<String, ?> cache) {
+        if (cache.size() >= TAMANHO_MAXIMO_CACHE) {
+            cache.clear();
+        }
+    }
+}
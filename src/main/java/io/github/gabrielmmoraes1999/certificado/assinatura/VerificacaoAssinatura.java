@@ -0,0 +1,558 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Cacert;
+import io.github.gabrielmmoraes1999.certificado.TrustStoreService;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import io.github.gabrielmmoraes1999.certificado.util.DerReader;
+import io.github.gabrielmmoraes1999.certificado.util.DerWriter;
+import io.github.gabrielmmoraes1999.certificado.util.ThreadUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.crypto.AlgorithmMethod;
+import javax.xml.crypto.KeySelector;
+import javax.xml.crypto.KeySelectorException;
+import javax.xml.crypto.KeySelectorResult;
+import javax.xml.crypto.XMLCryptoContext;
+import javax.xml.crypto.XMLStructure;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.crypto.dsig.keyinfo.KeyInfo;
+import javax.xml.crypto.dsig.keyinfo.X509Data;
+import javax.xml.parsers.DocumentBuilder;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.io.StringReader;
+
+/**
+ * Verificação de assinaturas XML (XMLDSig envelopada) e CMS/PKCS#7 (destacadas ou com conteúdo), com a validação da
+ * cadeia do assinante contra um {@link Cacert}.
+ * <p>
+ * As âncoras de confiança são carregadas uma única vez por instância e os certificados dos assinantes, com a validação
+ * da sua cadeia, são reaproveitados entre documentos assinados pelo mesmo certificado. Os lotes são verificados em
+ * paralelo num executor com fila limitada (quando a fila enche, a thread que envia o lote também verifica), e cada
+ * documento gera um {@link ResultadoVerificacao}, sem interromper os demais. A verificação não consulta revogação.
+ * <p>
+ * Os leiautes fiscais usam RSA-SHA1, recusado pela validação segura do JDK; por isso ela fica desligada apenas no
+ * contexto desta classe, sem alterar a política global {@code jdk.xml.dsig.secureValidationPolicy}, e as suas
+ * restrições são conferidas aqui antes da validação: cada assinatura deve ter uma única referência {@code #Id} a um
+ * elemento irmão dela (o {@code infNFe}, por exemplo), com no máximo {@value #MAX_TRANSFORMACOES} transformações
+ * envelopada e de canonicalização, algoritmos de assinatura e digest conhecidos e chave RSA de pelo menos
+ * {@value #MIN_BITS_RSA} bits (EC de {@value #MIN_BITS_EC}); o documento não pode ter Ids repetidos.
+ */
+@SuppressWarnings("WeakerAccess")
+public class VerificacaoAssinatura implements AutoCloseable {
+
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_SET = 0x31;
+    private static final int TAG_CONTEXTO_0 = 0xA0;
+    private static final int TAG_CONTEXTO_1 = 0xA1;
+    private static final int TAG_CHAVE_ASSINANTE = 0x80;
+    private static final int TAMANHO_BUFFER = 256 * 1024;
+
+    private static final byte[] OID_SIGNED_DATA = valorOid("1.2.840.113549.1.7.2");
+    private static final byte[] OID_MESSAGE_DIGEST = valorOid("1.2.840.113549.1.9.4");
+    private static final String OID_SUBJECT_KEY_IDENTIFIER = "2.5.29.14";
+    private static final int MAX_TRANSFORMACOES = 5;
+    private static final int MIN_BITS_RSA = 1024;
+    private static final int MIN_BITS_EC = 224;
+    private static final Set<String> ALGORITMOS_ASSINATURA = new HashSet<>(Arrays.asList(
+            "http://www.w3.org/2000/09/xmldsig#rsa-sha1",
+            "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256",
+            "http://www.w3.org/2001/04/xmldsig-more#rsa-sha384",
+            "http://www.w3.org/2001/04/xmldsig-more#rsa-sha512",
+            "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha256",
+            "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha384",
+            "http://www.w3.org/2001/04/xmldsig-more#ecdsa-sha512"));
+    private static final Set<String> ALGORITMOS_DIGEST = new HashSet<>(Arrays.asList(
+            DigestMethod.SHA1,
+            DigestMethod.SHA256,
+            "http://www.w3.org/2001/04/xmldsig-more#sha384",
+            DigestMethod.SHA512));
+    private static final Set<String> CANONICALIZACOES = new HashSet<>(Arrays.asList(
+            CanonicalizationMethod.INCLUSIVE,
+            CanonicalizationMethod.INCLUSIVE_WITH_COMMENTS,
+            CanonicalizationMethod.EXCLUSIVE,
+            CanonicalizationMethod.EXCLUSIVE_WITH_COMMENTS,
+            "http://www.w3.org/2006/12/xml-c14n11",
+            "http://www.w3.org/2006/12/xml-c14n11#WithComments"));
+    private static final Set<String> TRANSFORMACOES = new HashSet<>(CANONICALIZACOES);
+    private static final Map<String, String> DIGESTS = new HashMap<>();
+
+    static {
+        DIGESTS.put(Arrays.toString(valorOid("1.3.14.3.2.26")), "SHA-1");
+        DIGESTS.put(Arrays.toString(valorOid("2.16.840.1.101.3.4.2.4")), "SHA-224");
+        DIGESTS.put(Arrays.toString(valorOid("2.16.840.1.101.3.4.2.1")), "SHA-256");
+        DIGESTS.put(Arrays.toString(valorOid("2.16.840.1.101.3.4.2.2")), "SHA-384");
+        DIGESTS.put(Arrays.toString(valorOid("2.16.840.1.101.3.4.2.3")), "SHA-512");
+        TRANSFORMACOES.add(Transform.ENVELOPED);
+    }
+
+    private final ValidadorCadeia validador;
+    private final ThreadPoolExecutor executor;
+
+    private final ThreadLocal<XMLSignatureFactory> fabricas = ThreadLocal.withInitial(() -> XMLSignatureFactory.getInstance("DOM"));
+    private final ThreadLocal<DocumentBuilder> parsers = ThreadLocal.withInitial(ParserXml::criaParser);
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(TAMANHO_BUFFER));
+
+    public VerificacaoAssinatura() throws CertificadoException {
+        this(TrustStoreService.getPadrao(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param cacert      âncoras de confiança dos assinantes
+     * @param paralelismo quantidade de documentos verificados ao mesmo tempo nos lotes
+     */
+    public VerificacaoAssinatura(Cacert cacert, int paralelismo) throws CertificadoException {
+        if (paralelismo <= 0) {
+            throw new IllegalArgumentException("Paralelismo deve ser maior que zero.");
+        }
+        this.validador = new ValidadorCadeia(cacert);
+        this.executor = new ThreadPoolExecutor(paralelismo, paralelismo, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(paralelismo * 4), ThreadUtil.daemonNumerada("certificado-verificacao"), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Verifica todas as assinaturas do documento; ele só é válido se todas forem.
+     */
+    public ResultadoVerificacao verificarXml(String xml) {
+        return verificarXml("0", xml);
+    }
+
+    /**
+     * Verifica uma assinatura CMS.
+     *
+     * @param assinatura arquivo {@code .p7s}
+     * @param conteudo   arquivo assinado, ou {@code null} quando o conteúdo está dentro da assinatura
+     */
+    public ResultadoVerificacao verificarCms(Path assinatura, Path conteudo) {
+        try {
+            return verificarCms(assinatura.toString(), Files.readAllBytes(assinatura), conteudo);
+        } catch (IOException e) {
+            return ResultadoVerificacao.erro(assinatura.toString(), "Erro ao ler a assinatura: " + e.getMessage());
+        }
+    }
+
+    public ResultadoVerificacao verificarCms(byte[] assinatura, Path conteudo) {
+        return verificarCms(conteudo == null ? "" : conteudo.toString(), assinatura, conteudo);
+    }
+
+    /**
+     * Verifica os documentos em paralelo; os resultados seguem a ordem de entrada e são identificados pela posição.
+     */
+    public List<ResultadoVerificacao> verificarXmlLote(List<String> xmls) throws CertificadoException {
+        List<Callable<ResultadoVerificacao>> tarefas = new ArrayList<>(xmls.size());
+        for (int i = 0; i < xmls.size(); i++) {
+            String identificador = String.valueOf(i);
+            String xml = xmls.get(i);
+            tarefas.add(() -> verificarXml(identificador, xml));
+        }
+        return executa(tarefas);
+    }
+
+    /**
+     * Verifica as assinaturas CMS em paralelo.
+     *
+     * @param assinaturas arquivo {@code .p7s} de cada assinatura e o respectivo conteúdo ({@code null} se embutido)
+     */
+    public List<ResultadoVerificacao> verificarCmsLote(Map<Path, Path> assinaturas) throws CertificadoException {
+        List<Callable<ResultadoVerificacao>> tarefas = new ArrayList<>(assinaturas.size());
+        assinaturas.forEach((assinatura, conteudo) -> tarefas.add(() -> verificarCms(assinatura, conteudo)));
+        return executa(tarefas);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private List<ResultadoVerificacao> executa(Collection<Callable<ResultadoVerificacao>> tarefas) throws CertificadoException {
+        List<Future<ResultadoVerificacao>> futuros = new ArrayList<>(tarefas.size());
+        try {
+            for (Callable<ResultadoVerificacao> tarefa : tarefas) {
+                futuros.add(executor.submit(tarefa));
+            }
+            List<ResultadoVerificacao> resultados = new ArrayList<>(futuros.size());
+            for (Future<ResultadoVerificacao> futuro : futuros) {
+                resultados.add(futuro.get());
+            }
+            return resultados;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CertificadoException("Verificação do lote interrompida.", e);
+        } catch (ExecutionException e) {
+            throw new CertificadoException("Erro na verificação do lote: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            futuros.forEach(futuro -> futuro.cancel(true));
+        }
+    }
+
+    private ResultadoVerificacao verificarXml(String identificador, String xml) {
+        try {
+            Document documento = parsers.get().parse(new InputSource(new StringReader(xml)));
+            Map<String, Element> ids = marcaIds(documento);
+            if (ids == null) {
+                return ResultadoVerificacao.erro(identificador, "O documento possui atributos Id repetidos.");
+            }
+
+            NodeList assinaturas = documento.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+            if (assinaturas.getLength() == 0) {
+                return ResultadoVerificacao.erro(identificador, "Nenhuma assinatura encontrada.");
+            }
+
+            ResultadoVerificacao resultado = null;
+            for (int i = 0; i < assinaturas.getLength(); i++) {
+                Node elementoAssinatura = assinaturas.item(i);
+                SeletorCertificado seletor = new SeletorCertificado();
+                DOMValidateContext contexto = new DOMValidateContext(seletor, elementoAssinatura);
+                // As restrições da validação segura são conferidas em verificaReferencia e no SeletorCertificado.
+                contexto.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE);
+
+                XMLSignature assinatura = fabricas.get().unmarshalXMLSignature(contexto);
+                String falhaReferencia = verificaReferencia(assinatura, elementoAssinatura, ids);
+                if (falhaReferencia != null) {
+                    return ResultadoVerificacao.erro(identificador, falhaReferencia);
+                }
+                boolean assinaturaValida = assinatura.validate(contexto);
+                String falhaCadeia = validador.valida(seletor.certificado, seletor.cadeia);
+                resultado = new ResultadoVerificacao(identificador, assinaturaValida, falhaCadeia == null, seletor.certificado,
+                        !assinaturaValida ? "Assinatura inválida." : falhaCadeia);
+                if (!resultado.isValido()) {
+                    break;
+                }
+            }
+            return resultado;
+        } catch (Exception e) {
+            return ResultadoVerificacao.erro(identificador, "Erro ao verificar XML: " + e.getMessage());
+        }
+    }
+
+    private ResultadoVerificacao verificarCms(String identificador, byte[] assinatura, Path conteudo) {
+        try {
+            DerReader der = new DerReader(assinatura);
+            der.proximo(TAG_SEQUENCE).entrar().proximo(DerWriter.TAG_OID);
+            if (!der.valorIgual(OID_SIGNED_DATA)) {
+                return ResultadoVerificacao.erro(identificador, "O arquivo não é um SignedData.");
+            }
+            der.proximo(TAG_CONTEXTO_0).entrar().proximo(TAG_SEQUENCE).entrar();
+            der.proximo(DerWriter.TAG_INTEGER);
+            der.proximo(TAG_SET);
+
+            // encapContentInfo: o conteúdo [0] só existe em assinaturas não destacadas.
+            int inicioConteudo = -1;
+            int fimConteudo = -1;
+            der.proximo(TAG_SEQUENCE).entrar().proximo(DerWriter.TAG_OID);
+            if (der.proximo() && der.getTag() == TAG_CONTEXTO_0) {
+                der.entrar().proximo(DerWriter.TAG_OCTET_STRING);
+                inicioConteudo = der.getInicio();
+                fimConteudo = der.getFim();
+                der.sair();
+            }
+            der.sair();
+            if (conteudo == null && inicioConteudo < 0) {
+                return ResultadoVerificacao.erro(identificador, "Assinatura destacada sem o conteúdo assinado.");
+            }
+
+            List<X509Certificate> certificados = new ArrayList<>();
+            ResultadoVerificacao resultado = null;
+            Map<String, byte[]> hashes = new HashMap<>();
+            while (der.proximo()) {
+                if (der.getTag() == TAG_CONTEXTO_0) {
+                    der.entrar();
+                    while (der.proximo()) {
+                        if (der.getTag() == TAG_SEQUENCE) {
+                            certificados.add(validador.decodifica(assinatura, der.getInicioElemento(), der.getFim()));
+                        }
+                    }
+                    der.sair();
+                } else if (der.getTag() == TAG_SET) {
+                    der.entrar();
+                    while (der.proximo()) {
+                        resultado = verificaSignerInfo(identificador, der, certificados, assinatura, conteudo,
+                                inicioConteudo, fimConteudo, hashes);
+                        if (!resultado.isValido()) {
+                            break;
+                        }
+                    }
+                    der.sair();
+                } else if (der.getTag() != TAG_CONTEXTO_1) {
+                    break;
+                }
+            }
+            return resultado == null ? ResultadoVerificacao.erro(identificador, "Nenhum assinante encontrado.") : resultado;
+        } catch (Exception e) {
+            return ResultadoVerificacao.erro(identificador, "Erro ao verificar CMS: " + e.getMessage());
+        }
+    }
+
+    private ResultadoVerificacao verificaSignerInfo(String identificador, DerReader der, List<X509Certificate> certificados,
+                                                    byte[] dados, Path conteudo, int inicioConteudo, int fimConteudo,
+                                                    Map<String, byte[]> hashes) throws Exception {
+        der.entrar();
+        der.proximo(DerWriter.TAG_INTEGER);
+
+        X509Certificate assinante;
+        der.proximo();
+        if (der.getTag() == TAG_SEQUENCE) {
+            der.entrar().proximo(TAG_SEQUENCE);
+            byte[] emissor = Arrays.copyOfRange(dados, der.getInicioElemento(), der.getFim());
+            der.proximo(DerWriter.TAG_INTEGER);
+            BigInteger serie = new BigInteger(Arrays.copyOfRange(dados, der.getInicio(), der.getFim()));
+            der.sair();
+            assinante = certificados.stream()
+                    .filter(c -> c.getSerialNumber().equals(serie) && Arrays.equals(c.getIssuerX500Principal().getEncoded(), emissor))
+                    .findFirst().orElse(null);
+        } else if (der.getTag() == TAG_CHAVE_ASSINANTE) {
+            byte[] identificadorChave = Arrays.copyOfRange(dados, der.getInicio(), der.getFim());
+            assinante = certificados.stream().filter(c -> identificadorChave(c, identificadorChave)).findFirst().orElse(null);
+        } else {
+            throw new IllegalArgumentException("Identificação do assinante não suportada.");
+        }
+
+        der.proximo(TAG_SEQUENCE).entrar().proximo(DerWriter.TAG_OID);
+        String algoritmoDigest = DIGESTS.get(Arrays.toString(Arrays.copyOfRange(dados, der.getInicio(), der.getFim())));
+        der.sair();
+        if (algoritmoDigest == null) {
+            throw new IllegalArgumentException("Algoritmo de digest não suportado.");
+        }
+
+        byte[] atributos = null;
+        byte[] digestAtributo = null;
+        der.proximo();
+        if (der.getTag() == TAG_CONTEXTO_0) {
+            // A assinatura cobre os atributos codificados como SET OF, com a tag trocada de [0] para SET.
+            atributos = Arrays.copyOfRange(dados, der.getInicioElemento(), der.getFim());
+            atributos[0] = (byte) TAG_SET;
+            digestAtributo = messageDigest(der, dados);
+            der.proximo();
+        }
+        der.proximo(DerWriter.TAG_OCTET_STRING);
+        byte[] valorAssinatura = Arrays.copyOfRange(dados, der.getInicio(), der.getFim());
+        der.sair();
+
+        if (assinante == null) {
+            return ResultadoVerificacao.erro(identificador, "Certificado do assinante não encontrado na assinatura.");
+        }
+
+        Signature verificador = Signature.getInstance(algoritmoDigest.replace("-", "") + "with"
+                + ("EC".equals(assinante.getPublicKey().getAlgorithm()) ? "ECDSA" : assinante.getPublicKey().getAlgorithm()));
+        verificador.initVerify(assinante.getPublicKey());
+
+        boolean assinaturaValida;
+        if (atributos != null) {
+            byte[] hash = hashes.get(algoritmoDigest);
+            if (hash == null) {
+                MessageDigest digest = MessageDigest.getInstance(algoritmoDigest);
+                hash = conteudo != null ? digestArquivo(digest, conteudo) : digestBytes(digest, dados, inicioConteudo, fimConteudo);
+                hashes.put(algoritmoDigest, hash);
+            }
+            verificador.update(atributos);
+            assinaturaValida = MessageDigest.isEqual(hash, digestAtributo) && verificador.verify(valorAssinatura);
+        } else {
+            if (conteudo != null) {
+                atualizaComArquivo(verificador, conteudo);
+            } else {
+                verificador.update(dados, inicioConteudo, fimConteudo - inicioConteudo);
+            }
+            assinaturaValida = verificador.verify(valorAssinatura);
+        }
+
+        String falhaCadeia = validador.valida(assinante, certificados);
+        return new ResultadoVerificacao(identificador, assinaturaValida, falhaCadeia == null, assinante,
+                !assinaturaValida ? "Assinatura inválida." : falhaCadeia);
+    }
+
+    private static byte[] messageDigest(DerReader der, byte[] dados) {
+        byte[] valor = null;
+        der.entrar();
+        while (der.proximo()) {
+            der.entrar().proximo(DerWriter.TAG_OID);
+            if (der.valorIgual(OID_MESSAGE_DIGEST)) {
+                der.proximo(TAG_SET).entrar().proximo(DerWriter.TAG_OCTET_STRING);
+                valor = Arrays.copyOfRange(dados, der.getInicio(), der.getFim());
+                der.sair();
+            }
+            der.sair();
+        }
+        der.sair();
+        if (valor == null) {
+            throw new IllegalArgumentException("Atributo messageDigest não encontrado.");
+        }
+        return valor;
+    }
+
+    private static boolean identificadorChave(X509Certificate certificado, byte[] identificador) {
+        byte[] extensao = certificado.getExtensionValue(OID_SUBJECT_KEY_IDENTIFIER);
+        if (extensao == null) {
+            return false;
+        }
+        // OCTET STRING da extensão contendo o KeyIdentifier, também um OCTET STRING.
+        DerReader der = new DerReader(extensao);
+        der.proximo(DerWriter.TAG_OCTET_STRING).entrar().proximo(DerWriter.TAG_OCTET_STRING);
+        return der.valorIgual(identificador);
+    }
+
+    private byte[] digestArquivo(MessageDigest digest, Path arquivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            while (canal.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    private void atualizaComArquivo(Signature verificador, Path arquivo) throws IOException, GeneralSecurityException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            while (canal.read(buffer) != -1) {
+                buffer.flip();
+                verificador.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    private static byte[] digestBytes(MessageDigest digest, byte[] dados, int inicio, int fim) {
+        digest.update(dados, inicio, fim - inicio);
+        return digest.digest();
+    }
+
+    /*
+     * Registra os atributos Id para a resolução das referências; retorna null se algum valor se repetir, pois a
+     * referência poderia apontar para um elemento diferente do que será conferido.
+     */
+    private static Map<String, Element> marcaIds(Document documento) {
+        Map<String, Element> ids = new HashMap<>();
+        NodeList elementos = documento.getElementsByTagNameNS("*", "*");
+        for (int i = 0; i < elementos.getLength(); i++) {
+            Element elemento = (Element) elementos.item(i);
+            if (elemento.hasAttribute("Id")) {
+                if (ids.put(elemento.getAttribute("Id"), elemento) != null) {
+                    return null;
+                }
+                elemento.setIdAttribute("Id", true);
+            }
+        }
+        return ids;
+    }
+
+    /*
+     * A assinatura deve cobrir exatamente o elemento irmão que ela assina (o infNFe dentro do NFe, por exemplo): uma
+     * única referência #Id, sem transformações que excluam parte do conteúdo e só com algoritmos conhecidos.
+     */
+    private static String verificaReferencia(XMLSignature assinatura, Node elementoAssinatura, Map<String, Element> ids) {
+        SignedInfo signedInfo = assinatura.getSignedInfo();
+        if (!ALGORITMOS_ASSINATURA.contains(signedInfo.getSignatureMethod().getAlgorithm())) {
+            return "Algoritmo de assinatura não permitido: " + signedInfo.getSignatureMethod().getAlgorithm();
+        }
+        if (!CANONICALIZACOES.contains(signedInfo.getCanonicalizationMethod().getAlgorithm())) {
+            return "Canonicalização não permitida na assinatura: " + signedInfo.getCanonicalizationMethod().getAlgorithm();
+        }
+        List<?> referencias = signedInfo.getReferences();
+        if (referencias.size() != 1) {
+            return "A assinatura deve ter exatamente uma referência.";
+        }
+        Reference referencia = (Reference) referencias.get(0);
+        String uri = referencia.getURI();
+        if (uri == null || !uri.startsWith("#") || uri.length() == 1) {
+            return "A referência da assinatura deve apontar para um Id do documento.";
+        }
+        Element referenciado = ids.get(uri.substring(1));
+        if (referenciado == null || referenciado.getParentNode() != elementoAssinatura.getParentNode()) {
+            return "A referência da assinatura não aponta para o elemento assinado: " + uri;
+        }
+        if (!ALGORITMOS_DIGEST.contains(referencia.getDigestMethod().getAlgorithm())) {
+            return "Algoritmo de digest não permitido: " + referencia.getDigestMethod().getAlgorithm();
+        }
+        if (referencia.getTransforms().size() > MAX_TRANSFORMACOES) {
+            return "A referência da assinatura tem mais de " + MAX_TRANSFORMACOES + " transformações.";
+        }
+        for (Object transformacao : referencia.getTransforms()) {
+            if (!TRANSFORMACOES.contains(((Transform) transformacao).getAlgorithm())) {
+                return "Transformação não permitida na assinatura: " + ((Transform) transformacao).getAlgorithm();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] valorOid(String oid) {
+        byte[] codificado = DerWriter.oid(oid);
+        return Arrays.copyOfRange(codificado, 2, codificado.length);
+    }
+
+    /**
+     * Usa a chave do primeiro certificado do X509Data e guarda os certificados para a validação da cadeia.
+     */
+    private static final class SeletorCertificado extends KeySelector {
+        private X509Certificate certificado;
+        private final List<X509Certificate> cadeia = new ArrayList<>();
+
+        @Override
+        public KeySelectorResult select(KeyInfo keyInfo, Purpose purpose, AlgorithmMethod method, XMLCryptoContext context)
+                throws KeySelectorException {
+            if (keyInfo != null) {
+                for (Object item : keyInfo.getContent()) {
+                    if (item instanceof X509Data) {
+                        for (Object dado : ((X509Data) item).getContent()) {
+                            if (dado instanceof X509Certificate) {
+                                cadeia.add((X509Certificate) dado);
+                            }
+                        }
+                    }
+                }
+            }
+            if (cadeia.isEmpty()) {
+                throw new KeySelectorException("Certificado não encontrado no KeyInfo.");
+            }
+            this.certificado = cadeia.get(0);
+            PublicKey chave = certificado.getPublicKey();
+            if (chave instanceof RSAPublicKey && ((RSAPublicKey) chave).getModulus().bitLength() < MIN_BITS_RSA) {
+                throw new KeySelectorException("Chave RSA do assinante menor que " + MIN_BITS_RSA + " bits.");
+            }
+            if (chave instanceof ECPublicKey && ((ECPublicKey) chave).getParams().getOrder().bitLength() < MIN_BITS_EC) {
+                throw new KeySelectorException("Chave EC do assinante menor que " + MIN_BITS_EC + " bits.");
+            }
+            return () -> chave;
+        }
+    }
+}
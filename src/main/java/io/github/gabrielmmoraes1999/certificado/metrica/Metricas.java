@@ -0,0 +1,38 @@
+package io.github.gabrielmmoraes1999.certificado.metrica;
+
+/**
+ * SPI de métricas da biblioteca. A implementação em uso é definida por {@link MetricasService}: a informada em
+ * {@link MetricasService#setMetricas(Metricas)}, a primeira encontrada pelo {@link java.util.ServiceLoader} ou, na
+ * falta das duas, uma implementação vazia.
+ * <p>
+ * Os {@code tags} são pares chave/valor ({@code "tipo", "ARQUIVO"}). Quando {@link #isAtivo()} é {@code false} a
+ * biblioteca não mede nada, nem lê o relógio.
+ */
+public interface Metricas {
+
+    default boolean isAtivo() {
+        return true;
+    }
+
+    Contador contador(String nome, String... tags);
+
+    Temporizador temporizador(String nome, String... tags);
+
+    Histograma histograma(String nome, String... tags);
+
+    interface Contador {
+        default void incrementa() {
+            incrementa(1);
+        }
+
+        void incrementa(long quantidade);
+    }
+
+    interface Temporizador {
+        void registra(long duracaoNanos);
+    }
+
+    interface Histograma {
+        void registra(long valor);
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.gabrielmmoraes1999.certificado.metrica;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implementação de referência que mantém as métricas em memória, para consulta direta ou para ser exportada
+ * periodicamente para outro sistema de monitoramento ({@link #coletarContadores()} e
+ * {@link #coletarDistribuicoes()}).
+ * <p>
+ * Temporizadores e histogramas usam faixas em potências de 2, então os percentis são aproximados pelo limite
+ * superior da faixa (erro máximo de 2x), sem guardar as medições.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MetricasMemoria implements Metricas {
+
+    private final ConcurrentMap<String, ContadorMemoria> contadores = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Distribuicao> distribuicoes = new ConcurrentHashMap<>();
+
+    @Override
+    public Contador contador(String nome, String... tags) {
+        return contadores.computeIfAbsent(identificador(nome, tags), k -> new ContadorMemoria());
+    }
+
+    @Override
+    public Temporizador temporizador(String nome, String... tags) {
+        return distribuicoes.computeIfAbsent(identificador(nome, tags), k -> new Distribuicao())::registra;
+    }
+
+    @Override
+    public Histograma histograma(String nome, String... tags) {
+        return distribuicoes.computeIfAbsent(identificador(nome, tags), k -> new Distribuicao())::registra;
+    }
+
+    public long getContador(String nome, String... tags) {
+        ContadorMemoria contador = contadores.get(identificador(nome, tags));
+        return contador == null ? 0 : contador.valor.sum();
+    }
+
+    /**
+     * Resumo de um temporizador ou histograma, ou {@code null} se nada foi registrado.
+     */
+    public Resumo getResumo(String nome, String... tags) {
+        Distribuicao distribuicao = distribuicoes.get(identificador(nome, tags));
+        return distribuicao == null ? null : distribuicao.resumo();
+    }
+
+    /**
+     * Valores de todos os contadores, pelo identificador {@code nome{chave=valor,...}}.
+     */
+    public Map<String, Long> coletarContadores() {
+        Map<String, Long> resultado = new TreeMap<>();
+        contadores.forEach((id, contador) -> resultado.put(id, contador.valor.sum()));
+        return resultado;
+    }
+
+    /**
+     * Resumos de todos os temporizadores e histogramas, pelo identificador {@code nome{chave=valor,...}}.
+     */
+    public Map<String, Resumo> coletarDistribuicoes() {
+        Map<String, Resumo> resultado = new TreeMap<>();
+        distribuicoes.forEach((id, distribuicao) -> resultado.put(id, distribuicao.resumo()));
+        return resultado;
+    }
+
+    public void limpar() {
+        contadores.clear();
+        distribuicoes.clear();
+    }
+
+    static String identificador(String nome, String... tags) {
+        if (tags == null || tags.length == 0) {
+            return nome;
+        }
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags devem ser informadas em pares chave/valor.");
+        }
+        StringBuilder id = new StringBuilder(nome).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    private static final class ContadorMemoria implements Contador {
+        private final LongAdder valor = new LongAdder();
+
+        @Override
+        public void incrementa(long quantidade) {
+            valor.add(quantidade);
+        }
+    }
+
+    private static final class Distribuicao {
+        private static final int FAIXAS = 64;
+
+        private final LongAdder quantidade = new LongAdder();
+        private final LongAdder soma = new LongAdder();
+        private final LongAccumulator minimo = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator maximo = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private final LongAdder[] faixas = new LongAdder[FAIXAS];
+
+        private Distribuicao() {
+            for (int i = 0; i < FAIXAS; i++) {
+                faixas[i] = new LongAdder();
+            }
+        }
+
+        private void registra(long valor) {
+            quantidade.increment();
+            soma.add(valor);
+            minimo.accumulate(valor);
+            maximo.accumulate(valor);
+            // Faixa i guarda os valores em [2^(i-1), 2^i); a faixa 0 guarda zero e negativos.
+            faixas[valor <= 0 ? 0 : FAIXAS - Long.numberOfLeadingZeros(valor)].increment();
+        }
+
+        private Resumo resumo() {
+            long[] contagens = new long[FAIXAS];
+            long total = 0;
+            for (int i = 0; i < FAIXAS; i++) {
+                contagens[i] = faixas[i].sum();
+                total += contagens[i];
+            }
+            long max = maximo.get();
+            return new Resumo(total, soma.sum(), total == 0 ? 0 : minimo.get(), total == 0 ? 0 : max,
+                    percentil(contagens, total, 0.5, max), percentil(contagens, total, 0.95, max),
+                    percentil(contagens, total, 0.99, max));
+        }
+
+        private static long percentil(long[] contagens, long total, double percentil, long maximo) {
+            if (total == 0) {
+                return 0;
+            }
+            long alvo = (long) Math.ceil(total * percentil);
+            long acumulado = 0;
+            for (int i = 0; i < FAIXAS; i++) {
+                acumulado += contagens[i];
+                if (acumulado >= alvo) {
+                    long limite = i == 0 ? 0 : i == FAIXAS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(limite, maximo);
+                }
+            }
+            return maximo;
+        }
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PACKAGE)
+    @Getter
+    public static final class Resumo {
+        private final long quantidade;
+        private final long soma;
+        private final long minimo;
+        private final long maximo;
+        private final long percentil50;
+        private final long percentil95;
+        private final long percentil99;
+
+        public double getMedia() {
+            return quantidade == 0 ? 0 : (double) soma / quantidade;
+        }
+    }
+}
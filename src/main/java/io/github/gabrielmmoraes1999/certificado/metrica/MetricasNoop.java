@@ -0,0 +1,39 @@
+package io.github.gabrielmmoraes1999.certificado.metrica;
+
+/**
+ * Implementação padrão, que descarta todas as medições.
+ */
+final class MetricasNoop implements Metricas {
+
+    static final MetricasNoop INSTANCIA = new MetricasNoop();
+
+    private static final Contador CONTADOR = quantidade -> {
+    };
+    private static final Temporizador TEMPORIZADOR = duracaoNanos -> {
+    };
+    private static final Histograma HISTOGRAMA = valor -> {
+    };
+
+    private MetricasNoop() {
+    }
+
+    @Override
+    public boolean isAtivo() {
+        return false;
+    }
+
+    @Override
+    public Contador contador(String nome, String... tags) {
+        return CONTADOR;
+    }
+
+    @Override
+    public Temporizador temporizador(String nome, String... tags) {
+        return TEMPORIZADOR;
+    }
+
+    @Override
+    public Histograma histograma(String nome, String... tags) {
+        return HISTOGRAMA;
+    }
+}
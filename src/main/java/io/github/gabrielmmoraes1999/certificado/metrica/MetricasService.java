@@ -0,0 +1,70 @@
+package io.github.gabrielmmoraes1999.certificado.metrica;
+
+import lombok.extern.java.Log;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+
+/**
+ * Ponto de acesso às métricas usadas pela biblioteca e nomes das métricas publicadas.
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public final class MetricasService {
+
+    /** Tempo de obtenção do KeyStore, com a tag {@code tipo} ({@code TipoCertificadoEnum}). */
+    public static final String KEYSTORE_CARREGAMENTO = "certificado.keystore.carregamento";
+    /** Falhas na obtenção do KeyStore, com a tag {@code tipo}. */
+    public static final String KEYSTORE_FALHAS = "certificado.keystore.falhas";
+    /** Tempo de construção do SocketFactoryDinamico (SSLContext). */
+    public static final String SOCKET_FACTORY_CONSTRUCAO = "certificado.socketfactory.construcao";
+    /** Tempo da conexão TCP aberta pelo SocketFactoryDinamico. */
+    public static final String CONEXAO_CONNECT = "certificado.conexao.connect";
+    /** Tempo do handshake TLS, com a tag {@code sessao} ({@code completa} ou {@code retomada}). */
+    public static final String CONEXAO_HANDSHAKE = "certificado.conexao.handshake";
+    /** Falhas ao abrir conexões, com a tag {@code etapa} ({@code connect} ou {@code handshake}). */
+    public static final String CONEXAO_FALHAS = "certificado.conexao.falhas";
+    /** Falhas ao obter a chave privada no AliasKeyManager. */
+    public static final String CHAVE_PRIVADA_FALHAS = "certificado.chaveprivada.falhas";
+
+    private static volatile Metricas metricas;
+
+    private MetricasService() {
+    }
+
+    public static Metricas getMetricas() {
+        Metricas atual = metricas;
+        if (atual == null) {
+            synchronized (MetricasService.class) {
+                atual = metricas;
+                if (atual == null) {
+                    atual = carregar();
+                    metricas = atual;
+                }
+            }
+        }
+        return atual;
+    }
+
+    /**
+     * Define a implementação usada a partir das próximas medições. {@code null} volta à descoberta pelo
+     * {@link ServiceLoader}.
+     */
+    public static void setMetricas(Metricas novasMetricas) {
+        metricas = novasMetricas;
+    }
+
+    private static Metricas carregar() {
+        try {
+            Iterator<Metricas> implementacoes = ServiceLoader.load(Metricas.class).iterator();
+            if (implementacoes.hasNext()) {
+                return implementacoes.next();
+            }
+        } catch (ServiceConfigurationError e) {
+            log.log(Level.WARNING, "Não foi possível carregar a implementação de métricas: " + e.getMessage(), e);
+        }
+        return MetricasNoop.INSTANCIA;
+    }
+}
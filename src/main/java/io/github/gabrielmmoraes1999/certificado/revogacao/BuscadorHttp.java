@@ -0,0 +1,94 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * {@link BuscadorRevogacao} por HTTP(S) com {@link HttpURLConnection}. As respostas maiores que o tamanho máximo são
+ * recusadas, para que uma URL errada não esgote a memória.
+ */
+@SuppressWarnings("WeakerAccess")
+public class BuscadorHttp implements BuscadorRevogacao {
+
+    private final int timeoutConexao;
+    private final int timeoutLeitura;
+    private final int tamanhoMaximo;
+
+    public BuscadorHttp() {
+        this(10000, 60000, 128 * 1024 * 1024);
+    }
+
+    /**
+     * @param timeoutConexao tempo máximo para conectar, em milissegundos
+     * @param timeoutLeitura tempo máximo de espera por dados, em milissegundos
+     * @param tamanhoMaximo  tamanho máximo da resposta, em bytes
+     */
+    public BuscadorHttp(int timeoutConexao, int timeoutLeitura, int tamanhoMaximo) {
+        this.timeoutConexao = timeoutConexao;
+        this.timeoutLeitura = timeoutLeitura;
+        this.tamanhoMaximo = tamanhoMaximo;
+    }
+
+    @Override
+    public byte[] buscar(String url) throws IOException {
+        HttpURLConnection conexao = abre(url);
+        try {
+            return le(conexao, url);
+        } finally {
+            conexao.disconnect();
+        }
+    }
+
+    @Override
+    public byte[] enviar(String url, String tipoConteudo, byte[] corpo) throws IOException {
+        HttpURLConnection conexao = abre(url);
+        try {
+            conexao.setRequestMethod("POST");
+            conexao.setDoOutput(true);
+            conexao.setRequestProperty("Content-Type", tipoConteudo);
+            conexao.setFixedLengthStreamingMode(corpo.length);
+            try (OutputStream out = conexao.getOutputStream()) {
+                out.write(corpo);
+            }
+            return le(conexao, url);
+        } finally {
+            conexao.disconnect();
+        }
+    }
+
+    private HttpURLConnection abre(String url) throws IOException {
+        HttpURLConnection conexao = (HttpURLConnection) new URL(url).openConnection();
+        conexao.setConnectTimeout(timeoutConexao);
+        conexao.setReadTimeout(timeoutLeitura);
+        conexao.setUseCaches(false);
+        return conexao;
+    }
+
+    private byte[] le(HttpURLConnection conexao, String url) throws IOException {
+        int status = conexao.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("HTTP " + status + " ao acessar " + url);
+        }
+        long tamanho = conexao.getContentLengthLong();
+        if (tamanho > tamanhoMaximo) {
+            throw new IOException("Resposta de " + url + " excede " + tamanhoMaximo + " bytes");
+        }
+
+        try (InputStream in = conexao.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(tamanho > 0 ? (int) tamanho : 64 * 1024);
+            byte[] buffer = new byte[64 * 1024];
+            int lidos;
+            while ((lidos = in.read(buffer)) != -1) {
+                if (out.size() + lidos > tamanhoMaximo) {
+                    throw new IOException("Resposta de " + url + " excede " + tamanhoMaximo + " bytes");
+                }
+                out.write(buffer, 0, lidos);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import java.io.IOException;
+
+/**
+ * Obtém as LCRs e as respostas OCSP usadas pelo {@link VerificadorRevogacao}. A implementação padrão é o
+ * {@link BuscadorHttp}; outras podem ler de um espelho local, de um cache em disco ou de um servidor de testes.
+ */
+@FunctionalInterface
+public interface BuscadorRevogacao {
+
+    /**
+     * Baixa o conteúdo (LCR em DER) da URL informada.
+     */
+    byte[] buscar(String url) throws IOException;
+
+    /**
+     * Envia uma requisição (OCSP) e devolve o corpo da resposta. Por padrão não é suportado.
+     */
+    default byte[] enviar(String url, String tipoConteudo, byte[] corpo) throws IOException {
+        throw new IOException("Envio não suportado por este buscador: " + url);
+    }
+}
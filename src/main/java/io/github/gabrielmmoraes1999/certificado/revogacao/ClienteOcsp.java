@@ -0,0 +1,181 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import io.github.gabrielmmoraes1999.certificado.util.DerReader;
+import io.github.gabrielmmoraes1999.certificado.util.DerWriter;
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+
+import java.io.ByteArrayInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+/**
+ * Requisição e resposta OCSP (RFC 6960) codificadas com {@link DerWriter} e lidas com {@link DerReader}. A requisição
+ * não tem nonce, para que a resposta possa ser reaproveitada até o seu nextUpdate.
+ */
+final class ClienteOcsp {
+
+    static final String TIPO_REQUISICAO = "application/ocsp-request";
+
+    private static final String OID_SHA1 = "1.3.14.3.2.26";
+    private static final String OID_OCSP_BASICO = "1.3.6.1.5.5.7.48.1.1";
+    private static final String OID_OCSP_SIGNING = "1.3.6.1.5.5.7.3.9";
+
+    private ClienteOcsp() {
+    }
+
+    /**
+     * Resposta OCSP já verificada para um certificado.
+     */
+    static final class Resposta {
+        private final SituacaoRevogacao situacao;
+        private final long expiraEm;
+
+        Resposta(SituacaoRevogacao situacao, long expiraEm) {
+            this.situacao = situacao;
+            this.expiraEm = expiraEm;
+        }
+
+        SituacaoRevogacao getSituacao() {
+            return situacao;
+        }
+
+        long getExpiraEm() {
+            return expiraEm;
+        }
+    }
+
+    /**
+     * Hash SHA-1 da chave pública do emissor, que identifica o emissor no CertID junto com o número de série.
+     */
+    static byte[] hashChaveEmissor(X509Certificate emissor) throws GeneralSecurityException {
+        // SubjectPublicKeyInfo { algorithm, subjectPublicKey BIT STRING }: o hash é do conteúdo do BIT STRING.
+        DerReader der = new DerReader(emissor.getPublicKey().getEncoded());
+        der.proximo(RevogacaoUtil.TAG_SEQUENCE).entrar().proximo(RevogacaoUtil.TAG_SEQUENCE).proximo(RevogacaoUtil.TAG_BIT_STRING);
+        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        sha1.update(der.getDados(), der.getInicio() + 1, der.getTamanho() - 1);
+        return sha1.digest();
+    }
+
+    static byte[] requisicao(X509Certificate certificado, X509Certificate emissor, byte[] hashChaveEmissor) throws GeneralSecurityException {
+        byte[] hashNomeEmissor = MessageDigest.getInstance("SHA-1").digest(emissor.getSubjectX500Principal().getEncoded());
+        byte[] certId = DerWriter.sequencia(
+                DerWriter.algoritmo(OID_SHA1),
+                DerWriter.octetString(hashNomeEmissor),
+                DerWriter.octetString(hashChaveEmissor),
+                DerWriter.inteiro(certificado.getSerialNumber()));
+        // OCSPRequest { TBSRequest { requestList SEQUENCE OF Request { reqCert CertID } } }
+        return DerWriter.sequencia(DerWriter.sequencia(DerWriter.sequencia(DerWriter.sequencia(certId))));
+    }
+
+    /**
+     * Verifica a assinatura da resposta (do emissor ou de um respondedor delegado por ele) e extrai a situação do
+     * certificado.
+     *
+     * @param validadePadrao validade, em milissegundos, de uma resposta sem nextUpdate
+     */
+    static Resposta decodifica(byte[] resposta, X509Certificate certificado, X509Certificate emissor, byte[] hashChaveEmissor,
+                               long validadePadrao) throws GeneralSecurityException {
+        DerReader der = new DerReader(resposta);
+        der.proximo(RevogacaoUtil.TAG_SEQUENCE).entrar().proximo(0x0A);
+        if (der.getTamanho() != 1 || der.getDados()[der.getInicio()] != 0) {
+            throw new GeneralSecurityException("Resposta OCSP com status " + der.getDados()[der.getInicio()]);
+        }
+        der.proximo(0xA0).entrar().proximo(RevogacaoUtil.TAG_SEQUENCE).entrar().proximo(RevogacaoUtil.TAG_OID);
+        if (!OID_OCSP_BASICO.equals(RevogacaoUtil.oid(der))) {
+            throw new GeneralSecurityException("Tipo de resposta OCSP não suportado: " + RevogacaoUtil.oid(der));
+        }
+        der.proximo(RevogacaoUtil.TAG_OCTET_STRING).entrar().proximo(RevogacaoUtil.TAG_SEQUENCE).entrar();
+
+        // BasicOCSPResponse { tbsResponseData, signatureAlgorithm, signature, [0] certs? }
+        der.proximo(RevogacaoUtil.TAG_SEQUENCE);
+        int inicioDados = der.getInicioElemento();
+        int fimDados = der.getFim();
+        int inicioAssinatura = der.getFim();
+        der.proximo(RevogacaoUtil.TAG_SEQUENCE);
+        der.proximo(RevogacaoUtil.TAG_BIT_STRING);
+        X509Certificate respondedor = emissor;
+        if (der.proximo() && der.getTag() == 0xA0) {
+            respondedor = respondedorDelegado(der, emissor);
+        }
+
+        DerReader assinatura = new DerReader(resposta, inicioAssinatura, resposta.length);
+        RevogacaoUtil.verificaAssinatura(assinatura, inicioDados, fimDados, respondedor.getPublicKey());
+        return situacao(new DerReader(resposta, inicioDados, fimDados), certificado, hashChaveEmissor, validadePadrao);
+    }
+
+    /**
+     * Certificado do respondedor incluído na resposta, aceito só se foi emitido pelo emissor do certificado consultado
+     * com o uso OCSPSigning; sem ele, a resposta precisa ter sido assinada pelo próprio emissor.
+     */
+    private static X509Certificate respondedorDelegado(DerReader der, X509Certificate emissor) throws GeneralSecurityException {
+        der.entrar().proximo(RevogacaoUtil.TAG_SEQUENCE).entrar();
+        CertificateFactory fabrica = CertificateFactory.getInstance("X.509");
+        while (der.proximo()) {
+            X509Certificate candidato = (X509Certificate) fabrica.generateCertificate(
+                    new ByteArrayInputStream(der.getDados(), der.getInicioElemento(), der.getFim() - der.getInicioElemento()));
+            if (candidato.equals(emissor)) {
+                return emissor;
+            }
+            if (candidato.getIssuerX500Principal().equals(emissor.getSubjectX500Principal()) && isRespondedor(candidato)) {
+                candidato.verify(emissor.getPublicKey());
+                candidato.checkValidity();
+                return candidato;
+            }
+        }
+        return emissor;
+    }
+
+    private static boolean isRespondedor(X509Certificate certificado) throws CertificateParsingException {
+        List<String> usos = certificado.getExtendedKeyUsage();
+        return usos != null && usos.contains(OID_OCSP_SIGNING);
+    }
+
+    private static Resposta situacao(DerReader der, X509Certificate certificado, byte[] hashChaveEmissor, long validadePadrao) {
+        // ResponseData { [0] version?, responderID, producedAt, responses, [1] extensions? }
+        der.proximo(RevogacaoUtil.TAG_SEQUENCE).entrar();
+        der.proximo();
+        if (der.getTag() == 0xA0) {
+            der.proximo();
+        }
+        der.proximo(0x18);
+        der.proximo(RevogacaoUtil.TAG_SEQUENCE).entrar();
+
+        byte[] serie = certificado.getSerialNumber().toByteArray();
+        while (der.proximo()) {
+            // SingleResponse { certID, certStatus, thisUpdate, [0] nextUpdate?, [1] extensions? }
+            der.entrar().proximo(RevogacaoUtil.TAG_SEQUENCE).entrar();
+            der.proximo(RevogacaoUtil.TAG_SEQUENCE);
+            der.proximo(RevogacaoUtil.TAG_OCTET_STRING);
+            der.proximo(RevogacaoUtil.TAG_OCTET_STRING);
+            boolean mesmoEmissor = der.valorIgual(hashChaveEmissor);
+            der.proximo(RevogacaoUtil.TAG_INTEGER);
+            boolean mesmaSerie = der.valorIgual(serie);
+            der.sair();
+            if (!mesmoEmissor || !mesmaSerie) {
+                der.sair();
+                continue;
+            }
+
+            der.proximo();
+            int status = der.getTag();
+            der.proximo(0x18);
+            long expiraEm = der.getTempo() + validadePadrao;
+            if (der.proximo() && der.getTag() == 0xA0) {
+                der.entrar().proximo(0x18);
+                expiraEm = der.getTempo();
+                der.sair();
+            }
+            return new Resposta(status == 0x80 ? SituacaoRevogacao.VALIDO
+                    : status == 0xA1 ? SituacaoRevogacao.REVOGADO : SituacaoRevogacao.DESCONHECIDO, expiraEm);
+        }
+        return new Resposta(SituacaoRevogacao.DESCONHECIDO, 0);
+    }
+
+    static String chave(byte[] hashChaveEmissor, X509Certificate certificado) {
+        return DigestUtil.hex(hashChaveEmissor) + ':' + certificado.getSerialNumber().toString(16);
+    }
+}
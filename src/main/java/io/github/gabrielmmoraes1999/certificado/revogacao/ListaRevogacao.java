@@ -0,0 +1,171 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import io.github.gabrielmmoraes1999.certificado.util.DerReader;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.CRLException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+/**
+ * LCR já verificada, reduzida aos números de série revogados.
+ * <p>
+ * A LCR é lida direto do DER, sem criar um objeto por entrada como o {@link java.security.cert.X509CRL}: os números de
+ * série são copiados em sequência para um único array e indexados numa tabela hash de endereçamento aberto. A consulta
+ * não aloca além da codificação do número de série e custa poucas comparações, mesmo em LCRs com milhões de entradas.
+ */
+final class ListaRevogacao {
+
+    private final byte[] emissor;
+    private final long emitidaEm;
+    private final long proximaAtualizacao;
+    private final byte[] series;
+    private final int[] inicios;
+    private final int[] tabela;
+
+    private ListaRevogacao(byte[] emissor, long emitidaEm, long proximaAtualizacao, byte[] series, int[] inicios, int quantidade) {
+        this.emissor = emissor;
+        this.emitidaEm = emitidaEm;
+        this.proximaAtualizacao = proximaAtualizacao;
+        this.series = series;
+        this.inicios = inicios;
+        this.tabela = new int[Integer.highestOneBit(Math.max(quantidade, 1) * 2 - 1) << 1];
+        for (int i = 0; i < quantidade; i++) {
+            int posicao = hash(series, inicios[i], inicios[i + 1]) & (tabela.length - 1);
+            while (tabela[posicao] != 0) {
+                posicao = (posicao + 1) & (tabela.length - 1);
+            }
+            tabela[posicao] = i + 1;
+        }
+    }
+
+    /**
+     * Verifica a assinatura da LCR com a chave do emissor e indexa os números de série revogados.
+     *
+     * @param validadePadrao validade, em milissegundos, de uma LCR sem nextUpdate
+     */
+    static ListaRevogacao decodifica(byte[] lcr, X509Certificate emissor, long validadePadrao) throws CRLException {
+        try {
+            DerReader der = new DerReader(lcr);
+            der.proximo(RevogacaoUtil.TAG_SEQUENCE).entrar().proximo(RevogacaoUtil.TAG_SEQUENCE);
+            int inicioTbs = der.getInicioElemento();
+            int fimTbs = der.getFim();
+            RevogacaoUtil.verificaAssinatura(der, inicioTbs, fimTbs, emissor.getPublicKey());
+
+            // TBSCertList { version?, signature, issuer, thisUpdate, nextUpdate?, revokedCertificates?, [0] extensions? }
+            der = new DerReader(lcr, inicioTbs, fimTbs);
+            der.proximo(RevogacaoUtil.TAG_SEQUENCE).entrar();
+            der.proximo();
+            if (der.getTag() == RevogacaoUtil.TAG_INTEGER) {
+                der.proximo();
+            }
+            der.proximo(RevogacaoUtil.TAG_SEQUENCE);
+            byte[] nomeEmissor = Arrays.copyOfRange(lcr, der.getInicioElemento(), der.getFim());
+            if (!Arrays.equals(nomeEmissor, emissor.getSubjectX500Principal().getEncoded())) {
+                throw new CRLException("LCR não foi emitida por " + emissor.getSubjectX500Principal());
+            }
+            der.proximo();
+            long emitidaEm = der.getTempo();
+            long proximaAtualizacao = emitidaEm + validadePadrao;
+
+            int inicioRevogados = -1;
+            int fimRevogados = -1;
+            while (der.proximo()) {
+                if (der.getTag() == 0x17 || der.getTag() == 0x18) {
+                    proximaAtualizacao = der.getTempo();
+                } else if (der.getTag() == RevogacaoUtil.TAG_SEQUENCE) {
+                    inicioRevogados = der.getInicio();
+                    fimRevogados = der.getFim();
+                }
+            }
+            return indexa(lcr, inicioRevogados, fimRevogados, nomeEmissor, emitidaEm, proximaAtualizacao);
+        } catch (GeneralSecurityException e) {
+            throw new CRLException("Assinatura da LCR inválida: " + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new CRLException("LCR inválida: " + e.getMessage(), e);
+        }
+    }
+
+    private static ListaRevogacao indexa(byte[] lcr, int inicio, int fim, byte[] emissor, long emitidaEm, long proximaAtualizacao) {
+        if (inicio < 0) {
+            return new ListaRevogacao(emissor, emitidaEm, proximaAtualizacao, new byte[0], new int[1], 0);
+        }
+
+        // Primeira passada só conta as entradas, para alocar os arrays com o tamanho exato.
+        int quantidade = 0;
+        int tamanhoSeries = 0;
+        DerReader der = new DerReader(lcr, inicio, fim);
+        while (der.proximo()) {
+            der.entrar().proximo(RevogacaoUtil.TAG_INTEGER);
+            quantidade++;
+            tamanhoSeries += der.getTamanho();
+            der.sair();
+        }
+
+        byte[] series = new byte[tamanhoSeries];
+        int[] inicios = new int[quantidade + 1];
+        int posicao = 0;
+        int indice = 0;
+        der = new DerReader(lcr, inicio, fim);
+        while (der.proximo()) {
+            der.entrar().proximo(RevogacaoUtil.TAG_INTEGER);
+            System.arraycopy(lcr, der.getInicio(), series, posicao, der.getTamanho());
+            inicios[indice++] = posicao;
+            posicao += der.getTamanho();
+            der.sair();
+        }
+        inicios[quantidade] = posicao;
+        return new ListaRevogacao(emissor, emitidaEm, proximaAtualizacao, series, inicios, quantidade);
+    }
+
+    boolean contem(BigInteger numeroSerie) {
+        byte[] serie = numeroSerie.toByteArray();
+        int posicao = hash(serie, 0, serie.length) & (tabela.length - 1);
+        int indice;
+        while ((indice = tabela[posicao]) != 0) {
+            int inicio = inicios[indice - 1];
+            int fim = inicios[indice];
+            if (fim - inicio == serie.length && igual(serie, inicio)) {
+                return true;
+            }
+            posicao = (posicao + 1) & (tabela.length - 1);
+        }
+        return false;
+    }
+
+    boolean isEmitidaPor(X509Certificate certificado) {
+        return Arrays.equals(emissor, certificado.getIssuerX500Principal().getEncoded());
+    }
+
+    long getEmitidaEm() {
+        return emitidaEm;
+    }
+
+    long getProximaAtualizacao() {
+        return proximaAtualizacao;
+    }
+
+    int getQuantidade() {
+        return inicios.length - 1;
+    }
+
+    private boolean igual(byte[] serie, int inicio) {
+        for (int i = 0; i < serie.length; i++) {
+            if (series[inicio + i] != serie[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] dados, int inicio, int fim) {
+        int h = 1;
+        for (int i = inicio; i < fim; i++) {
+            h = 31 * h + dados[i];
+        }
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import io.github.gabrielmmoraes1999.certificado.Cacert;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Ponto de configuração da verificação de revogação usada pela biblioteca: nos TrustManagers dos
+ * {@code SocketFactoryDinamico} e no carregamento de certificados PFX. Vem desativada.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class RevogacaoService {
+
+    private static volatile VerificadorRevogacao verificador;
+    private static final ConcurrentMap<String, Function<X509Certificate, X509Certificate>> ancoras = new ConcurrentHashMap<>();
+
+    private RevogacaoService() {
+    }
+
+    /**
+     * @return o verificador ativo, ou {@code null} quando a verificação está desativada
+     */
+    public static VerificadorRevogacao getVerificador() {
+        return verificador;
+    }
+
+    /**
+     * Ativa a verificação com o verificador informado, inclusive nas conexões de socket factories já criadas.
+     * {@code null} desativa.
+     */
+    public static void setVerificador(VerificadorRevogacao novoVerificador) {
+        verificador = novoVerificador;
+    }
+
+    /**
+     * Envolve os {@link X509TrustManager} informados com um {@link TrustManagerRevogacao}.
+     */
+    public static TrustManager[] aplicar(TrustManager[] trustManagers) {
+        if (trustManagers == null) {
+            return null;
+        }
+        TrustManager[] resultado = new TrustManager[trustManagers.length];
+        for (int i = 0; i < trustManagers.length; i++) {
+            TrustManager trustManager = trustManagers[i];
+            resultado[i] = trustManager instanceof X509TrustManager && !(trustManager instanceof TrustManagerRevogacao)
+                    ? new TrustManagerRevogacao((X509TrustManager) trustManager) : trustManager;
+        }
+        return resultado;
+    }
+
+    /**
+     * Verifica a revogação da cadeia com o verificador ativo, usando os certificados do cacert como emissores da raiz.
+     * Sem verificador configurado, não faz nada.
+     *
+     * @throws CertificateException se algum certificado da cadeia estiver revogado
+     */
+    public static void verificarCadeia(X509Certificate[] cadeia, Cacert cacert) throws CertificateException {
+        VerificadorRevogacao atual = verificador;
+        if (atual != null) {
+            atual.verificarCadeia(cadeia, ancoras.computeIfAbsent(cacert.getId(), id -> indexa(cacert)));
+        }
+    }
+
+    private static Function<X509Certificate, X509Certificate> indexa(Cacert cacert) {
+        if (cacert.getPacote().isPresent()) {
+            return cacert.getPacote().get()::getEmissor;
+        }
+
+        Map<X500Principal, X509Certificate> resultado = new HashMap<>();
+        try {
+            Enumeration<String> aliases = cacert.getTrustStore().aliases();
+            while (aliases.hasMoreElements()) {
+                Certificate certificado = cacert.getTrustStore().getCertificate(aliases.nextElement());
+                if (certificado instanceof X509Certificate) {
+                    X509Certificate x509 = (X509Certificate) certificado;
+                    resultado.put(x509.getSubjectX500Principal(), x509);
+                }
+            }
+        } catch (KeyStoreException e) {
+            return certificado -> null;
+        }
+        return certificado -> resultado.get(certificado.getIssuerX500Principal());
+    }
+}
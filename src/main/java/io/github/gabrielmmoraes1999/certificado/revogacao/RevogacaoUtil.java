@@ -0,0 +1,159 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import io.github.gabrielmmoraes1999.certificado.util.DerReader;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura das extensões e assinaturas usadas na verificação de revogação.
+ */
+final class RevogacaoUtil {
+
+    static final int TAG_INTEGER = 0x02;
+    static final int TAG_BIT_STRING = 0x03;
+    static final int TAG_OCTET_STRING = 0x04;
+    static final int TAG_OID = 0x06;
+    static final int TAG_SEQUENCE = 0x30;
+
+    private static final String OID_CRL_DISTRIBUTION_POINTS = "2.5.29.31";
+    private static final String OID_AUTHORITY_INFO_ACCESS = "1.3.6.1.5.5.7.1.1";
+    private static final String OID_OCSP = "1.3.6.1.5.5.7.48.1";
+    private static final int TAG_URI = 0x86;
+
+    private static final Map<String, String> ALGORITMOS = new HashMap<>();
+
+    static {
+        ALGORITMOS.put("1.2.840.113549.1.1.5", "SHA1withRSA");
+        ALGORITMOS.put("1.2.840.113549.1.1.11", "SHA256withRSA");
+        ALGORITMOS.put("1.2.840.113549.1.1.12", "SHA384withRSA");
+        ALGORITMOS.put("1.2.840.113549.1.1.13", "SHA512withRSA");
+        ALGORITMOS.put("1.2.840.113549.1.1.14", "SHA224withRSA");
+        ALGORITMOS.put("1.2.840.10045.4.1", "SHA1withECDSA");
+        ALGORITMOS.put("1.2.840.10045.4.3.2", "SHA256withECDSA");
+        ALGORITMOS.put("1.2.840.10045.4.3.3", "SHA384withECDSA");
+        ALGORITMOS.put("1.2.840.10045.4.3.4", "SHA512withECDSA");
+    }
+
+    private RevogacaoUtil() {
+    }
+
+    /**
+     * OID do elemento atual na notação com pontos.
+     */
+    static String oid(DerReader der) {
+        byte[] dados = der.getDados();
+        StringBuilder oid = new StringBuilder();
+        long valor = 0;
+        boolean primeiro = true;
+        for (int i = der.getInicio(); i < der.getFim(); i++) {
+            valor = (valor << 7) | (dados[i] & 0x7F);
+            if ((dados[i] & 0x80) == 0) {
+                if (primeiro) {
+                    long raiz = Math.min(valor / 40, 2);
+                    oid.append(raiz).append('.').append(valor - raiz * 40);
+                    primeiro = false;
+                } else {
+                    oid.append('.').append(valor);
+                }
+                valor = 0;
+            }
+        }
+        return oid.toString();
+    }
+
+    /**
+     * Verifica a assinatura de uma estrutura assinada: os dados entre {@code inicio} e {@code fim}, o AlgorithmIdentifier
+     * e o BIT STRING da assinatura já posicionados no leitor, que avança sobre os dois.
+     */
+    static void verificaAssinatura(DerReader der, int inicio, int fim, PublicKey chave) throws GeneralSecurityException {
+        der.proximo(TAG_SEQUENCE).entrar().proximo(TAG_OID);
+        String oid = oid(der);
+        der.sair();
+        String algoritmo = ALGORITMOS.get(oid);
+        if (algoritmo == null) {
+            throw new SignatureException("Algoritmo de assinatura não suportado: " + oid);
+        }
+
+        der.proximo(TAG_BIT_STRING);
+        byte[] dados = der.getDados();
+        Signature assinatura = Signature.getInstance(algoritmo);
+        assinatura.initVerify(chave);
+        assinatura.update(dados, inicio, fim - inicio);
+        // O primeiro byte do BIT STRING é a quantidade de bits não usados, sempre zero em assinaturas.
+        if (!assinatura.verify(dados, der.getInicio() + 1, der.getTamanho() - 1)) {
+            throw new SignatureException("Assinatura inválida");
+        }
+    }
+
+    /**
+     * URLs HTTP dos pontos de distribuição de LCR do certificado.
+     */
+    static List<String> urlsLcr(X509Certificate certificado) {
+        byte[] extensao = certificado.getExtensionValue(OID_CRL_DISTRIBUTION_POINTS);
+        if (extensao == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> urls = new ArrayList<>(2);
+        DerReader der = new DerReader(extensao);
+        der.proximo(TAG_OCTET_STRING).entrar().proximo(TAG_SEQUENCE).entrar();
+        while (der.proximo()) {
+            // DistributionPoint { distributionPoint [0] { fullName [0] GeneralNames } }
+            der.entrar();
+            if (der.proximo() && der.getTag() == 0xA0) {
+                der.entrar();
+                if (der.proximo() && der.getTag() == 0xA0) {
+                    der.entrar();
+                    adicionaUrls(der, urls);
+                    der.sair();
+                }
+                der.sair();
+            }
+            der.sair();
+        }
+        return urls;
+    }
+
+    /**
+     * URLs HTTP dos respondedores OCSP do certificado (Authority Information Access).
+     */
+    static List<String> urlsOcsp(X509Certificate certificado) {
+        byte[] extensao = certificado.getExtensionValue(OID_AUTHORITY_INFO_ACCESS);
+        if (extensao == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> urls = new ArrayList<>(1);
+        DerReader der = new DerReader(extensao);
+        der.proximo(TAG_OCTET_STRING).entrar().proximo(TAG_SEQUENCE).entrar();
+        while (der.proximo()) {
+            der.entrar().proximo(TAG_OID);
+            if (OID_OCSP.equals(oid(der))) {
+                adicionaUrls(der, urls);
+            }
+            der.sair();
+        }
+        return urls;
+    }
+
+    private static void adicionaUrls(DerReader der, List<String> urls) {
+        while (der.proximo()) {
+            if (der.getTag() == TAG_URI) {
+                String url = new String(der.getDados(), der.getInicio(), der.getTamanho(), StandardCharsets.US_ASCII);
+                if (url.startsWith("http://") || url.startsWith("https://")) {
+                    urls.add(url);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+public enum SituacaoRevogacao {
+
+    VALIDO,
+    REVOGADO,
+    /**
+     * Sem LCR ou resposta OCSP disponível para o certificado.
+     */
+    DESCONHECIDO
+
+}
@@ -0,0 +1,118 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import io.github.gabrielmmoraes1999.certificado.CacheCadeiaValidada;
+import io.github.gabrielmmoraes1999.certificado.TrustManagerPacote;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.net.ssl.X509TrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * TrustManager que, depois da validação normal do delegado, verifica a revogação da cadeia recebida com o
+ * {@link VerificadorRevogacao} configurado em {@link RevogacaoService}. Sem verificador configurado, apenas delega.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TrustManagerRevogacao extends X509ExtendedTrustManager {
+
+    private final X509TrustManager delegado;
+    private volatile Function<X509Certificate, X509Certificate> ancoras;
+
+    public TrustManagerRevogacao(X509TrustManager delegado) {
+        this.delegado = delegado;
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo, Socket socket) throws CertificateException {
+        if (delegado instanceof X509ExtendedTrustManager) {
+            ((X509ExtendedTrustManager) delegado).checkClientTrusted(cadeia, tipo, socket);
+        } else {
+            delegado.checkClientTrusted(cadeia, tipo);
+        }
+        verificaRevogacao(cadeia);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo, Socket socket) throws CertificateException {
+        if (delegado instanceof X509ExtendedTrustManager) {
+            ((X509ExtendedTrustManager) delegado).checkServerTrusted(cadeia, tipo, socket);
+        } else {
+            delegado.checkServerTrusted(cadeia, tipo);
+        }
+        verificaRevogacao(cadeia);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo, SSLEngine engine) throws CertificateException {
+        if (delegado instanceof X509ExtendedTrustManager) {
+            ((X509ExtendedTrustManager) delegado).checkClientTrusted(cadeia, tipo, engine);
+        } else {
+            delegado.checkClientTrusted(cadeia, tipo);
+        }
+        verificaRevogacao(cadeia);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo, SSLEngine engine) throws CertificateException {
+        if (delegado instanceof X509ExtendedTrustManager) {
+            ((X509ExtendedTrustManager) delegado).checkServerTrusted(cadeia, tipo, engine);
+        } else {
+            delegado.checkServerTrusted(cadeia, tipo);
+        }
+        verificaRevogacao(cadeia);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+        delegado.checkClientTrusted(cadeia, tipo);
+        verificaRevogacao(cadeia);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+        delegado.checkServerTrusted(cadeia, tipo);
+        verificaRevogacao(cadeia);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return delegado.getAcceptedIssuers();
+    }
+
+    public X509TrustManager getDelegado() {
+        return delegado;
+    }
+
+    private void verificaRevogacao(X509Certificate[] cadeia) throws CertificateException {
+        VerificadorRevogacao verificador = RevogacaoService.getVerificador();
+        if (verificador != null) {
+            verificador.verificarCadeia(cadeia, getAncoras());
+        }
+    }
+
+    private Function<X509Certificate, X509Certificate> getAncoras() {
+        Function<X509Certificate, X509Certificate> atual = ancoras;
+        if (atual == null) {
+            X509TrustManager origem = delegado instanceof CacheCadeiaValidada ? ((CacheCadeiaValidada) delegado).getDelegado() : delegado;
+            if (origem instanceof TrustManagerPacote) {
+                // O pacote já é indexado por subject e decodifica só as âncoras consultadas.
+                atual = ((TrustManagerPacote) origem).getPacote()::getEmissor;
+            } else {
+                // getAcceptedIssuers() copia o array a cada chamada; o índice por subject é montado uma única vez.
+                Map<X500Principal, X509Certificate> porSubject = new HashMap<>();
+                for (X509Certificate ancora : delegado.getAcceptedIssuers()) {
+                    porSubject.put(ancora.getSubjectX500Principal(), ancora);
+                }
+                atual = certificado -> porSubject.get(certificado.getIssuerX500Principal());
+            }
+            ancoras = atual;
+        }
+        return atual;
+    }
+}
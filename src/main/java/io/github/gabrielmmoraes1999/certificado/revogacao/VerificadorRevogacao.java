@@ -0,0 +1,273 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.java.Log;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Verificação de revogação por LCR e, opcionalmente, OCSP, com cache.
+ * <p>
+ * Cada LCR é baixada pelo {@link BuscadorRevogacao}, verificada com a chave do emissor e mantida como um índice
+ * compacto dos números de série revogados até o seu nextUpdate; depois disso só aquela LCR é baixada de novo, na
+ * primeira consulta (ou em {@link #atualizar()}), enquanto as demais threads continuam usando a versão anterior. As
+ * respostas OCSP ficam em cache até o seu nextUpdate.
+ * <p>
+ * No modo padrão, um certificado cuja situação não pode ser determinada (sem LCR publicada, servidor fora do ar) é
+ * aceito; no modo {@code estrito} ele é recusado.
+ */
+@Log
+@SuppressWarnings("WeakerAccess")
+public class VerificadorRevogacao {
+
+    private static final int TAMANHO_MAXIMO_CACHE_OCSP = 10_000;
+
+    private final BuscadorRevogacao buscador;
+    private final ConcurrentMap<String, EntradaLista> listas = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ClienteOcsp.Resposta> respostasOcsp = new ConcurrentHashMap<>();
+    private final LongAdder downloadsLcr = new LongAdder();
+    private final LongAdder consultasOcsp = new LongAdder();
+    private final LongAdder verificacoes = new LongAdder();
+
+    /**
+     * Consulta o OCSP antes da LCR, quando o certificado informa um respondedor.
+     */
+    @Getter
+    @Setter
+    private volatile boolean ocsp;
+    /**
+     * Recusa certificados cuja situação não pode ser determinada.
+     */
+    @Getter
+    @Setter
+    private volatile boolean estrito;
+    /**
+     * Validade, em milissegundos, de LCRs e respostas OCSP sem nextUpdate.
+     */
+    @Getter
+    @Setter
+    private volatile long validadePadrao = TimeUnit.HOURS.toMillis(1);
+    /**
+     * Espera, em milissegundos, antes de tentar baixar de novo uma LCR que falhou.
+     */
+    @Getter
+    @Setter
+    private volatile long intervaloNovaTentativa = TimeUnit.MINUTES.toMillis(1);
+
+    public VerificadorRevogacao() {
+        this(new BuscadorHttp());
+    }
+
+    public VerificadorRevogacao(BuscadorRevogacao buscador) {
+        this.buscador = Optional.ofNullable(buscador).orElseThrow(() -> new IllegalArgumentException("Buscador não pode ser nulo."));
+    }
+
+    /**
+     * Situação do certificado, usando as LCRs e respostas OCSP em cache sempre que ainda válidas.
+     *
+     * @param emissor certificado da AC que emitiu {@code certificado}, cuja chave assina a LCR
+     */
+    public SituacaoRevogacao verificar(X509Certificate certificado, X509Certificate emissor) {
+        verificacoes.increment();
+        if (ocsp) {
+            SituacaoRevogacao situacao = consultaOcsp(certificado, emissor);
+            if (situacao != SituacaoRevogacao.DESCONHECIDO) {
+                return situacao;
+            }
+        }
+
+        for (String url : RevogacaoUtil.urlsLcr(certificado)) {
+            ListaRevogacao lista = lista(url, emissor);
+            if (lista != null && lista.isEmitidaPor(certificado)) {
+                return lista.contem(certificado.getSerialNumber()) ? SituacaoRevogacao.REVOGADO : SituacaoRevogacao.VALIDO;
+            }
+        }
+        return SituacaoRevogacao.DESCONHECIDO;
+    }
+
+    /**
+     * Verifica todos os certificados da cadeia, exceto a raiz.
+     *
+     * @param ancoras certificados confiáveis usados como emissor do último certificado da cadeia
+     * @throws CertificateException se algum certificado estiver revogado ou, no modo estrito, sem situação conhecida
+     */
+    public void verificarCadeia(X509Certificate[] cadeia, Collection<X509Certificate> ancoras) throws CertificateException {
+        Map<X500Principal, X509Certificate> emissores = new HashMap<>();
+        for (X509Certificate ancora : ancoras) {
+            emissores.put(ancora.getSubjectX500Principal(), ancora);
+        }
+        verificarCadeia(cadeia, certificado -> emissores.get(certificado.getIssuerX500Principal()));
+    }
+
+    /**
+     * @param ancoras devolve a âncora que emitiu o certificado informado, ou {@code null}
+     */
+    void verificarCadeia(X509Certificate[] cadeia, Function<X509Certificate, X509Certificate> ancoras) throws CertificateException {
+        for (int i = 0; i < cadeia.length; i++) {
+            X509Certificate certificado = cadeia[i];
+            if (certificado.getSubjectX500Principal().equals(certificado.getIssuerX500Principal())) {
+                continue;
+            }
+
+            X509Certificate emissor = i + 1 < cadeia.length ? cadeia[i + 1] : ancoras.apply(certificado);
+            SituacaoRevogacao situacao = emissor == null ? SituacaoRevogacao.DESCONHECIDO : verificar(certificado, emissor);
+            if (situacao == SituacaoRevogacao.REVOGADO) {
+                throw new CertificateException("Certificado revogado: " + certificado.getSubjectX500Principal()
+                        + " (série " + certificado.getSerialNumber().toString(16) + ")");
+            }
+            if (situacao == SituacaoRevogacao.DESCONHECIDO && estrito) {
+                throw new CertificateException("Não foi possível verificar a revogação de " + certificado.getSubjectX500Principal());
+            }
+        }
+    }
+
+    /**
+     * Baixa de novo as LCRs em cache que já passaram do nextUpdate, para uso num agendamento.
+     *
+     * @return quantidade de LCRs atualizadas
+     */
+    public int atualizar() {
+        int atualizadas = 0;
+        long agora = System.currentTimeMillis();
+        for (Map.Entry<String, EntradaLista> entrada : listas.entrySet()) {
+            ListaRevogacao atual = entrada.getValue().lista;
+            if (atual != null && agora >= atual.getProximaAtualizacao()
+                    && lista(entrada.getKey(), entrada.getValue().emissor) != atual) {
+                atualizadas++;
+            }
+        }
+        respostasOcsp.values().removeIf(resposta -> agora >= resposta.getExpiraEm());
+        return atualizadas;
+    }
+
+    public void limpar() {
+        listas.clear();
+        respostasOcsp.clear();
+    }
+
+    public int getQuantidadeListas() {
+        return listas.size();
+    }
+
+    /**
+     * Total de números de série revogados nas LCRs em cache.
+     */
+    public long getQuantidadeRevogados() {
+        return listas.values().stream().map(entrada -> entrada.lista).filter(Objects::nonNull)
+                .mapToLong(ListaRevogacao::getQuantidade).sum();
+    }
+
+    public long getDownloadsLcr() {
+        return downloadsLcr.sum();
+    }
+
+    public long getConsultasOcsp() {
+        return consultasOcsp.sum();
+    }
+
+    public long getVerificacoes() {
+        return verificacoes.sum();
+    }
+
+    private ListaRevogacao lista(String url, X509Certificate emissor) {
+        EntradaLista entrada = listas.computeIfAbsent(url, u -> new EntradaLista());
+        long agora = System.currentTimeMillis();
+        ListaRevogacao atual = entrada.lista;
+        if (atual != null && agora < atual.getProximaAtualizacao()) {
+            return atual;
+        }
+
+        // Só uma thread baixa a LCR; as outras seguem com a versão anterior, se houver, em vez de esperar o download.
+        if (atual != null && !entrada.trava.tryLock()) {
+            return estrito ? null : atual;
+        }
+        if (atual == null) {
+            entrada.trava.lock();
+        }
+        try {
+            atual = entrada.lista;
+            if (atual != null && agora < atual.getProximaAtualizacao()) {
+                return atual;
+            }
+            if (agora < entrada.proximaTentativa) {
+                return estrito ? null : atual;
+            }
+
+            try {
+                byte[] conteudo = buscador.buscar(url);
+                downloadsLcr.increment();
+                ListaRevogacao nova = ListaRevogacao.decodifica(conteudo, emissor, validadePadrao);
+                entrada.lista = nova;
+                entrada.emissor = emissor;
+                return nova;
+            } catch (IOException | GeneralSecurityException e) {
+                log.warning("Falha ao atualizar a LCR " + url + ": " + e.getMessage());
+                entrada.proximaTentativa = agora + intervaloNovaTentativa;
+                return estrito ? null : atual;
+            }
+        } finally {
+            entrada.trava.unlock();
+        }
+    }
+
+    private SituacaoRevogacao consultaOcsp(X509Certificate certificado, X509Certificate emissor) {
+        List<String> urls = RevogacaoUtil.urlsOcsp(certificado);
+        if (urls.isEmpty()) {
+            return SituacaoRevogacao.DESCONHECIDO;
+        }
+
+        try {
+            byte[] hashChaveEmissor = ClienteOcsp.hashChaveEmissor(emissor);
+            String chave = ClienteOcsp.chave(hashChaveEmissor, certificado);
+            ClienteOcsp.Resposta resposta = respostasOcsp.get(chave);
+            if (resposta != null && System.currentTimeMillis() < resposta.getExpiraEm()) {
+                return resposta.getSituacao();
+            }
+
+            byte[] requisicao = ClienteOcsp.requisicao(certificado, emissor, hashChaveEmissor);
+            for (String url : urls) {
+                try {
+                    byte[] conteudo = buscador.enviar(url, ClienteOcsp.TIPO_REQUISICAO, requisicao);
+                    consultasOcsp.increment();
+                    resposta = ClienteOcsp.decodifica(conteudo, certificado, emissor, hashChaveEmissor, validadePadrao);
+                    if (resposta.getSituacao() != SituacaoRevogacao.DESCONHECIDO) {
+                        if (respostasOcsp.size() >= TAMANHO_MAXIMO_CACHE_OCSP) {
+                            respostasOcsp.clear();
+                        }
+                        respostasOcsp.put(chave, resposta);
+                        return resposta.getSituacao();
+                    }
+                } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+                    log.warning("Falha na consulta OCSP em " + url + ": " + e.getMessage());
+                }
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.warning("Falha ao preparar a consulta OCSP: " + e.getMessage());
+        }
+        return SituacaoRevogacao.DESCONHECIDO;
+    }
+
+    private static final class EntradaLista {
+        private final ReentrantLock trava = new ReentrantLock();
+        private volatile ListaRevogacao lista;
+        private volatile X509Certificate emissor;
+        private volatile long proximaTentativa;
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Dados ICP-Brasil extraídos de uma única leitura da extensão SubjectAltName (2.5.29.17) do certificado.
+ * <p>
+ * Cada campo corresponde a um otherName 2.16.76.1.3.x; os que não estão presentes no certificado ficam {@code null}.
+ * Datas de nascimento são mantidas no formato original ddMMaaaa.
+ */
+@Getter
+@Setter(AccessLevel.PACKAGE)
+@SuppressWarnings("WeakerAccess")
+public class DadosIcpBrasil {
+
+    /* 2.16.76.1.3.1 - dados do titular pessoa física */
+    private String dataNascimento;
+    private String cpf;
+    private String nis;
+    private String rg;
+    private String orgaoExpedidorRg;
+
+    /* 2.16.76.1.3.2 - nome do responsável pela pessoa jurídica */
+    private String nomeResponsavel;
+
+    /* 2.16.76.1.3.3 */
+    private String cnpj;
+
+    /* 2.16.76.1.3.4 - dados do responsável pela pessoa jurídica */
+    private String dataNascimentoResponsavel;
+    private String cpfResponsavel;
+    private String nisResponsavel;
+    private String rgResponsavel;
+    private String orgaoExpedidorRgResponsavel;
+
+    /* 2.16.76.1.3.5 */
+    private String tituloEleitor;
+    private String zonaEleitoral;
+    private String secaoEleitoral;
+    private String municipioUfEleitoral;
+
+    /* 2.16.76.1.3.6 e 2.16.76.1.3.7 */
+    private String ceiPessoaFisica;
+    private String ceiPessoaJuridica;
+
+    /* 2.16.76.1.3.8 */
+    private String nomeEmpresarial;
+
+    DadosIcpBrasil() {
+    }
+
+    /**
+     * CNPJ do titular, ou o CPF quando o certificado é de pessoa física.
+     */
+    public String getDocumento() {
+        return cnpj != null ? cnpj : cpf;
+    }
+}
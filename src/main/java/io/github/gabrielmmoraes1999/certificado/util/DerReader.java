@@ -0,0 +1,230 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Leitor sequencial de estruturas DER sobre um {@code byte[]}, sem cópias nem objetos intermediários.
+ * <p>
+ * {@link #proximo()} lê o cabeçalho (tag e tamanho) do próximo elemento do nível atual e posiciona o leitor após ele;
+ * {@link #entrar()} desce para o conteúdo do elemento lido e {@link #sair()} volta ao nível anterior, logo após o
+ * elemento. Os valores são acessados pelas posições {@link #getInicio()} e {@link #getFim()} no array original.
+ */
+public final class DerReader {
+
+    private static final int PROFUNDIDADE_MAXIMA = 16;
+
+    private final byte[] dados;
+    private final int[] limites = new int[PROFUNDIDADE_MAXIMA];
+    private int profundidade;
+    private int limite;
+    private int posicao;
+    private int tag = -1;
+    private int inicioElemento;
+    private int inicio;
+    private int fim;
+
+    public DerReader(byte[] dados) {
+        this(dados, 0, dados.length);
+    }
+
+    public DerReader(byte[] dados, int inicio, int fim) {
+        if (inicio < 0 || fim > dados.length || inicio > fim) {
+            throw new IllegalArgumentException("Índices inválidos");
+        }
+        this.dados = dados;
+        this.posicao = inicio;
+        this.limite = fim;
+    }
+
+    /**
+     * Lê o próximo elemento do nível atual.
+     *
+     * @return {@code false} quando não há mais elementos no nível
+     * @throws IllegalArgumentException se a codificação for inválida
+     */
+    public boolean proximo() {
+        if (posicao >= limite) {
+            tag = -1;
+            return false;
+        }
+
+        int p = posicao;
+        int t = dados[p++] & 0xFF;
+        if ((t & 0x1F) == 0x1F) {
+            // Tag de número alto: os bytes seguintes com o bit 8 ligado continuam o número da tag.
+            while (p < limite && (dados[p] & 0x80) != 0) {
+                p++;
+            }
+            p++;
+        }
+        if (p >= limite) {
+            throw new IllegalArgumentException("DER inválido: cabeçalho truncado");
+        }
+
+        int tamanho = dados[p++] & 0xFF;
+        if (tamanho > 0x7F) {
+            int bytesTamanho = tamanho & 0x7F;
+            if (bytesTamanho == 0 || bytesTamanho > 4 || p + bytesTamanho > limite) {
+                throw new IllegalArgumentException("DER inválido: tamanho não suportado");
+            }
+            tamanho = 0;
+            for (int i = 0; i < bytesTamanho; i++) {
+                tamanho = (tamanho << 8) | (dados[p++] & 0xFF);
+            }
+            if (tamanho < 0) {
+                throw new IllegalArgumentException("DER inválido: tamanho não suportado");
+            }
+        }
+        if (tamanho > limite - p) {
+            throw new IllegalArgumentException("DER inválido: conteúdo truncado");
+        }
+
+        this.tag = t;
+        this.inicioElemento = posicao;
+        this.inicio = p;
+        this.fim = p + tamanho;
+        this.posicao = this.fim;
+        return true;
+    }
+
+    /**
+     * Lê o próximo elemento exigindo a tag informada.
+     */
+    public DerReader proximo(int tagEsperada) {
+        if (!proximo() || tag != tagEsperada) {
+            throw new IllegalArgumentException("DER inválido: esperada tag " + Integer.toHexString(tagEsperada));
+        }
+        return this;
+    }
+
+    /**
+     * Desce para o conteúdo do elemento atual.
+     */
+    public DerReader entrar() {
+        if (tag == -1) {
+            throw new IllegalStateException("Nenhum elemento lido");
+        }
+        if (profundidade == PROFUNDIDADE_MAXIMA) {
+            throw new IllegalArgumentException("DER inválido: profundidade máxima excedida");
+        }
+        limites[profundidade++] = limite;
+        limite = fim;
+        posicao = inicio;
+        tag = -1;
+        return this;
+    }
+
+    /**
+     * Volta ao nível anterior, posicionando o leitor após o elemento em que se entrou.
+     */
+    public DerReader sair() {
+        if (profundidade == 0) {
+            throw new IllegalStateException("Leitor já está no primeiro nível");
+        }
+        posicao = limite;
+        limite = limites[--profundidade];
+        tag = -1;
+        return this;
+    }
+
+    public int getTag() {
+        return tag;
+    }
+
+    /**
+     * Posição do primeiro byte do cabeçalho do elemento atual, para copiar o elemento codificado completo.
+     */
+    public int getInicioElemento() {
+        return inicioElemento;
+    }
+
+    public int getInicio() {
+        return inicio;
+    }
+
+    public int getFim() {
+        return fim;
+    }
+
+    public int getTamanho() {
+        return fim - inicio;
+    }
+
+    public byte[] getDados() {
+        return dados;
+    }
+
+    /**
+     * Valor do UTCTime ou GeneralizedTime atual, em milissegundos desde a época. Frações de segundo são ignoradas e o
+     * horário é sempre lido como UTC, como exige o DER.
+     */
+    public long getTempo() {
+        int p = inicio;
+        int ano;
+        if (tag == 0x17) {
+            ano = digitos(p, 2);
+            ano += ano < 50 ? 2000 : 1900;
+            p += 2;
+        } else if (tag == 0x18) {
+            ano = digitos(p, 4);
+            p += 4;
+        } else {
+            throw new IllegalArgumentException("DER inválido: esperado UTCTime ou GeneralizedTime");
+        }
+
+        int segundo = p + 10 < fim && dados[p + 8] >= '0' && dados[p + 8] <= '9' ? digitos(p + 8, 2) : 0;
+        try {
+            return LocalDateTime.of(ano, digitos(p, 2), digitos(p + 2, 2), digitos(p + 4, 2), digitos(p + 6, 2), segundo)
+                    .toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("DER inválido: data " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compara o valor do elemento atual com os bytes informados.
+     */
+    public boolean valorIgual(byte[] valor) {
+        if (valor.length != fim - inicio) {
+            return false;
+        }
+        for (int i = 0; i < valor.length; i++) {
+            if (dados[inicio + i] != valor[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compara o início do valor do elemento atual com o prefixo informado.
+     */
+    public boolean valorComecaCom(byte[] prefixo) {
+        if (prefixo.length > fim - inicio) {
+            return false;
+        }
+        for (int i = 0; i < prefixo.length; i++) {
+            if (dados[inicio + i] != prefixo[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int digitos(int posicao, int quantidade) {
+        if (posicao + quantidade > fim) {
+            throw new IllegalArgumentException("DER inválido: data truncada");
+        }
+        int valor = 0;
+        for (int i = posicao; i < posicao + quantidade; i++) {
+            int digito = dados[i] - '0';
+            if (digito < 0 || digito > 9) {
+                throw new IllegalArgumentException("DER inválido: data com caractere não numérico");
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+}
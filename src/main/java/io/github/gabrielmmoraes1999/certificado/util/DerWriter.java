@@ -0,0 +1,156 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Codificação DER dos tipos usados nas estruturas CMS geradas pela biblioteca. Cada método devolve o elemento
+ * completo (tag, tamanho e valor), pronto para ser usado como filho de outro.
+ */
+public final class DerWriter {
+
+    public static final int TAG_INTEGER = 0x02;
+    public static final int TAG_OCTET_STRING = 0x04;
+    public static final int TAG_NULL = 0x05;
+    public static final int TAG_OID = 0x06;
+    public static final int TAG_UTC_TIME = 0x17;
+    public static final int TAG_GENERALIZED_TIME = 0x18;
+    public static final int TAG_SEQUENCE = 0x30;
+    public static final int TAG_SET = 0x31;
+
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter GENERALIZED_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private DerWriter() {
+    }
+
+    public static byte[] tlv(int tag, byte[]... conteudo) {
+        int tamanho = 0;
+        for (byte[] parte : conteudo) {
+            tamanho += parte.length;
+        }
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(tamanho + 6);
+        saida.write(tag);
+        escreveTamanho(saida, tamanho);
+        for (byte[] parte : conteudo) {
+            saida.write(parte, 0, parte.length);
+        }
+        return saida.toByteArray();
+    }
+
+    public static byte[] sequencia(byte[]... filhos) {
+        return tlv(TAG_SEQUENCE, filhos);
+    }
+
+    /**
+     * SET OF com os elementos na ordem exigida pelo DER (codificações em ordem crescente).
+     */
+    public static byte[] conjunto(byte[]... filhos) {
+        return tlv(TAG_SET, ordena(filhos));
+    }
+
+    /**
+     * Contexto {@code [numero]} construído: EXPLICIT sobre um elemento, ou IMPLICIT sobre o conteúdo de um SET/SEQUENCE.
+     */
+    public static byte[] contexto(int numero, byte[]... conteudo) {
+        return tlv(0xA0 | numero, conteudo);
+    }
+
+    /**
+     * {@code [numero] IMPLICIT SET OF}, com os elementos ordenados como no {@link #conjunto(byte[]...)}.
+     */
+    public static byte[] conjuntoImplicito(int numero, byte[]... filhos) {
+        return tlv(0xA0 | numero, ordena(filhos));
+    }
+
+    public static byte[] inteiro(long valor) {
+        return inteiro(BigInteger.valueOf(valor));
+    }
+
+    public static byte[] inteiro(BigInteger valor) {
+        return tlv(TAG_INTEGER, valor.toByteArray());
+    }
+
+    public static byte[] octetString(byte[] valor) {
+        return tlv(TAG_OCTET_STRING, valor);
+    }
+
+    public static byte[] nulo() {
+        return new byte[]{TAG_NULL, 0};
+    }
+
+    /**
+     * UTCTime entre 1950 e 2049 e GeneralizedTime fora desse intervalo, como exige a RFC 5280.
+     */
+    public static byte[] tempo(Instant instante) {
+        int ano = instante.atZone(ZoneOffset.UTC).getYear();
+        return ano >= 1950 && ano < 2050
+                ? tlv(TAG_UTC_TIME, UTC_TIME.format(instante).getBytes(StandardCharsets.US_ASCII))
+                : tlv(TAG_GENERALIZED_TIME, GENERALIZED_TIME.format(instante).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static byte[] oid(String oid) {
+        String[] partes = oid.split("\\.");
+        if (partes.length < 2) {
+            throw new IllegalArgumentException("OID inválido: " + oid);
+        }
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(partes.length * 2);
+        escreveBase128(saida, Long.parseLong(partes[0]) * 40 + Long.parseLong(partes[1]));
+        for (int i = 2; i < partes.length; i++) {
+            escreveBase128(saida, Long.parseLong(partes[i]));
+        }
+        return tlv(TAG_OID, saida.toByteArray());
+    }
+
+    /**
+     * AlgorithmIdentifier com parâmetros NULL.
+     */
+    public static byte[] algoritmo(String oid) {
+        return sequencia(oid(oid), nulo());
+    }
+
+    private static byte[][] ordena(byte[][] filhos) {
+        byte[][] ordenados = filhos.clone();
+        Arrays.sort(ordenados, DerWriter::compara);
+        return ordenados;
+    }
+
+    private static int compara(byte[] a, byte[] b) {
+        int tamanho = Math.min(a.length, b.length);
+        for (int i = 0; i < tamanho; i++) {
+            int diferenca = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diferenca != 0) {
+                return diferenca;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static void escreveTamanho(ByteArrayOutputStream saida, int tamanho) {
+        if (tamanho < 0x80) {
+            saida.write(tamanho);
+            return;
+        }
+
+        int bytes = 4 - Integer.numberOfLeadingZeros(tamanho) / 8;
+        saida.write(0x80 | bytes);
+        for (int i = bytes - 1; i >= 0; i--) {
+            saida.write(tamanho >>> (8 * i));
+        }
+    }
+
+    private static void escreveBase128(ByteArrayOutputStream saida, long valor) {
+        int grupos = Math.max(1, (64 - Long.numberOfLeadingZeros(valor) + 6) / 7);
+        for (int i = grupos - 1; i >= 0; i--) {
+            int grupo = (int) (valor >>> (7 * i)) & 0x7F;
+            saida.write(i == 0 ? grupo : grupo | 0x80);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class DigestUtil {
+    DigestUtil(){}
+
+    private static final String SHA_256 = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance(SHA_256);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 é obrigatório em toda JVM (JCA), nunca deve ocorrer.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static byte[] sha256(byte[] valor) {
+        return sha256().digest(valor);
+    }
+
+    /**
+     * Digest SHA-256 de um conteúdo acompanhado da sua senha. O tamanho do conteúdo entra
+     * no cálculo para que pares diferentes de conteúdo/senha nunca produzam a mesma entrada.
+     */
+    public static byte[] sha256(byte[] conteudo, String senha) {
+        MessageDigest digest = sha256();
+        int tamanho = conteudo.length;
+        digest.update(new byte[]{(byte) (tamanho >>> 24), (byte) (tamanho >>> 16), (byte) (tamanho >>> 8), (byte) tamanho});
+        digest.update(conteudo);
+        if (senha != null) {
+            digest.update(senha.getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    public static String hex(byte[] valor) {
+        char[] result = new char[valor.length * 2];
+        for (int i = 0; i < valor.length; i++) {
+            result[i * 2] = HEX[(valor[i] >> 4) & 0x0F];
+            result[i * 2 + 1] = HEX[valor[i] & 0x0F];
+        }
+        return new String(result);
+    }
+}
@@ -1,106 +1,176 @@
 package io.github.gabrielmmoraes1999.certificado.util;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Leitura dos campos ICP-Brasil (otherName 2.16.76.1.3.x) da extensão SubjectAltName.
+ * <p>
+ * A extensão é percorrida como DER (OCTET STRING, GeneralNames, otherName) pelo {@link DerReader}, comparando os OIDs
+ * diretamente nos bytes; só as strings finais dos campos são criadas.
+ */
 public class DocumentoUtil {
     DocumentoUtil(){}
 
-    private static final String CPF_INDICATOR = "\u0001";
-    private static final String CPF_TERMINATOR = "\u0017";
-    private static final Pattern PATTERN_CPF = Pattern.compile("(?<!\\d)\\d{11}(?!\\d)");
+    private static final int TAG_OCTET_STRING = 0x04;
+    private static final int TAG_OID = 0x06;
+    private static final int TAG_UTF8_STRING = 0x0C;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_OTHER_NAME = 0xA0;
+    private static final int TAG_EXPLICITA_0 = 0xA0;
+
+    /* 2.16.76.1.3 */
+    private static final byte[] OID_ICP_BRASIL = new byte[]{96, 76, 1, 3};
+
     private static final int CPF_LENGTH = 11;
-    private static final int CPF_OFFSET = 15;
-    private static final Pattern PATTERN_CNPJ = Pattern.compile("\\d{14}");
-    private static final String CNPJ_INDICATOR = "\u0006\u0005`L\u0001\u0003\u0003";
-    private static final int CNPJ_OFFSET = 6;
-    private static final int CNPJ_LENGTH = 25;
+    private static final int CNPJ_LENGTH = 14;
+    private static final int CEI_LENGTH = 12;
+
+    /**
+     * Extrai de uma só vez todos os campos ICP-Brasil da extensão SubjectAltName. Uma extensão ausente ou malformada
+     * resulta nos campos lidos até o ponto do erro.
+     */
+    public static DadosIcpBrasil processaSubjectAltName(byte[] extensionValue) {
+        DadosIcpBrasil dados = new DadosIcpBrasil();
+        if (extensionValue == null || extensionValue.length == 0) {
+            return dados;
+        }
 
-    private static final byte[] NOME_PESSOA_FISICA_INDICATOR = new byte[]{6, 5, 96, 76, 1 ,3, 2};
-    private static final byte[] INSCRICAO_PESSOA_FISICA_INDICATOR = new byte[]{6, 5, 96, 76, 1 ,3, 4};
-    private static final int NOME_PESSOA_FISICA_OFFSET = 11;
-    private static final int INSCRICAO_PESSOA_FISICA_OFFSET = 19;
+        try {
+            DerReader der = new DerReader(extensionValue);
+            der.proximo();
+            if (der.getTag() == TAG_OCTET_STRING) {
+                // X509Certificate.getExtensionValue devolve o valor ainda envolvido no OCTET STRING da extensão.
+                der.entrar().proximo(TAG_SEQUENCE);
+            } else if (der.getTag() != TAG_SEQUENCE) {
+                return dados;
+            }
 
+            der.entrar();
+            while (der.proximo()) {
+                if (der.getTag() == TAG_OTHER_NAME) {
+                    der.entrar();
+                    processaOtherName(der, dados);
+                    der.sair();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return dados;
+        }
+        return dados;
+    }
 
     public static Optional<String> getDocumentoFromCertificado(byte[] extensionValue) {
-        String valor = new String(extensionValue);
-        processaNomePF(extensionValue);
-
-        return Optional.ofNullable(
-                processaCNPJ(valor)
-                        .orElse(processaCPF(valor)
-                                .orElse(null)));
+        return Optional.ofNullable(processaSubjectAltName(extensionValue).getDocumento());
     }
 
     public static Optional<String> processaCPFPJ(byte[] extensionValue) {
-        int index = findSequence(extensionValue, INSCRICAO_PESSOA_FISICA_INDICATOR);
-
-        if (index != -1) {
-            return validarDocumento(
-                    new String(getBytes(
-                            extensionValue,
-                            index + INSCRICAO_PESSOA_FISICA_OFFSET,
-                            index + INSCRICAO_PESSOA_FISICA_OFFSET + CPF_LENGTH
-                    ))
-            );
-        }
-
-        return Optional.empty();
+        return Optional.ofNullable(processaSubjectAltName(extensionValue).getCpfResponsavel());
     }
 
     public static Optional<String> processaNomePF(byte[] extensionValue) {
-        int index = findSequence(extensionValue, NOME_PESSOA_FISICA_INDICATOR);
-        int size = extensionValue[index + NOME_PESSOA_FISICA_OFFSET - 1];
-
-        if (index != -1) {
-            return Optional.of(new String(getBytes(
-                    extensionValue,
-                    index + NOME_PESSOA_FISICA_OFFSET,
-                    index + NOME_PESSOA_FISICA_OFFSET + size
-            )));
-        }
-        return Optional.empty();
+        return Optional.ofNullable(processaSubjectAltName(extensionValue).getNomeResponsavel());
     }
 
-    private static Optional<String> processaCPF(String extensionValue) {
-        int cpfStartIndex = extensionValue.indexOf(CPF_INDICATOR);
-        if (cpfStartIndex != -1) {
-            cpfStartIndex += CPF_OFFSET;
-            int cpfEndIndex = extensionValue.indexOf(CPF_TERMINATOR, cpfStartIndex);
-            if (cpfEndIndex != -1) {
-                String cpf = extrairNumeros(extensionValue.substring(cpfStartIndex, cpfStartIndex + CPF_LENGTH));
-                return validarDocumento(cpf);
-            }
+    /*
+     * otherName ::= SEQUENCE { type-id OBJECT IDENTIFIER, value [0] EXPLICIT ANY }, já sem o cabeçalho [0] implícito.
+     */
+    private static void processaOtherName(DerReader der, DadosIcpBrasil dados) {
+        der.proximo(TAG_OID);
+        if (der.getTamanho() != OID_ICP_BRASIL.length + 1 || !der.valorComecaCom(OID_ICP_BRASIL)) {
+            return;
+        }
+        int campo = der.getDados()[der.getFim() - 1];
+
+        der.proximo(TAG_EXPLICITA_0).entrar();
+        if (der.proximo()) {
+            processaCampo(campo, der, dados);
         }
-        return Optional.empty();
+        der.sair();
     }
 
-    private static Optional<String> processaCNPJ(String extensionValue) {
-        int cnpjIndex = extensionValue.indexOf(CNPJ_INDICATOR);
-        if (cnpjIndex != -1) {
-            String cnpj = extrairNumeros(extensionValue.substring(cnpjIndex + CNPJ_OFFSET, cnpjIndex + CNPJ_LENGTH));
-            return validarDocumento(cnpj);
+    private static void processaCampo(int campo, DerReader der, DadosIcpBrasil dados) {
+        byte[] b = der.getDados();
+        int inicio = der.getInicio();
+        int fim = der.getFim();
+        Charset charset = charset(der.getTag());
+
+        switch (campo) {
+            case 1:
+                dados.setDataNascimento(digitos(b, inicio, fim, 0, 8));
+                dados.setCpf(digitos(b, inicio, fim, 8, CPF_LENGTH));
+                dados.setNis(digitos(b, inicio, fim, 19, 11));
+                dados.setRg(texto(b, inicio, fim, 30, 15, charset));
+                dados.setOrgaoExpedidorRg(texto(b, inicio, fim, 45, fim - inicio - 45, charset));
+                break;
+            case 2:
+                dados.setNomeResponsavel(texto(b, inicio, fim, 0, fim - inicio, charset));
+                break;
+            case 3:
+                dados.setCnpj(digitos(b, inicio, fim, 0, CNPJ_LENGTH));
+                break;
+            case 4:
+                dados.setDataNascimentoResponsavel(digitos(b, inicio, fim, 0, 8));
+                dados.setCpfResponsavel(digitos(b, inicio, fim, 8, CPF_LENGTH));
+                dados.setNisResponsavel(digitos(b, inicio, fim, 19, 11));
+                dados.setRgResponsavel(texto(b, inicio, fim, 30, 15, charset));
+                dados.setOrgaoExpedidorRgResponsavel(texto(b, inicio, fim, 45, fim - inicio - 45, charset));
+                break;
+            case 5:
+                dados.setTituloEleitor(digitos(b, inicio, fim, 0, 12));
+                dados.setZonaEleitoral(digitos(b, inicio, fim, 12, 3));
+                dados.setSecaoEleitoral(digitos(b, inicio, fim, 15, 4));
+                dados.setMunicipioUfEleitoral(texto(b, inicio, fim, 19, fim - inicio - 19, charset));
+                break;
+            case 6:
+                dados.setCeiPessoaFisica(digitos(b, inicio, fim, 0, CEI_LENGTH));
+                break;
+            case 7:
+                dados.setCeiPessoaJuridica(digitos(b, inicio, fim, 0, CEI_LENGTH));
+                break;
+            case 8:
+                dados.setNomeEmpresarial(texto(b, inicio, fim, 0, fim - inicio, charset));
+                break;
+            default:
+                break;
         }
-        return Optional.empty();
     }
 
-    private static String extrairNumeros(String valor) {
-        return valor.replaceAll("[^\\d]", "");
+    private static Charset charset(int tag) {
+        // Os demais tipos usados pela ICP-Brasil (OCTET STRING, PrintableString, IA5String) são de um byte por caractere.
+        return tag == TAG_UTF8_STRING ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
     }
 
-    private static Optional<String> validarDocumento(String documento) {
-        Matcher matcherCNPJ = PATTERN_CNPJ.matcher(documento);
-        if (matcherCNPJ.find()) {
-            return Optional.of(matcherCNPJ.group());
+    /**
+     * Campo numérico de tamanho fixo; {@code null} quando ausente, incompleto ou com caracteres que não são dígitos.
+     */
+    private static String digitos(byte[] b, int inicio, int fim, int deslocamento, int tamanho) {
+        int de = inicio + deslocamento;
+        if (de + tamanho > fim) {
+            return null;
         }
-
-        Matcher matcherCPF = PATTERN_CPF.matcher(documento);
-        if (matcherCPF.find()) {
-            return Optional.of(matcherCPF.group());
+        for (int i = de; i < de + tamanho; i++) {
+            if (b[i] < '0' || b[i] > '9') {
+                return null;
+            }
         }
+        return new String(b, de, tamanho, StandardCharsets.US_ASCII);
+    }
 
-        return Optional.empty();
+    /**
+     * Campo texto sem os espaços das pontas; {@code null} quando ausente ou em branco.
+     */
+    private static String texto(byte[] b, int inicio, int fim, int deslocamento, int tamanho, Charset charset) {
+        int de = inicio + deslocamento;
+        int ate = Math.min(de + Math.max(tamanho, 0), fim);
+        while (de < ate && (b[de] & 0xFF) <= ' ') {
+            de++;
+        }
+        while (ate > de && (b[ate - 1] & 0xFF) <= ' ') {
+            ate--;
+        }
+        return de >= ate ? null : new String(b, de, ate - de, charset);
     }
 
     public static int findSequence(byte[] array, byte[] sequence) {
@@ -0,0 +1,30 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadUtil {
+    ThreadUtil(){}
+
+    private static final AtomicInteger contadorThreads = new AtomicInteger();
+
+    /**
+     * Fábrica de threads daemon com o nome informado, para executores de uma única thread.
+     */
+    public static ThreadFactory daemon(String nome) {
+        return runnable -> novaThread(runnable, nome);
+    }
+
+    /**
+     * Fábrica de threads daemon numeradas ({@code prefixo-1}, {@code prefixo-2}, ...), para pools de threads.
+     */
+    public static ThreadFactory daemonNumerada(String prefixo) {
+        return runnable -> novaThread(runnable, prefixo + "-" + contadorThreads.incrementAndGet());
+    }
+
+    private static Thread novaThread(Runnable runnable, String nome) {
+        Thread thread = new Thread(runnable, nome);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
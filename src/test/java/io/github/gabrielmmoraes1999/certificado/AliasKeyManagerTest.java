@@ -0,0 +1,86 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AliasKeyManagerTest {
+
+    private static CertificadosTeste ac;
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Alias");
+    }
+
+    @Test
+    void chavePreCarregadaNaoConsultaOKeyStore() throws Exception {
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        X509Certificate certificado = ac.emissao("CN=titular").emitir(chaves.getPublic());
+        KeyStore keyStore = CertificadosTeste.keyStore("titular", chaves.getPrivate(), certificado, ac.getCertificado());
+        AliasKeyManager keyManager = new AliasKeyManager(keyStore, "titular", CertificadosTeste.SENHA, true);
+        assertTrue(keyManager.isChavePreCarregada());
+
+        // Como um token removido: o material já lido continua sendo apresentado.
+        keyStore.deleteEntry("titular");
+        assertEquals(chaves.getPrivate(), keyManager.getPrivateKey("titular"));
+        assertArrayEquals(new X509Certificate[]{certificado, ac.getCertificado()}, keyManager.getCertificateChain("titular"));
+
+        // A releitura falha e as chamadas voltam a consultar o KeyStore.
+        assertFalse(keyManager.atualizar());
+        assertFalse(keyManager.isChavePreCarregada());
+        assertNull(keyManager.getPrivateKey("titular"));
+
+        keyStore.setKeyEntry("titular", chaves.getPrivate(), CertificadosTeste.SENHA.toCharArray(),
+                new X509Certificate[]{certificado, ac.getCertificado()});
+        assertTrue(keyManager.atualizar());
+        assertTrue(keyManager.isChavePreCarregada());
+        keyStore.deleteEntry("titular");
+        assertEquals(chaves.getPrivate(), keyManager.getPrivateKey("titular"));
+    }
+
+    @Test
+    void semPreCarregamentoOKeyStoreEhConsultadoACadaChamada() throws Exception {
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        KeyStore keyStore = CertificadosTeste.keyStore("titular", chaves.getPrivate(),
+                ac.emissao("CN=titular").emitir(chaves.getPublic()), ac.getCertificado());
+        AliasKeyManager keyManager = new AliasKeyManager(keyStore, "titular", CertificadosTeste.SENHA);
+
+        assertFalse(keyManager.isChavePreCarregada());
+        assertFalse(keyManager.atualizar());
+        assertEquals(chaves.getPrivate(), keyManager.getPrivateKey("titular"));
+        keyStore.deleteEntry("titular");
+        assertNull(keyManager.getPrivateKey("titular"));
+        assertEquals(0, keyManager.getCertificateChain("titular").length);
+    }
+
+    @Test
+    void substituicaoNaoAfetaOHandshakeEmCurso() throws Exception {
+        KeyPair antigas = CertificadosTeste.geraChaves();
+        KeyPair novas = CertificadosTeste.geraChaves();
+        X509Certificate novo = ac.emissao("CN=novo").emitir(novas.getPublic());
+        AliasKeyManager keyManager = new AliasKeyManager(CertificadosTeste.keyStore("titular", antigas.getPrivate(),
+                ac.emissao("CN=antigo").emitir(antigas.getPublic()), ac.getCertificado()), "titular", CertificadosTeste.SENHA, true);
+        String emCurso = keyManager.chooseClientAlias(new String[]{"RSA"}, null, null);
+
+        keyManager.substituir(CertificadosTeste.keyStore("renovado", novas.getPrivate(), novo, ac.getCertificado()),
+                "renovado", CertificadosTeste.SENHA);
+        String proximo = keyManager.chooseClientAlias(new String[]{"RSA"}, null, null);
+
+        assertNotEquals(emCurso, proximo);
+        assertEquals(antigas.getPrivate(), keyManager.getPrivateKey(emCurso));
+        assertEquals(novas.getPrivate(), keyManager.getPrivateKey(proximo));
+        assertEquals(novo, keyManager.getCertificateChain(proximo)[0]);
+        assertTrue(keyManager.isChavePreCarregada());
+    }
+}
@@ -0,0 +1,227 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtualizadorTrustStoreTest {
+
+    private static final Duration PRAZO = Duration.ofSeconds(2);
+
+    private static CertificadosTeste ac;
+    private static CertificadosTeste outraAc;
+    private static KeyPair chaves;
+
+    private final List<Closeable> servidores = new ArrayList<>();
+
+    @BeforeAll
+    static void criaAcs() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Web Services");
+        outraAc = CertificadosTeste.novaAc("AC Outra");
+        chaves = CertificadosTeste.geraChaves();
+    }
+
+    @AfterEach
+    void paraServidores() throws IOException {
+        for (Closeable servidor : servidores) {
+            servidor.close();
+        }
+    }
+
+    @Test
+    void acrescentaAAncoraQueFaltaUmaVezSo() throws Exception {
+        String servidor1 = servidorTls(ac, "CN=ws1.teste");
+        String servidor2 = servidorTls(ac, "CN=ws2.teste");
+        KeyStore trustStore = CertificadosTeste.trustStore(outraAc.getCertificado());
+
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore(4, PRAZO).atualizar(trustStore, Arrays.asList(servidor1, servidor2));
+
+        assertTrue(relatorio.isAlterado());
+        assertEquals(1, relatorio.getAdicionadas().size());
+        RelatorioTrustStore.Ancora ancora = relatorio.getAdicionadas().get(0);
+        assertEquals(servidor1, ancora.getEndereco());
+        assertEquals(servidor1.replace(':', '-'), ancora.getAlias());
+        assertEquals(ac.getCertificado(), trustStore.getCertificate(ancora.getAlias()));
+        assertEquals(Collections.singletonList(servidor2), relatorio.getConfiaveis());
+        assertTrue(relatorio.getFalhas().isEmpty());
+        assertEquals(2, trustStore.size());
+    }
+
+    @Test
+    void cadeiaJaConfiavelNaoAlteraOTrustStore() throws Exception {
+        String servidor = servidorTls(ac, "CN=ws.teste");
+        KeyStore trustStore = CertificadosTeste.trustStore(ac.getCertificado());
+
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore(1, PRAZO)
+                .atualizar(trustStore, Arrays.asList(servidor, servidor, servidor));
+
+        assertFalse(relatorio.isAlterado());
+        assertEquals(Collections.singletonList(servidor), relatorio.getConfiaveis());
+        assertEquals(1, trustStore.size());
+    }
+
+    @Test
+    void truststoreVazioRecebeAAncoraDaCadeia() throws Exception {
+        String servidor = servidorTls(ac, "CN=ws.teste");
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore().atualizar(trustStore, Collections.singletonList(servidor));
+
+        assertEquals(1, relatorio.getAdicionadas().size());
+        assertEquals(ac.getCertificado(), trustStore.getCertificate(relatorio.getAdicionadas().get(0).getAlias()));
+    }
+
+    @Test
+    void cadeiaRecusadaComAncoraConhecidaEhFalha() throws Exception {
+        long agora = System.currentTimeMillis();
+        X509Certificate vencido = ac.emissao("CN=vencido.teste")
+                .validade(new Date(agora - TimeUnit.DAYS.toMillis(30)), new Date(agora - TimeUnit.DAYS.toMillis(1)))
+                .emitir(chaves.getPublic());
+        String servidor = servidorTls(CertificadosTeste.keyStore("ws", chaves.getPrivate(), vencido, ac.getCertificado()));
+        KeyStore trustStore = CertificadosTeste.trustStore(ac.getCertificado());
+
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore(1, PRAZO).atualizar(trustStore, Collections.singletonList(servidor));
+
+        assertFalse(relatorio.isAlterado());
+        assertInstanceOf(CertificateException.class, relatorio.getFalhas().get(servidor));
+        assertEquals(1, trustStore.size());
+    }
+
+    @Test
+    void servidorQueNaoRespondeEsgotaOPrazo() throws Exception {
+        ServerSocket mudo = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        servidores.add(mudo);
+        String servidor = "127.0.0.1:" + mudo.getLocalPort();
+        String ativo = servidorTls(ac, "CN=ws.teste");
+        KeyStore trustStore = CertificadosTeste.trustStore(outraAc.getCertificado());
+
+        long inicio = System.nanoTime();
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore(2, Duration.ofMillis(300))
+                .atualizar(trustStore, Arrays.asList(servidor, ativo));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < PRAZO.toMillis());
+        assertInstanceOf(SocketTimeoutException.class, relatorio.getFalhas().get(servidor));
+        assertEquals(1, relatorio.getAdicionadas().size());
+    }
+
+    @Test
+    void conexaoRecusadaEhFalha() throws Exception {
+        ServerSocket fechado = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        String servidor = "https://127.0.0.1:" + fechado.getLocalPort() + "/ws/servico";
+        fechado.close();
+        KeyStore trustStore = CertificadosTeste.trustStore(ac.getCertificado());
+
+        RelatorioTrustStore relatorio = new AtualizadorTrustStore(1, PRAZO).atualizar(trustStore, Collections.singletonList(servidor));
+
+        assertInstanceOf(IOException.class, relatorio.getFalhas().get(servidor));
+        assertTrue(relatorio.getConfiaveis().isEmpty());
+    }
+
+    @Test
+    void gravaNoFormatoDoDestino(@TempDir Path pasta) throws Exception {
+        KeyStore trustStore = CertificadosTeste.trustStore(ac.getCertificado(), outraAc.getCertificado());
+
+        Path cacert = pasta.resolve("cacert");
+        AtualizadorTrustStore.gravar(trustStore, cacert);
+        KeyStore lido = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(cacert)) {
+            lido.load(in, "changeit".toCharArray());
+        }
+        assertEquals(2, lido.size());
+
+        Path pacote = pasta.resolve("cacert.ancoras");
+        AtualizadorTrustStore.gravar(trustStore, pacote);
+        PacoteAncoras ancoras = PacoteAncoras.abrir(pacote);
+        assertEquals(2, ancoras.getQuantidade());
+        assertTrue(ancoras.contem(ac.getCertificado()));
+
+        try (Stream<Path> arquivos = Files.list(pasta)) {
+            assertEquals(2, arquivos.count());
+        }
+    }
+
+    @Test
+    void leEnderecosIgnorandoComentarios() throws Exception {
+        String conteudo = "# NF-e\nnfe.fazenda.sp.gov.br\n\n  https://nfe.sefaz.rs.gov.br/ws  \n#host:1\nhost:8443\n";
+
+        List<String> enderecos = AtualizadorTrustStore.lerEnderecos(new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(Arrays.asList("nfe.fazenda.sp.gov.br", "https://nfe.sefaz.rs.gov.br/ws", "host:8443"), enderecos);
+        assertNotNull(AtualizadorTrustStore.enderecosPadrao());
+    }
+
+    @Test
+    void recusaConfiguracaoInvalida() {
+        assertThrows(IllegalArgumentException.class, () -> new AtualizadorTrustStore(0, PRAZO));
+        assertThrows(IllegalArgumentException.class, () -> new AtualizadorTrustStore(1, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new AtualizadorTrustStore(1, null));
+    }
+
+    private String servidorTls(CertificadosTeste emissor, String subject) throws Exception {
+        X509Certificate certificado = emissor.emissao(subject).emitir(chaves.getPublic());
+        return servidorTls(CertificadosTeste.keyStore("ws", chaves.getPrivate(), certificado, emissor.getCertificado()));
+    }
+
+    /*
+     * Servidor TLS local que apresenta a cadeia do KeyStore em cada conexão.
+     */
+    private String servidorTls(KeyStore keyStore) throws Exception {
+        KeyManagerFactory fabrica = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        fabrica.init(keyStore, CertificadosTeste.SENHA.toCharArray());
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(fabrica.getKeyManagers(), null, null);
+        SSLServerSocket servidor = (SSLServerSocket) contexto.getServerSocketFactory()
+                .createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        servidores.add(servidor);
+
+        Thread thread = new Thread(() -> {
+            while (!servidor.isClosed()) {
+                try (Socket conexao = servidor.accept()) {
+                    ((SSLSocket) conexao).startHandshake();
+                } catch (IOException e) {
+                    // o cliente interrompe o handshake assim que recebe a cadeia
+                }
+            }
+        }, "servidor-tls-teste");
+        thread.setDaemon(true);
+        thread.start();
+        return "127.0.0.1:" + servidor.getLocalPort();
+    }
+}
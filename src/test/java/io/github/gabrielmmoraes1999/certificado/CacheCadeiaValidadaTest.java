@@ -0,0 +1,215 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CacheCadeiaValidadaTest {
+
+    private static CertificadosTeste ac;
+    private static KeyPair chaves;
+
+    private SSLServerSocket servidor;
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Cache");
+        chaves = CertificadosTeste.geraChaves();
+    }
+
+    @AfterEach
+    void paraServidor() throws IOException {
+        if (servidor != null) {
+            servidor.close();
+        }
+    }
+
+    @Test
+    void hostFazParteDaChave() throws Exception {
+        X509Certificate certificado = ac.emissao("CN=localhost").dns("localhost").emitir(chaves.getPublic());
+        int porta = servidorTls(certificado);
+        TrustManagerFactory fabrica = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        fabrica.init(CertificadosTeste.trustStore(ac.getCertificado()));
+        CacheCadeiaValidada cache = new CacheCadeiaValidada((X509TrustManager) fabrica.getTrustManagers()[0]);
+
+        conecta(cache, "localhost", porta);
+        conecta(cache, "localhost", porta);
+        assertEquals(1, cache.getAcertos());
+        assertEquals(1, cache.getTamanho());
+
+        // A mesma cadeia, já aceita para localhost, não vale para outro nome.
+        assertThrows(SSLHandshakeException.class, () -> conecta(cache, "outro.teste", porta));
+        assertEquals(1, cache.getAcertos());
+        assertEquals(1, cache.getTamanho());
+    }
+
+    @Test
+    void entradaVenceComOCertificadoDaCadeia() throws Exception {
+        long agora = System.currentTimeMillis();
+        X509Certificate certificado = ac.emissao("CN=vence.teste")
+                .validade(new Date(agora - 60_000), new Date((agora / 1000 + 2) * 1000))
+                .emitir(chaves.getPublic());
+        DelegadoTeste delegado = new DelegadoTeste();
+        CacheCadeiaValidada cache = new CacheCadeiaValidada(delegado);
+        X509Certificate[] cadeia = {certificado, ac.getCertificado()};
+
+        cache.checkServerTrusted(cadeia, "RSA");
+        cache.checkServerTrusted(cadeia, "RSA");
+        assertEquals(1, delegado.chamadas.get());
+
+        Thread.sleep(certificado.getNotAfter().getTime() - System.currentTimeMillis() + 50);
+        cache.checkServerTrusted(cadeia, "RSA");
+        assertEquals(2, delegado.chamadas.get());
+        assertEquals(1, cache.getRemocoes());
+    }
+
+    @Test
+    void entradaVenceComOTempoDeVida() throws Exception {
+        DelegadoTeste delegado = new DelegadoTeste();
+        CacheCadeiaValidada cache = new CacheCadeiaValidada(delegado);
+        cache.setTempoVida(Duration.ofMillis(100));
+        X509Certificate[] cadeia = {ac.emissao("CN=ttl.teste").emitir(chaves.getPublic()), ac.getCertificado()};
+
+        cache.checkServerTrusted(cadeia, "RSA");
+        cache.checkServerTrusted(cadeia, "RSA");
+        Thread.sleep(150);
+        cache.checkServerTrusted(cadeia, "RSA");
+
+        assertEquals(2, delegado.chamadas.get());
+        assertEquals(1, cache.getAcertos());
+        assertEquals(2, cache.getFalhas());
+    }
+
+    @Test
+    void cadeiaRecusadaNaoEntraNoCache() throws Exception {
+        DelegadoTeste delegado = new DelegadoTeste();
+        CacheCadeiaValidada cache = new CacheCadeiaValidada(delegado);
+        X509Certificate[] cadeia = {ac.emissao("CN=recusada.teste").emitir(chaves.getPublic()), ac.getCertificado()};
+        delegado.recusa = true;
+
+        assertThrows(CertificateException.class, () -> cache.checkServerTrusted(cadeia, "RSA"));
+        assertThrows(CertificateException.class, () -> cache.checkServerTrusted(cadeia, "RSA"));
+        assertEquals(2, delegado.chamadas.get());
+        assertEquals(0, cache.getTamanho());
+
+        delegado.recusa = false;
+        cache.checkServerTrusted(cadeia, "RSA");
+        cache.checkServerTrusted(cadeia, "RSA");
+        assertEquals(3, delegado.chamadas.get());
+    }
+
+    @Test
+    void clienteEServidorTemEntradasSeparadas() throws Exception {
+        DelegadoTeste delegado = new DelegadoTeste();
+        CacheCadeiaValidada cache = new CacheCadeiaValidada(delegado);
+        X509Certificate[] cadeia = {ac.emissao("CN=par.teste").emitir(chaves.getPublic()), ac.getCertificado()};
+
+        cache.checkServerTrusted(cadeia, "RSA");
+        cache.checkClientTrusted(cadeia, "RSA");
+        cache.checkServerTrusted(cadeia, "ECDHE_RSA");
+
+        assertEquals(3, delegado.chamadas.get());
+        assertEquals(3, cache.getTamanho());
+    }
+
+    @Test
+    void aplicarEnvolveUmaVezSo() {
+        DelegadoTeste delegado = new DelegadoTeste();
+        TrustManager outro = new TrustManager() {
+        };
+
+        TrustManager[] envolvidos = CacheCadeiaValidada.aplicar(new TrustManager[]{delegado, outro});
+        TrustManager[] deNovo = CacheCadeiaValidada.aplicar(envolvidos);
+
+        assertSame(delegado, ((CacheCadeiaValidada) envolvidos[0]).getDelegado());
+        assertSame(outro, envolvidos[1]);
+        assertSame(envolvidos[0], deNovo[0]);
+        assertNotSame(envolvidos, deNovo);
+    }
+
+    /*
+     * Conexão nova a cada chamada, em um SSLContext próprio: sem retomada de sessão o handshake sempre valida a cadeia.
+     */
+    private static void conecta(CacheCadeiaValidada cache, String host, int porta) throws Exception {
+        SSLContext contexto = SSLContext.getInstance("TLSv1.2");
+        contexto.init(null, new TrustManager[]{cache}, null);
+        Socket tcp = new Socket(InetAddress.getLoopbackAddress(), porta);
+        try (SSLSocket socket = (SSLSocket) contexto.getSocketFactory().createSocket(tcp, host, porta, true)) {
+            SSLParameters parametros = socket.getSSLParameters();
+            parametros.setEndpointIdentificationAlgorithm("HTTPS");
+            socket.setSSLParameters(parametros);
+            socket.startHandshake();
+        }
+    }
+
+    private int servidorTls(X509Certificate certificado) throws Exception {
+        KeyManagerFactory fabrica = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        fabrica.init(CertificadosTeste.keyStore("ws", chaves.getPrivate(), certificado, ac.getCertificado()),
+                CertificadosTeste.SENHA.toCharArray());
+        SSLContext contexto = SSLContext.getInstance("TLSv1.2");
+        contexto.init(fabrica.getKeyManagers(), null, null);
+        servidor = (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        SSLServerSocket aberto = servidor;
+
+        Thread thread = new Thread(() -> {
+            while (!aberto.isClosed()) {
+                try (Socket conexao = aberto.accept()) {
+                    ((SSLSocket) conexao).startHandshake();
+                } catch (IOException e) {
+                    // cliente recusou a cadeia ou o servidor foi fechado
+                }
+            }
+        }, "servidor-tls-teste");
+        thread.setDaemon(true);
+        thread.start();
+        return servidor.getLocalPort();
+    }
+
+    private static final class DelegadoTeste implements X509TrustManager {
+
+        private final AtomicInteger chamadas = new AtomicInteger();
+        private volatile boolean recusa;
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+            checkServerTrusted(cadeia, tipo);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] cadeia, String tipo) throws CertificateException {
+            chamadas.incrementAndGet();
+            if (recusa) {
+                throw new CertificateException("recusada");
+            }
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CarregadorPfxTest {
+
+    private static final byte[] CHAVE = "chave-do-indice-de-teste-32bytes".getBytes(StandardCharsets.US_ASCII);
+
+    private static CertificadosTeste ac;
+
+    @TempDir
+    Path pasta;
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Carregador");
+    }
+
+    @Test
+    void outraInstanciaComAMesmaChaveReaproveitaOIndice() throws Exception {
+        criaPfx("a.pfx", "b.pfx", "c.p12");
+        Path indice = pasta.resolve("indice").resolve("certificados.properties");
+
+        ResultadoCarregamento primeiro = new CarregadorPfx(2, indice, CHAVE).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+        ResultadoCarregamento reiniciado = new CarregadorPfx(2, indice, CHAVE.clone()).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+
+        assertEquals(3, primeiro.getDecodificados());
+        assertEquals(0, primeiro.getReaproveitados());
+        assertEquals(0, reiniciado.getDecodificados());
+        assertEquals(3, reiniciado.getReaproveitados());
+        assertTrue(reiniciado.getFalhas().isEmpty());
+        assertEquals(series(primeiro), series(reiniciado));
+        assertFalse(new String(Files.readAllBytes(indice), StandardCharsets.ISO_8859_1).contains(CertificadosTeste.SENHA));
+    }
+
+    @Test
+    void chaveDiferenteDecodificaDeNovo() throws Exception {
+        criaPfx("a.pfx", "b.pfx");
+        Path indice = pasta.resolve("certificados.properties");
+        byte[] outraChave = CHAVE.clone();
+        outraChave[0]++;
+
+        new CarregadorPfx(1, indice, CHAVE).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+        ResultadoCarregamento resultado = new CarregadorPfx(1, indice, outraChave).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+
+        assertEquals(2, resultado.getDecodificados());
+        assertEquals(0, resultado.getReaproveitados());
+    }
+
+    @Test
+    void senhaErradaNaoEhAceitaPeloIndice() throws Exception {
+        criaPfx("a.pfx");
+        Path indice = pasta.resolve("certificados.properties");
+        new CarregadorPfx(1, indice, CHAVE).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+
+        ResultadoCarregamento resultado = new CarregadorPfx(1, indice, CHAVE).carregar(pasta, arquivo -> "outra");
+
+        assertEquals(0, resultado.getReaproveitados());
+        assertTrue(resultado.getCertificados().isEmpty());
+        assertEquals(1, resultado.getFalhas().size());
+    }
+
+    @Test
+    void arquivoSubstituidoEhDecodificado() throws Exception {
+        criaPfx("a.pfx", "b.pfx");
+        Path indice = pasta.resolve("certificados.properties");
+        new CarregadorPfx(1, indice, CHAVE).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+        criaPfx("b.pfx");
+        Files.setLastModifiedTime(pasta.resolve("b.pfx"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        ResultadoCarregamento resultado = new CarregadorPfx(1, indice, CHAVE).carregar(pasta, arquivo -> CertificadosTeste.SENHA);
+
+        assertEquals(1, resultado.getDecodificados());
+        assertEquals(1, resultado.getReaproveitados());
+    }
+
+    @Test
+    void indiceExigeChave() {
+        Path indice = pasta.resolve("certificados.properties");
+
+        assertThrows(IllegalArgumentException.class, () -> new CarregadorPfx(1, indice, null));
+        assertThrows(IllegalArgumentException.class, () -> new CarregadorPfx(1, indice, new byte[15]));
+        assertThrows(IllegalArgumentException.class, () -> new CarregadorPfx(0));
+        new CarregadorPfx(1, null, null);
+    }
+
+    private void criaPfx(String... nomes) throws Exception {
+        for (String nome : nomes) {
+            KeyPair chaves = CertificadosTeste.geraChaves();
+            Files.write(pasta.resolve(nome), CertificadosTeste.pfx("titular", chaves.getPrivate(),
+                    ac.emissao("CN=" + nome + " " + System.nanoTime()).emitir(chaves.getPublic()), ac.getCertificado()));
+        }
+    }
+
+    private static List<String> series(ResultadoCarregamento resultado) {
+        return resultado.getCertificados().stream()
+                .sorted(Comparator.comparing(Certificado::getArquivo))
+                .map(certificado -> certificado.getNumeroSerie() + "@" + certificado.getArquivo())
+                .collect(Collectors.toList());
+    }
+}
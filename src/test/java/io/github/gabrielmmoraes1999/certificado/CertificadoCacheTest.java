@@ -0,0 +1,131 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CertificadoCacheTest {
+
+    private static CertificadosTeste ac;
+    private static byte[] pfx;
+    private static KeyStore keyStore;
+
+    private CertificadoCache anterior;
+
+    @BeforeAll
+    static void criaPfx() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Cache");
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        X509Certificate certificado = ac.emissao("CN=cache").emitir(chaves.getPublic());
+        keyStore = CertificadosTeste.keyStore("titular", chaves.getPrivate(), certificado, ac.getCertificado());
+        pfx = CertificadosTeste.pfx("titular", chaves.getPrivate(), certificado, ac.getCertificado());
+    }
+
+    @BeforeEach
+    void guardaCache() {
+        anterior = CertificadoService.getCache();
+    }
+
+    @AfterEach
+    void restauraCache() {
+        CertificadoService.setCache(anterior);
+    }
+
+    @Test
+    void mesmoPfxEhDecodificadoUmaVez() throws Exception {
+        CertificadoCache cache = new CertificadoCache();
+        CertificadoService.setCache(cache);
+
+        Certificado primeiro = CertificadoService.certificadoPfxBytes(pfx, CertificadosTeste.SENHA);
+        Certificado segundo = CertificadoService.certificadoPfxBytes(pfx.clone(), CertificadosTeste.SENHA);
+
+        assertEquals(1, cache.getFalhas());
+        assertEquals(1, cache.getAcertos());
+        assertNotSame(primeiro, segundo);
+        assertEquals(primeiro.getCertificate(), segundo.getCertificate());
+        assertEquals(primeiro.getNumeroSerie(), segundo.getNumeroSerie());
+        assertEquals("cache", segundo.getSubject());
+        assertNull(cache.obter(pfx, "outra senha"));
+    }
+
+    @Test
+    void dadosSaoCopiadosEKeyStoreEhSomenteLeitura() throws Exception {
+        CertificadoCache cache = new CertificadoCache();
+        Certificado certificado = CertificadoService.certificadoPfxBytes(pfx, CertificadosTeste.SENHA);
+        cache.adicionar(pfx, CertificadosTeste.SENHA, keyStore, certificado);
+
+        CertificadoCache.Entrada entrada = cache.obter(pfx, CertificadosTeste.SENHA);
+        assertNotNull(entrada);
+        Certificado copia = entrada.getCertificado();
+        copia.setSubject("alterado");
+        assertEquals("cache", entrada.getCertificado().getSubject());
+
+        assertTrue(entrada.getKeyStore().containsAlias("titular"));
+        assertThrows(KeyStoreException.class, () -> entrada.getKeyStore().deleteEntry("titular"));
+        assertTrue(keyStore.containsAlias("titular"));
+    }
+
+    @Test
+    void entradaExpiraPeloTempoDeVida() throws Exception {
+        CertificadoCache cache = new CertificadoCache(10, Duration.ofMillis(30));
+        Certificado certificado = CertificadoService.certificadoPfxBytes(pfx, CertificadosTeste.SENHA);
+        cache.adicionar(pfx, CertificadosTeste.SENHA, keyStore, certificado);
+        cache.adicionar(pfx.clone(), "outra senha", keyStore, certificado);
+        assertNotNull(cache.obter(pfx, CertificadosTeste.SENHA));
+
+        Thread.sleep(40);
+
+        assertNull(cache.obter(pfx, CertificadosTeste.SENHA));
+        assertEquals(1, cache.removerExpirados());
+        assertEquals(0, cache.getTamanho());
+        assertEquals(2, cache.getRemocoes());
+    }
+
+    @Test
+    void excedenteSaiPeloUsoMaisAntigo() throws Exception {
+        CertificadoCache cache = new CertificadoCache(2, Duration.ofMinutes(1));
+        Certificado certificado = CertificadoService.certificadoPfxBytes(pfx, CertificadosTeste.SENHA);
+        cache.adicionar(pfx, "a", keyStore, certificado);
+        cache.adicionar(pfx, "b", keyStore, certificado);
+        assertNotNull(cache.obter(pfx, "a"));
+
+        cache.adicionar(pfx, "c", keyStore, certificado);
+
+        assertEquals(2, cache.getTamanho());
+        assertNotNull(cache.obter(pfx, "a"));
+        assertNull(cache.obter(pfx, "b"));
+        assertNotNull(cache.obter(pfx, "c"));
+        assertEquals(1, cache.getRemocoes());
+    }
+
+    @Test
+    void invalidacaoRemoveAEntrada() throws Exception {
+        CertificadoCache cache = new CertificadoCache();
+        Certificado certificado = CertificadoService.certificadoPfxBytes(pfx, CertificadosTeste.SENHA);
+        cache.adicionar(pfx, "a", keyStore, certificado);
+        cache.adicionar(pfx, "b", keyStore, certificado);
+
+        assertTrue(cache.invalidar(pfx, "a"));
+        assertFalse(cache.invalidar(pfx, "a"));
+        assertNull(cache.obter(pfx, "a"));
+        assertNotNull(cache.obter(pfx, "b"));
+
+        cache.invalidarTodos();
+        assertEquals(0, cache.getTamanho());
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CertificadoIndiceTest {
+
+    private static final LocalDateTime HOJE = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Test
+    void buscaPorCadaChave() throws Exception {
+        Certificado matriz = certificado("11222333000181", 1, 100);
+        Certificado renovado = certificado("11222333000181", 2, 465);
+        Certificado filial = certificado("11222333000262", 3, 200);
+        filial.setInscricaoPessoaFisica("12345678909");
+        Certificado a1 = CertificadosTeste.novaAc("AC Indice").certificadoA1("CN=a1");
+        CertificadoIndice indice = new CertificadoIndice(Arrays.asList(matriz, renovado, filial, a1));
+
+        assertEquals(4, indice.getTamanho());
+        assertSame(renovado, indice.buscarPorCnpjCpf("11222333000181").orElse(null));
+        assertEquals(2, indice.buscarTodosPorCnpjCpf("11222333000181").size());
+        assertEquals(3, indice.buscarPorRaizCnpj("11222333999999").size());
+        assertSame(filial, indice.buscarPorInscricaoPessoaFisica("12345678909").orElse(null));
+        assertSame(matriz, indice.buscarPorNumeroSerie(BigInteger.valueOf(1)).orElse(null));
+        assertSame(filial, indice.buscarPorAlias("certificado-3").orElse(null));
+
+        String impressaoDigital = CertificadoIndice.impressaoDigital(a1).toUpperCase().replaceAll("(..)(?!$)", "$1:");
+        assertSame(a1, indice.buscarPorImpressaoDigital(impressaoDigital).orElse(null));
+        assertFalse(indice.buscarPorCnpjCpf(null).isPresent());
+        assertTrue(indice.buscarPorRaizCnpj("1122").isEmpty());
+    }
+
+    @Test
+    void remocaoRetiraOCertificadoDeTodasAsChaves() {
+        Certificado matriz = certificado("11222333000181", 1, 100);
+        Certificado filial = certificado("11222333000262", 2, 200);
+        CertificadoIndice indice = new CertificadoIndice(Arrays.asList(matriz, filial));
+        indice.adicionar(matriz);
+
+        assertTrue(indice.remover(matriz));
+        assertFalse(indice.remover(matriz));
+
+        assertEquals(1, indice.getTamanho());
+        assertFalse(indice.buscarPorCnpjCpf("11222333000181").isPresent());
+        assertFalse(indice.buscarPorNumeroSerie(BigInteger.valueOf(1)).isPresent());
+        assertFalse(indice.buscarPorAlias("certificado-1").isPresent());
+        assertEquals(Arrays.asList(filial), indice.buscarPorRaizCnpj("11222333"));
+    }
+
+    @Test
+    void atualizacaoReindexaPelosNovosDados() {
+        Certificado certificado = certificado("11222333000181", 1, 100);
+        CertificadoIndice indice = new CertificadoIndice();
+        indice.adicionar(certificado);
+
+        certificado.setInscricaoCertificado("44555666000107");
+        certificado.setNumeroSerie(BigInteger.valueOf(9));
+        // Até a atualização, o certificado continua nas chaves da inclusão.
+        assertSame(certificado, indice.buscarPorCnpjCpf("11222333000181").orElse(null));
+        assertFalse(indice.buscarPorCnpjCpf("44555666000107").isPresent());
+
+        assertTrue(indice.atualizar(certificado));
+        assertFalse(indice.buscarPorCnpjCpf("11222333000181").isPresent());
+        assertFalse(indice.buscarPorNumeroSerie(BigInteger.valueOf(1)).isPresent());
+        assertSame(certificado, indice.buscarPorCnpjCpf("44555666000107").orElse(null));
+        assertSame(certificado, indice.buscarPorNumeroSerie(BigInteger.valueOf(9)).orElse(null));
+        assertTrue(indice.buscarPorRaizCnpj("11222333").isEmpty());
+
+        assertFalse(indice.atualizar(certificado("11222333000181", 2, 100)));
+        assertTrue(indice.remover(certificado));
+        assertTrue(indice.buscarPorRaizCnpj("44555666").isEmpty());
+    }
+
+    @Test
+    void operacoesAleatoriasConferemComABuscaLinear() {
+        Random random = new Random(7);
+        String[] inscricoes = {"11222333000181", "11222333000262", "44555666000107", "12345678909"};
+        List<Certificado> todos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            todos.add(certificado(inscricoes[random.nextInt(inscricoes.length)], i, random.nextInt(1000)));
+        }
+        List<Certificado> incluidos = new ArrayList<>();
+        CertificadoIndice indice = new CertificadoIndice();
+
+        for (int operacao = 0; operacao < 2000; operacao++) {
+            Certificado certificado = todos.get(random.nextInt(todos.size()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    indice.adicionar(certificado);
+                    if (!incluidos.contains(certificado)) {
+                        incluidos.add(certificado);
+                    }
+                    break;
+                case 1:
+                    assertEquals(incluidos.remove(certificado), indice.remover(certificado));
+                    break;
+                default:
+                    certificado.setInscricaoCertificado(inscricoes[random.nextInt(inscricoes.length)]);
+                    certificado.setDataHoraVencimento(HOJE.plusDays(random.nextInt(1000)));
+                    if (incluidos.contains(certificado)) {
+                        assertTrue(indice.atualizar(certificado));
+                    }
+            }
+
+            for (String inscricao : inscricoes) {
+                List<Certificado> esperados = incluidos.stream()
+                        .filter(c -> inscricao.equals(c.getInscricaoCertificado())).collect(Collectors.toList());
+                assertEquals(new HashSet<>(esperados), new HashSet<>(indice.buscarTodosPorCnpjCpf(inscricao)));
+                assertEquals(esperados.stream().map(Certificado::getDataHoraVencimento).max(LocalDateTime::compareTo),
+                        indice.buscarPorCnpjCpf(inscricao).map(Certificado::getDataHoraVencimento));
+            }
+        }
+        assertEquals(incluidos.size(), indice.getTamanho());
+    }
+
+    private static Certificado certificado(String inscricao, int numeroSerie, int diasParaVencer) {
+        Certificado certificado = new Certificado();
+        certificado.setInscricaoCertificado(inscricao);
+        certificado.setNumeroSerie(BigInteger.valueOf(numeroSerie));
+        certificado.setNomeCertificado("certificado-" + numeroSerie);
+        certificado.setDataHoraVencimento(HOJE.plusDays(diasParaVencer));
+        return certificado;
+    }
+}
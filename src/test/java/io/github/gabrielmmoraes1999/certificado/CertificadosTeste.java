@@ -0,0 +1,295 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERPrintableString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.jcajce.JcaBasicOCSPRespBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Autoridade certificadora de teste: gera em memória certificados, PFX e truststores para os testes.
+ */
+public final class CertificadosTeste {
+
+    public static final String SENHA = "senha123";
+
+    private static final AtomicLong SERIAL = new AtomicLong(System.currentTimeMillis());
+
+    private final KeyPair chaves;
+    private final X509Certificate certificado;
+
+    public CertificadosTeste(KeyPair chaves, X509Certificate certificado) {
+        this.chaves = chaves;
+        this.certificado = certificado;
+    }
+
+    /**
+     * AC raiz autoassinada.
+     */
+    public static CertificadosTeste novaAc(String nome) throws Exception {
+        KeyPair chaves = geraChaves();
+        X500Name titular = new X500Name("CN=" + nome);
+        long agora = System.currentTimeMillis();
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(titular, BigInteger.valueOf(SERIAL.incrementAndGet()),
+                new Date(agora - TimeUnit.DAYS.toMillis(1)), new Date(agora + TimeUnit.DAYS.toMillis(3650)), titular, chaves.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        return new CertificadosTeste(chaves, assina(builder, chaves.getPrivate()));
+    }
+
+    public static KeyPair geraChaves() throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(2048);
+        return gerador.generateKeyPair();
+    }
+
+    /**
+     * PKCS12 com a chave e a cadeia informadas, protegido por {@link #SENHA}.
+     */
+    public static KeyStore keyStore(String alias, PrivateKey chave, X509Certificate... cadeia) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(alias, chave, SENHA.toCharArray(), cadeia);
+        return keyStore;
+    }
+
+    public static byte[] pfx(String alias, PrivateKey chave, X509Certificate... cadeia) throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        keyStore(alias, chave, cadeia).store(saida, SENHA.toCharArray());
+        return saida.toByteArray();
+    }
+
+    public static KeyStore trustStore(Certificate... ancoras) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        for (int i = 0; i < ancoras.length; i++) {
+            keyStore.setCertificateEntry("ancora" + i, ancoras[i]);
+        }
+        return keyStore;
+    }
+
+    /**
+     * Cacert com as âncoras informadas, carregado como um arquivo cacert.
+     */
+    public static Cacert cacert(Certificate... ancoras) throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        trustStore(ancoras).store(saida, "changeit".toCharArray());
+        return TrustStoreService.get(saida.toByteArray());
+    }
+
+    /**
+     * Certificado A1 com uma nova chave, emitido por esta AC e carregado de um PFX com a cadeia completa.
+     */
+    public Certificado certificadoA1(String subject) throws Exception {
+        KeyPair chavesTitular = geraChaves();
+        return CertificadoService.certificadoPfxBytes(pfx("titular", chavesTitular.getPrivate(),
+                emissao(subject).emitir(chavesTitular.getPublic()), certificado), SENHA);
+    }
+
+    public KeyPair getChaves() {
+        return chaves;
+    }
+
+    public X509Certificate getCertificado() {
+        return certificado;
+    }
+
+    public Emissao emissao(String subject) {
+        return new Emissao(subject);
+    }
+
+    /**
+     * LCR em DER assinada por esta AC. Sem {@code proximaAtualizacao} a LCR é emitida sem nextUpdate.
+     */
+    public byte[] lcr(Date emitidaEm, Date proximaAtualizacao, Collection<BigInteger> revogados) throws Exception {
+        X509v2CRLBuilder builder = new JcaX509v2CRLBuilder(certificado.getSubjectX500Principal(), emitidaEm);
+        if (proximaAtualizacao != null) {
+            builder.setNextUpdate(proximaAtualizacao);
+        }
+        for (BigInteger serie : revogados) {
+            builder.addCRLEntry(serie, emitidaEm, CRLReason.keyCompromise);
+        }
+        return builder.build(assinador()).getEncoded();
+    }
+
+    /**
+     * Resposta OCSP assinada por esta AC para cada certificado da requisição, com a situação conforme a lista de
+     * revogados.
+     */
+    public byte[] respostaOcsp(byte[] requisicao, Collection<BigInteger> revogados, Date proximaAtualizacao) throws Exception {
+        BasicOCSPRespBuilder builder = new JcaBasicOCSPRespBuilder(chaves.getPublic(),
+                new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1));
+        Date agora = new Date();
+        for (Req req : new OCSPReq(requisicao).getRequestList()) {
+            CertificateStatus situacao = revogados.contains(req.getCertID().getSerialNumber())
+                    ? new RevokedStatus(agora, CRLReason.keyCompromise) : CertificateStatus.GOOD;
+            builder.addResponse(req.getCertID(), situacao, agora, proximaAtualizacao, null);
+        }
+        return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, builder.build(assinador(), null, agora)).getEncoded();
+    }
+
+    private ContentSigner assinador() throws Exception {
+        return new JcaContentSignerBuilder("SHA256withRSA").build(chaves.getPrivate());
+    }
+
+    private static X509Certificate assina(X509v3CertificateBuilder builder, PrivateKey chave) throws Exception {
+        return new JcaX509CertificateConverter().getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(chave)));
+    }
+
+    public final class Emissao {
+
+        private final X500Name titular;
+        private final List<GeneralName> nomesAlternativos = new ArrayList<>();
+        private Date inicio = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+        private Date fim = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+        private BigInteger serie = BigInteger.valueOf(SERIAL.incrementAndGet());
+        private boolean autoridade;
+        private String urlLcr;
+        private String urlOcsp;
+        private KeyUsage usoChave;
+        private ExtendedKeyUsage usoEstendido;
+
+        private Emissao(String subject) {
+            this.titular = new X500Name(subject);
+        }
+
+        public Emissao validade(Date inicio, Date fim) {
+            this.inicio = inicio;
+            this.fim = fim;
+            return this;
+        }
+
+        public Emissao serie(BigInteger serie) {
+            this.serie = serie;
+            return this;
+        }
+
+        public Emissao autoridade() {
+            this.autoridade = true;
+            return this;
+        }
+
+        public Emissao dns(String host) {
+            nomesAlternativos.add(new GeneralName(GeneralName.dNSName, host));
+            return this;
+        }
+
+        public Emissao lcr(String url) {
+            this.urlLcr = url;
+            return this;
+        }
+
+        public Emissao ocsp(String url) {
+            this.urlOcsp = url;
+            return this;
+        }
+
+        /**
+         * @param usos bits de {@link KeyUsage}, ex.: {@code KeyUsage.digitalSignature | KeyUsage.keyEncipherment}
+         */
+        public Emissao usoChave(int usos) {
+            this.usoChave = new KeyUsage(usos);
+            return this;
+        }
+
+        public Emissao usoEstendido(KeyPurposeId... usos) {
+            this.usoEstendido = new ExtendedKeyUsage(usos);
+            return this;
+        }
+
+        public Emissao nomeAlternativo(GeneralName nome) {
+            nomesAlternativos.add(nome);
+            return this;
+        }
+
+        /**
+         * Campos ICP-Brasil de um e-CNPJ no SubjectAltName: CNPJ, CPF e nome do responsável e CEI.
+         */
+        public Emissao pessoaJuridica(String cnpj, String cpfResponsavel, String nomeResponsavel) {
+            nomesAlternativos.add(otherName("2.16.76.1.3.4", new DEROctetString(
+                    ("01011980" + cpfResponsavel + "00000000000" + "000000000000000" + "SSPSP ").getBytes(StandardCharsets.US_ASCII))));
+            nomesAlternativos.add(otherName("2.16.76.1.3.2", new DERPrintableString(nomeResponsavel)));
+            nomesAlternativos.add(otherName("2.16.76.1.3.3", new DEROctetString(cnpj.getBytes(StandardCharsets.US_ASCII))));
+            nomesAlternativos.add(otherName("2.16.76.1.3.7", new DEROctetString("000000000000".getBytes(StandardCharsets.US_ASCII))));
+            return this;
+        }
+
+        private GeneralName otherName(String oid, ASN1Encodable valor) {
+            return new GeneralName(GeneralName.otherName,
+                    new DERSequence(new ASN1Encodable[]{new ASN1ObjectIdentifier(oid), new DERTaggedObject(true, 0, valor)}));
+        }
+
+        public X509Certificate emitir(PublicKey chave) throws Exception {
+            X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                    X500Name.getInstance(certificado.getSubjectX500Principal().getEncoded()), serie, inicio, fim, titular, chave);
+            builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(autoridade));
+            if (!nomesAlternativos.isEmpty()) {
+                builder.addExtension(Extension.subjectAlternativeName, false,
+                        new GeneralNames(nomesAlternativos.toArray(new GeneralName[0])));
+            }
+            if (usoChave != null) {
+                builder.addExtension(Extension.keyUsage, true, usoChave);
+            }
+            if (usoEstendido != null) {
+                builder.addExtension(Extension.extendedKeyUsage, false, usoEstendido);
+            }
+            if (urlLcr != null) {
+                GeneralNames nomes = new GeneralNames(new GeneralName(GeneralName.uniformResourceIdentifier, urlLcr));
+                builder.addExtension(Extension.cRLDistributionPoints, false,
+                        new CRLDistPoint(new DistributionPoint[]{new DistributionPoint(new DistributionPointName(nomes), null, null)}));
+            }
+            if (urlOcsp != null) {
+                builder.addExtension(Extension.authorityInfoAccess, false, new AuthorityInformationAccess(
+                        X509ObjectIdentifiers.ocspAccessMethod, new GeneralName(GeneralName.uniformResourceIdentifier, urlOcsp)));
+            }
+            return assina(builder, chaves.getPrivate());
+        }
+    }
+}
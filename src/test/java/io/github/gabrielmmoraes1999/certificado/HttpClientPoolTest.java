@@ -0,0 +1,81 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpClientPoolTest {
+
+    private static CertificadosTeste ac;
+
+    private HttpClientPool pool;
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Pool");
+    }
+
+    @BeforeEach
+    void criaPool() {
+        pool = new HttpClientPool();
+    }
+
+    @AfterEach
+    void fechaPool() {
+        pool.close();
+    }
+
+    @Test
+    void protocoloDescartadoEncerraOPool() throws Exception {
+        Certificado certificado = ac.certificadoA1("CN=descartado");
+        HttpClient cliente = pool.getHttpsClient(certificado, "localhost");
+        assertSame(cliente.getHttpConnectionManager(), pool.getHttpsClient(certificado, "localhost").getHttpConnectionManager());
+        assertEquals(1, pool.getQuantidadePools());
+
+        CertificadoService.getProtocoloCache().remover(certificado);
+
+        assertEquals(0, pool.getQuantidadePools());
+        HostConfiguration host = cliente.getHostConfiguration();
+        assertThrows(IllegalStateException.class, () -> cliente.getHttpConnectionManager().getConnectionWithTimeout(host, 10));
+    }
+
+    @Test
+    void fecharNaoConstroiProtocolo() throws Exception {
+        Certificado certificado = ac.certificadoA1("CN=fechar");
+        ProtocoloCache cache = CertificadoService.getProtocoloCache();
+        long construcoes = cache.getConstrucoes();
+
+        assertFalse(pool.fechar(certificado));
+        assertEquals(0, pool.getEstatisticas(certificado).getEmprestimos());
+        assertEquals(construcoes, cache.getConstrucoes());
+
+        pool.getHttpsClient(certificado, "localhost");
+        assertTrue(pool.fechar(certificado));
+        assertEquals(0, pool.getQuantidadePools());
+        assertEquals(construcoes + 1, cache.getConstrucoes());
+    }
+
+    @Test
+    void recargaDoPfxMantemOPool() throws Exception {
+        Certificado certificado = ac.certificadoA1("CN=recarga");
+        HttpClient cliente = pool.getHttpsClient(certificado, "localhost");
+
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        CertificadoService.recarregaPfx(certificado, CertificadosTeste.pfx("titular", chaves.getPrivate(),
+                ac.emissao("CN=recarga").emitir(chaves.getPublic()), ac.getCertificado()));
+
+        assertEquals(1, pool.getQuantidadePools());
+        assertSame(cliente.getHttpConnectionManager(), pool.getHttpsClient(certificado, "localhost").getHttpConnectionManager());
+    }
+}
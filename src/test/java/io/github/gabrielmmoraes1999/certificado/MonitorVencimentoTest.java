@@ -0,0 +1,179 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonitorVencimentoTest {
+
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+    private static final Instant INICIO = LocalDateTime.of(2026, 1, 1, 12, 0).atZone(ZONA).toInstant();
+
+    private RelogioAjustavel relogio;
+    private MonitorVencimento monitor;
+    private List<EventoVencimento> eventos;
+
+    @BeforeEach
+    void configura() {
+        relogio = new RelogioAjustavel(INICIO);
+        monitor = new MonitorVencimento(relogio, MonitorVencimento.LIMITES_PADRAO);
+        eventos = new ArrayList<>();
+        monitor.adicionarListener(eventos::add);
+    }
+
+    @Test
+    void emiteUmAvisoPorLimiteAtingido() {
+        Certificado certificado = certificado(Duration.ofDays(40));
+        monitor.adicionar(certificado);
+
+        assertEquals(0, monitor.verificar());
+
+        relogio.avanca(Duration.ofDays(10));
+        assertEquals(1, monitor.verificar());
+        assertEquals(Duration.ofDays(30), eventos.get(0).getLimite());
+        assertEquals(30, eventos.get(0).getDiasRestantes());
+        assertSame(certificado, eventos.get(0).getCertificado());
+        assertEquals(0, monitor.verificar());
+
+        relogio.avanca(Duration.ofDays(23));
+        assertEquals(1, monitor.verificar());
+        assertEquals(Duration.ofDays(7), eventos.get(1).getLimite());
+
+        relogio.avanca(Duration.ofDays(6));
+        assertEquals(1, monitor.verificar());
+        assertEquals(Duration.ofDays(1), eventos.get(2).getLimite());
+
+        relogio.avanca(Duration.ofDays(1));
+        assertEquals(1, monitor.verificar());
+        assertTrue(eventos.get(3).isVencido());
+        assertEquals(0, eventos.get(3).getDiasRestantes());
+
+        relogio.avanca(Duration.ofDays(365));
+        assertEquals(0, monitor.verificar());
+        assertEquals(4, eventos.size());
+    }
+
+    @Test
+    void resumeLimitesJaPassadosNoMaisProximo() {
+        monitor.adicionar(certificado(Duration.ofDays(5)));
+
+        assertEquals(1, monitor.verificar());
+        assertEquals(Duration.ofDays(7), eventos.get(0).getLimite());
+
+        relogio.avanca(Duration.ofDays(10));
+        assertEquals(1, monitor.verificar());
+        assertTrue(eventos.get(1).isVencido());
+        assertEquals(2, eventos.size());
+    }
+
+    @Test
+    void atualizaDiasRestantesEValidadeDoCertificado() {
+        Certificado certificado = certificado(Duration.ofDays(8));
+        certificado.setDiasRestantes(999L);
+        monitor.adicionar(certificado);
+
+        relogio.avanca(Duration.ofDays(1));
+        monitor.verificar();
+        assertEquals(7L, certificado.getDiasRestantes());
+        assertTrue(certificado.isValido());
+
+        relogio.avanca(Duration.ofDays(7));
+        monitor.verificar();
+        assertEquals(0L, certificado.getDiasRestantes());
+        assertFalse(certificado.isValido());
+    }
+
+    @Test
+    void certificadoRemovidoNaoGeraAvisos() {
+        Certificado certificado = certificado(Duration.ofDays(3));
+        monitor.adicionar(certificado);
+
+        assertTrue(monitor.remover(certificado));
+        assertFalse(monitor.remover(certificado));
+        assertEquals(0, monitor.getTamanho());
+        assertEquals(0, monitor.verificar());
+    }
+
+    @Test
+    void listaOsQueVencemNoPeriodoPelaOrdemDeVencimento() {
+        Certificado longe = certificado(Duration.ofDays(90));
+        Certificado perto = certificado(Duration.ofDays(2));
+        Certificado medio = certificado(Duration.ofDays(20));
+        Arrays.asList(longe, perto, medio).forEach(monitor::adicionar);
+
+        assertEquals(Arrays.asList(perto, medio), monitor.vencendoEm(Duration.ofDays(30)));
+        assertEquals(Arrays.asList(perto, medio, longe), monitor.vencendoEm(Duration.ofDays(365)));
+        assertTrue(monitor.vencendoEm(Duration.ofDays(1)).isEmpty());
+    }
+
+    @Test
+    void falhaEmUmListenerNaoImpedeOsDemais() {
+        List<EventoVencimento> segundo = new ArrayList<>();
+        MonitorVencimento monitor = new MonitorVencimento(relogio, MonitorVencimento.LIMITES_PADRAO);
+        monitor.adicionarListener(evento -> {
+            throw new IllegalStateException("falha no listener");
+        });
+        monitor.adicionarListener(segundo::add);
+        monitor.adicionar(certificado(Duration.ofDays(1)));
+
+        assertEquals(1, monitor.verificar());
+        assertEquals(1, segundo.size());
+    }
+
+    @Test
+    void recusaLimitesNegativos() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new MonitorVencimento(relogio, Arrays.asList(Duration.ofDays(1), Duration.ofDays(-1))));
+        assertThrows(IllegalArgumentException.class, () -> monitor.adicionar(new Certificado()));
+    }
+
+    private Certificado certificado(Duration validade) {
+        LocalDateTime vencimento = LocalDateTime.ofInstant(relogio.instant().plus(validade), ZONA);
+        Certificado certificado = new Certificado();
+        certificado.setDataHoraVencimento(vencimento);
+        certificado.setVencimento(vencimento.toLocalDate());
+        return certificado;
+    }
+
+    private static final class RelogioAjustavel extends Clock {
+
+        private Instant agora;
+
+        private RelogioAjustavel(Instant agora) {
+            this.agora = agora;
+        }
+
+        private void avanca(Duration duracao) {
+            agora = agora.plus(duracao);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONA;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return agora;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.apache.commons.httpclient.protocol.DefaultProtocolSocketFactory;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProtocoloCacheTest {
+
+    private static CertificadosTeste ac;
+    private static Certificado certificado;
+
+    @BeforeAll
+    static void criaCertificado() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Protocolo");
+        certificado = ac.certificadoA1("CN=protocolo");
+    }
+
+    @Test
+    void mesmoCertificadoReutilizaOProtocolo() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache();
+        Certificado mesmoPfx = CertificadoService.certificadoPfxBytes(certificado.getArquivoBytes(), CertificadosTeste.SENHA);
+
+        Protocol protocolo = cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo);
+        assertSame(protocolo, cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo));
+        assertSame(protocolo, cache.obter(mesmoPfx, "cacert", ProtocoloCacheTest::protocolo));
+
+        assertEquals(1, cache.getConstrucoes());
+        assertEquals(2, cache.getReutilizacoes());
+        assertEquals(2.0 / 3, cache.getTaxaReutilizacao(), 1e-9);
+        assertEquals(Collections.singletonList(protocolo), cache.consultar(mesmoPfx));
+    }
+
+    @Test
+    void mudancaNaConfiguracaoConstroiOutroProtocolo() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache();
+        Certificado alterado = CertificadoService.certificadoPfxBytes(certificado.getArquivoBytes(), CertificadosTeste.SENHA);
+        Protocol protocolo = cache.obter(alterado, "cacert", ProtocoloCacheTest::protocolo);
+
+        assertNotSame(protocolo, cache.obter(alterado, "outro-cacert", ProtocoloCacheTest::protocolo));
+        alterado.setTimeoutLeitura(5000);
+        Protocol comTimeout = cache.obter(alterado, "cacert", ProtocoloCacheTest::protocolo);
+        assertNotSame(protocolo, comTimeout);
+        alterado.setSslProtocol("TLSv1.3");
+        assertNotSame(comTimeout, cache.obter(alterado, "cacert", ProtocoloCacheTest::protocolo));
+
+        assertEquals(4, cache.getConstrucoes());
+        assertEquals(4, cache.getTamanho());
+        assertSame(protocolo, cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo));
+    }
+
+    @Test
+    void semCertificadoOuCacertNaoHaCache() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache();
+
+        assertNotSame(cache.obter(new Certificado(), "cacert", ProtocoloCacheTest::protocolo),
+                cache.obter(new Certificado(), "cacert", ProtocoloCacheTest::protocolo));
+        assertNotSame(cache.obter(certificado, null, ProtocoloCacheTest::protocolo),
+                cache.obter(certificado, null, ProtocoloCacheTest::protocolo));
+        assertEquals(4, cache.getConstrucoes());
+        assertEquals(0, cache.getTamanho());
+    }
+
+    @Test
+    void protocoloOciosoEhReconstruido() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache(10, Duration.ofMillis(30));
+        Protocol protocolo = cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo);
+
+        Thread.sleep(40);
+
+        assertNotSame(protocolo, cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo));
+        assertEquals(2, cache.getConstrucoes());
+        assertEquals(1, cache.getRemocoes());
+        assertEquals(1, cache.getTamanho());
+    }
+
+    @Test
+    void listenerRecebeOsProtocolosOciosos() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache(10, Duration.ofMillis(50));
+        List<Protocol> removidos = new ArrayList<>();
+        cache.adicionarListener(removidos::add);
+        Protocol protocolo = cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo);
+
+        Thread.sleep(60);
+        assertEquals(1, cache.removerOciosos());
+
+        assertEquals(Collections.singletonList(protocolo), removidos);
+        assertEquals(1, cache.getRemocoes());
+    }
+
+    @Test
+    void listenerRecebeOsProtocolosDespejadosERemovidos() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache(2, Duration.ofMinutes(1));
+        List<Protocol> removidos = new ArrayList<>();
+        cache.adicionarListener(removidos::add);
+
+        Protocol primeiro = cache.obter(certificado, "cacert-1", ProtocoloCacheTest::protocolo);
+        Thread.sleep(2);
+        Protocol segundo = cache.obter(certificado, "cacert-2", ProtocoloCacheTest::protocolo);
+        Thread.sleep(2);
+        Protocol terceiro = cache.obter(certificado, "cacert-3", ProtocoloCacheTest::protocolo);
+        assertEquals(1, removidos.size());
+        assertSame(primeiro, removidos.get(0));
+
+        assertTrue(cache.remover(certificado));
+        assertEquals(3, removidos.size());
+        assertTrue(removidos.containsAll(Arrays.asList(segundo, terceiro)));
+    }
+
+    @Test
+    void listenerRemovidoNaoEhAvisado() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache();
+        List<Protocol> removidos = new ArrayList<>();
+        ProtocoloCache.RemocaoListener listener = removidos::add;
+        cache.adicionarListener(listener);
+        cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo);
+
+        cache.removerListener(listener);
+        cache.limpar();
+
+        assertEquals(0, cache.getTamanho());
+        assertTrue(removidos.isEmpty());
+    }
+
+    @Test
+    void substituirRespondePelasDuasChavesAteOCertificadoSerAtualizado() throws Exception {
+        ProtocoloCache cache = new ProtocoloCache();
+        List<Protocol> removidos = new ArrayList<>();
+        cache.adicionarListener(removidos::add);
+        Certificado certificado = ac.certificadoA1("CN=troca");
+        Certificado anterior = CertificadoService.certificadoPfxBytes(certificado.getArquivoBytes(), CertificadosTeste.SENHA);
+        Cacert cacert = CertificadosTeste.cacert(ac.getCertificado());
+        Protocol construido = new Protocol("https", new SocketFactoryDinamico(CertificadoService.getKeyStore(certificado),
+                certificado.getNomeCertificado(), certificado.getSenha(), cacert.getTrustManagers(), "TLSv1.2"), 443);
+        Protocol protocolo = cache.obter(certificado, "cacert", () -> construido);
+
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        Certificado novo = CertificadoService.certificadoPfxBytes(CertificadosTeste.pfx("titular", chaves.getPrivate(),
+                ac.emissao("CN=troca").emitir(chaves.getPublic()), ac.getCertificado()), CertificadosTeste.SENHA);
+
+        assertEquals(1, cache.substituir(certificado, novo, CertificadoService.getKeyStore(novo), () -> {
+            assertSame(protocolo, assertDoesNotThrow(() -> cache.obter(anterior, "cacert", ProtocoloCacheTest::protocolo)));
+            assertSame(protocolo, assertDoesNotThrow(() -> cache.obter(novo, "cacert", ProtocoloCacheTest::protocolo)));
+            CertificadoService.copiaDadosCertificado(novo, certificado);
+        }));
+
+        assertSame(protocolo, cache.obter(certificado, "cacert", ProtocoloCacheTest::protocolo));
+        assertEquals(1, cache.getConstrucoes());
+        assertEquals(1, cache.getTamanho());
+        assertTrue(cache.consultar(anterior).isEmpty());
+        assertTrue(removidos.isEmpty());
+    }
+
+    private static Protocol protocolo() {
+        return new Protocol("https", new DefaultProtocolSocketFactory(), 443);
+    }
+}
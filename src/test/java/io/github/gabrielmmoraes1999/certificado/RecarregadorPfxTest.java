@@ -0,0 +1,148 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecarregadorPfxTest {
+
+    private static CertificadosTeste ac;
+
+    @TempDir
+    Path diretorio;
+
+    private RecarregadorPfx recarregador;
+    private final BlockingQueue<EventoRecarga> eventos = new LinkedBlockingQueue<>();
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Recarga");
+    }
+
+    @BeforeEach
+    void criaRecarregador() {
+        recarregador = new RecarregadorPfx(Duration.ofMillis(50));
+        recarregador.adicionarListener(eventos::add);
+    }
+
+    @AfterEach
+    void fechaRecarregador() {
+        recarregador.close();
+    }
+
+    @Test
+    void arquivoRenovadoEhRecarregado() throws Exception {
+        Path arquivo = diretorio.resolve("empresa.pfx");
+        Certificado certificado = registra(arquivo, "CN=empresa");
+        X509Certificate anterior = certificado.getCertificate();
+        recarregador.iniciar();
+
+        X509Certificate renovado = gravaPfx(arquivo, "CN=empresa");
+
+        EventoRecarga evento = eventos.poll(10, TimeUnit.SECONDS);
+        assertNotNull(evento);
+        assertTrue(evento.isSucesso());
+        assertEquals(anterior, evento.getAnterior());
+        assertEquals(renovado, evento.getNovo());
+        assertEquals(renovado, certificado.getCertificate());
+    }
+
+    @Test
+    void conteudoIgualEhIgnoradoEInvalidoMantemOCertificado() throws Exception {
+        Path arquivo = diretorio.resolve("empresa.pfx");
+        Certificado certificado = registra(arquivo, "CN=empresa");
+        X509Certificate anterior = certificado.getCertificate();
+
+        assertNull(recarregador.recarregar(certificado));
+
+        Files.write(arquivo, new byte[]{1, 2, 3});
+        EventoRecarga evento = recarregador.recarregar(certificado);
+        assertFalse(evento.isSucesso());
+        assertNotNull(evento.getErro());
+        assertSame(anterior, certificado.getCertificate());
+        assertSame(evento, eventos.poll());
+    }
+
+    /*
+     * Durante a troca o protocolo responde pelos dados anteriores e pelos novos: quem consulta no meio da recarga nunca
+     * constrói outro protocolo.
+     */
+    @Test
+    void consultasDuranteARecargaUsamSempreOMesmoProtocolo() throws Exception {
+        Path arquivo = diretorio.resolve("empresa.pfx");
+        Certificado certificado = registra(arquivo, "CN=concorrente");
+        Cacert cacert = CertificadosTeste.cacert(ac.getCertificado());
+        Protocol protocolo = CertificadoService.getProtocoloCertificado(certificado, cacert);
+        ProtocoloCache cache = CertificadoService.getProtocoloCache();
+        long construcoes = cache.getConstrucoes();
+
+        AtomicReference<Throwable> falha = new AtomicReference<>();
+        CountDownLatch fim = new CountDownLatch(1);
+        List<Thread> leitores = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread leitor = new Thread(() -> {
+                try {
+                    while (fim.getCount() > 0) {
+                        assertSame(protocolo, CertificadoService.getProtocoloCertificado(certificado, cacert));
+                    }
+                } catch (Throwable e) {
+                    falha.compareAndSet(null, e);
+                }
+            });
+            leitor.start();
+            leitores.add(leitor);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            X509Certificate renovado = gravaPfx(arquivo, "CN=concorrente");
+            assertTrue(recarregador.recarregar(certificado).isSucesso());
+            assertEquals(renovado, certificado.getCertificate());
+        }
+        fim.countDown();
+        for (Thread leitor : leitores) {
+            leitor.join();
+        }
+
+        assertNull(falha.get());
+        assertEquals(construcoes, cache.getConstrucoes());
+        assertEquals(1, cache.consultar(certificado).size());
+        cache.remover(certificado);
+    }
+
+    private Certificado registra(Path arquivo, String subject) throws Exception {
+        gravaPfx(arquivo, subject);
+        Certificado certificado = CertificadoService.certificadoPfxBytes(Files.readAllBytes(arquivo), CertificadosTeste.SENHA);
+        recarregador.registrar(certificado, arquivo);
+        return certificado;
+    }
+
+    private static X509Certificate gravaPfx(Path arquivo, String subject) throws Exception {
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        X509Certificate certificado = ac.emissao(subject).emitir(chaves.getPublic());
+        Files.write(arquivo, CertificadosTeste.pfx("titular", chaves.getPrivate(), certificado, ac.getCertificado()));
+        return certificado;
+    }
+}
@@ -0,0 +1,299 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.KeyStoreSpi;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.ProviderException;
+import java.security.Security;
+import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SessaoA3ServiceTest {
+
+    private static final String NOME_PROVIDER = "TokenTeste";
+    private static final String ALIAS = "token";
+
+    private static KeyStore conteudoToken;
+    private static final AtomicInteger geracao = new AtomicInteger();
+    private static final AtomicInteger acessosSimultaneos = new AtomicInteger();
+    private static final AtomicInteger maximoSimultaneos = new AtomicInteger();
+
+    @BeforeAll
+    static void criaToken() throws Exception {
+        CertificadosTeste ac = CertificadosTeste.novaAc("AC Token");
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        conteudoToken = CertificadosTeste.keyStore(ALIAS, chaves.getPrivate(),
+                ac.emissao("CN=TITULAR TOKEN").emitir(chaves.getPublic()), ac.getCertificado());
+    }
+
+    @AfterEach
+    void encerraSessoes() {
+        SessaoA3Service.encerrarTodas();
+        Security.removeProvider(NOME_PROVIDER);
+        maximoSimultaneos.set(0);
+    }
+
+    @Test
+    void reaproveitaOLoginEntreAcessos() throws Exception {
+        Provider provider = novoProvider();
+        long logins = SessaoA3Service.getLogins();
+        long reutilizacoes = SessaoA3Service.getReutilizacoes();
+
+        Certificado certificado = CertificadoService.certificadoA3(CertificadosTeste.SENHA, provider);
+        CertificadoService.getKeyStore(certificado);
+        CertificadoService.getKeyStore(certificado);
+
+        assertEquals(ALIAS, certificado.getNomeCertificado());
+        assertEquals(Collections.singletonList(ALIAS), CertificadoService.listaAliasCertificadosA3(CertificadosTeste.SENHA, provider));
+        assertEquals(1, SessaoA3Service.getLogins() - logins);
+        assertEquals(3, SessaoA3Service.getReutilizacoes() - reutilizacoes);
+        assertEquals(1, SessaoA3Service.getQuantidadeSessoes());
+    }
+
+    @Test
+    void providersComOMesmoNomeTemSessoesSeparadas() throws Exception {
+        Provider leitora1 = novoProvider();
+        Provider leitora2 = novoProvider();
+        long logins = SessaoA3Service.getLogins();
+
+        CertificadoService.certificadoA3(CertificadosTeste.SENHA, leitora1);
+        CertificadoService.certificadoA3(CertificadosTeste.SENHA, leitora2);
+
+        assertEquals(2, SessaoA3Service.getLogins() - logins);
+        assertEquals(2, SessaoA3Service.getQuantidadeSessoes());
+
+        SessaoA3Service.encerrar(leitora1);
+        assertEquals(1, SessaoA3Service.getQuantidadeSessoes());
+    }
+
+    @Test
+    void refazOLoginQuandoOTokenEhReinserido() throws Exception {
+        Certificado certificado = CertificadoService.certificadoA3(CertificadosTeste.SENHA, novoProvider());
+        long logins = SessaoA3Service.getLogins();
+
+        geracao.incrementAndGet();
+        assertNotNull(CertificadoService.getKeyStore(certificado).getCertificate(ALIAS));
+        CertificadoService.getKeyStore(certificado);
+
+        assertEquals(1, SessaoA3Service.getLogins() - logins);
+    }
+
+    @Test
+    void pinDiferenteFazNovoLogin() throws Exception {
+        Provider provider = novoProvider();
+        CertificadoService.certificadoA3(CertificadosTeste.SENHA, provider);
+        long logins = SessaoA3Service.getLogins();
+
+        assertThrows(CertificadoException.class, () -> CertificadoService.listaAliasCertificadosA3("errado", provider));
+        CertificadoService.listaAliasCertificadosA3(CertificadosTeste.SENHA, provider);
+
+        assertEquals(1, SessaoA3Service.getLogins() - logins);
+    }
+
+    @Test
+    void executarRepeteAOperacaoAposFalhaDoToken() throws Exception {
+        Certificado certificado = CertificadoService.certificadoA3(CertificadosTeste.SENHA, novoProvider());
+        long logins = SessaoA3Service.getLogins();
+        AtomicInteger tentativas = new AtomicInteger();
+
+        int tamanho = SessaoA3Service.executar(certificado, keyStore -> {
+            if (tentativas.incrementAndGet() == 1) {
+                throw new ProviderException("Token removido");
+            }
+            return keyStore.size();
+        });
+
+        assertEquals(1, tamanho);
+        assertEquals(2, tentativas.get());
+        assertEquals(1, SessaoA3Service.getLogins() - logins);
+    }
+
+    @Test
+    void keyStoreDaSessaoEhSomenteLeitura() throws Exception {
+        Certificado certificado = CertificadoService.certificadoA3(CertificadosTeste.SENHA, novoProvider());
+        KeyStore keyStore = CertificadoService.getKeyStore(certificado);
+
+        assertNotNull(keyStore.getKey(ALIAS, CertificadosTeste.SENHA.toCharArray()));
+        assertThrows(KeyStoreException.class, () -> keyStore.deleteEntry(ALIAS));
+        assertThrows(KeyStoreException.class, () -> keyStore.setCertificateEntry("outro", keyStore.getCertificate(ALIAS)));
+        assertEquals(1, keyStore.size());
+    }
+
+    @Test
+    void consultasAoKeyStoreDaSessaoSaoSerializadas() throws Exception {
+        Certificado certificado = CertificadoService.certificadoA3(CertificadosTeste.SENHA, novoProvider());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tarefas.add(executor.submit(() -> {
+                    KeyStore keyStore = CertificadoService.getKeyStore(certificado);
+                    for (int j = 0; j < 20; j++) {
+                        assertNotNull(keyStore.getCertificateChain(ALIAS));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, maximoSimultaneos.get());
+    }
+
+    private static Provider novoProvider() {
+        return new ProviderToken();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static final class ProviderToken extends Provider {
+
+        private ProviderToken() {
+            super(NOME_PROVIDER, 1.0, "Token A3 em memória para testes");
+            put("KeyStore.PKCS11", TokenSpi.class.getName());
+        }
+    }
+
+    /**
+     * Token em memória: o PIN é {@link CertificadosTeste#SENHA} e a reinserção do token (nova geração) invalida as
+     * sessões abertas antes dela, como acontece com o provider PKCS11.
+     */
+    public static final class TokenSpi extends KeyStoreSpi {
+
+        private KeyStore keyStore;
+        private int geracaoSessao;
+
+        @Override
+        public void engineLoad(InputStream stream, char[] password) throws IOException {
+            if (password == null || !Arrays.equals(password, CertificadosTeste.SENHA.toCharArray())) {
+                throw new IOException("PIN incorreto");
+            }
+            keyStore = conteudoToken;
+            geracaoSessao = geracao.get();
+        }
+
+        @Override
+        public Key engineGetKey(String alias, char[] password) throws NoSuchAlgorithmException, UnrecoverableKeyException {
+            return acessa(() -> keyStore.getKey(alias, password));
+        }
+
+        @Override
+        public Certificate[] engineGetCertificateChain(String alias) {
+            return acessa(() -> keyStore.getCertificateChain(alias));
+        }
+
+        @Override
+        public Certificate engineGetCertificate(String alias) {
+            return acessa(() -> keyStore.getCertificate(alias));
+        }
+
+        @Override
+        public Date engineGetCreationDate(String alias) {
+            return acessa(() -> keyStore.getCreationDate(alias));
+        }
+
+        @Override
+        public Enumeration<String> engineAliases() {
+            return acessa(() -> keyStore.aliases());
+        }
+
+        @Override
+        public boolean engineContainsAlias(String alias) {
+            return acessa(() -> keyStore.containsAlias(alias));
+        }
+
+        @Override
+        public int engineSize() {
+            return acessa(() -> keyStore.size());
+        }
+
+        @Override
+        public boolean engineIsKeyEntry(String alias) {
+            return acessa(() -> keyStore.isKeyEntry(alias));
+        }
+
+        @Override
+        public boolean engineIsCertificateEntry(String alias) {
+            return acessa(() -> keyStore.isCertificateEntry(alias));
+        }
+
+        @Override
+        public String engineGetCertificateAlias(Certificate cert) {
+            return acessa(() -> keyStore.getCertificateAlias(cert));
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, Key key, char[] password, Certificate[] chain) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineSetKeyEntry(String alias, byte[] key, Certificate[] chain) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineSetCertificateEntry(String alias, Certificate cert) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineDeleteEntry(String alias) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void engineStore(OutputStream stream, char[] password) {
+            throw new UnsupportedOperationException();
+        }
+
+        private <T> T acessa(Operacao<T> operacao) {
+            if (geracaoSessao != geracao.get()) {
+                throw new ProviderException("Token removido");
+            }
+            maximoSimultaneos.accumulateAndGet(acessosSimultaneos.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+                return operacao.executar();
+            } catch (Exception e) {
+                throw new ProviderException(e);
+            } finally {
+                acessosSimultaneos.decrementAndGet();
+            }
+        }
+
+        @FunctionalInterface
+        private interface Operacao<T> {
+            T executar() throws Exception;
+        }
+    }
+}
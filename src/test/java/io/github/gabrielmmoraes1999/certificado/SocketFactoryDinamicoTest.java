@@ -0,0 +1,150 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SocketFactoryDinamicoTest {
+
+    private static CertificadosTeste ac;
+    private static SSLServerSocket servidor;
+
+    /*
+     * Servidor TLS que exige o certificado do cliente e mantém a conexão aberta até o cliente encerrá-la.
+     */
+    @BeforeAll
+    static void iniciaServidor() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Dinamico");
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        X509Certificate certificado = ac.emissao("CN=localhost").dns("localhost").emitir(chaves.getPublic());
+
+        KeyManagerFactory chavesServidor = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        chavesServidor.init(CertificadosTeste.keyStore("servidor", chaves.getPrivate(), certificado, ac.getCertificado()),
+                CertificadosTeste.SENHA.toCharArray());
+        TrustManagerFactory confianca = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        confianca.init(CertificadosTeste.trustStore(ac.getCertificado()));
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(chavesServidor.getKeyManagers(), confianca.getTrustManagers(), null);
+
+        servidor = (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket(0);
+        servidor.setNeedClientAuth(true);
+        Thread aceite = new Thread(() -> {
+            while (!servidor.isClosed()) {
+                try {
+                    Socket socket = servidor.accept();
+                    Thread atendimento = new Thread(() -> atende(socket));
+                    atendimento.setDaemon(true);
+                    atendimento.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        aceite.setDaemon(true);
+        aceite.start();
+    }
+
+    @AfterAll
+    static void encerraServidor() throws IOException {
+        servidor.close();
+    }
+
+    @Test
+    void conexoesAoMesmoHostRetomamASessao() throws Exception {
+        SocketFactoryDinamico fabrica = fabrica(ac.emissao("CN=titular"));
+
+        for (int i = 0; i < 3; i++) {
+            conecta(fabrica);
+            // A retomada é reconhecida pelo horário de criação da sessão, em milissegundos.
+            Thread.sleep(5);
+        }
+
+        assertEquals(1, fabrica.getHandshakesCompletos());
+        assertEquals(2, fabrica.getHandshakesRetomados());
+    }
+
+    @Test
+    void cadaFabricaTemOSeuCacheDeSessoes() throws Exception {
+        SocketFactoryDinamico primeira = fabrica(ac.emissao("CN=titular"));
+        SocketFactoryDinamico segunda = fabrica(ac.emissao("CN=titular"));
+
+        conecta(primeira);
+        Thread.sleep(5);
+        conecta(segunda);
+
+        assertEquals(1, primeira.getHandshakesCompletos());
+        assertEquals(1, segunda.getHandshakesCompletos());
+        assertEquals(0, segunda.getHandshakesRetomados());
+    }
+
+    @Test
+    void handshakeRecusadoNaoEhContado() throws Exception {
+        CertificadosTeste outraAc = CertificadosTeste.novaAc("AC Desconhecida");
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        KeyStore keyStore = CertificadosTeste.keyStore("titular", chaves.getPrivate(),
+                outraAc.emissao("CN=titular").emitir(chaves.getPublic()), outraAc.getCertificado());
+        SocketFactoryDinamico fabrica = new SocketFactoryDinamico(keyStore, "titular", CertificadosTeste.SENHA,
+                CertificadosTeste.cacert(outraAc.getCertificado()).getTrustManagers(), "TLSv1.2");
+
+        assertThrows(IOException.class, () -> conecta(fabrica));
+        assertEquals(0, fabrica.getHandshakesCompletos());
+        assertEquals(0, fabrica.getHandshakesRetomados());
+    }
+
+    @Test
+    void chaveSubstituidaEhApresentadaComHandshakeCompleto() throws Exception {
+        SocketFactoryDinamico fabrica = fabrica(ac.emissao("CN=antigo"));
+        conecta(fabrica);
+
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        X509Certificate novo = ac.emissao("CN=novo").emitir(chaves.getPublic());
+        fabrica.substituiChave(CertificadosTeste.keyStore("renovado", chaves.getPrivate(), novo, ac.getCertificado()),
+                "renovado", CertificadosTeste.SENHA);
+        Thread.sleep(5);
+
+        assertEquals(novo, conecta(fabrica));
+        assertEquals(2, fabrica.getHandshakesCompletos());
+        assertEquals(0, fabrica.getHandshakesRetomados());
+        assertTrue(fabrica.atualizaChave());
+    }
+
+    private static SocketFactoryDinamico fabrica(CertificadosTeste.Emissao emissao) throws Exception {
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        KeyStore keyStore = CertificadosTeste.keyStore("titular", chaves.getPrivate(), emissao.emitir(chaves.getPublic()),
+                ac.getCertificado());
+        return new SocketFactoryDinamico(keyStore, "titular", CertificadosTeste.SENHA,
+                CertificadosTeste.cacert(ac.getCertificado()).getTrustManagers(), "TLSv1.2");
+    }
+
+    private static X509Certificate conecta(SocketFactoryDinamico fabrica) throws IOException {
+        try (SSLSocket socket = (SSLSocket) fabrica.createSocket("localhost", servidor.getLocalPort())) {
+            return (X509Certificate) socket.getSession().getLocalCertificates()[0];
+        }
+    }
+
+    private static void atende(Socket socket) {
+        try (Socket conexao = socket; InputStream entrada = conexao.getInputStream()) {
+            while (entrada.read() >= 0) {
+                // Aguarda o cliente encerrar a conexão.
+            }
+        } catch (IOException ignored) {
+            // Handshake recusado ou cliente encerrou a conexão.
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.protocol.Protocol;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SocketFactoryMultiCertificadoTest {
+
+    private static CertificadosTeste ac;
+    private static SSLServerSocket servidor;
+    private static final AtomicInteger conexoes = new AtomicInteger();
+
+    private SocketFactoryMultiCertificado multi;
+    private MultiThreadedHttpConnectionManager gerenciador;
+    private HttpClient cliente;
+
+    /*
+     * Servidor HTTP/1.1 com keep-alive que exige o certificado do cliente e responde com o CN apresentado.
+     */
+    @BeforeAll
+    static void iniciaServidor() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Multi");
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        X509Certificate certificado = ac.emissao("CN=localhost").dns("localhost")
+                .nomeAlternativo(new GeneralName(GeneralName.iPAddress, "127.0.0.1")).emitir(chaves.getPublic());
+
+        KeyManagerFactory chavesServidor = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        chavesServidor.init(CertificadosTeste.keyStore("servidor", chaves.getPrivate(), certificado, ac.getCertificado()),
+                CertificadosTeste.SENHA.toCharArray());
+        TrustManagerFactory confianca = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        confianca.init(CertificadosTeste.trustStore(ac.getCertificado()));
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(chavesServidor.getKeyManagers(), confianca.getTrustManagers(), null);
+
+        servidor = (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket(0);
+        servidor.setNeedClientAuth(true);
+        Thread aceite = new Thread(() -> {
+            while (!servidor.isClosed()) {
+                try {
+                    Socket socket = servidor.accept();
+                    conexoes.incrementAndGet();
+                    Thread atendimento = new Thread(() -> atende((SSLSocket) socket));
+                    atendimento.setDaemon(true);
+                    atendimento.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        aceite.setDaemon(true);
+        aceite.start();
+    }
+
+    @AfterAll
+    static void encerraServidor() throws IOException {
+        servidor.close();
+    }
+
+    @BeforeEach
+    void criaFabrica() throws Exception {
+        multi = new SocketFactoryMultiCertificado(CertificadosTeste.cacert(ac.getCertificado()), "TLSv1.2");
+        gerenciador = new MultiThreadedHttpConnectionManager();
+        cliente = new HttpClient(gerenciador);
+    }
+
+    @AfterEach
+    void fechaConexoes() {
+        gerenciador.shutdown();
+    }
+
+    @Test
+    void cadaCertificadoTemOSeuPool() throws Exception {
+        Certificado a = ac.certificadoA1("CN=empresa-a");
+        Certificado b = ac.certificadoA1("CN=empresa-b");
+        int antes = conexoes.get();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("empresa-a", requisita("localhost", multi.getProtocolo(a)));
+            assertEquals("empresa-b", requisita("localhost", multi.getProtocolo(b)));
+        }
+
+        assertEquals(2, conexoes.get() - antes);
+        assertEquals(multi.getProtocolo(a), multi.getProtocolo(a));
+        assertFalse(multi.getProtocolo(a).equals(multi.getProtocolo(b)));
+    }
+
+    @Test
+    void rotaEscolheOCertificadoPeloHost() throws Exception {
+        Certificado a = ac.certificadoA1("CN=empresa-a");
+        Certificado b = ac.certificadoA1("CN=empresa-b");
+        Protocol global = new Protocol("https", multi, 443);
+        multi.adicionarRota("localhost", a);
+        multi.adicionarRota("127.0.0.1", b);
+
+        assertEquals("empresa-a", requisita("LOCALHOST", global));
+        assertEquals("empresa-b", requisita("127.0.0.1", global));
+        assertEquals(2, multi.getQuantidadeRotas());
+
+        assertTrue(multi.remover(b));
+        assertEquals(1, multi.getQuantidadeRotas());
+        // As conexões que já estão no pool continuam com o certificado removido.
+        gerenciador.closeIdleConnections(0);
+        assertThrows(IOException.class, () -> requisita("127.0.0.1", global));
+
+        multi.setPadrao(b);
+        assertEquals("empresa-b", requisita("127.0.0.1", global));
+    }
+
+    @Test
+    void recargaDoPfxChegaAoHostDaRota() throws Exception {
+        Certificado certificado = ac.certificadoA1("CN=antigo");
+        Protocol global = new Protocol("https", multi, 443);
+        multi.adicionarRota("localhost", certificado);
+        assertEquals("antigo", requisita("localhost", global));
+
+        KeyPair chaves = CertificadosTeste.geraChaves();
+        CertificadoService.recarregaPfx(certificado, CertificadosTeste.pfx("titular", chaves.getPrivate(),
+                ac.emissao("CN=novo").emitir(chaves.getPublic()), ac.getCertificado()));
+        gerenciador.closeIdleConnections(0);
+
+        // A sessão do certificado antigo continua no cache, mas não é retomada.
+        assertEquals("novo", requisita("localhost", global));
+        assertEquals(0, multi.getHandshakesRetomados());
+    }
+
+    @Test
+    void sessaoDeOutroCertificadoNaoEhRetomada() throws Exception {
+        Certificado a = ac.certificadoA1("CN=empresa-a");
+        Certificado b = ac.certificadoA1("CN=empresa-b");
+
+        assertEquals(a.getCertificate(), conecta(a));
+        assertEquals(a.getCertificate(), conecta(a));
+        assertEquals(1, multi.getHandshakesRetomados());
+
+        assertEquals(b.getCertificate(), conecta(b));
+        assertEquals(a.getCertificate(), conecta(a));
+        assertEquals(3, multi.getHandshakesCompletos());
+        assertEquals(1, multi.getHandshakesRetomados());
+    }
+
+    private X509Certificate conecta(Certificado certificado) throws IOException {
+        try (SSLSocket socket = (SSLSocket) multi.getProtocolo(certificado).getSocketFactory()
+                .createSocket("localhost", servidor.getLocalPort())) {
+            return (X509Certificate) socket.getSession().getLocalCertificates()[0];
+        }
+    }
+
+    private String requisita(String host, Protocol protocolo) throws IOException {
+        HostConfiguration destino = new HostConfiguration();
+        destino.setHost(host, servidor.getLocalPort(), protocolo);
+        GetMethod metodo = new GetMethod("/");
+        try {
+            assertEquals(200, cliente.executeMethod(destino, metodo));
+            return metodo.getResponseBodyAsString();
+        } finally {
+            metodo.releaseConnection();
+        }
+    }
+
+    private static void atende(SSLSocket socket) {
+        try (Socket conexao = socket) {
+            BufferedReader entrada = new BufferedReader(new InputStreamReader(conexao.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream saida = conexao.getOutputStream();
+            String linha;
+            while ((linha = entrada.readLine()) != null) {
+                if (!linha.isEmpty()) {
+                    continue;
+                }
+                X509Certificate certificado = (X509Certificate) socket.getSession().getPeerCertificates()[0];
+                byte[] corpo = CertificadoService.extractCN(certificado.getSubjectX500Principal().getName())
+                        .getBytes(StandardCharsets.UTF_8);
+                saida.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + corpo.length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                saida.write(corpo);
+                saida.flush();
+            }
+        } catch (IOException ignored) {
+            // Cliente encerrou a conexão.
+        }
+    }
+}
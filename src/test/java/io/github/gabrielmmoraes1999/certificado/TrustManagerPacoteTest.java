@@ -0,0 +1,221 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrustManagerPacoteTest {
+
+    private static CertificadosTeste raiz;
+    private static CertificadosTeste intermediaria;
+    private static KeyPair chaves;
+    private static TrustManagerPacote trustManager;
+
+    @BeforeAll
+    static void criaAcs() throws Exception {
+        raiz = CertificadosTeste.novaAc("AC Raiz Pacote");
+        KeyPair chavesIntermediaria = CertificadosTeste.geraChaves();
+        intermediaria = new CertificadosTeste(chavesIntermediaria,
+                raiz.emissao("CN=AC Intermediaria Pacote").autoridade().emitir(chavesIntermediaria.getPublic()));
+        chaves = CertificadosTeste.geraChaves();
+        trustManager = new TrustManagerPacote(pacote(raiz.getCertificado()));
+    }
+
+    @Test
+    void cadeiaValidaEhAceita() throws Exception {
+        X509Certificate certificado = intermediaria.emissao("CN=nfe.sefaz.teste").dns("nfe.sefaz.teste")
+                .usoChave(KeyUsage.digitalSignature | KeyUsage.keyEncipherment).usoEstendido(KeyPurposeId.id_kp_serverAuth)
+                .emitir(chaves.getPublic());
+
+        trustManager.checkServerTrusted(cadeia(certificado), "ECDHE_RSA");
+        trustManager.checkServerTrusted(cadeia(certificado), "RSA");
+        handshake(certificado, "nfe.sefaz.teste");
+    }
+
+    @Test
+    void hostErradoEhRecusado() throws Exception {
+        X509Certificate certificado = intermediaria.emissao("CN=nfe.sefaz.teste").dns("nfe.sefaz.teste").emitir(chaves.getPublic());
+
+        assertThrows(SSLHandshakeException.class, () -> handshake(certificado, "cte.sefaz.teste"));
+        assertThrows(SSLHandshakeException.class, () -> handshake(certificado, "nfe.sefaz.teste.outro"));
+    }
+
+    @Test
+    void curingaValeSoParaUmRotulo() throws Exception {
+        X509Certificate certificado = intermediaria.emissao("CN=*.sefaz.teste").dns("*.sefaz.teste").emitir(chaves.getPublic());
+
+        handshake(certificado, "nfe.sefaz.teste");
+        handshake(certificado, "NFCE.Sefaz.Teste");
+        assertThrows(SSLHandshakeException.class, () -> handshake(certificado, "sefaz.teste"));
+        assertThrows(SSLHandshakeException.class, () -> handshake(certificado, "hom.nfe.sefaz.teste"));
+    }
+
+    @Test
+    void hostIpSoCorrespondeAoIpDoCertificado() throws Exception {
+        X509Certificate comIp = intermediaria.emissao("CN=servidor")
+                .nomeAlternativo(new GeneralName(GeneralName.iPAddress, "127.0.0.1")).emitir(chaves.getPublic());
+        X509Certificate ipNoCn = intermediaria.emissao("CN=127.0.0.1").emitir(chaves.getPublic());
+        X509Certificate comDns = intermediaria.emissao("CN=localhost").dns("localhost").emitir(chaves.getPublic());
+
+        handshake(comIp, "127.0.0.1");
+        assertThrows(SSLHandshakeException.class, () -> handshake(comIp, "127.0.0.2"));
+        assertThrows(SSLHandshakeException.class, () -> handshake(ipNoCn, "127.0.0.1"));
+        assertThrows(SSLHandshakeException.class, () -> handshake(comDns, "127.0.0.1"));
+    }
+
+    @Test
+    void intermediariaVencidaEhRecusada() throws Exception {
+        long agora = System.currentTimeMillis();
+        KeyPair chavesVencida = CertificadosTeste.geraChaves();
+        CertificadosTeste vencida = new CertificadosTeste(chavesVencida, raiz.emissao("CN=AC Vencida")
+                .validade(new Date(agora - TimeUnit.DAYS.toMillis(30)), new Date(agora - TimeUnit.DAYS.toMillis(1)))
+                .autoridade().emitir(chavesVencida.getPublic()));
+        X509Certificate certificado = vencida.emissao("CN=nfe.sefaz.teste").emitir(chaves.getPublic());
+
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(
+                new X509Certificate[]{certificado, vencida.getCertificado()}, "ECDHE_RSA"));
+    }
+
+    @Test
+    void certificadoFinalAncoraAindaPassaPeloUsoDaChave() throws Exception {
+        X509Certificate servidor = raiz.emissao("CN=nfe.sefaz.teste").usoEstendido(KeyPurposeId.id_kp_serverAuth).emitir(chaves.getPublic());
+        X509Certificate cliente = raiz.emissao("CN=cliente").usoEstendido(KeyPurposeId.id_kp_clientAuth).emitir(chaves.getPublic());
+        X509Certificate soCifragem = raiz.emissao("CN=cifragem").usoChave(KeyUsage.keyEncipherment).emitir(chaves.getPublic());
+        TrustManagerPacote folhas = new TrustManagerPacote(pacote(servidor, cliente, soCifragem));
+
+        folhas.checkServerTrusted(new X509Certificate[]{servidor}, "ECDHE_RSA");
+        assertThrows(CertificateException.class, () -> folhas.checkServerTrusted(new X509Certificate[]{cliente}, "ECDHE_RSA"));
+        assertThrows(CertificateException.class, () -> folhas.checkServerTrusted(new X509Certificate[]{soCifragem}, "ECDHE_RSA"));
+        folhas.checkServerTrusted(new X509Certificate[]{soCifragem}, "RSA");
+    }
+
+    @Test
+    void usoEstendidoEUsoDaChaveConformeOTipo() throws Exception {
+        X509Certificate cliente = intermediaria.emissao("CN=cliente").usoEstendido(KeyPurposeId.id_kp_clientAuth).emitir(chaves.getPublic());
+        X509Certificate assinatura = intermediaria.emissao("CN=assinatura").usoChave(KeyUsage.digitalSignature).emitir(chaves.getPublic());
+        X509Certificate qualquerUso = intermediaria.emissao("CN=qualquer").usoEstendido(KeyPurposeId.anyExtendedKeyUsage).emitir(chaves.getPublic());
+
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(cadeia(cliente), "ECDHE_RSA"));
+        trustManager.checkClientTrusted(cadeia(cliente), "RSA");
+        trustManager.checkServerTrusted(cadeia(qualquerUso), "ECDHE_RSA");
+        trustManager.checkClientTrusted(cadeia(qualquerUso), "RSA");
+
+        trustManager.checkServerTrusted(cadeia(assinatura), "ECDHE_RSA");
+        trustManager.checkServerTrusted(cadeia(assinatura), "UNKNOWN");
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(cadeia(assinatura), "RSA"));
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(cadeia(assinatura), "ECDH_RSA"));
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(cadeia(assinatura), "OUTRO"));
+        assertThrows(IllegalArgumentException.class, () -> trustManager.checkServerTrusted(cadeia(assinatura), ""));
+    }
+
+    @Test
+    void semSessaoOuSemHostARecusa() throws Exception {
+        X509Certificate certificado = intermediaria.emissao("CN=nfe.sefaz.teste").dns("nfe.sefaz.teste").emitir(chaves.getPublic());
+        SSLEngine parado = contextoCliente().createSSLEngine("nfe.sefaz.teste", 443);
+        parado.setUseClientMode(true);
+
+        assertThrows(CertificateException.class, () -> trustManager.checkServerTrusted(cadeia(certificado), "UNKNOWN", parado));
+        assertThrows(SSLHandshakeException.class, () -> handshake(certificado, null));
+
+        SSLEngine semVerificacao = contextoCliente().createSSLEngine();
+        semVerificacao.setUseClientMode(true);
+        assertDoesNotThrow(() -> executaHandshake(certificado, semVerificacao));
+    }
+
+    private static X509Certificate[] cadeia(X509Certificate certificado) {
+        return new X509Certificate[]{certificado, intermediaria.getCertificado()};
+    }
+
+    private static PacoteAncoras pacote(X509Certificate... ancoras) throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        PacoteAncoras.gravar(CertificadosTeste.trustStore(ancoras), saida);
+        return PacoteAncoras.ler(saida.toByteArray());
+    }
+
+    private static SSLContext contextoCliente() throws Exception {
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(null, new TrustManager[]{trustManager}, null);
+        return contexto;
+    }
+
+    /*
+     * Handshake em memória com a verificação HTTPS do nome; sem host o engine do cliente não tem peerHost nem SNI.
+     */
+    private static void handshake(X509Certificate certificado, String host) throws Exception {
+        SSLEngine cliente = host == null ? contextoCliente().createSSLEngine() : contextoCliente().createSSLEngine(host, 443);
+        cliente.setUseClientMode(true);
+        SSLParameters parametros = cliente.getSSLParameters();
+        parametros.setEndpointIdentificationAlgorithm("HTTPS");
+        cliente.setSSLParameters(parametros);
+        executaHandshake(certificado, cliente);
+    }
+
+    private static void executaHandshake(X509Certificate certificado, SSLEngine cliente) throws Exception {
+        KeyManagerFactory fabrica = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        fabrica.init(CertificadosTeste.keyStore("ws", chaves.getPrivate(), certificado, intermediaria.getCertificado()),
+                CertificadosTeste.SENHA.toCharArray());
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(fabrica.getKeyManagers(), null, null);
+        SSLEngine servidor = contexto.createSSLEngine();
+        servidor.setUseClientMode(false);
+
+        ByteBuffer paraServidor = ByteBuffer.allocate(1 << 16);
+        ByteBuffer paraCliente = ByteBuffer.allocate(1 << 16);
+        cliente.beginHandshake();
+        servidor.beginHandshake();
+        for (int i = 0; i < 1000 && !(concluido(cliente) && concluido(servidor)); i++) {
+            passo(cliente, paraCliente, paraServidor);
+            passo(servidor, paraServidor, paraCliente);
+        }
+        if (!concluido(cliente) || !concluido(servidor)) {
+            throw new IllegalStateException("Handshake não terminou.");
+        }
+    }
+
+    private static boolean concluido(SSLEngine engine) {
+        HandshakeStatus situacao = engine.getHandshakeStatus();
+        return situacao == HandshakeStatus.NOT_HANDSHAKING || situacao == HandshakeStatus.FINISHED;
+    }
+
+    private static void passo(SSLEngine engine, ByteBuffer entrada, ByteBuffer saida) throws SSLException {
+        switch (engine.getHandshakeStatus()) {
+            case NEED_WRAP:
+                engine.wrap(ByteBuffer.allocate(0), saida);
+                break;
+            case NEED_UNWRAP:
+                entrada.flip();
+                engine.unwrap(entrada, ByteBuffer.allocate(1 << 16));
+                entrada.compact();
+                break;
+            case NEED_TASK:
+                Runnable tarefa;
+                while ((tarefa = engine.getDelegatedTask()) != null) {
+                    tarefa.run();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
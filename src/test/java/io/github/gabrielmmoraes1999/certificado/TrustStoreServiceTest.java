@@ -0,0 +1,92 @@
+package io.github.gabrielmmoraes1999.certificado;
+
+import io.github.gabrielmmoraes1999.certificado.util.DigestUtil;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrustStoreServiceTest {
+
+    private static CertificadosTeste ac;
+    private static CertificadosTeste outraAc;
+
+    @TempDir
+    Path diretorio;
+
+    @BeforeAll
+    static void criaAcs() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Cacert");
+        outraAc = CertificadosTeste.novaAc("AC Cacert Outra");
+    }
+
+    @Test
+    void mesmoConteudoEhDecodificadoUmaVez() throws Exception {
+        byte[] conteudo = jks(ac.getCertificado());
+
+        Cacert cacert = TrustStoreService.get(conteudo);
+
+        assertSame(cacert, TrustStoreService.get(conteudo.clone()));
+        assertSame(cacert, TrustStoreService.get(new ByteArrayInputStream(conteudo)));
+        assertSame(cacert.getTrustManagers(), TrustStoreService.get(conteudo).getTrustManagers());
+        assertEquals(DigestUtil.hex(DigestUtil.sha256(conteudo)), cacert.getId());
+        assertSame(cacert, TrustStoreService.getPorDigest(cacert.getId()).orElse(null));
+        assertNotSame(cacert, TrustStoreService.get(jks(outraAc.getCertificado())));
+    }
+
+    @Test
+    void arquivoSoEhRelidoNaRecarga() throws Exception {
+        Path arquivo = diretorio.resolve("cacert");
+        Files.write(arquivo, jks(ac.getCertificado()));
+        Cacert cacert = TrustStoreService.get(arquivo);
+
+        Files.write(arquivo, jks(outraAc.getCertificado()));
+        assertSame(cacert, TrustStoreService.get(arquivo));
+
+        Cacert recarregado = TrustStoreService.recarregar(arquivo);
+        assertNotSame(cacert, recarregado);
+        assertSame(recarregado, TrustStoreService.get(arquivo));
+        KeyStore trustStore = recarregado.getTrustStore();
+        assertEquals(outraAc.getCertificado(), trustStore.getCertificate(trustStore.aliases().nextElement()));
+    }
+
+    @Test
+    void pacoteDeAncorasEhReconhecidoPeloConteudo() throws Exception {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        PacoteAncoras.gravar(CertificadosTeste.trustStore(ac.getCertificado(), outraAc.getCertificado()), saida);
+
+        Cacert cacert = TrustStoreService.get(saida.toByteArray());
+
+        assertTrue(cacert.getPacote().isPresent());
+        assertSame(cacert, TrustStoreService.get(saida.toByteArray()));
+        assertEquals(2, cacert.getTrustStore().size());
+        assertSame(cacert.getTrustStore(), cacert.getTrustStore());
+    }
+
+    @Test
+    void cacertPadraoEhCompartilhado() throws Exception {
+        Cacert padrao = TrustStoreService.getPadrao();
+
+        assertSame(padrao, TrustStoreService.getPadrao());
+        assertSame(padrao.getTrustManagers(), TrustStoreService.getPadrao().getTrustManagers());
+        assertTrue(padrao.getTrustManagers().length > 0);
+    }
+
+    private static byte[] jks(X509Certificate ancora) throws Exception {
+        KeyStore trustStore = CertificadosTeste.trustStore(ancora);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        trustStore.store(saida, "changeit".toCharArray());
+        return saida.toByteArray();
+    }
+}
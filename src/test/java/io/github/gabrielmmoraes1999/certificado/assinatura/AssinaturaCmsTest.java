@@ -0,0 +1,145 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.CertificadosTeste;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSProcessableFile;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssinaturaCmsTest {
+
+    private static final int TAMANHO_BUFFER = 256 * 1024;
+
+    private static CertificadosTeste ac;
+    private static Certificado certificado;
+    private static AssinaturaCms assinatura;
+
+    @TempDir
+    Path pasta;
+
+    @BeforeAll
+    static void criaCertificado() throws Exception {
+        ac = CertificadosTeste.novaAc("AC CMS");
+        certificado = ac.certificadoA1("CN=ASSINANTE CMS");
+        assinatura = new AssinaturaCms(certificado, AlgoritmoAssinatura.SHA256, 4);
+    }
+
+    @AfterAll
+    static void encerra() {
+        assinatura.close();
+    }
+
+    @Test
+    void assinaturaDeArquivoMaiorQueOBufferEhVerificadaPeloBouncyCastle() throws Exception {
+        Path arquivo = arquivo("grande.bin", 3 * TAMANHO_BUFFER + 17, new Random(17));
+
+        byte[] p7s = assinatura.assinar(arquivo);
+
+        assertTrue(verifica(p7s, arquivo));
+        CMSSignedData assinado = new CMSSignedData(new CMSProcessableFile(arquivo.toFile()), p7s);
+        assertEquals(2, assinado.getCertificates().getMatches(null).size());
+        assertEquals(AlgoritmoAssinatura.SHA256.getDigestOid(), assinado.getSignerInfos().getSigners().iterator().next().getDigestAlgOID());
+    }
+
+    @Test
+    void streamEArquivoProduzemAMesmaAssinaturaVerificavel() throws Exception {
+        Path arquivo = arquivo("stream.bin", TAMANHO_BUFFER + 1, new Random(18));
+
+        byte[] p7s;
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            p7s = assinatura.assinar(entrada);
+        }
+
+        assertTrue(verifica(p7s, arquivo));
+    }
+
+    @Test
+    void sha1TambemEhVerificado() throws Exception {
+        Path arquivo = arquivo("sha1.bin", 1000, new Random(19));
+
+        try (AssinaturaCms sha1 = new AssinaturaCms(certificado, AlgoritmoAssinatura.SHA1, 1)) {
+            assertTrue(verifica(sha1.assinar(arquivo), arquivo));
+        }
+    }
+
+    @Test
+    void conteudoAlteradoNaoVerifica() throws Exception {
+        Path arquivo = arquivo("alterado.bin", 2 * TAMANHO_BUFFER, new Random(20));
+        byte[] p7s = assinatura.assinar(arquivo);
+
+        byte[] conteudo = Files.readAllBytes(arquivo);
+        conteudo[TAMANHO_BUFFER + 5]++;
+        Files.write(arquivo, conteudo);
+
+        assertFalse(verifica(p7s, arquivo));
+    }
+
+    @Test
+    void loteMantemAOrdemDosArquivos() throws Exception {
+        Random aleatorio = new Random(21);
+        List<Path> arquivos = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            arquivos.add(arquivo("lote-" + (23 - i) + ".bin", aleatorio.nextInt(2 * TAMANHO_BUFFER), aleatorio));
+        }
+
+        Map<Path, byte[]> assinaturas = assinatura.assinarLote(arquivos);
+
+        assertEquals(arquivos, new ArrayList<>(assinaturas.keySet()));
+        for (Path arquivo : arquivos) {
+            assertTrue(verifica(assinaturas.get(arquivo), arquivo), arquivo.toString());
+        }
+        assertFalse(verifica(assinaturas.get(arquivos.get(0)), arquivos.get(1)));
+    }
+
+    @Test
+    void loteIndicaOArquivoQueFalhou() throws Exception {
+        Path existente = arquivo("existe.bin", 10, new Random(22));
+        Path ausente = pasta.resolve("ausente.bin");
+
+        CertificadoException erro = assertThrows(CertificadoException.class, () -> assinatura.assinarLote(Arrays.asList(existente, ausente)));
+
+        assertTrue(erro.getMessage().contains(ausente.toString()), erro.getMessage());
+    }
+
+    private Path arquivo(String nome, int tamanho, Random aleatorio) throws Exception {
+        byte[] conteudo = new byte[tamanho];
+        aleatorio.nextBytes(conteudo);
+        return Files.write(pasta.resolve(nome), conteudo);
+    }
+
+    /*
+     * Confere a assinatura destacada com o BouncyCastle, independente do DerReader usado pela VerificacaoAssinatura.
+     */
+    private static boolean verifica(byte[] p7s, Path conteudo) throws Exception {
+        CMSSignedData assinado = new CMSSignedData(new CMSProcessableFile(conteudo.toFile()), p7s);
+        Collection<SignerInformation> assinantes = assinado.getSignerInfos().getSigners();
+        assertEquals(1, assinantes.size());
+        try {
+            return assinantes.iterator().next().verify(new JcaSimpleSignerInfoVerifierBuilder().build(certificado.getCertificate()));
+        } catch (CMSException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.CertificadosTeste;
+import io.github.gabrielmmoraes1999.certificado.exception.CertificadoException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssinaturaXmlTest {
+
+    private static CertificadosTeste ac;
+    private static Certificado certificado;
+    private static AssinaturaXml assinatura;
+    private static VerificacaoAssinatura verificacao;
+
+    @BeforeAll
+    static void criaCertificado() throws Exception {
+        ac = CertificadosTeste.novaAc("AC XML");
+        certificado = ac.certificadoA1("CN=EMITENTE XML");
+        assinatura = new AssinaturaXml(certificado, AlgoritmoAssinatura.SHA1, 4);
+        verificacao = new VerificacaoAssinatura(CertificadosTeste.cacert(ac.getCertificado()), 4);
+    }
+
+    @AfterAll
+    static void encerra() {
+        assinatura.close();
+        verificacao.close();
+    }
+
+    @Test
+    void assinaturaEhAceitaPelaVerificacao() throws Exception {
+        String assinado = assinatura.assinar(nfe(1), "infNFe");
+
+        ResultadoVerificacao resultado = verificacao.verificarXml(assinado);
+
+        assertTrue(resultado.isValido(), resultado.getMensagem());
+        assertEquals(certificado.getCertificate(), resultado.getCertificado());
+        assertTrue(assinado.startsWith("<?xml"));
+        assertTrue(assinado.indexOf("<Signature") > assinado.indexOf("</infNFe>"));
+    }
+
+    @Test
+    void documentoAlteradoDepoisDeAssinadoEhRecusado() throws Exception {
+        String assinado = assinatura.assinar(nfe(1), "infNFe");
+
+        ResultadoVerificacao resultado = verificacao.verificarXml(assinado.replace("<nNF>1</nNF>", "<nNF>2</nNF>"));
+
+        assertFalse(resultado.isAssinaturaValida());
+    }
+
+    @Test
+    void assinaTodosOsElementosDoDocumento() throws Exception {
+        String lote = "<enviNFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">" + nfe(1).substring(nfe(1).indexOf("<NFe"))
+                + nfe(2).substring(nfe(2).indexOf("<NFe")) + "</enviNFe>";
+
+        String assinado = assinatura.assinar(lote, "infNFe");
+
+        assertEquals(2, assinado.split("<Signature xmlns", -1).length - 1);
+        assertTrue(verificacao.verificarXml(assinado).isValido());
+    }
+
+    @Test
+    void loteMantemAOrdemDeEntrada() throws Exception {
+        List<String> documentos = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            documentos.add(nfe(i));
+        }
+
+        List<String> assinados = assinatura.assinarLote(documentos, "infNFe");
+
+        assertEquals(documentos.size(), assinados.size());
+        for (int i = 0; i < assinados.size(); i++) {
+            assertTrue(assinados.get(i).contains("<nNF>" + (i + 1) + "</nNF>"), String.valueOf(i));
+        }
+        List<ResultadoVerificacao> resultados = verificacao.verificarXmlLote(assinados);
+        for (int i = 0; i < resultados.size(); i++) {
+            assertEquals(String.valueOf(i), resultados.get(i).getIdentificador());
+            assertTrue(resultados.get(i).isValido(), resultados.get(i).getMensagem());
+        }
+    }
+
+    @Test
+    void erroNoLoteIndicaAPosicaoDoDocumento() {
+        List<String> documentos = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            documentos.add(i == 7 ? "<NFe><semInf/></NFe>" : nfe(i));
+        }
+
+        CertificadoException erro = assertThrows(CertificadoException.class, () -> assinatura.assinarLote(documentos, "infNFe"));
+
+        assertTrue(erro.getMessage().startsWith("Erro ao assinar o documento 6 do lote"), erro.getMessage());
+    }
+
+    @Test
+    void verificacaoDoLoteIndicaAPosicaoDaFalha() throws Exception {
+        List<String> assinados = assinatura.assinarLote(Arrays.asList(nfe(1), nfe(2), nfe(3)), "infNFe");
+        List<String> lote = new ArrayList<>(assinados);
+        lote.set(1, lote.get(1).replace("<nNF>2</nNF>", "<nNF>9</nNF>"));
+        lote.add("<NFe/>");
+
+        List<ResultadoVerificacao> resultados = verificacao.verificarXmlLote(lote);
+
+        assertTrue(resultados.get(0).isValido());
+        assertFalse(resultados.get(1).isValido());
+        assertTrue(resultados.get(2).isValido());
+        assertEquals("3", resultados.get(3).getIdentificador());
+        assertEquals("Nenhuma assinatura encontrada.", resultados.get(3).getMensagem());
+    }
+
+    @Test
+    void assinaturaAssincronaPropagaOErro() {
+        CompletionException erro = assertThrows(CompletionException.class,
+                () -> assinatura.assinarAsync("<NFe/>", "infNFe").join());
+
+        assertInstanceOf(CertificadoException.class, erro.getCause());
+    }
+
+    private static String nfe(int numero) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\">"
+                + "<infNFe Id=\"NFe3526" + numero + "\" versao=\"4.00\"><ide><cUF>35</cUF><nNF>" + numero + "</nNF></ide>"
+                + "</infNFe></NFe>";
+    }
+}
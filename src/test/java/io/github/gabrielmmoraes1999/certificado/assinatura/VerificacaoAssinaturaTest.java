@@ -0,0 +1,153 @@
+package io.github.gabrielmmoraes1999.certificado.assinatura;
+
+import io.github.gabrielmmoraes1999.certificado.Certificado;
+import io.github.gabrielmmoraes1999.certificado.CertificadosTeste;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerificacaoAssinaturaTest {
+
+    private static final String XML = "<NFe xmlns=\"http://www.portalfiscal.inf.br/nfe\"><infNFe Id=\"NFe35\" versao=\"4.00\">"
+            + "<ide><cUF>35</cUF><nNF>1</nNF></ide></infNFe></NFe>";
+    private static final String RSA_SHA1 = "http://www.w3.org/2000/09/xmldsig#rsa-sha1";
+    private static final String POLITICA_VALIDACAO_SEGURA = "jdk.xml.dsig.secureValidationPolicy";
+
+    private static CertificadosTeste ac;
+    private static KeyPair chaves;
+    private static X509Certificate titular;
+    private static VerificacaoAssinatura verificacao;
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Assinatura");
+        chaves = CertificadosTeste.geraChaves();
+        titular = ac.emissao("CN=EMITENTE").emitir(chaves.getPublic());
+        verificacao = new VerificacaoAssinatura(CertificadosTeste.cacert(ac.getCertificado()), 2);
+    }
+
+    @AfterAll
+    static void encerra() {
+        verificacao.close();
+    }
+
+    @Test
+    void aceitaRsaSha1SemAlterarAPoliticaGlobal() throws Exception {
+        String politica = Security.getProperty(POLITICA_VALIDACAO_SEGURA);
+        Certificado certificado = ac.certificadoA1("CN=EMITENTE A1");
+
+        for (AlgoritmoAssinatura algoritmo : AlgoritmoAssinatura.values()) {
+            try (AssinaturaXml assinatura = new AssinaturaXml(certificado, algoritmo, 1)) {
+                ResultadoVerificacao resultado = verificacao.verificarXml(assinatura.assinar(XML, "infNFe"));
+                assertTrue(resultado.isValido(), algoritmo + ": " + resultado.getMensagem());
+            }
+        }
+        assertEquals(politica, Security.getProperty(POLITICA_VALIDACAO_SEGURA));
+    }
+
+    @Test
+    void recusaAlgoritmoDeAssinaturaForaDaLista() throws Exception {
+        // HMAC com a chave pública como segredo: quem conhece o certificado conseguiria "assinar" qualquer documento.
+        Key segredo = new SecretKeySpec(chaves.getPublic().getEncoded(), "HmacSHA1");
+        String xml = assina(segredo, titular, "http://www.w3.org/2000/09/xmldsig#hmac-sha1", DigestMethod.SHA1, 1);
+
+        ResultadoVerificacao resultado = verificacao.verificarXml(xml);
+
+        assertFalse(resultado.isValido());
+        assertTrue(resultado.getMensagem().startsWith("Algoritmo de assinatura não permitido"), resultado.getMensagem());
+    }
+
+    @Test
+    void recusaDigestForaDaLista() throws Exception {
+        String xml = assina(chaves.getPrivate(), titular, RSA_SHA1, "http://www.w3.org/2001/04/xmldsig-more#sha224", 1);
+
+        ResultadoVerificacao resultado = verificacao.verificarXml(xml);
+
+        assertFalse(resultado.isValido());
+        assertTrue(resultado.getMensagem().startsWith("Algoritmo de digest não permitido"), resultado.getMensagem());
+    }
+
+    @Test
+    void limitaAQuantidadeDeTransformacoes() throws Exception {
+        ResultadoVerificacao limite = verificacao.verificarXml(assina(chaves.getPrivate(), titular, RSA_SHA1, DigestMethod.SHA1, 4));
+        ResultadoVerificacao excesso = verificacao.verificarXml(assina(chaves.getPrivate(), titular, RSA_SHA1, DigestMethod.SHA1, 5));
+
+        assertTrue(limite.isValido(), limite.getMensagem());
+        assertFalse(excesso.isValido());
+        assertEquals("A referência da assinatura tem mais de 5 transformações.", excesso.getMensagem());
+    }
+
+    @Test
+    void recusaChaveRsaCurta() throws Exception {
+        KeyPairGenerator gerador = KeyPairGenerator.getInstance("RSA");
+        gerador.initialize(512);
+        KeyPair fracas = gerador.generateKeyPair();
+        X509Certificate certificado = ac.emissao("CN=CHAVE CURTA").emitir(fracas.getPublic());
+
+        ResultadoVerificacao resultado = verificacao.verificarXml(assina(fracas.getPrivate(), certificado, RSA_SHA1, DigestMethod.SHA1, 1));
+
+        assertFalse(resultado.isAssinaturaValida());
+        assertFalse(resultado.isValido());
+    }
+
+    /*
+     * Assina o infNFe diretamente pela API XMLDSig, com algoritmos e transformações que a AssinaturaXml não produz.
+     */
+    private static String assina(Key chave, X509Certificate certificado, String metodoAssinatura, String metodoDigest,
+                                 int canonicalizacoes) throws Exception {
+        Document documento = ParserXml.criaParser().parse(new InputSource(new StringReader(XML)));
+        Element infNFe = (Element) documento.getDocumentElement().getFirstChild();
+        XMLSignatureFactory fabrica = XMLSignatureFactory.getInstance("DOM");
+
+        List<Transform> transformacoes = new ArrayList<>();
+        transformacoes.add(fabrica.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null));
+        for (int i = 0; i < canonicalizacoes; i++) {
+            transformacoes.add(fabrica.newTransform(CanonicalizationMethod.INCLUSIVE, (TransformParameterSpec) null));
+        }
+        Reference referencia = fabrica.newReference("#NFe35", fabrica.newDigestMethod(metodoDigest, null), transformacoes, null, null);
+        KeyInfoFactory keyInfo = fabrica.getKeyInfoFactory();
+
+        DOMSignContext contexto = new DOMSignContext(chave, documento.getDocumentElement());
+        contexto.setIdAttributeNS(infNFe, null, "Id");
+        fabrica.newXMLSignature(fabrica.newSignedInfo(
+                        fabrica.newCanonicalizationMethod(CanonicalizationMethod.INCLUSIVE, (C14NMethodParameterSpec) null),
+                        fabrica.newSignatureMethod(metodoAssinatura, null), Collections.singletonList(referencia)),
+                keyInfo.newKeyInfo(Collections.singletonList(keyInfo.newX509Data(Collections.singletonList(certificado)))))
+                .sign(contexto);
+
+        StringWriter saida = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(documento), new StreamResult(saida));
+        return saida.toString();
+    }
+}
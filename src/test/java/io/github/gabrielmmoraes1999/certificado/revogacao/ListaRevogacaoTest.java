@@ -0,0 +1,207 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import io.github.gabrielmmoraes1999.certificado.CertificadosTeste;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.Signature;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.algoritmo;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.sequencia;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.tlv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListaRevogacaoTest {
+
+    private static final long VALIDADE_PADRAO = TimeUnit.HOURS.toMillis(1);
+    private static final String SHA256_RSA = "1.2.840.113549.1.1.11";
+
+    private static CertificadosTeste ac;
+    private static CertificadosTeste outraAc;
+
+    @BeforeAll
+    static void criaAcs() throws Exception {
+        ac = CertificadosTeste.novaAc("AC LCR");
+        outraAc = CertificadosTeste.novaAc("AC Outra");
+    }
+
+    @Test
+    void indexaTodosOsNumerosDeSerieRevogados() throws Exception {
+        Random aleatorio = new Random(21);
+        Set<BigInteger> revogados = new HashSet<>();
+        // séries de um byte, com o bit mais alto ligado (byte zero à esquerda) e longas como as das ACs da ICP-Brasil
+        revogados.addAll(Arrays.asList(BigInteger.ONE, BigInteger.valueOf(0x80), BigInteger.valueOf(0xFFFF)));
+        while (revogados.size() < 5000) {
+            int bits = 16 + aleatorio.nextInt(144);
+            revogados.add(new BigInteger(bits, aleatorio).setBit(bits));
+        }
+        Date emitidaEm = new Date(System.currentTimeMillis() / 1000 * 1000);
+        Date proxima = new Date(emitidaEm.getTime() + TimeUnit.DAYS.toMillis(7));
+
+        ListaRevogacao lista = ListaRevogacao.decodifica(ac.lcr(emitidaEm, proxima, revogados), ac.getCertificado(), VALIDADE_PADRAO);
+
+        assertEquals(revogados.size(), lista.getQuantidade());
+        assertEquals(emitidaEm.getTime(), lista.getEmitidaEm());
+        assertEquals(proxima.getTime(), lista.getProximaAtualizacao());
+        for (BigInteger serie : revogados) {
+            assertTrue(lista.contem(serie), serie.toString(16));
+        }
+        for (int i = 0; i < 5000; i++) {
+            BigInteger serie = new BigInteger(160, aleatorio);
+            assertEquals(revogados.contains(serie), lista.contem(serie));
+        }
+        assertFalse(lista.contem(BigInteger.valueOf(2)));
+        assertFalse(lista.contem(BigInteger.valueOf(0x8000)));
+    }
+
+    @Test
+    void lcrVaziaESemNextUpdateUsaAValidadePadrao() throws Exception {
+        Date emitidaEm = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+        ListaRevogacao lista = ListaRevogacao.decodifica(ac.lcr(emitidaEm, null, Collections.emptySet()),
+                ac.getCertificado(), VALIDADE_PADRAO);
+
+        assertEquals(0, lista.getQuantidade());
+        assertEquals(emitidaEm.getTime() + VALIDADE_PADRAO, lista.getProximaAtualizacao());
+        assertFalse(lista.contem(BigInteger.ONE));
+    }
+
+    @Test
+    void reconheceOsCertificadosDoEmissor() throws Exception {
+        ListaRevogacao lista = ListaRevogacao.decodifica(lcr(ac, BigInteger.TEN), ac.getCertificado(), VALIDADE_PADRAO);
+
+        assertTrue(lista.isEmitidaPor(ac.emissao("CN=TITULAR").emitir(CertificadosTeste.geraChaves().getPublic())));
+        assertFalse(lista.isEmitidaPor(outraAc.emissao("CN=TITULAR").emitir(CertificadosTeste.geraChaves().getPublic())));
+    }
+
+    @Test
+    void recusaLcrDeOutroEmissor() throws Exception {
+        byte[] lcr = lcr(outraAc, BigInteger.TEN);
+
+        assertThrows(CRLException.class, () -> ListaRevogacao.decodifica(lcr, ac.getCertificado(), VALIDADE_PADRAO));
+    }
+
+    @Test
+    void recusaLcrComONomeDoEmissorMasAssinadaPorOutraChave() throws Exception {
+        CertificadosTeste impostora = new CertificadosTeste(CertificadosTeste.geraChaves(), ac.getCertificado());
+        byte[] lcr = impostora.lcr(new Date(), null, Collections.singleton(BigInteger.TEN));
+
+        assertThrows(CRLException.class, () -> ListaRevogacao.decodifica(lcr, ac.getCertificado(), VALIDADE_PADRAO));
+    }
+
+    @Test
+    void recusaLcrAlterada() throws Exception {
+        X509CRL original = crl(lcr(ac, BigInteger.TEN));
+        byte[] tbs = original.getTBSCertList();
+        // troca o último byte da série revogada (10 -> 11) mantendo a assinatura original
+        byte[] alterado = tbs.clone();
+        int posicao = indiceSerie(tbs, BigInteger.TEN);
+        alterado[posicao]++;
+
+        byte[] lcr = sequencia(alterado, algoritmo(SHA256_RSA), bitString(original.getSignature()));
+        assertThrows(CRLException.class, () -> ListaRevogacao.decodifica(lcr, ac.getCertificado(), VALIDADE_PADRAO));
+        // a mesma LCR reassinada é aceita
+        ListaRevogacao reassinada = ListaRevogacao.decodifica(assina(alterado), ac.getCertificado(), VALIDADE_PADRAO);
+        assertTrue(reassinada.contem(BigInteger.valueOf(11)));
+    }
+
+    @Test
+    void entradasCorrompidasSoGeramCRLException() throws Exception {
+        List<BigInteger> revogados = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            revogados.add(BigInteger.valueOf(i * 1000L));
+        }
+        byte[] original = ac.lcr(new Date(), new Date(System.currentTimeMillis() + VALIDADE_PADRAO), revogados);
+        Random aleatorio = new Random(2024);
+
+        for (int i = 0; i < 3000; i++) {
+            decodificaSemFalhaInesperada(Arrays.copyOf(corrompe(original, aleatorio), aleatorio.nextInt(original.length + 1)));
+        }
+    }
+
+    @Test
+    void tbsCorrompidoEReassinadoSoGeraCRLException() throws Exception {
+        List<BigInteger> revogados = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            revogados.add(BigInteger.valueOf(i * 1000L));
+        }
+        byte[] tbs = crl(ac.lcr(new Date(), new Date(System.currentTimeMillis() + VALIDADE_PADRAO), revogados)).getTBSCertList();
+        Random aleatorio = new Random(2025);
+        Signature assinatura = Signature.getInstance("SHA256withRSA");
+        assinatura.initSign(ac.getChaves().getPrivate());
+
+        // com a assinatura válida o conteúdo corrompido chega ao leitor do TBSCertList
+        for (int i = 0; i < 1000; i++) {
+            byte[] corrompido = corrompe(tbs, aleatorio);
+            assinatura.update(corrompido);
+            decodificaSemFalhaInesperada(sequencia(corrompido, algoritmo(SHA256_RSA), bitString(assinatura.sign())));
+        }
+    }
+
+    private static void decodificaSemFalhaInesperada(byte[] lcr) {
+        try {
+            ListaRevogacao lista = ListaRevogacao.decodifica(lcr, ac.getCertificado(), VALIDADE_PADRAO);
+            lista.contem(BigInteger.valueOf(1000));
+        } catch (CRLException e) {
+            // esperado para LCRs inválidas
+        }
+    }
+
+    private static byte[] corrompe(byte[] original, Random aleatorio) {
+        byte[] dados = original.clone();
+        int alteracoes = 1 + aleatorio.nextInt(4);
+        for (int j = 0; j < alteracoes; j++) {
+            dados[aleatorio.nextInt(dados.length)] = (byte) aleatorio.nextInt(256);
+        }
+        return dados;
+    }
+
+    private static byte[] lcr(CertificadosTeste emissor, BigInteger... revogados) throws Exception {
+        return emissor.lcr(new Date(), new Date(System.currentTimeMillis() + VALIDADE_PADRAO), Arrays.asList(revogados));
+    }
+
+    private static byte[] assina(byte[] tbs) throws Exception {
+        Signature assinatura = Signature.getInstance("SHA256withRSA");
+        assinatura.initSign(ac.getChaves().getPrivate());
+        assinatura.update(tbs);
+        return sequencia(tbs, algoritmo(SHA256_RSA), bitString(assinatura.sign()));
+    }
+
+    private static byte[] bitString(byte[] assinatura) {
+        return tlv(0x03, new byte[]{0}, assinatura);
+    }
+
+    private static X509CRL crl(byte[] lcr) throws Exception {
+        return (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(new ByteArrayInputStream(lcr));
+    }
+
+    /*
+     * Posição do valor do INTEGER com a série informada dentro do TBSCertList.
+     */
+    private static int indiceSerie(byte[] tbs, BigInteger serie) {
+        byte[] inteiro = tlv(0x02, serie.toByteArray());
+        for (int i = tbs.length - inteiro.length; i >= 0; i--) {
+            if (Arrays.equals(Arrays.copyOfRange(tbs, i, i + inteiro.length), inteiro)) {
+                return i + inteiro.length - 1;
+            }
+        }
+        throw new IllegalArgumentException("Série não encontrada");
+    }
+}
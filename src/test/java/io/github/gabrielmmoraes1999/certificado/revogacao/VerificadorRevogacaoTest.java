@@ -0,0 +1,289 @@
+package io.github.gabrielmmoraes1999.certificado.revogacao;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.gabrielmmoraes1999.certificado.CertificadosTeste;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VerificadorRevogacaoTest {
+
+    private static final long HORA = TimeUnit.HOURS.toMillis(1);
+
+    private static CertificadosTeste ac;
+    private static KeyPair chaves;
+
+    private HttpServer servidor;
+    private String base;
+    private final Set<BigInteger> revogados = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger consultas = new AtomicInteger();
+    private volatile byte[] lcr;
+    private volatile boolean foraDoAr;
+    private volatile CertificadosTeste respondedorOcsp;
+
+    private VerificadorRevogacao verificador;
+
+    @BeforeAll
+    static void criaAc() throws Exception {
+        ac = CertificadosTeste.novaAc("AC Revogacao");
+        chaves = CertificadosTeste.geraChaves();
+    }
+
+    /*
+     * Servidor local no lugar da AC: publica a LCR atual em /ac.crl e responde OCSP por POST em /ocsp.
+     */
+    @BeforeEach
+    void iniciaServidor() throws Exception {
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        servidor.createContext("/ac.crl", troca -> {
+            downloads.incrementAndGet();
+            responde(troca, lcr);
+        });
+        servidor.createContext("/ocsp", troca -> {
+            consultas.incrementAndGet();
+            try {
+                responde(troca, respondedorOcsp.respostaOcsp(le(troca.getRequestBody()), revogados, new Date(System.currentTimeMillis() + HORA)));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        });
+        servidor.start();
+        base = "http://127.0.0.1:" + servidor.getAddress().getPort();
+        respondedorOcsp = ac;
+        publicaLcr(new Date(System.currentTimeMillis() + HORA));
+        verificador = new VerificadorRevogacao();
+    }
+
+    @AfterEach
+    void paraServidor() {
+        servidor.stop(0);
+    }
+
+    @Test
+    void identificaCertificadosValidosERevogados() throws Exception {
+        X509Certificate valido = emite();
+        X509Certificate revogado = emite();
+        revogados.add(revogado.getSerialNumber());
+        publicaLcr(new Date(System.currentTimeMillis() + HORA));
+
+        assertEquals(SituacaoRevogacao.VALIDO, verificador.verificar(valido, ac.getCertificado()));
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(revogado, ac.getCertificado()));
+        assertEquals(1, verificador.getQuantidadeRevogados());
+        assertThrows(CertificateException.class, () -> verificador.verificarCadeia(
+                new X509Certificate[]{revogado, ac.getCertificado()}, Collections.emptyList()));
+        verificador.verificarCadeia(new X509Certificate[]{valido}, Collections.singletonList(ac.getCertificado()));
+    }
+
+    @Test
+    void lcrFicaEmCacheAteONextUpdate() throws Exception {
+        X509Certificate certificado = emite();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(SituacaoRevogacao.VALIDO, verificador.verificar(certificado, ac.getCertificado()));
+        }
+
+        assertEquals(1, downloads.get());
+        assertEquals(1, verificador.getDownloadsLcr());
+        assertEquals(1, verificador.getQuantidadeListas());
+        assertEquals(0, verificador.atualizar());
+        assertEquals(1, downloads.get());
+    }
+
+    @Test
+    void lcrVencidaEhBaixadaDeNovo() throws Exception {
+        X509Certificate certificado = emite();
+        publicaLcr(new Date(System.currentTimeMillis() - HORA));
+        assertEquals(SituacaoRevogacao.VALIDO, verificador.verificar(certificado, ac.getCertificado()));
+
+        revogados.add(certificado.getSerialNumber());
+        publicaLcr(new Date(System.currentTimeMillis() + HORA));
+
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(2, downloads.get());
+    }
+
+    @Test
+    void atualizarBaixaSoAsLcrsVencidas() throws Exception {
+        X509Certificate certificado = emite();
+        publicaLcr(new Date(System.currentTimeMillis() - HORA));
+        verificador.verificar(certificado, ac.getCertificado());
+
+        revogados.add(certificado.getSerialNumber());
+        publicaLcr(new Date(System.currentTimeMillis() + HORA));
+
+        assertEquals(1, verificador.atualizar());
+        assertEquals(0, verificador.atualizar());
+        assertEquals(2, downloads.get());
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(2, downloads.get());
+    }
+
+    @Test
+    void servidorForaDoArAceitaNoModoPadraoERecusaNoEstrito() throws Exception {
+        X509Certificate certificado = emite();
+        X509Certificate[] cadeia = {certificado, ac.getCertificado()};
+        foraDoAr = true;
+
+        assertEquals(SituacaoRevogacao.DESCONHECIDO, verificador.verificar(certificado, ac.getCertificado()));
+        verificador.verificarCadeia(cadeia, Collections.emptyList());
+
+        verificador.setEstrito(true);
+        assertThrows(CertificateException.class, () -> verificador.verificarCadeia(cadeia, Collections.emptyList()));
+    }
+
+    @Test
+    void lcrVencidaSemServidorSoEhUsadaForaDoModoEstrito() throws Exception {
+        X509Certificate certificado = emite();
+        revogados.add(certificado.getSerialNumber());
+        publicaLcr(new Date(System.currentTimeMillis() - HORA));
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        foraDoAr = true;
+
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        verificador.setEstrito(true);
+        assertEquals(SituacaoRevogacao.DESCONHECIDO, verificador.verificar(certificado, ac.getCertificado()));
+    }
+
+    @Test
+    void esperaOIntervaloAntesDeTentarDeNovo() throws Exception {
+        X509Certificate certificado = emite();
+        foraDoAr = true;
+
+        verificador.verificar(certificado, ac.getCertificado());
+        foraDoAr = false;
+        assertEquals(SituacaoRevogacao.DESCONHECIDO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(1, downloads.get());
+
+        VerificadorRevogacao semEspera = new VerificadorRevogacao();
+        semEspera.setIntervaloNovaTentativa(0);
+        foraDoAr = true;
+        assertEquals(SituacaoRevogacao.DESCONHECIDO, semEspera.verificar(certificado, ac.getCertificado()));
+        foraDoAr = false;
+        assertEquals(SituacaoRevogacao.VALIDO, semEspera.verificar(certificado, ac.getCertificado()));
+        assertEquals(3, downloads.get());
+    }
+
+    @Test
+    void recusaLcrAssinadaPorOutraChave() throws Exception {
+        X509Certificate certificado = emite();
+        CertificadosTeste impostora = new CertificadosTeste(CertificadosTeste.geraChaves(), ac.getCertificado());
+        lcr = impostora.lcr(new Date(), new Date(System.currentTimeMillis() + HORA), Collections.emptySet());
+
+        assertEquals(SituacaoRevogacao.DESCONHECIDO, verificador.verificar(certificado, ac.getCertificado()));
+        verificador.setEstrito(true);
+        assertThrows(CertificateException.class, () -> verificador.verificarCadeia(
+                new X509Certificate[]{certificado, ac.getCertificado()}, Collections.emptyList()));
+    }
+
+    @Test
+    void certificadoSemLcrTemSituacaoDesconhecida() throws Exception {
+        X509Certificate certificado = ac.emissao("CN=SEM LCR").emitir(chaves.getPublic());
+
+        assertEquals(SituacaoRevogacao.DESCONHECIDO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(0, downloads.get());
+    }
+
+    @Test
+    void consultaOOcspEGuardaARespostaEmCache() throws Exception {
+        X509Certificate valido = emite();
+        X509Certificate revogado = emite();
+        revogados.add(revogado.getSerialNumber());
+        verificador.setOcsp(true);
+
+        assertEquals(SituacaoRevogacao.VALIDO, verificador.verificar(valido, ac.getCertificado()));
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(revogado, ac.getCertificado()));
+        assertEquals(SituacaoRevogacao.VALIDO, verificador.verificar(valido, ac.getCertificado()));
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(revogado, ac.getCertificado()));
+
+        assertEquals(2, consultas.get());
+        assertEquals(2, verificador.getConsultasOcsp());
+        assertEquals(0, downloads.get());
+    }
+
+    @Test
+    void ocspForaDoArUsaALcr() throws Exception {
+        X509Certificate certificado = emite();
+        revogados.add(certificado.getSerialNumber());
+        publicaLcr(new Date(System.currentTimeMillis() + HORA));
+        verificador.setOcsp(true);
+        servidor.removeContext("/ocsp");
+
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(1, downloads.get());
+    }
+
+    @Test
+    void recusaRespostaOcspDeRespondedorNaoAutorizadoEUsaALcr() throws Exception {
+        X509Certificate certificado = emite();
+        revogados.add(certificado.getSerialNumber());
+        publicaLcr(new Date(System.currentTimeMillis() + HORA));
+        verificador.setOcsp(true);
+        // respondedor com o nome da AC mas outra chave, que declara o certificado como válido
+        respondedorOcsp = new CertificadosTeste(CertificadosTeste.geraChaves(), ac.getCertificado());
+        revogados.clear();
+
+        assertEquals(SituacaoRevogacao.REVOGADO, verificador.verificar(certificado, ac.getCertificado()));
+        assertEquals(1, consultas.get());
+        assertEquals(1, downloads.get());
+    }
+
+    private X509Certificate emite() throws Exception {
+        return ac.emissao("CN=TITULAR " + System.nanoTime())
+                .lcr(base + "/ac.crl")
+                .ocsp(base + "/ocsp")
+                .emitir(chaves.getPublic());
+    }
+
+    private void publicaLcr(Date proximaAtualizacao) throws Exception {
+        lcr = ac.lcr(new Date(System.currentTimeMillis() - 2 * HORA), proximaAtualizacao, revogados);
+    }
+
+    private void responde(HttpExchange troca, byte[] corpo) throws IOException {
+        le(troca.getRequestBody());
+        if (foraDoAr) {
+            troca.sendResponseHeaders(503, -1);
+        } else {
+            troca.sendResponseHeaders(200, corpo.length);
+            try (OutputStream saida = troca.getResponseBody()) {
+                saida.write(corpo);
+            }
+        }
+        troca.close();
+    }
+
+    private static byte[] le(InputStream entrada) throws IOException {
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int lidos;
+        while ((lidos = entrada.read(buffer)) != -1) {
+            saida.write(buffer, 0, lidos);
+        }
+        return saida.toByteArray();
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.inteiro;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.nulo;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.octetString;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.oid;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.sequencia;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.tempo;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.tlv;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DerReaderTest {
+
+    @Test
+    void percorreElementosAninhados() {
+        byte[] der = sequencia(inteiro(5), sequencia(oid("2.16.76.1.3.3"), octetString("abc".getBytes(StandardCharsets.US_ASCII))), nulo());
+
+        DerReader leitor = new DerReader(der);
+        leitor.proximo(DerWriter.TAG_SEQUENCE).entrar();
+        leitor.proximo(DerWriter.TAG_INTEGER);
+        assertArrayEquals(new byte[]{5}, Arrays.copyOfRange(der, leitor.getInicio(), leitor.getFim()));
+
+        leitor.proximo(DerWriter.TAG_SEQUENCE).entrar().proximo(DerWriter.TAG_OID);
+        assertTrue(leitor.valorComecaCom(new byte[]{96, 76, 1, 3}));
+        assertFalse(leitor.valorIgual(new byte[]{96, 76, 1, 3}));
+        leitor.proximo(DerWriter.TAG_OCTET_STRING);
+        assertTrue(leitor.valorIgual("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertFalse(leitor.proximo());
+        leitor.sair();
+
+        leitor.proximo(DerWriter.TAG_NULL);
+        assertEquals(0, leitor.getTamanho());
+        assertFalse(leitor.proximo());
+        assertEquals(-1, leitor.getTag());
+    }
+
+    @Test
+    void leTamanhoNaFormaLonga() {
+        byte[] valor = new byte[300];
+        byte[] der = octetString(valor);
+        assertEquals((byte) 0x82, der[1]);
+
+        DerReader leitor = new DerReader(der);
+        leitor.proximo(DerWriter.TAG_OCTET_STRING);
+        assertEquals(4, leitor.getInicio());
+        assertEquals(300, leitor.getTamanho());
+        assertEquals(0, leitor.getInicioElemento());
+    }
+
+    @Test
+    void pulaTagDeNumeroAlto() {
+        byte[] der = concatena(new byte[]{(byte) 0x9F, (byte) 0x81, 0x01, 1, 7}, inteiro(9));
+
+        DerReader leitor = new DerReader(der);
+        assertTrue(leitor.proximo());
+        assertEquals(0x9F, leitor.getTag());
+        assertEquals(1, leitor.getTamanho());
+        leitor.proximo(DerWriter.TAG_INTEGER);
+        assertEquals(9, der[leitor.getInicio()]);
+    }
+
+    @Test
+    void recusaCodificacoesInvalidas() {
+        // cabeçalho sem o tamanho
+        assertInvalido(new byte[]{0x30});
+        // conteúdo menor que o tamanho declarado
+        assertInvalido(new byte[]{0x04, 0x05, 1, 2});
+        // tamanho indefinido (BER) e tamanho com mais de 4 bytes
+        assertInvalido(new byte[]{0x30, (byte) 0x80, 0, 0});
+        assertInvalido(new byte[]{0x04, (byte) 0x85, 0, 0, 0, 0, 1, 0});
+        // tamanho negativo em 4 bytes
+        assertInvalido(new byte[]{0x04, (byte) 0x84, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+        // tamanho na forma longa cortado no fim dos dados
+        assertInvalido(new byte[]{0x04, (byte) 0x82, 1});
+    }
+
+    @Test
+    void filhoNaoUltrapassaOElementoPai() {
+        // SEQUENCE de 3 bytes contendo um OCTET STRING que declara 5
+        byte[] der = new byte[]{0x30, 0x03, 0x04, 0x05, 1, 2, 3, 4, 5};
+
+        DerReader leitor = new DerReader(der, 0, 5);
+        leitor.proximo(DerWriter.TAG_SEQUENCE).entrar();
+        assertThrows(IllegalArgumentException.class, leitor::proximo);
+    }
+
+    @Test
+    void limitaAProfundidade() {
+        byte[] der = nulo();
+        for (int i = 0; i < 20; i++) {
+            der = sequencia(der);
+        }
+
+        DerReader leitor = new DerReader(der);
+        assertThrows(IllegalArgumentException.class, () -> {
+            while (true) {
+                leitor.proximo(DerWriter.TAG_SEQUENCE).entrar();
+            }
+        });
+    }
+
+    @Test
+    void exigeATagEsperadaEUmElementoLido() {
+        DerReader leitor = new DerReader(sequencia(inteiro(1)));
+        assertThrows(IllegalStateException.class, leitor::entrar);
+        assertThrows(IllegalStateException.class, leitor::sair);
+        assertThrows(IllegalArgumentException.class, () -> leitor.proximo(DerWriter.TAG_SET));
+        assertThrows(IllegalArgumentException.class, () -> new DerReader(new byte[2], 1, 3));
+    }
+
+    @Test
+    void leDatasUtcEGeneralizadas() {
+        Instant instante = Instant.parse("2026-03-04T05:06:07Z");
+        assertEquals(instante.toEpochMilli(), leTempo(tempo(instante)));
+
+        Instant distante = Instant.parse("2051-12-31T23:59:58Z");
+        byte[] generalizado = tempo(distante);
+        assertEquals(DerWriter.TAG_GENERALIZED_TIME, generalizado[0]);
+        assertEquals(distante.toEpochMilli(), leTempo(generalizado));
+
+        // UTCTime: anos abaixo de 50 são do século 21, os demais do século 20
+        assertEquals(Instant.parse("2049-01-01T00:00:00Z").toEpochMilli(), leTempo(texto(DerWriter.TAG_UTC_TIME, "490101000000Z")));
+        assertEquals(Instant.parse("1950-01-01T00:00:00Z").toEpochMilli(), leTempo(texto(DerWriter.TAG_UTC_TIME, "500101000000Z")));
+        // segundos opcionais e frações ignoradas
+        assertEquals(Instant.parse("2026-03-04T05:06:00Z").toEpochMilli(), leTempo(texto(DerWriter.TAG_UTC_TIME, "2603040506Z")));
+        assertEquals(Instant.parse("2026-03-04T05:06:07Z").toEpochMilli(), leTempo(texto(DerWriter.TAG_GENERALIZED_TIME, "20260304050607.123Z")));
+    }
+
+    @Test
+    void recusaDatasInvalidas() {
+        assertThrows(IllegalArgumentException.class, () -> leTempo(texto(DerWriter.TAG_UTC_TIME, "261304050607Z")));
+        assertThrows(IllegalArgumentException.class, () -> leTempo(texto(DerWriter.TAG_UTC_TIME, "2603x4050607Z")));
+        assertThrows(IllegalArgumentException.class, () -> leTempo(texto(DerWriter.TAG_UTC_TIME, "2603")));
+        assertThrows(IllegalArgumentException.class, () -> leTempo(octetString(new byte[13])));
+    }
+
+    @Test
+    void entradasCorrompidasSoGeramIllegalArgumentException() {
+        byte[] original = sequencia(inteiro(123456789L), sequencia(oid("1.2.840.113549.1.1.11"), nulo()),
+                sequencia(tempo(Instant.parse("2026-01-01T00:00:00Z")), octetString(new byte[200])));
+        Random aleatorio = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            byte[] der = original.clone();
+            int alteracoes = 1 + aleatorio.nextInt(4);
+            for (int j = 0; j < alteracoes; j++) {
+                der[aleatorio.nextInt(der.length)] = (byte) aleatorio.nextInt(256);
+            }
+            byte[] entrada = Arrays.copyOf(der, aleatorio.nextInt(der.length + 1));
+            try {
+                percorre(new DerReader(entrada), 0);
+            } catch (IllegalArgumentException e) {
+                // esperado para codificações inválidas
+            }
+        }
+    }
+
+    /*
+     * Visita todos os elementos construídos e lê as datas, como fazem os leitores de CRL e de certificados.
+     */
+    private static void percorre(DerReader leitor, int nivel) {
+        while (leitor.proximo()) {
+            int fim = leitor.getFim();
+            assertTrue(leitor.getInicio() <= fim && fim <= leitor.getDados().length);
+            if ((leitor.getTag() & 0x20) != 0 && nivel < 16) {
+                leitor.entrar();
+                percorre(leitor, nivel + 1);
+                leitor.sair();
+            } else if (leitor.getTag() == DerWriter.TAG_UTC_TIME || leitor.getTag() == DerWriter.TAG_GENERALIZED_TIME) {
+                leitor.getTempo();
+            }
+        }
+    }
+
+    private static long leTempo(byte[] der) {
+        DerReader leitor = new DerReader(der);
+        leitor.proximo();
+        return leitor.getTempo();
+    }
+
+    private static byte[] texto(int tag, String valor) {
+        return tlv(tag, valor.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] concatena(byte[] a, byte[] b) {
+        byte[] resultado = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, resultado, a.length, b.length);
+        return resultado;
+    }
+
+    private static void assertInvalido(byte[] der) {
+        assertThrows(IllegalArgumentException.class, () -> new DerReader(der).proximo());
+    }
+}
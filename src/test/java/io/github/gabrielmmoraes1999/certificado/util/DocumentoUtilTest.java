@@ -0,0 +1,149 @@
+package io.github.gabrielmmoraes1999.certificado.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.contexto;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.octetString;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.oid;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.sequencia;
+import static io.github.gabrielmmoraes1999.certificado.util.DerWriter.tlv;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DocumentoUtilTest {
+
+    private static final int TAG_UTF8_STRING = 0x0C;
+    private static final int TAG_PRINTABLE_STRING = 0x13;
+    private static final int TAG_RFC822_NAME = 0x81;
+
+    private static final String RESPONSAVEL = "01021980" + "12345678909" + "12345678901" + "1234567        " + "SSPSP";
+
+    @Test
+    void leOsCamposDePessoaJuridica() {
+        byte[] extensao = extensao(
+                otherName("2.16.76.1.3.4", octetString(ascii(RESPONSAVEL))),
+                otherName("2.16.76.1.3.2", tlv(TAG_UTF8_STRING, "João da Conceição".getBytes(StandardCharsets.UTF_8))),
+                otherName("2.16.76.1.3.3", octetString(ascii("12345678000195"))),
+                otherName("2.16.76.1.3.7", octetString(ascii("000000000000"))),
+                tlv(TAG_RFC822_NAME, ascii("contato@empresa.com.br")));
+
+        DadosIcpBrasil dados = DocumentoUtil.processaSubjectAltName(extensao);
+
+        assertEquals("12345678000195", dados.getCnpj());
+        assertEquals("12345678000195", dados.getDocumento());
+        assertEquals("01021980", dados.getDataNascimentoResponsavel());
+        assertEquals("12345678909", dados.getCpfResponsavel());
+        assertEquals("12345678901", dados.getNisResponsavel());
+        assertEquals("1234567", dados.getRgResponsavel());
+        assertEquals("SSPSP", dados.getOrgaoExpedidorRgResponsavel());
+        assertEquals("João da Conceição", dados.getNomeResponsavel());
+        assertEquals("000000000000", dados.getCeiPessoaJuridica());
+        assertNull(dados.getCpf());
+    }
+
+    @Test
+    void usaOCpfComoDocumentoDePessoaFisica() {
+        byte[] extensao = extensao(
+                otherName("2.16.76.1.3.1", octetString(ascii(RESPONSAVEL))),
+                otherName("2.16.76.1.3.5", tlv(TAG_PRINTABLE_STRING, ascii("0123456789010010123SAO PAULO SP"))));
+
+        DadosIcpBrasil dados = DocumentoUtil.processaSubjectAltName(extensao);
+
+        assertEquals("12345678909", dados.getCpf());
+        assertEquals("12345678909", dados.getDocumento());
+        assertEquals("012345678901", dados.getTituloEleitor());
+        assertEquals("001", dados.getZonaEleitoral());
+        assertEquals("0123", dados.getSecaoEleitoral());
+        assertEquals("SAO PAULO SP", dados.getMunicipioUfEleitoral());
+        assertEquals("12345678909", DocumentoUtil.getDocumentoFromCertificado(extensao).orElse(null));
+    }
+
+    @Test
+    void aceitaOValorSemOOctetStringDaExtensao() {
+        byte[] nomes = sequencia(otherName("2.16.76.1.3.3", octetString(ascii("12345678000195"))));
+
+        assertEquals("12345678000195", DocumentoUtil.processaSubjectAltName(nomes).getCnpj());
+    }
+
+    @Test
+    void ignoraOtherNamesForaDaIcpBrasil() {
+        byte[] extensao = extensao(
+                otherName("1.3.6.1.4.1.311.20.2.3", tlv(TAG_UTF8_STRING, ascii("usuario@dominio"))),
+                otherName("2.16.76.1.3", octetString(ascii("12345678000195"))),
+                otherName("2.16.76.1.3.3", octetString(ascii("12345678000195"))));
+
+        assertEquals("12345678000195", DocumentoUtil.processaSubjectAltName(extensao).getDocumento());
+    }
+
+    @Test
+    void camposIncompletosOuNaoNumericosFicamNulos() {
+        byte[] extensao = extensao(
+                otherName("2.16.76.1.3.3", octetString(ascii("1234567800019X"))),
+                otherName("2.16.76.1.3.4", octetString(ascii("0102198012345"))));
+
+        DadosIcpBrasil dados = DocumentoUtil.processaSubjectAltName(extensao);
+
+        assertNull(dados.getCnpj());
+        assertEquals("01021980", dados.getDataNascimentoResponsavel());
+        assertNull(dados.getCpfResponsavel());
+        assertNull(dados.getRgResponsavel());
+    }
+
+    @Test
+    void extensaoMalformadaRetornaOsCamposLidosAteOErro() {
+        byte[] extensao = extensao(
+                otherName("2.16.76.1.3.3", octetString(ascii("12345678000195"))),
+                contexto(0, oid("2.16.76.1.3.2")),
+                otherName("2.16.76.1.3.2", tlv(TAG_UTF8_STRING, ascii("Nunca lido"))));
+
+        DadosIcpBrasil dados = DocumentoUtil.processaSubjectAltName(extensao);
+
+        assertEquals("12345678000195", dados.getCnpj());
+        assertNull(dados.getNomeResponsavel());
+    }
+
+    @Test
+    void extensaoAusenteOuInvalidaNaoTemCampos() {
+        assertNull(DocumentoUtil.processaSubjectAltName(null).getDocumento());
+        assertNull(DocumentoUtil.processaSubjectAltName(new byte[0]).getDocumento());
+        assertNull(DocumentoUtil.processaSubjectAltName(new byte[]{0x04, 0x7F, 0x30}).getDocumento());
+        assertNull(DocumentoUtil.processaSubjectAltName(octetString(DerWriter.inteiro(1))).getDocumento());
+    }
+
+    @Test
+    void extensoesCorrompidasNuncaLancamExcecao() {
+        byte[] original = extensao(
+                otherName("2.16.76.1.3.4", octetString(ascii(RESPONSAVEL))),
+                otherName("2.16.76.1.3.2", tlv(TAG_UTF8_STRING, ascii("Fulano de Tal"))),
+                otherName("2.16.76.1.3.3", octetString(ascii("12345678000195"))));
+        Random aleatorio = new Random(7);
+
+        for (int i = 0; i < 5000; i++) {
+            byte[] extensao = original.clone();
+            int alteracoes = 1 + aleatorio.nextInt(4);
+            for (int j = 0; j < alteracoes; j++) {
+                extensao[aleatorio.nextInt(extensao.length)] = (byte) aleatorio.nextInt(256);
+            }
+            DocumentoUtil.processaSubjectAltName(Arrays.copyOf(extensao, aleatorio.nextInt(extensao.length + 1)));
+        }
+    }
+
+    private static byte[] extensao(byte[]... nomes) {
+        return octetString(sequencia(nomes));
+    }
+
+    /*
+     * otherName ::= [0] IMPLICIT SEQUENCE { type-id OBJECT IDENTIFIER, value [0] EXPLICIT ANY }
+     */
+    private static byte[] otherName(String tipo, byte[] valor) {
+        return contexto(0, oid(tipo), contexto(0, valor));
+    }
+
+    private static byte[] ascii(String valor) {
+        return valor.getBytes(StandardCharsets.US_ASCII);
+    }
+}